@@ -18,8 +18,6 @@
  */
 package org.structr.agent;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +29,10 @@ import org.structr.core.graph.Tx;
 
 /**
  * Abstract base class for all agents.
+ *
+ * Agents are created and started by the {@link AgentService}. All agents
+ * for a task type share a single queue, on which they wait for the next
+ * task.
  */
 public abstract class Agent<T> extends Thread implements StatusInfo {
 
@@ -40,9 +42,10 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 	private static final Logger logger                = LoggerFactory.getLogger(Agent.class.getName());
 
 	private final AtomicBoolean suspended      = new AtomicBoolean(false);
-	private final Queue<Task<T>> taskQueue     = new ConcurrentLinkedQueue<>();
 	private final AtomicBoolean acceptingTasks = new AtomicBoolean(true);
 	private AgentService agentService          = null;
+	private TaskQueue taskQueue                = null;
+	private volatile boolean waiting           = false;
 	private long averageExecutionTime          = 0;
 	private int maxAgents                      = 10;
 	private int maxQueueSize                   = 200;
@@ -59,106 +62,104 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 
 		agentService.notifyAgentStart(this);
 
-		do {
-
-			while (suspended.get()) {
+		try {
 
-				Thread.yield();
+			do {
 
-			}
+				while (suspended.get()) {
 
-			final Task<T> currentTask;
+					Thread.sleep(100);
+				}
 
-			synchronized (taskQueue) {
+				final TaskQueue.Entry next;
 
-				currentTask = taskQueue.poll();
+				waiting = true;
 
-			}
+				try {
 
-			if (currentTask != null) {
+					next = taskQueue.take(this);
 
-				ReturnValue ret = null;
+				} finally {
 
-				// only execute process if Service layer is ready
-				// (and not shutting down right now)
-				if (Services.getInstance().isInitialized()) {
+					waiting = false;
+				}
 
-					if (createEnclosingTransaction()) {
+				if (next == null) {
 
-						try (final Tx tx = StructrApp.getInstance().tx()) {
+					// no more tasks, quit.
+					break;
+				}
 
-							ret = processTask(currentTask);
-							tx.success();
+				final Task<T> currentTask = next.getTask();
 
-						} catch (FrameworkException fex) {
+				// only execute process if Service layer is ready
+				while (!Services.getInstance().isInitialized() && agentService.isRunning()) {
 
-							// task processing failed..
-							logger.error("Processing task {} failed: {}", currentTask.getType(), fex.toString());
+					Thread.sleep(1000);
+				}
 
-						} catch (Throwable t) {
+				if (!agentService.isRunning()) {
 
-							// task processing failed..
-							logger.error("Processing task {} failed: {}", currentTask.getType(), t.getMessage());
-						}
+					// shutting down, persistent tasks are processed again after the restart
+					break;
+				}
 
-					} else {
+				final long startTime = System.nanoTime();
+				final ReturnValue ret;
 
-						try {
+				if (createEnclosingTransaction()) {
 
-							ret = processTask(currentTask);
+					ret = processInTransaction(currentTask);
 
-						} catch (FrameworkException fex) {
+				} else {
 
-							// task processing failed..
-							logger.error("Processing task {} failed: {}", currentTask.getType(), fex.toString());
+					ret = process(currentTask);
+				}
 
-						} catch (Throwable t) {
+				final long duration = System.nanoTime() - startTime;
 
-							// task processing failed..
-							logger.error("Processing task {} failed: {}", currentTask.getType(), t.getMessage());
-						}
-					}
-				}
+				// calc. average execution time
+				averageExecutionTime += duration;
+				averageExecutionTime /= 2;
 
 				if (ret != null && Retry.equals(ret) && currentTask.getRetryCount() < 2) {
 
-					// wait some time
-					try { Thread.sleep(2000); } catch (InterruptedException ex) {}
+					currentTask.incrementRetryCount();
 
-					synchronized (taskQueue) {
+					// try again later, without blocking this agent
+					agentService.retry(taskQueue, next);
 
-						currentTask.incrementRetryCount();
-						taskQueue.add(currentTask);
-					}
-				}
+				} else {
 
-				long endTime = System.nanoTime();
+					taskQueue.done(next, ret, duration);
+				}
 
-				// calc. average execution time
-				averageExecutionTime += endTime;
-				averageExecutionTime /= 2;
+			} while (acceptingTasks.get());
 
-			} else {
+		} catch (InterruptedException iex) {
 
-				// queue is empty, quit.
-				acceptingTasks.set(false);
-			}
+			// agent was stopped
+		}
 
-		} while (acceptingTasks.get());
+		taskQueue.agentStopped(this);
 
 		// call beforeShutdown to allow agents to clean up
 		beforeShutdown();
 		agentService.notifyAgentStop(this);
 	}
 
+	/**
+	 * Hands the given task over to the agent service, which assigns it to
+	 * the next free agent for its type.
+	 *
+	 * @param task
+	 * @return whether the task was accepted
+	 */
 	public final boolean assignTask(final Task<T> task) {
 
 		if (canHandleMore() && acceptingTasks.get()) {
 
-			synchronized (taskQueue) {
-
-				taskQueue.add(task);
-			}
+			agentService.processTask(task);
 
 			return true;
 		}
@@ -171,9 +172,6 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 		// stop accepting tasks
 		acceptingTasks.set(false);
 
-		// clear queue
-		taskQueue.clear();
-
 		// interrupt running process..
 		// not sure if this works... see Thread.interrupt()'s description!
 		// may not work if the processTask method itself catches the interrupt..
@@ -198,23 +196,7 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 	}
 
 	protected boolean canHandleMore() {
-
-		int size = 0;
-
-		synchronized (taskQueue) {
-
-			// FIXME: size may not be a constant time operation! slow?
-			size = taskQueue.size();
-		}
-
-		// queue is empty, assume new agent
-		if (size == 0) {
-
-			return true;
-
-		}
-
-		return size < maxQueueSize;
+		return true;
 	}
 
 	public boolean createEnclosingTransaction() {
@@ -271,4 +253,66 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 	public final boolean isAcceptingTasks() {
 		return acceptingTasks.get();
 	}
+
+	// ----- package-private methods -----
+	final void setTaskQueue(final TaskQueue taskQueue) {
+		this.taskQueue = taskQueue;
+	}
+
+	/**
+	 * Stops this agent after the current task, or immediately if it is
+	 * waiting for a task.
+	 */
+	final void stopAgent() {
+
+		acceptingTasks.set(false);
+
+		if (waiting) {
+			this.interrupt();
+		}
+	}
+
+	// ----- private methods -----
+	private ReturnValue processInTransaction(final Task<T> currentTask) {
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			final ReturnValue ret = processTask(currentTask);
+			tx.success();
+
+			return ret;
+
+		} catch (FrameworkException fex) {
+
+			// task processing failed..
+			logger.error("Processing task {} failed: {}", currentTask.getType(), fex.toString());
+
+		} catch (Throwable t) {
+
+			// task processing failed..
+			logger.error("Processing task {} failed: {}", currentTask.getType(), t.getMessage());
+		}
+
+		return null;
+	}
+
+	private ReturnValue process(final Task<T> currentTask) {
+
+		try {
+
+			return processTask(currentTask);
+
+		} catch (FrameworkException fex) {
+
+			// task processing failed..
+			logger.error("Processing task {} failed: {}", currentTask.getType(), fex.toString());
+
+		} catch (Throwable t) {
+
+			// task processing failed..
+			logger.error("Processing task {} failed: {}", currentTask.getType(), t.getMessage());
+		}
+
+		return null;
+	}
 }
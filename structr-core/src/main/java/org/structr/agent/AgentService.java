@@ -18,19 +18,24 @@
  */
 package org.structr.agent;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.api.service.Command;
 import org.structr.api.service.RunnableService;
 import org.structr.api.service.ServiceDependency;
@@ -41,53 +46,46 @@ import org.structr.schema.SchemaService;
 
 /**
  * The agent service main class.
+ *
+ * Every task type has its own queue and pool of agents (see {@link TaskQueue}),
+ * whose size can be configured with <code>application.agents.threads</code>
+ * and <code>application.agents.threads.pertype</code>. Tasks that implement
+ * {@link PersistentTask} are written to a journal if
+ * <code>application.agents.journal</code> is enabled, and are queued again
+ * after a restart if they were not finished.
  */
 @ServiceDependency(SchemaService.class)
-public class AgentService extends Thread implements RunnableService {
+public class AgentService implements RunnableService {
 
-	private static final Logger logger = LoggerFactory.getLogger(AgentService.class.getName());
+	private static final Logger logger    = LoggerFactory.getLogger(AgentService.class.getName());
+	private static final long RETRY_DELAY = 2000L;
 
-	private final int maxAgents                          = 10;    // TODO: make configurable
-	private final Map<String, List<Agent>> runningAgents = new ConcurrentHashMap<>(10, 0.9f, 8);
-	private final Map<String, Class> agentClassCache     = new ConcurrentHashMap<>(10, 0.9f, 8);
-	private final Queue<Task> taskQueue                  = new ConcurrentLinkedQueue<>();
-	private Set<Class> supportedCommands                 = null;
-	private boolean run                                  = false;
+	private final Map<String, TaskQueue> taskQueues  = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private final Map<String, Class> agentClassCache = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private ScheduledExecutorService retryExecutor   = null;
+	private Set<Class> supportedCommands             = null;
+	private TaskJournal journal                      = null;
+	private volatile boolean run                     = false;
 
 	public AgentService() {
 
-		super("AgentService");
 		supportedCommands = new LinkedHashSet<>();
 		supportedCommands.add(ProcessTaskCommand.class);
-
-		super.setDaemon(true);
-	}
-
-	public void processTask(Task task) {
-
-		synchronized (taskQueue) {
-
-			taskQueue.add(task);
-			logger.debug("Task {} added to task queue", task);
-		}
 	}
 
-	@Override
-	public void run() {
+	public void processTask(final Task task) {
 
-		logger.info("AgentService started");
+		long journalId = 0L;
 
-		while (run) {
+		final TaskJournal currentJournal = journal;
+		if (currentJournal != null && task instanceof PersistentTask) {
 
-			Task nextTask = taskQueue.poll();
-			if (nextTask != null) {
+			journalId = currentJournal.add((PersistentTask)task, task.priority());
+		}
 
-				assignNextAgentForTask(nextTask);
-			}
+		getTaskQueueForType(task.getClass()).add(task, journalId);
 
-			// let others act
-			try { Thread.sleep(10); } catch(Throwable ignore) {}
-		}
+		logger.debug("Task {} added to task queue", task);
 	}
 
 	public void notifyAgentStart(Agent agent) {
@@ -95,7 +93,10 @@ public class AgentService extends Thread implements RunnableService {
 		List<Agent> agents = getRunningAgentsForTask(agent.getSupportedTaskType());
 
 		synchronized (agents) {
-			agents.add(agent);
+
+			if (!agents.contains(agent)) {
+				agents.add(agent);
+			}
 		}
 	}
 
@@ -138,13 +139,45 @@ public class AgentService extends Thread implements RunnableService {
 	@Override
 	public void startService() throws Exception {
 
+		retryExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+
+			final Thread thread = new Thread(r, "AgentService-Retry");
+
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
 		run = true;
-		this.start();
+
+		if (Settings.AgentJournalEnabled.getValue()) {
+
+			openJournal();
+		}
+
+		logger.info("AgentService started");
 	}
 
 	@Override
 	public void stopService() {
+
 		run = false;
+
+		for (final TaskQueue queue : taskQueues.values()) {
+			queue.stop();
+		}
+
+		if (retryExecutor != null) {
+
+			retryExecutor.shutdownNow();
+			retryExecutor = null;
+		}
+
+		if (journal != null) {
+
+			journal.close();
+			journal = null;
+		}
 	}
 
 	@Override
@@ -152,91 +185,134 @@ public class AgentService extends Thread implements RunnableService {
 		return true;
 	}
 
-	private void assignNextAgentForTask(final Task nextTask) {
+	/**
+	 * Returns the queue statistics for each task type, see
+	 * {@link TaskQueue#getStatistics()}.
+	 *
+	 * @return the statistics
+	 */
+	public Map<String, Object> getStatistics() {
 
-		Class taskClass    = nextTask.getClass();
-		List<Agent> agents = getRunningAgentsForTask(taskClass);
+		final Map<String, Object> statistics = new LinkedHashMap<>();
 
-		// need to synchronize on agents
-		synchronized (agents) {
+		for (final Entry<String, TaskQueue> entry : taskQueues.entrySet()) {
+			statistics.put(entry.getKey(), entry.getValue().getStatistics());
+		}
 
-			// find next free agent (agents should be sorted by load, so one
-			// of the first should do..
-			for (Agent agent : agents) {
+		final TaskJournal currentJournal = journal;
+		if (currentJournal != null) {
 
-				if (agent.assignTask(nextTask)) {
+			statistics.put("journal", currentJournal.size());
+		}
 
-					// ok, task is assigned
-					logger.debug("Task assigned to agent {} ({})", agent.getName(), agent.hashCode());
+		return statistics;
+	}
 
-					return;
-				}
-			}
-		}
+	// ----- package-private methods -----
+	/**
+	 * Creates a new agent for the given task type. Note that the agent
+	 * must be started manually after creation.
+	 *
+	 * @param taskClass
+	 * @return a new agent for the given task type
+	 */
+	Agent createAgent(final Class taskClass) {
 
-		if (agents.size() < maxAgents) {
+		logger.debug("Creating new agent for task {}", taskClass.getSimpleName());
 
-			// if we get here, task was not assigned to any agent, need to create a new one.
-			Agent agent = createAgent(nextTask);
+		Agent agent = null;
 
-			if ((agent != null) && agent.assignTask(nextTask)) {
+		try {
 
-				agent.start();
+			agent = lookupAgent(taskClass);
 
-			} else {
+			if (agent != null) {
 
-				// re-add task..
-				synchronized (taskQueue) {
-					taskQueue.add(nextTask);
-				}
+				// register us in agent..
+				agent.setAgentService(this);
 			}
 
-		} else {
-
-			logger.debug("Overall agents limit reached, re-queueing task");
+		} catch (Throwable t) {
 
-			// re-add task..
-			synchronized (taskQueue) {
-				taskQueue.add(nextTask);
-			}
+			t.printStackTrace();
 		}
+
+		return (agent);
 	}
 
 	/**
-	 * Creates a new agent for the given Task. Note that the agent must be
-	 * started manually after creation.
+	 * Queues the given task again after a short delay.
 	 *
-	 * @param forTask
-	 * @return a new agent for the given task
+	 * @param queue
+	 * @param entry
 	 */
-	private Agent createAgent(Task forTask) {
+	void retry(final TaskQueue queue, final TaskQueue.Entry entry) {
 
-		logger.debug("Creating new agent for task {}", forTask.getClass().getSimpleName());
+		final ScheduledExecutorService executor = retryExecutor;
+		if (executor != null) {
 
-		Agent agent = null;
+			executor.schedule(() -> queue.retry(entry), RETRY_DELAY, TimeUnit.MILLISECONDS);
+
+		} else {
+
+			queue.retry(entry);
+		}
+	}
+
+	void taskFinished(final TaskQueue.Entry entry) {
+
+		final TaskJournal currentJournal = journal;
+		if (currentJournal != null && entry.getJournalId() > 0L) {
+
+			currentJournal.remove(entry.getJournalId());
+		}
+	}
+
+	// ----- private methods -----
+	private void openJournal() {
+
+		final TaskJournal newJournal = new TaskJournal(Paths.get(Settings.getFullSettingPath(Settings.AgentJournalPath)));
 
 		try {
 
-			agent = lookupAgent(forTask);
+			final List<TaskJournal.Entry> entries = newJournal.open();
 
-			if (agent != null) {
+			journal = newJournal;
 
-				// register us in agent..
-				agent.setAgentService(this);
+			if (!entries.isEmpty()) {
+
+				logger.info("Queueing {} unfinished tasks from task journal", entries.size());
 			}
 
-		} catch (Throwable t) {
+			for (final TaskJournal.Entry entry : entries) {
 
-			t.printStackTrace();
-		}
+				try {
 
-		return (agent);
+					final PersistentTask task = (PersistentTask)Class.forName(entry.getTaskClass()).newInstance();
+
+					for (final String workObject : entry.getWorkObjects()) {
+						task.addWorkObject(workObject);
+					}
+
+					getTaskQueueForType(task.getClass()).add(task, entry.getId());
+
+				} catch (Throwable t) {
+
+					logger.warn("Unable to restore task {} from task journal: {}", entry.getTaskClass(), t.toString());
+
+					newJournal.remove(entry.getId());
+				}
+			}
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to open task journal, unfinished tasks will be lost on shutdown: {}", ioex.getMessage());
+		}
 	}
 
-	private Agent lookupAgent(Task task) {
+	private Agent lookupAgent(final Class taskClass) {
 
 		// FIXME: superuser security context
-		Class taskClass  = task.getClass();
 		Agent agent      = null;
 		Class agentClass = agentClassCache.get(taskClass.getName());
 
@@ -283,7 +359,14 @@ public class AgentService extends Thread implements RunnableService {
 	 * @return tasks
 	 */
 	public Collection<Task> getTaskQueue() {
-		return (taskQueue);
+
+		final List<Task> tasks = new ArrayList<>();
+
+		for (final TaskQueue queue : taskQueues.values()) {
+			tasks.addAll(queue.getTasks());
+		}
+
+		return tasks;
 	}
 
 	/**
@@ -291,22 +374,52 @@ public class AgentService extends Thread implements RunnableService {
 	 * @return agents
 	 */
 	public Map<String, List<Agent>> getRunningAgents() {
-		return (runningAgents);
+
+		final Map<String, List<Agent>> runningAgents = new LinkedHashMap<>();
+
+		for (final Entry<String, TaskQueue> entry : taskQueues.entrySet()) {
+			runningAgents.put(entry.getKey(), entry.getValue().getAgents());
+		}
+
+		return runningAgents;
 	}
 
 	private List<Agent> getRunningAgentsForTask(Class taskClass) {
+		return getTaskQueueForType(taskClass).getAgents();
+	}
+
+	private TaskQueue getTaskQueueForType(final Class taskClass) {
+		return taskQueues.computeIfAbsent(taskClass.getName(), k -> new TaskQueue(this, taskClass, getMaxAgents(taskClass)));
+	}
+
+	/**
+	 * Returns the number of agents for the given task type, which can be
+	 * configured by simple or fully-qualified class name.
+	 */
+	private int getMaxAgents(final Class taskClass) {
+
+		for (final String entry : Settings.AgentThreadsPerType.getValue("").split("[, ]+")) {
 
-		List<Agent> agents = runningAgents.get(taskClass.getName());
+			final String[] parts = entry.split(":");
+			if (parts.length == 2 && (parts[0].equals(taskClass.getSimpleName()) || parts[0].equals(taskClass.getName()))) {
 
-		if (agents == null) {
+				try {
 
-			agents = Collections.synchronizedList(new LinkedList<>());
+					return Integer.parseInt(parts[1].trim());
 
-			// Hashtable is synchronized
-			runningAgents.put(taskClass.getName(), agents);
+				} catch (NumberFormatException nex) {
+
+					logger.warn("Invalid number of agents for task type {}: {}", parts[0], parts[1]);
+				}
+			}
 		}
 
-		return (agents);
+		return Settings.AgentThreads.getValue();
+	}
+
+	@Override
+	public String getName() {
+		return AgentService.class.getSimpleName();
 	}
 
 	@Override
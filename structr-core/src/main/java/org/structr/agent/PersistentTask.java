@@ -0,0 +1,37 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.agent;
+
+/**
+ * A task that is written to the task journal of the {@link AgentService},
+ * so that it is processed again after a restart if it was not finished.
+ *
+ * The work objects of a persistent task are strings (e.g. UUIDs), and the
+ * task class must have a public no-argument constructor, which is used to
+ * re-create the task from the journal.
+ */
+public interface PersistentTask extends Task<String> {
+
+	/**
+	 * Adds a work object to a task that is re-created from the journal.
+	 *
+	 * @param workObject
+	 */
+	void addWorkObject(final String workObject);
+}
@@ -0,0 +1,295 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.agent;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of the persistent tasks that are queued in the
+ * {@link AgentService}.
+ *
+ * Every queued task is written as an "added" record, and every finished
+ * task as a "removed" record. When the journal is opened, the tasks that
+ * were added but not removed are returned, and the journal is rewritten
+ * to contain only those tasks. The same happens while the service is
+ * running, when the journal contains too many removed tasks.
+ */
+class TaskJournal {
+
+	private static final Logger logger     = LoggerFactory.getLogger(TaskJournal.class.getName());
+	private static final String FILE_NAME  = "tasks.journal";
+	private static final int COMPACT_LIMIT = 10000;
+
+	private final Map<Long, String> pending = new LinkedHashMap<>();
+	private BufferedWriter writer           = null;
+	private Path directory                  = null;
+	private long lastId                     = 0L;
+	private int removed                     = 0;
+
+	TaskJournal(final Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Opens the journal and returns the tasks that were not finished.
+	 *
+	 * @return the unfinished tasks
+	 * @throws IOException
+	 */
+	synchronized List<Entry> open() throws IOException {
+
+		final List<Entry> entries = new ArrayList<>();
+		final Path file           = directory.resolve(FILE_NAME);
+
+		Files.createDirectories(directory);
+
+		if (Files.exists(file)) {
+
+			try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+
+				String line = reader.readLine();
+				while (line != null) {
+
+					final String[] parts = line.split("\t");
+
+					try {
+
+						if (parts.length >= 4 && "+".equals(parts[0])) {
+
+							final long id = Long.parseLong(parts[1]);
+
+							pending.put(id, line);
+							lastId = Math.max(lastId, id);
+
+						} else if (parts.length == 2 && "-".equals(parts[0])) {
+
+							pending.remove(Long.parseLong(parts[1]));
+						}
+
+					} catch (NumberFormatException nex) {
+
+						// ignore incomplete records, e.g. after a crash
+						logger.warn("Ignoring invalid task journal record {}", line);
+					}
+
+					line = reader.readLine();
+				}
+			}
+		}
+
+		for (final String line : pending.values()) {
+
+			final String[] parts    = line.split("\t");
+			final List<String> data = new ArrayList<>();
+
+			for (int i=4; i<parts.length; i++) {
+				data.add(decode(parts[i]));
+			}
+
+			entries.add(new Entry(Long.parseLong(parts[1]), parts[2], Integer.parseInt(parts[3]), data));
+		}
+
+		compact();
+
+		return entries;
+	}
+
+	/**
+	 * Writes the given task to the journal.
+	 *
+	 * @param task
+	 * @param priority
+	 * @return the id of the journal entry
+	 */
+	synchronized long add(final PersistentTask task, final int priority) {
+
+		final StringBuilder buf = new StringBuilder();
+		final long id           = ++lastId;
+
+		buf.append("+\t").append(id).append("\t").append(task.getClass().getName()).append("\t").append(priority);
+
+		for (final String workObject : task.getWorkObjects()) {
+			buf.append("\t").append(encode(workObject));
+		}
+
+		final String line = buf.toString();
+
+		pending.put(id, line);
+		write(line);
+
+		return id;
+	}
+
+	/**
+	 * Marks the journal entry with the given id as finished.
+	 *
+	 * @param id
+	 */
+	synchronized void remove(final long id) {
+
+		if (pending.remove(id) != null) {
+
+			write("-\t" + id);
+
+			if (++removed > COMPACT_LIMIT) {
+
+				try {
+
+					compact();
+
+				} catch (IOException ioex) {
+
+					logger.warn("Unable to compact task journal: {}", ioex.getMessage());
+				}
+			}
+		}
+	}
+
+	synchronized int size() {
+		return pending.size();
+	}
+
+	synchronized void close() {
+
+		if (writer != null) {
+
+			try {
+
+				writer.close();
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to close task journal: {}", ioex.getMessage());
+			}
+
+			writer = null;
+		}
+	}
+
+	// ----- private methods -----
+	private void compact() throws IOException {
+
+		final Path file = directory.resolve(FILE_NAME);
+		final Path tmp  = directory.resolve(FILE_NAME + ".tmp");
+
+		close();
+
+		try (final BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+
+			for (final String line : pending.values()) {
+
+				out.write(line);
+				out.newLine();
+			}
+		}
+
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		writer  = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		removed = 0;
+	}
+
+	private void write(final String line) {
+
+		if (writer != null) {
+
+			try {
+
+				writer.write(line);
+				writer.newLine();
+				writer.flush();
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to write to task journal: {}", ioex.getMessage());
+			}
+		}
+	}
+
+	private String encode(final String value) {
+
+		try {
+
+			return URLEncoder.encode(value != null ? value : "", "UTF-8");
+
+		} catch (UnsupportedEncodingException ueex) {
+			return value;
+		}
+	}
+
+	private String decode(final String value) {
+
+		try {
+
+			return URLDecoder.decode(value, "UTF-8");
+
+		} catch (UnsupportedEncodingException ueex) {
+			return value;
+		}
+	}
+
+	// ----- nested classes -----
+	static class Entry {
+
+		private List<String> workObjects = null;
+		private String taskClass         = null;
+		private int priority             = 0;
+		private long id                  = 0L;
+
+		Entry(final long id, final String taskClass, final int priority, final List<String> workObjects) {
+
+			this.id          = id;
+			this.taskClass   = taskClass;
+			this.priority    = priority;
+			this.workObjects = workObjects;
+		}
+
+		long getId() {
+			return id;
+		}
+
+		String getTaskClass() {
+			return taskClass;
+		}
+
+		int getPriority() {
+			return priority;
+		}
+
+		List<String> getWorkObjects() {
+			return workObjects;
+		}
+	}
+}
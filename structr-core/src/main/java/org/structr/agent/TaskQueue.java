@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.agent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The queue and the pool of agents for a single task type.
+ *
+ * Tasks are taken from the queue by priority (highest first), and in
+ * the order they were submitted for tasks with the same priority. Agents
+ * are started on demand up to the configured maximum, wait on the queue
+ * without polling, and stop after they were idle for some time. Since
+ * each task type has its own queue and agents, a large number of tasks
+ * of one type can't delay the tasks of other types.
+ */
+class TaskQueue {
+
+	private static final Logger logger           = LoggerFactory.getLogger(TaskQueue.class.getName());
+	private static final long IDLE_TIMEOUT       = 60L;
+	private static final Comparator<Entry> ORDER = Comparator.comparingInt((Entry e) -> -e.priority).thenComparingLong(e -> e.sequence);
+
+	private final PriorityBlockingQueue<Entry> queue = new PriorityBlockingQueue<>(16, ORDER);
+	private final List<Agent> agents                 = Collections.synchronizedList(new LinkedList<>());
+	private final AtomicLong maxProcessingTime       = new AtomicLong();
+	private final AtomicInteger idleAgents           = new AtomicInteger();
+	private final AtomicLong sequence                = new AtomicLong();
+	private final LongAdder processingTime           = new LongAdder();
+	private final LongAdder submitted                = new LongAdder();
+	private final LongAdder completed                = new LongAdder();
+	private final LongAdder failed                   = new LongAdder();
+	private final LongAdder retried                  = new LongAdder();
+	private final long created                       = System.currentTimeMillis();
+	private AgentService agentService                = null;
+	private Class taskType                           = null;
+	private int maxAgents                            = 1;
+
+	TaskQueue(final AgentService agentService, final Class taskType, final int maxAgents) {
+
+		this.agentService = agentService;
+		this.taskType     = taskType;
+		this.maxAgents    = Math.max(1, maxAgents);
+	}
+
+	/**
+	 * Adds the given task to the queue and starts a new agent if all
+	 * agents are busy.
+	 *
+	 * @param task
+	 * @param journalId
+	 */
+	void add(final Task task, final long journalId) {
+
+		submitted.increment();
+
+		add(new Entry(task, task.priority(), sequence.incrementAndGet(), journalId));
+	}
+
+	void retry(final Entry entry) {
+
+		retried.increment();
+
+		add(entry);
+	}
+
+	/**
+	 * Waits for the next task. Returns null if there was no task for some
+	 * time, in which case the agent is removed from this queue and must
+	 * stop.
+	 *
+	 * @param agent
+	 * @return the next task or null
+	 * @throws InterruptedException
+	 */
+	Entry take(final Agent agent) throws InterruptedException {
+
+		while (true) {
+
+			Entry next = null;
+
+			idleAgents.incrementAndGet();
+
+			try {
+
+				next = queue.poll(IDLE_TIMEOUT, TimeUnit.SECONDS);
+
+			} finally {
+
+				idleAgents.decrementAndGet();
+			}
+
+			if (next != null) {
+				return next;
+			}
+
+			synchronized (this) {
+
+				if (queue.isEmpty()) {
+
+					agents.remove(agent);
+					return null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records the result of the given task.
+	 *
+	 * @param entry
+	 * @param result the return value of the task, or null if it failed
+	 * @param duration the processing time in nanoseconds
+	 */
+	void done(final Entry entry, final ReturnValue result, final long duration) {
+
+		if (ReturnValue.Success.equals(result)) {
+
+			completed.increment();
+
+		} else {
+
+			failed.increment();
+		}
+
+		processingTime.add(duration);
+		maxProcessingTime.accumulateAndGet(duration, Math::max);
+
+		agentService.taskFinished(entry);
+	}
+
+	/**
+	 * Removes the given agent, e.g. because it was killed, and starts a new
+	 * one if there are tasks left.
+	 *
+	 * @param agent
+	 */
+	synchronized void agentStopped(final Agent agent) {
+
+		agents.remove(agent);
+
+		if (!queue.isEmpty() && agents.isEmpty() && agentService.isRunning()) {
+			startAgent();
+		}
+	}
+
+	/**
+	 * Stops all agents. Agents that are processing a task finish it first.
+	 */
+	void stop() {
+
+		synchronized (agents) {
+
+			for (final Agent agent : agents) {
+				agent.stopAgent();
+			}
+		}
+	}
+
+	List<Agent> getAgents() {
+		return agents;
+	}
+
+	List<Task> getTasks() {
+
+		final List<Task> tasks = new ArrayList<>();
+
+		for (final Entry entry : queue) {
+			tasks.add(entry.task);
+		}
+
+		return tasks;
+	}
+
+	/**
+	 * Returns queue depth, number of agents, the number of submitted,
+	 * completed, failed and retried tasks, the average and maximum
+	 * processing time (in milliseconds) and the throughput (tasks per
+	 * second) of this queue.
+	 *
+	 * @return the statistics
+	 */
+	Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+		final long done                      = completed.sum() + failed.sum();
+		final double seconds                 = Math.max(1L, System.currentTimeMillis() - created) / 1000.0;
+
+		statistics.put("queueDepth",          queue.size());
+		statistics.put("agents",              agents.size());
+		statistics.put("idleAgents",          idleAgents.get());
+		statistics.put("maxAgents",           maxAgents);
+		statistics.put("submitted",           submitted.sum());
+		statistics.put("completed",           completed.sum());
+		statistics.put("failed",              failed.sum());
+		statistics.put("retried",             retried.sum());
+		statistics.put("averageProcessingMs", done > 0 ? (processingTime.sum() / done) / 1000000.0 : 0.0);
+		statistics.put("maxProcessingMs",     maxProcessingTime.get() / 1000000.0);
+		statistics.put("throughputPerSecond", done / seconds);
+
+		return statistics;
+	}
+
+	// ----- private methods -----
+	private synchronized void add(final Entry entry) {
+
+		queue.add(entry);
+
+		if (agents.isEmpty() || (idleAgents.get() == 0 && agents.size() < maxAgents)) {
+			startAgent();
+		}
+	}
+
+	private void startAgent() {
+
+		final Agent agent = agentService.createAgent(taskType);
+		if (agent != null) {
+
+			agent.setTaskQueue(this);
+			agents.add(agent);
+
+			agent.start();
+
+		} else if (agents.isEmpty()) {
+
+			// tasks stay in the journal and are processed after a restart
+			logger.warn("No agent found for task type {}, discarding {} tasks", taskType.getName(), queue.size());
+
+			queue.clear();
+		}
+	}
+
+	// ----- nested classes -----
+	static class Entry {
+
+		private Task task      = null;
+		private long sequence  = 0L;
+		private long journalId = 0L;
+		private int priority   = 0;
+
+		Entry(final Task task, final int priority, final long sequence, final long journalId) {
+
+			this.task      = task;
+			this.priority  = priority;
+			this.sequence  = sequence;
+			this.journalId = journalId;
+		}
+
+		Task getTask() {
+			return task;
+		}
+
+		long getJournalId() {
+			return journalId;
+		}
+	}
+}
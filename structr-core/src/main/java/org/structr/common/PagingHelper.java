@@ -18,10 +18,13 @@
  */
 package org.structr.common;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.search.QueryContext;
 
 /**
  * Utility for pagination.
@@ -77,6 +80,106 @@ public class PagingHelper {
 
 	}
 
+	/**
+	 * Creates an opaque keyset pagination cursor from the database value
+	 * of the sort key and the internal database ID of the last element
+	 * of a page. Returns null if the sort value cannot be encoded.
+	 *
+	 * @param sortValue
+	 * @param id
+	 * @return the cursor or null
+	 */
+	public static String encodeCursor(final Object sortValue, final long id) {
+
+		final StringBuilder buf = new StringBuilder();
+
+		buf.append(id);
+		buf.append(":");
+
+		if (sortValue == null) {
+
+			buf.append("N:");
+
+		} else if (sortValue instanceof String) {
+
+			buf.append("S:");
+			buf.append(sortValue);
+
+		} else if (sortValue instanceof Long) {
+
+			buf.append("L:");
+			buf.append(sortValue);
+
+		} else if (sortValue instanceof Integer || sortValue instanceof Short || sortValue instanceof Byte) {
+
+			buf.append("I:");
+			buf.append(sortValue);
+
+		} else if (sortValue instanceof Double || sortValue instanceof Float) {
+
+			buf.append("D:");
+			buf.append(sortValue);
+
+		} else if (sortValue instanceof Boolean) {
+
+			buf.append("B:");
+			buf.append(sortValue);
+
+		} else {
+
+			// arrays etc. cannot be used for keyset pagination
+			return null;
+		}
+
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(buf.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Enables keyset pagination in the given query context and sets the
+	 * seek position from the given cursor. An empty cursor requests the
+	 * first page.
+	 *
+	 * @param queryContext
+	 * @param cursor
+	 * @return whether the cursor was valid
+	 */
+	public static boolean applyCursor(final QueryContext queryContext, final String cursor) {
+
+		queryContext.keyset(true);
+
+		if (cursor == null || cursor.isEmpty()) {
+			return true;
+		}
+
+		try {
+
+			final String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			final String[] parts = decoded.split(":", 3);
+
+			if (parts.length == 3) {
+
+				final long id      = Long.parseLong(parts[0]);
+				final String value = parts[2];
+
+				switch (parts[1]) {
+
+					case "N": queryContext.seek(null, id);                      return true;
+					case "S": queryContext.seek(value, id);                     return true;
+					case "L": queryContext.seek(Long.valueOf(value), id);       return true;
+					case "I": queryContext.seek(Integer.valueOf(value), id);    return true;
+					case "D": queryContext.seek(Double.valueOf(value), id);     return true;
+					case "B": queryContext.seek(Boolean.valueOf(value), id);    return true;
+				}
+			}
+
+		} catch (IllegalArgumentException iex) {
+
+			logger.warn("Invalid paging cursor {}: {}", cursor, iex.getMessage());
+		}
+
+		return false;
+	}
+
 	/*
 	public static Result addPagingParameter(Result result, int pageSize, int page) {
 
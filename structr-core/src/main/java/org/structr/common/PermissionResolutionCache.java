@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.structr.api.util.Cachable;
+import org.structr.api.util.FixedSizeCache;
+
+/**
+ * A bounded, thread-safe cache for permission resolution results that
+ * remembers the UUIDs of all nodes and principals an entry was derived
+ * from, so that a modification only invalidates the entries whose
+ * resolution path touched the modified object.
+ *
+ * @param <V> the type of the cached values
+ */
+public class PermissionResolutionCache<V> {
+
+	private final Map<String, Set<String>> dependents = new ConcurrentHashMap<>();
+	private FixedSizeCache<String, CacheEntry> cache  = null;
+
+	public PermissionResolutionCache(final int maxSize) {
+		this.cache = new FixedSizeCache<>(maxSize);
+	}
+
+	public V get(final String key) {
+
+		final CacheEntry entry = cache.get(key);
+		if (entry != null) {
+
+			return entry.value;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the UUIDs the entry with the given key depends on, or null
+	 * if there is no such entry.
+	 *
+	 * @param key
+	 * @return the dependencies or null
+	 */
+	public Set<String> getDependencies(final String key) {
+
+		final CacheEntry entry = cache.get(key);
+		if (entry != null) {
+
+			return entry.dependencies;
+		}
+
+		return null;
+	}
+
+	public void put(final String key, final V value, final Collection<String> dependencies) {
+
+		final CacheEntry previous = cache.get(key);
+		final CacheEntry entry    = new CacheEntry(key, value);
+
+		if (previous != null) {
+
+			// keep the dependency index consistent for the replaced entry
+			removeDependencies(previous, null);
+		}
+
+		addDependencies(entry, dependencies);
+
+		cache.put(key, entry);
+	}
+
+	/**
+	 * Returns the value for the given key, creating it with the given
+	 * supplier if it does not exist. The given dependencies are added
+	 * to the (new or existing) entry.
+	 *
+	 * @param key
+	 * @param supplier
+	 * @param dependencies
+	 * @return the cached value
+	 */
+	public V getOrCreate(final String key, final Supplier<V> supplier, final Collection<String> dependencies) {
+
+		CacheEntry entry = cache.get(key);
+		if (entry == null) {
+
+			entry = cache.putIfAbsent(key, new CacheEntry(key, supplier.get()));
+		}
+
+		addDependencies(entry, dependencies);
+
+		return entry.value;
+	}
+
+	/**
+	 * Removes all entries that depend on the given UUID.
+	 *
+	 * @param uuid
+	 */
+	public void invalidate(final String uuid) {
+
+		if (uuid != null) {
+
+			final Set<String> keys = dependents.remove(uuid);
+			if (keys != null) {
+
+				for (final String key : keys) {
+
+					final CacheEntry entry = cache.remove(key);
+					if (entry != null) {
+
+						removeDependencies(entry, uuid);
+					}
+				}
+			}
+		}
+	}
+
+	public void clear() {
+
+		cache.clear();
+		dependents.clear();
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	// ----- private methods -----
+	private void addDependencies(final CacheEntry entry, final Collection<String> dependencies) {
+
+		if (dependencies != null) {
+
+			for (final String uuid : dependencies) {
+
+				if (uuid != null && entry.dependencies.add(uuid)) {
+
+					dependents.computeIfAbsent(uuid, k -> ConcurrentHashMap.newKeySet()).add(entry.key);
+				}
+			}
+		}
+	}
+
+	private void removeDependencies(final CacheEntry entry, final String except) {
+
+		for (final String uuid : entry.dependencies) {
+
+			if (!uuid.equals(except)) {
+
+				dependents.computeIfPresent(uuid, (k, keys) -> {
+
+					keys.remove(entry.key);
+
+					// remove empty sets so the index stays bounded as well
+					return keys.isEmpty() ? null : keys;
+				});
+			}
+		}
+	}
+
+	// ----- nested classes -----
+	private class CacheEntry implements Cachable {
+
+		private final Set<String> dependencies = ConcurrentHashMap.newKeySet();
+		private String key                     = null;
+		private V value                        = null;
+
+		CacheEntry(final String key, final V value) {
+
+			this.key   = key;
+			this.value = value;
+		}
+
+		@Override
+		public void onRemoveFromCache() {
+			removeDependencies(this, null);
+		}
+	}
+}
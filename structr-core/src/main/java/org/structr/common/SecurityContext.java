@@ -906,6 +906,17 @@ public class SecurityContext {
 		this.contextStore = contextStore;
 	}
 
+	/**
+	 * Returns a copy of this security context with the same user, request
+	 * and flags that can be modified independently of this context, e.g.
+	 * for worker threads.
+	 *
+	 * @return the copy
+	 */
+	public SecurityContext copy() {
+		return copyTo(new SecurityContext());
+	}
+
 	public void setReadOnlyTransaction() {
 		this.isReadOnlyTransaction = true;
 	}
@@ -918,6 +929,38 @@ public class SecurityContext {
 		return doMultiThreadedJsonOutput;
 	}
 
+	// ----- protected methods -----
+	protected SecurityContext copyTo(final SecurityContext copy) {
+
+		copy.remoteCollectionMergeMode    = remoteCollectionMergeMode;
+		copy.uuidWasSetManually           = uuidWasSetManually;
+		copy.doTransactionNotifications   = doTransactionNotifications;
+		copy.forceMergeOfNestedProperties = forceMergeOfNestedProperties;
+		copy.doCascadingDelete            = doCascadingDelete;
+		copy.modifyAccessTime             = modifyAccessTime;
+		copy.ignoreResultCount            = ignoreResultCount;
+		copy.ensureCardinality            = ensureCardinality;
+		copy.doInnerCallbacks             = doInnerCallbacks;
+		copy.isReadOnlyTransaction        = isReadOnlyTransaction;
+		copy.doMultiThreadedJsonOutput    = doMultiThreadedJsonOutput;
+		copy.serializationDepth           = serializationDepth;
+		copy.accessMode                   = accessMode;
+		copy.authenticator                = authenticator;
+		copy.cachedUser                   = cachedUser;
+		copy.request                      = request;
+		copy.response                     = response;
+		copy.customView                   = customView != null ? new LinkedHashSet<>(customView) : null;
+		copy.cachedUserName               = cachedUserName;
+		copy.cachedUserId                 = cachedUserId;
+		copy.sessionId                    = sessionId;
+		copy.contextStore                 = contextStore;
+
+		copy.ranges.putAll(ranges);
+		copy.attrs.putAll(attrs);
+
+		return copy;
+	}
+
 	// ----- nested classes -----
 	private static class SuperUserSecurityContext extends SecurityContext {
 
@@ -930,6 +973,11 @@ public class SecurityContext {
 		public SuperUserSecurityContext() {
 		}
 
+		@Override
+		public SecurityContext copy() {
+			return copyTo(new SuperUserSecurityContext());
+		}
+
 		@Override
 		public Principal getUser(final boolean tryLogin) {
 
@@ -18,9 +18,13 @@
  */
 package org.structr.common;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -39,6 +43,8 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.TransactionCommand;
+import org.structr.core.graph.UniquenessCache;
 import org.structr.core.property.GenericProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
@@ -54,6 +60,7 @@ public class ValidationHelper {
 
 	private static final PropertyKey UnknownType       = new GenericProperty("unknown type");
 	private static final Map<String, Pattern> patterns = new ConcurrentHashMap<>();
+	private static final Lock[] uniquenessLocks        = createUniquenessLocks(256);
 
 	// ----- public static methods -----
 	/**
@@ -523,16 +530,14 @@ public class ValidationHelper {
 		return true;
 	}
 
-	public static synchronized boolean isValidUniqueProperty(final GraphObject object, final PropertyKey key, final ErrorBuffer errorBuffer) {
+	public static boolean isValidUniqueProperty(final GraphObject object, final PropertyKey key, final ErrorBuffer errorBuffer) {
 
 		if (key != null) {
 
 			final Object value = object.getProperty(key);
 			if (value != null) {
 
-				// validation will only be executed for non-null values
-				List<GraphObject> result = null;
-
+				// validation will only be executed for non-null values,
 				// use declaring class for inheritance-aware uniqueness
 				Class type = key.getDeclaringClass();
 				if (type == null || (AbstractNode.name.equals(key) && NodeInterface.class.equals(type))) {
@@ -541,59 +546,33 @@ public class ValidationHelper {
 					type = object.getClass();
 				}
 
-				try {
-
-					if (object instanceof NodeInterface) {
-
-						result = StructrApp.getInstance()
-							.nodeQuery(type)
-							.and(key, value)
-							.sortAscending(GraphObject.createdDate)
-							.getAsList();
-
-					} else {
-
-						result = StructrApp.getInstance()
-							.relationshipQuery(type)
-							.and(key, value)
-							.sortAscending(GraphObject.createdDate)
-							.getAsList();
-
-					}
-
-				} catch (FrameworkException fex) {
-
-					logger.warn("", fex);
+				final Lock lock = getUniquenessLock(type, key, value);
 
-				}
+				lock.lock();
 
-				/* This validation code runs at the end of a transaction, so if there
-				 * is a constraint violation, there are at least two different nodes
-				 * with the same value for the unique key. At this point, we don't
-				 * know which node we are currently examining, so we sort by creation
-				 * date (ascending order) and look at the first node of the result
-				 * list. We want the validation code to fail for all constraint
-				 * violating nodes that are older than the first node.
-				 */
+				try {
 
-				if (result != null) {
+					/* This validation code runs at the end of a transaction, so if there
+					 * is a constraint violation, there are at least two different nodes
+					 * with the same value for the unique key. We want the validation code
+					 * to fail for all constraint violating nodes.
+					 */
 
-					final Identity identity = object.getPropertyContainer().getId();
+					if (hasOtherEntityWithValue(object, type, key, value)) {
 
-					for (final GraphObject foundNode : result) {
+						// validation is aborted when the first validation failure occurs, so
+						// we can assume that the object currently examined is the first
+						// existing object, hence all others get the error message with the
+						// UUID of the first one.
+						errorBuffer.add(new UniqueToken(object.getType(), key, object.getUuid()));
 
-						if (!identity.equals(foundNode.getPropertyContainer().getId())) {
+						// error!
+						return false;
+					}
 
-							// validation is aborted when the first validation failure occurs, so
-							// we can assume that the object currently examined is the first
-							// existing object, hence all others get the error message with the
-							// UUID of the first one.
-							errorBuffer.add(new UniqueToken(object.getType(), key, object.getUuid()));
+				} finally {
 
-							// error!
-							return false;
-						}
-					}
+					lock.unlock();
 				}
 			}
 		}
@@ -602,17 +581,21 @@ public class ValidationHelper {
 		return true;
 	}
 
-	public static synchronized boolean areValidCompoundUniqueProperties(final GraphObject object, final ErrorBuffer errorBuffer, final PropertyKey... keys) {
+	public static boolean areValidCompoundUniqueProperties(final GraphObject object, final ErrorBuffer errorBuffer, final PropertyKey... keys) {
 
 		if (keys != null && keys.length > 0) {
 
 			final PropertyMap properties = new PropertyMap();
+			final Object[] values        = new Object[keys.length];
 			List<GraphObject> result     = null;
 			Class type                   = null;
 
-			for (final PropertyKey key : keys) {
+			for (int i=0; i<keys.length; i++) {
+
+				final PropertyKey key = keys[i];
 
-				properties.put(key, object.getProperty(key));
+				values[i] = object.getProperty(key);
+				properties.put(key, values[i]);
 
 				if (type != null) {
 
@@ -627,6 +610,10 @@ public class ValidationHelper {
 				type = object.getClass();
 			}
 
+			final Lock lock = getUniquenessLock(type, keys[0], values);
+
+			lock.lock();
+
 			try {
 
 				if (object instanceof NodeInterface) {
@@ -634,7 +621,6 @@ public class ValidationHelper {
 					result = StructrApp.getInstance()
 						.nodeQuery(type)
 						.and(properties)
-						.sortAscending(GraphObject.createdDate)
 						.getAsList();
 
 				} else {
@@ -642,7 +628,6 @@ public class ValidationHelper {
 					result = StructrApp.getInstance()
 						.relationshipQuery(type)
 						.and(properties)
-						.sortAscending(GraphObject.createdDate)
 						.getAsList();
 
 				}
@@ -651,15 +636,15 @@ public class ValidationHelper {
 
 				logger.warn("", fex);
 
+			} finally {
+
+				lock.unlock();
 			}
 
 			/* This validation code runs at the end of a transaction, so if there
 			 * is a constraint violation, there are at least two different nodes
-			 * with the same value for the unique key. At this point, we don't
-			 * know which node we are currently examining, so we sort by creation
-			 * date (ascending order) and look at the first node of the result
-			 * list. We want the validation code to fail for all constraint
-			 * violating nodes that are older than the first node.
+			 * with the same value for the unique key. We want the validation code
+			 * to fail for all constraint violating nodes.
 			 */
 
 			if (result != null) {
@@ -687,67 +672,140 @@ public class ValidationHelper {
 		return true;
 	}
 
-	public static synchronized boolean isValidGloballyUniqueProperty(final GraphObject object, final PropertyKey key, final ErrorBuffer errorBuffer) {
+	public static boolean isValidGloballyUniqueProperty(final GraphObject object, final PropertyKey key, final ErrorBuffer errorBuffer) {
 
 		if (key != null) {
 
-			final Object value                 = object.getProperty(key);
-			List<? extends GraphObject> result = null;
+			final Object value = object.getProperty(key);
+			Class type         = null;
 
-			try {
+			if (object instanceof NodeInterface) {
 
-				if (object instanceof NodeInterface) {
+				type = NodeInterface.class;
 
-					result = StructrApp.getInstance()
-						.nodeQuery(NodeInterface.class)
-						.and(key, value)
-						.sortAscending(GraphObject.createdDate)
-						.getAsList();
+			} else if (object instanceof RelationshipInterface) {
 
-				} else if (object instanceof RelationshipInterface) {
+				type = RelationshipInterface.class;
 
-					result = StructrApp.getInstance()
-						.relationshipQuery(RelationshipInterface.class)
-						.and(key, value)
-						.sortAscending(GraphObject.createdDate)
-						.getAsList();
+			} else {
 
-				} else {
+				logger.error("GraphObject is neither NodeInterface nor RelationshipInterface");
 
-					logger.error("GraphObject is neither NodeInterface nor RelationshipInterface");
+				return false;
+			}
 
+			final Lock lock = getUniquenessLock(type, key, value);
+
+			lock.lock();
+
+			try {
+
+				if (hasOtherEntityWithValue(object, type, key, value)) {
+
+					// validation is aborted when the first validation failure occurs, so
+					// we can assume that the object currently exmained is the first
+					// existing object, hence all others get the error message with the
+					// UUID of the first one.
+					errorBuffer.add(new UniqueToken(object.getType(), key, object.getUuid()));
+
+					// error!
 					return false;
 				}
 
-			} catch (FrameworkException fex) {
+			} finally {
 
-				logger.warn("Unable to fetch list of nodes for uniqueness check", fex);
-				// handle error
+				lock.unlock();
 			}
+		}
 
-			if (result != null) {
+		// no error
+		return true;
 
-				final Identity identity = object.getPropertyContainer().getId();
+	}
 
-				for (final GraphObject foundNode : result) {
+	// ----- private static methods -----
+	/**
+	 * Checks whether an entity other than the given object has the given
+	 * value for the given key. The lookup is answered from the uniqueness
+	 * cache of the current transaction if possible, otherwise a single query
+	 * is executed.
+	 */
+	private static boolean hasOtherEntityWithValue(final GraphObject object, final Class type, final PropertyKey key, final Object value) {
 
-					if (!identity.equals(foundNode.getPropertyContainer().getId())) {
+		final boolean isNode    = object instanceof NodeInterface;
+		final Identity identity = object.getPropertyContainer().getId();
 
-						// validation is aborted when the first validation failure occurs, so
-						// we can assume that the object currently exmained is the first
-						// existing object, hence all others get the error message with the
-						// UUID of the first one.
-						errorBuffer.add(new UniqueToken(object.getType(), key, object.getUuid()));
+		try {
 
-						// error!
-						return false;
+			final UniquenessCache cache = TransactionCommand.getUniquenessCache();
+			if (cache != null) {
+
+				final List<Identity> identities = cache.get(type, key, value, isNode);
+				if (identities != null) {
+
+					for (final Identity other : identities) {
+
+						if (!identity.equals(other)) {
+							return true;
+						}
 					}
+
+					return false;
 				}
 			}
+
+			final List<GraphObject> result;
+
+			if (isNode) {
+
+				result = StructrApp.getInstance()
+					.nodeQuery(type)
+					.and(key, value)
+					.getAsList();
+
+			} else {
+
+				result = StructrApp.getInstance()
+					.relationshipQuery(type)
+					.and(key, value)
+					.getAsList();
+			}
+
+			for (final GraphObject foundNode : result) {
+
+				if (!identity.equals(foundNode.getPropertyContainer().getId())) {
+					return true;
+				}
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("Unable to fetch list of entities for uniqueness check", fex);
 		}
 
-		// no error
-		return true;
+		return false;
+	}
+
+	/**
+	 * Returns the lock stripe for the given type, key and value. Checks for
+	 * different values do not block each other, unlike a global monitor.
+	 */
+	private static Lock getUniquenessLock(final Class type, final PropertyKey key, final Object value) {
+
+		final int valueHash = value instanceof Object[] ? Arrays.deepHashCode((Object[])value) : Objects.hashCode(value);
+		final int hash      = 31 * (31 * type.getName().hashCode() + key.dbName().hashCode()) + valueHash;
+
+		return uniquenessLocks[(hash & 0x7fffffff) % uniquenessLocks.length];
+	}
+
+	private static Lock[] createUniquenessLocks(final int count) {
+
+		final Lock[] locks = new Lock[count];
+
+		for (int i=0; i<count; i++) {
+			locks[i] = new ReentrantLock();
+		}
 
+		return locks;
 	}
 }
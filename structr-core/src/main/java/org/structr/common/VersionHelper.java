@@ -23,6 +23,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.apache.commons.lang3.StringUtils;
 import org.structr.api.config.Settings;
 import org.structr.core.Services;
 import org.structr.core.app.StructrApp;
@@ -81,6 +82,23 @@ public class VersionHelper {
 
 	}
 
+	/**
+	 * Indicates whether the build of the running Structr version can be
+	 * determined, i.e. whether the version string identifies the code.
+	 *
+	 * @return whether version, build and date are known
+	 */
+	public static boolean isBuildKnown() {
+
+		Map<String, String> module = components.get("structr");
+
+		if (module == null) {
+			module = components.get("structr-ui");
+		}
+
+		return module != null && StringUtils.isNoneBlank(module.get("version"), module.get("build"), module.get("date"));
+	}
+
 	private static String getFullVersionInfoFromModule(final Map<String, String> module) {
 
 		return module.get("version") + " " + module.get("build") + " " + module.get("date");
@@ -55,6 +55,7 @@ import org.structr.common.SecurityContext;
 import org.structr.common.VersionHelper;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.core.app.StructrApp;
+import org.structr.core.function.Functions;
 import org.structr.core.graph.NodeService;
 import org.structr.schema.ConfigurationProvider;
 import org.structr.schema.SchemaService;
@@ -372,6 +373,8 @@ public class Services implements StructrServices {
 
 			serviceCache.clear();
 
+			logger.info("StructrScript expression cache: {}", Functions.getExpressionCacheStatistics());
+
 			// shut down configuration provider
 			configuration.shutdown();
 
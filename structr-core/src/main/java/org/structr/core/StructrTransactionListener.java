@@ -38,6 +38,17 @@ public interface StructrTransactionListener {
 	public void beforeCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents) throws FrameworkException;
 	public void afterCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents);
 
+	/**
+	 * Indicates whether this listener maintains a cache that depends on the
+	 * database contents. Cache listeners are notified of all committed
+	 * transactions, even if transaction notifications are disabled.
+	 *
+	 * @return whether this listener is a cache listener
+	 */
+	default public boolean isCacheListener() {
+		return false;
+	}
+
 	default public void simpleBroadcast(final String messageName, final Map<String, Object> data) {
 		simpleBroadcast(messageName, data, null);
 	};
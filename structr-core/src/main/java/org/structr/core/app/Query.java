@@ -54,6 +54,7 @@ public interface Query<T extends GraphObject> extends Iterable<T> {
 	public Query<T> comparator(final Comparator<T> comparator);
 	public Query<T> pageSize(final int pageSize);
 	public Query<T> page(final int page);
+	public Query<T> cursor(final String cursor);
 	public Query<T> publicOnly();
 	public Query<T> includeHidden();
 	public Query<T> publicOnly(final boolean publicOnly);
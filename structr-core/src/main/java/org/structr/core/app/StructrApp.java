@@ -21,6 +21,7 @@ package org.structr.core.app;
 import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -38,7 +39,7 @@ import org.structr.api.graph.Identity;
 import org.structr.api.graph.PropertyContainer;
 import org.structr.api.service.Command;
 import org.structr.api.service.Service;
-import org.structr.api.util.FixedSizeCache;
+import org.structr.api.util.UuidIndex;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.fulltext.DummyFulltextIndexer;
@@ -79,15 +80,15 @@ public class StructrApp implements App {
 
 	private static final Logger logger = LoggerFactory.getLogger(StructrApp.class);
 
-	private static FixedSizeCache<String, Identity> nodeUuidMap = null;
-	private static FixedSizeCache<String, Identity> relUuidMap  = null;
-	private static final URI schemaBaseURI                      = URI.create("https://structr.org/v1.1/#");
-	private static final Object globalConfigLock                = new Object();
-	private Map<String, Object> appContextStore                 = new LinkedHashMap<>();
-	private RelationshipFactory relFactory                      = null;
-	private NodeFactory nodeFactory                             = null;
-	private DatabaseService graphDb                             = null;
-	private SecurityContext securityContext                     = null;
+	private static volatile UuidIndex nodeUuidMap = null;
+	private static volatile UuidIndex relUuidMap  = null;
+	private static final URI schemaBaseURI        = URI.create("https://structr.org/v1.1/#");
+	private static final Object globalConfigLock  = new Object();
+	private Map<String, Object> appContextStore   = new LinkedHashMap<>();
+	private RelationshipFactory relFactory        = null;
+	private NodeFactory nodeFactory               = null;
+	private DatabaseService graphDb               = null;
+	private SecurityContext securityContext       = null;
 
 	private StructrApp(final SecurityContext securityContext) {
 
@@ -105,38 +106,22 @@ public class StructrApp implements App {
 	@Override
 	public <T extends NodeInterface> T create(final Class<T> type, final PropertyMap source) throws FrameworkException {
 
-		if (type == null) {
-			throw new FrameworkException(422, "Empty type (null). Please supply a valid class name in the type property.");
-		}
-
 		final CreateNodeCommand<T> command = command(CreateNodeCommand.class);
-		final PropertyMap properties       = new PropertyMap(source);
-		String finalType                   = type.getSimpleName();
-
-		// try to identify the actual type from input set (creation wouldn't work otherwise anyway)
-		final String typeFromInput = properties.get(NodeInterface.type);
-		if (typeFromInput != null) {
-
-			Class actualType = StructrApp.getConfiguration().getNodeEntityClass(typeFromInput);
-			if (actualType == null) {
 
-				// overwrite type information when creating a node (adhere to type specified by resource!)
-				properties.put(AbstractNode.type, type.getSimpleName());
-
-			} else if (actualType.isInterface() || Modifier.isAbstract(actualType.getModifiers())) {
+		return command.execute(withFinalType(type, source));
+	}
 
-				throw new FrameworkException(422, "Invalid abstract type " + type.getSimpleName() + ", please supply a non-abstract class name in the type property");
+	@Override
+	public <T extends NodeInterface> List<T> createNodes(final Class<T> type, final List<PropertyMap> source) throws FrameworkException {
 
-			} else {
+		final CreateNodeCommand<T> command = command(CreateNodeCommand.class);
+		final List<PropertyMap> properties = new ArrayList<>(source.size());
 
-				finalType = actualType.getSimpleName();
-			}
+		for (final PropertyMap map : source) {
+			properties.add(withFinalType(type, map));
 		}
 
-		// set type
-		properties.put(AbstractNode.type, finalType);
-
-		return command.execute(properties);
+		return command.executeBulk(properties);
 	}
 
 	@Override
@@ -205,7 +190,7 @@ public class StructrApp implements App {
 
 				final PropertyContainer container = entity.getPropertyContainer();
 
-				nodeUuidMap.put(uuid, container.getId());
+				getNodeUuidMap().put(uuid, getDatabaseService().unwrap(container.getId()));
 				return (NodeInterface)entity;
 			}
 
@@ -215,7 +200,7 @@ public class StructrApp implements App {
 				return nodeFactory.instantiate(getDatabaseService().getNodeById(nodeId));
 
 			} catch (NotFoundException ignore) {
-				nodeUuidMap.remove(uuid);
+				getNodeUuidMap().remove(uuid);
 			}
 		}
 
@@ -253,7 +238,7 @@ public class StructrApp implements App {
 
 				final PropertyContainer container = entity.getPropertyContainer();
 
-				relUuidMap.put(uuid, container.getId());
+				getRelUuidMap().put(uuid, getDatabaseService().unwrap(container.getId()));
 				return (RelationshipInterface)entity;
 			}
 
@@ -263,7 +248,7 @@ public class StructrApp implements App {
 				return relFactory.instantiate(getDatabaseService().getRelationshipById(id));
 
 			} catch (NotFoundException ignore) {
-				relUuidMap.remove(uuid);
+				getRelUuidMap().remove(uuid);
 			}
 		}
 
@@ -617,55 +602,114 @@ public class StructrApp implements App {
 	private static final Map<URI, Class> schemaIdMap = new LinkedHashMap<>();
 	private static final Map<Class, URI> typeIdMap   = new LinkedHashMap<>();
 
-	// ---------- private methods -----
-	private synchronized Identity getNodeFromCache(final String uuid) {
+	private static UuidIndex getNodeUuidMap() {
 
 		if (nodeUuidMap == null) {
 
-			nodeUuidMap = new FixedSizeCache<>(Settings.UuidCacheSize.getValue());
+			synchronized (StructrApp.class) {
+
+				if (nodeUuidMap == null) {
+					nodeUuidMap = new UuidIndex(Settings.UuidCacheSize.getValue());
+				}
+			}
 		}
 
-		return nodeUuidMap.get(uuid);
+		return nodeUuidMap;
 	}
 
-	private synchronized Identity getRelFromCache(final String uuid) {
+	private static UuidIndex getRelUuidMap() {
 
 		if (relUuidMap == null) {
 
-			relUuidMap = new FixedSizeCache<>(Settings.UuidCacheSize.getValue());
+			synchronized (StructrApp.class) {
+
+				if (relUuidMap == null) {
+					relUuidMap = new UuidIndex(Settings.UuidCacheSize.getValue());
+				}
+			}
+		}
+
+		return relUuidMap;
+	}
+
+	// ---------- private methods -----
+	private PropertyMap withFinalType(final Class type, final PropertyMap source) throws FrameworkException {
+
+		if (type == null) {
+			throw new FrameworkException(422, "Empty type (null). Please supply a valid class name in the type property.");
+		}
+
+		final PropertyMap properties = new PropertyMap(source);
+		String finalType             = type.getSimpleName();
+
+		// try to identify the actual type from input set (creation wouldn't work otherwise anyway)
+		final String typeFromInput = properties.get(NodeInterface.type);
+		if (typeFromInput != null) {
+
+			Class actualType = StructrApp.getConfiguration().getNodeEntityClass(typeFromInput);
+			if (actualType == null) {
+
+				// overwrite type information when creating a node (adhere to type specified by resource!)
+				properties.put(AbstractNode.type, type.getSimpleName());
+
+			} else if (actualType.isInterface() || Modifier.isAbstract(actualType.getModifiers())) {
+
+				throw new FrameworkException(422, "Invalid abstract type " + type.getSimpleName() + ", please supply a non-abstract class name in the type property");
+
+			} else {
+
+				finalType = actualType.getSimpleName();
+			}
+		}
+
+		// set type
+		properties.put(AbstractNode.type, finalType);
+
+		return properties;
+	}
+
+	private Identity getNodeFromCache(final String uuid) {
+
+		final long id = getNodeUuidMap().get(uuid);
+		if (id != UuidIndex.NOT_FOUND) {
+
+			return getDatabaseService().identify(id);
+		}
+
+		return null;
+	}
+
+	private Identity getRelFromCache(final String uuid) {
+
+		final long id = getRelUuidMap().get(uuid);
+		if (id != UuidIndex.NOT_FOUND) {
+
+			return getDatabaseService().identify(id);
 		}
 
-		return relUuidMap.get(uuid);
+		return null;
 	}
 
-	private synchronized void removeNodeFromCache(final NodeInterface node) {
+	private void removeNodeFromCache(final NodeInterface node) {
 
 		if (node != null) {
 
 			final String uuid = node.getUuid();
 			if (uuid != null) {
 
-				if (nodeUuidMap == null) {
-
-					nodeUuidMap = new FixedSizeCache<>(Settings.UuidCacheSize.getValue());
-				}
-
+				getNodeUuidMap().remove(uuid);
 			}
 		}
 	}
 
-	private synchronized void removeRelFromCache(final RelationshipInterface rel) {
+	private void removeRelFromCache(final RelationshipInterface rel) {
 
 		if (rel != null) {
 
 			final String uuid = rel.getUuid();
 			if (uuid != null) {
 
-				if (relUuidMap == null) {
-
-					relUuidMap = new FixedSizeCache<>(Settings.UuidCacheSize.getValue());
-				}
-
+				getRelUuidMap().remove(uuid);
 			}
 		}
 	}
@@ -80,6 +80,12 @@ public class CypherQueryConverter extends PropertyConverter {
 			parameters.put("uuid", uuid);
 			parameters.put("name", name);
 
+			if (!graphDb.supportsNativeQueries()) {
+
+				logger.warn("Unable to execute Cypher query {}: Cypher queries are not supported by the configured database driver", query);
+				return null;
+			}
+
 			// initialize query handler with security context
 			handler.setSecurityContext(securityContext);
 
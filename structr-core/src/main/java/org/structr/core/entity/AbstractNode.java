@@ -42,6 +42,7 @@ import org.apache.commons.codec.digest.DigestUtils;
 import org.codehaus.plexus.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.DatabaseService;
 import org.structr.api.Predicate;
 import org.structr.api.config.Settings;
 import org.structr.api.graph.Direction;
@@ -65,6 +66,7 @@ import org.structr.cmis.info.CMISSecondaryInfo;
 import org.structr.common.AccessControllable;
 import org.structr.common.Permission;
 import org.structr.common.PermissionPropagation;
+import org.structr.common.PermissionResolutionCache;
 import org.structr.common.PermissionResolutionMask;
 import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
@@ -102,9 +104,9 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	private static final int permissionResolutionMaxLevel                                                     = Settings.ResolutionDepth.getValue();
 	private static final Logger logger                                                                        = LoggerFactory.getLogger(AbstractNode.class.getName());
-	private static final FixedSizeCache<String, Boolean> isGrantedResultCache                                 = new FixedSizeCache<String, Boolean>(100000);
+	private static final PermissionResolutionCache<Boolean> isGrantedResultCache                              = new PermissionResolutionCache<>(100000);
 	private static final FixedSizeCache<String, Object> relationshipTemplateInstanceCache                     = new FixedSizeCache<>(1000);
-	private static final Map<String, Map<String, PermissionResolutionResult>> globalPermissionResolutionCache = new HashMap<>();
+	private static final PermissionResolutionCache<PermissionResolutionResult> globalPermissionResolutionCache = new PermissionResolutionCache<>(100000);
 
 	public static final View defaultView = new View(AbstractNode.class, PropertyView.Public, id, type, name);
 
@@ -782,10 +784,15 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			return true;
 		}
 
-		final boolean doLog  = securityContext.hasParameter("logPermissionResolution");
-		final boolean result = isGranted(permission, accessingUser, new PermissionResolutionMask(), 0, new AlreadyTraversed(), true, doLog, isCreation);
+		final AlreadyTraversed alreadyTraversed = new AlreadyTraversed();
+		final boolean doLog                     = securityContext.hasParameter("logPermissionResolution");
+		final boolean result                    = isGranted(permission, accessingUser, new PermissionResolutionMask(), 0, alreadyTraversed, true, doLog, isCreation);
 
-		isGrantedResultCache.put(cacheKey, result);
+		if (alreadyTraversed.isCacheable()) {
+
+			// cache entry will be invalidated when any of the nodes or principals involved is modified
+			isGrantedResultCache.put(cacheKey, result, alreadyTraversed.getDependencies());
+		}
 
 		return result;
 	}
@@ -803,6 +810,13 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			return false;
 		}
 
+		// remember the objects this resolution depends on
+		alreadyTraversed.addDependency(getUuid());
+
+		if (accessingUser != null) {
+			alreadyTraversed.addDependency(accessingUser.getUuid());
+		}
+
 		// use quick checks for maximum performance
 		if (isCreation && (accessingUser == null || accessingUser.equals(this) || accessingUser.equals(getOwnerNode()) ) ) {
 			return true;
@@ -868,9 +882,13 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 				params.put("targetNodeType", this.getType());
 
 				boolean result = false;
+
+				// the result of a custom query can depend on arbitrary parts of the graph
+				alreadyTraversed.disableCaching();
+
 				try {
 
-					result = ((NodeWrapper) getNode()).evaluateCustomQuery(customPermissionQuery, params);
+					result = evaluateCustomQuery(customPermissionQuery, params);
 
 				} catch (final Exception ex) {
 					logger.error("Error in custom permission resolution", ex);
@@ -898,14 +916,14 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 					final BFSInfo info = bfsNodes.poll();
 					if (info != null && info.level < permissionResolutionMaxLevel) {
 
-						final Boolean value = info.node.getPermissionResolutionResult(accessingUser.getUuid(), permission);
+						final Boolean value = info.node.getPermissionResolutionResult(accessingUser.getUuid(), permission, alreadyTraversed);
 						if (value != null) {
 
 							// returning immediately
 							if (Boolean.TRUE.equals(value)) {
 
 								// do backtracking
-								backtrack(info, accessingUser.getUuid(), permission, true, 0, doLog);
+								backtrack(info, accessingUser.getUuid(), permission, true, 0, alreadyTraversed, doLog);
 
 								return true;
 							}
@@ -915,7 +933,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 							if (info.node.hasEffectivePermissions(info, accessingUser, permission, mask, level, alreadyTraversed, bfsNodes, doLog, isCreation)) {
 
 								// do backtracking
-								backtrack(info, accessingUser.getUuid(), permission, true, 0, doLog);
+								backtrack(info, accessingUser.getUuid(), permission, true, 0, alreadyTraversed, doLog);
 
 								return true;
 							}
@@ -925,7 +943,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 				} while (!bfsNodes.isEmpty());
 
 				// do backtracking
-				backtrack(root, accessingUser.getUuid(), permission, false, 0, doLog);
+				backtrack(root, accessingUser.getUuid(), permission, false, 0, alreadyTraversed, doLog);
 			}
 
 			// Last: recursively check possible parent principals
@@ -940,7 +958,34 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		return false;
 	}
 
-	private void backtrack(final BFSInfo info, final String principalId, final Permission permission, final boolean value, final int level, final boolean doLog) {
+	private boolean evaluateCustomQuery(final String customQuery, final Map<String, Object> parameters) {
+
+		final Node node = getNode();
+		if (node instanceof NodeWrapper) {
+
+			return ((NodeWrapper)node).evaluateCustomQuery(customQuery, parameters);
+		}
+
+		final DatabaseService db = StructrApp.getInstance().getDatabaseService();
+		if (!db.supportsNativeQueries()) {
+
+			logger.warn("Custom permission query {} ignored: Cypher queries are not supported by the configured database driver", customQuery);
+			return false;
+		}
+
+		// other database drivers: the first value of the first row is the result
+		for (final Map<String, Object> row : db.execute(customQuery, parameters)) {
+
+			for (final Object value : row.values()) {
+
+				return Boolean.TRUE.equals(value);
+			}
+		}
+
+		return false;
+	}
+
+	private void backtrack(final BFSInfo info, final String principalId, final Permission permission, final boolean value, final int level, final AlreadyTraversed alreadyTraversed, final boolean doLog) {
 
 		if (doLog) {
 
@@ -959,12 +1004,12 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			System.out.print(info.node.getType() + " (" + info.node.getUuid() + ") --> ");
 		}
 
-		info.node.storePermissionResolutionResult(principalId, permission, value);
+		info.node.storePermissionResolutionResult(principalId, permission, value, alreadyTraversed);
 
 		// go to parent(s)
 		if (info.parent != null) {
 
-			backtrack(info.parent, principalId, permission, value, level+1, doLog);
+			backtrack(info.parent, principalId, permission, value, level+1, alreadyTraversed, doLog);
 		}
 
 		if (doLog && level == 0) {
@@ -1002,7 +1047,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 							if (otherNode.isGranted(permission, principal, mask, level, alreadyTraversed, false, doLog, isCreation)) {
 
-								otherNode.storePermissionResolutionResult(principal.getUuid(), permission, true);
+								otherNode.storePermissionResolutionResult(principal.getUuid(), permission, true, alreadyTraversed);
 
 								// break early
 								return true;
@@ -1143,18 +1188,16 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		mask.handleProperties(rel.getDeltaProperties());
 	}
 
-	private Boolean getPermissionResolutionResult(final String principalId, final Permission permission) {
+	private Boolean getPermissionResolutionResult(final String principalId, final Permission permission, final AlreadyTraversed alreadyTraversed) {
 
-		Map<String, PermissionResolutionResult> permissionResolutionCache = globalPermissionResolutionCache.get(getUuid());
-		if (permissionResolutionCache == null) {
+		final String cacheKey                   = getUuid() + "." + principalId;
+		final PermissionResolutionResult result = globalPermissionResolutionCache.get(cacheKey);
 
-			permissionResolutionCache = new HashMap<>();
-			globalPermissionResolutionCache.put(getUuid(), permissionResolutionCache);
-		}
-
-		PermissionResolutionResult result = permissionResolutionCache.get(principalId);
 		if (result != null) {
 
+			// a cached result makes the current resolution depend on everything the cached one depended on
+			alreadyTraversed.addDependencies(globalPermissionResolutionCache.getDependencies(cacheKey));
+
 			if (permission.equals(Permission.read)) {
 				return result.read;
 			}
@@ -1175,36 +1218,32 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		return null;
 	}
 
-	private void storePermissionResolutionResult(final String principalId, final Permission permission, final boolean value) {
+	private void storePermissionResolutionResult(final String principalId, final Permission permission, final boolean value, final AlreadyTraversed alreadyTraversed) {
 
-		Map<String, PermissionResolutionResult> permissionResolutionCache = globalPermissionResolutionCache.get(getUuid());
-		if (permissionResolutionCache == null) {
-
-			permissionResolutionCache = new HashMap<>();
-			globalPermissionResolutionCache.put(getUuid(), permissionResolutionCache);
+		if (!alreadyTraversed.isCacheable()) {
+			return;
 		}
 
-		PermissionResolutionResult result = permissionResolutionCache.get(principalId);
-		if (result == null) {
+		final String cacheKey                   = getUuid() + "." + principalId;
+		final PermissionResolutionResult result = globalPermissionResolutionCache.getOrCreate(cacheKey, PermissionResolutionResult::new, alreadyTraversed.getDependencies());
 
-			result = new PermissionResolutionResult();
-			permissionResolutionCache.put(principalId, result);
-		}
+		synchronized (result) {
 
-		if (permission.equals(Permission.read) && (result.read == null || result.read == false)) {
-			result.read = value;
-		}
+			if (permission.equals(Permission.read) && (result.read == null || result.read == false)) {
+				result.read = value;
+			}
 
-		if (permission.equals(Permission.write) && (result.write == null || result.write == false)) {
-			result.write = value;
-		}
+			if (permission.equals(Permission.write) && (result.write == null || result.write == false)) {
+				result.write = value;
+			}
 
-		if (permission.equals(Permission.delete) && (result.delete == null || result.delete == false)) {
-			result.delete = value;
-		}
+			if (permission.equals(Permission.delete) && (result.delete == null || result.delete == false)) {
+				result.delete = value;
+			}
 
-		if (permission.equals(Permission.accessControl) && (result.accessControl == null || result.accessControl == false)) {
-			result.accessControl = value;
+			if (permission.equals(Permission.accessControl) && (result.accessControl == null || result.accessControl == false)) {
+				result.accessControl = value;
+			}
 		}
 	}
 
@@ -1247,12 +1286,12 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	@Override
 	public void onModification(SecurityContext securityContext, ErrorBuffer errorBuffer, final ModificationQueue modificationQueue) throws FrameworkException {
-		clearCaches();
+		invalidateCachedPermissions(getUuid());
 	}
 
 	@Override
 	public void onDeletion(SecurityContext securityContext, ErrorBuffer errorBuffer, PropertyMap properties) throws FrameworkException {
-		clearCaches();
+		invalidateCachedPermissions(getUuid());
 	}
 
 	@Override
@@ -1269,22 +1308,22 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	@Override
 	public void ownerModified(SecurityContext securityContext) {
-		clearCaches();
+		invalidateCachedPermissions(getUuid());
 	}
 
 	@Override
 	public void securityModified(SecurityContext securityContext) {
-		clearCaches();
+		invalidateCachedPermissions(getUuid());
 	}
 
 	@Override
 	public void locationModified(SecurityContext securityContext) {
-		clearCaches();
+		invalidateCachedPermissions(getUuid());
 	}
 
 	@Override
 	public void propagatedModification(SecurityContext securityContext) {
-		clearCaches();
+		invalidateCachedPermissions(getUuid());
 	}
 
 	@Override
@@ -1508,6 +1547,17 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		isGrantedResultCache.clear();
 	}
 
+	/**
+	 * Invalidates all cached permission resolution results that depend
+	 * on the node or principal with the given UUID.
+	 *
+	 * @param uuid
+	 */
+	public static void invalidateCachedPermissions(final String uuid) {
+		globalPermissionResolutionCache.invalidate(uuid);
+		isGrantedResultCache.invalidate(uuid);
+	}
+
 	public static <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R getRelationshipForType(final Class<R> type) {
 
 		R instance = (R) relationshipTemplateInstanceCache.get(type.getName());
@@ -1754,7 +1804,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			throw new FrameworkException(403, "Access control not permitted");
 		}
 
-		clearCaches();
+		invalidateCachedPermissions(getUuid());
 
 		Security secRel = getSecurityRelationship(principal);
 		if (secRel == null) {
@@ -1802,7 +1852,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			throw new FrameworkException(403, "Access control not permitted");
 		}
 
-		clearCaches();
+		invalidateCachedPermissions(getUuid());
 
 		Security secRel = getSecurityRelationship(principal);
 		if (secRel != null) {
@@ -2079,6 +2129,8 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 	private static class AlreadyTraversed {
 
 		private Map<String, Set<String>> sets = new LinkedHashMap<>();
+		private Set<String> dependencies      = new HashSet<>();
+		private boolean cacheable             = true;
 
 		public boolean contains(final String key, final String uuid) {
 
@@ -2102,6 +2154,29 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 			return 0;
 		}
+
+		public void addDependency(final String uuid) {
+			dependencies.add(uuid);
+		}
+
+		public void addDependencies(final Set<String> uuids) {
+
+			if (uuids != null) {
+				dependencies.addAll(uuids);
+			}
+		}
+
+		public Set<String> getDependencies() {
+			return dependencies;
+		}
+
+		public void disableCaching() {
+			this.cacheable = false;
+		}
+
+		public boolean isCacheable() {
+			return cacheable;
+		}
 	}
 
 	private static class BFSInfo {
@@ -36,18 +36,11 @@ public abstract class AbstractQueryFunction extends CoreFunction implements Quer
 		final int start                 = contextStore.getRangeStart();
 		final int end                   = contextStore.getRangeEnd();
 
-		// paging applied by surrounding slice() function
+		// paging applied by surrounding slice() function, the query
+		// removes the slice again if it cannot be applied exactly
 		if (start >= 0 && end >= 0) {
 
-			if (securityContext.getUser(false) != null && (securityContext.getUser(false).isAdmin() || securityContext.isSuperUser())) {
-
-				query.getQueryContext().slice(start, end);
-
-			} else {
-
-				logger.warn("slice() can only be used by privileged users - not applying slice.");
-
-			}
+			query.getQueryContext().slice(start, end);
 		}
 
 		if (sortKey != null) {
@@ -31,7 +31,9 @@ import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.api.service.LicenseManager;
+import org.structr.api.util.FixedSizeCache;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.error.UnlicensedScriptException;
 import org.structr.core.GraphObject;
@@ -65,6 +67,7 @@ public class Functions {
 
 	protected static final Logger logger = LoggerFactory.getLogger(Functions.class.getName());
 	private static final Map<String, Function<Object, Object>> functions = new LinkedHashMap<>();
+	private static volatile FixedSizeCache<String, Expression> expressionCache = null;
 
 	public static void put(final LicenseManager licenseManager, final Function<Object, Object> function) {
 
@@ -91,6 +94,9 @@ public class Functions {
 
 			functions.put(name, new UnlicensedFunction(name, function.getRequiredModule()));
 		}
+
+		// parsed expressions reference the function objects directly
+		clearExpressionCache();
 	}
 
 	public static Set<String> getNames() {
@@ -106,6 +112,68 @@ public class Functions {
 	}
 
 	public static Object evaluate(final ActionContext actionContext, final GraphObject entity, final String expression) throws FrameworkException, UnlicensedScriptException {
+		return parse(expression).evaluate(actionContext, entity);
+	}
+
+	/**
+	 * Returns the sealed expression tree for the given StructrScript
+	 * expression, from the expression cache if possible. The returned
+	 * tree is immutable and can be evaluated concurrently.
+	 *
+	 * @param expression
+	 * @return the root of the expression tree
+	 * @throws FrameworkException
+	 */
+	public static Expression parse(final String expression) throws FrameworkException {
+
+		final FixedSizeCache<String, Expression> cache = getExpressionCache();
+		if (cache != null) {
+
+			final Expression cached = cache.get(expression);
+			if (cached != null) {
+
+				return cached;
+			}
+
+			// parse errors are not cached, the exception propagates to the caller
+			return cache.putIfAbsent(expression, parseUncached(expression));
+		}
+
+		return parseUncached(expression);
+	}
+
+	public static void clearExpressionCache() {
+
+		final FixedSizeCache<String, Expression> cache = expressionCache;
+		if (cache != null) {
+
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Returns size, hit, miss and eviction counts of the expression cache.
+	 *
+	 * @return the cache statistics
+	 */
+	public static Map<String, Long> getExpressionCacheStatistics() {
+
+		final FixedSizeCache<String, Expression> cache = expressionCache;
+		final Map<String, Long> statistics             = new LinkedHashMap<>();
+
+		if (cache != null) {
+
+			statistics.put("size",      (long)cache.size());
+			statistics.put("maxSize",   (long)cache.getMaxSize());
+			statistics.put("hits",      cache.getHitCount());
+			statistics.put("misses",    cache.getMissCount());
+			statistics.put("evictions", cache.getEvictionCount());
+		}
+
+		return statistics;
+	}
+
+	private static Expression parseUncached(final String expression) throws FrameworkException {
 
 		final String expressionWithoutNewlines = expression.replace('\n', ' ').replace('\r', ' ');
 		final StreamTokenizer tokenizer = new StreamTokenizer(new StringReader(expressionWithoutNewlines));
@@ -232,7 +300,9 @@ public class Functions {
 			throw new FrameworkException(422, "Invalid expression: mismatched closing bracket after " + lastToken);
 		}
 
-		return root.evaluate(actionContext, entity);
+		root.seal();
+
+		return root;
 	}
 
 	public static String cleanString(final Object input) {
@@ -275,6 +345,32 @@ public class Functions {
 	}
 
 	// ----- private methods -----
+	private static FixedSizeCache<String, Expression> getExpressionCache() {
+
+		FixedSizeCache<String, Expression> cache = expressionCache;
+		if (cache == null) {
+
+			synchronized (Functions.class) {
+
+				cache = expressionCache;
+				if (cache == null) {
+
+					final int size = Settings.ExpressionCacheSize.getValue();
+					if (size <= 0) {
+
+						// caching disabled
+						return null;
+					}
+
+					cache           = new FixedSizeCache<>(size);
+					expressionCache = cache;
+				}
+			}
+		}
+
+		return cache;
+	}
+
 	private static Expression checkReservedWords(final String word) throws FrameworkException {
 
 		if (word == null) {
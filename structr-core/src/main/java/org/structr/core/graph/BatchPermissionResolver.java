@@ -0,0 +1,313 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.DatabaseService;
+import org.structr.common.Permission;
+import org.structr.common.SecurityContext;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.Principal;
+import org.structr.core.entity.SchemaRelationshipNode;
+import org.structr.core.graph.search.SearchCommand;
+import org.structr.core.property.PropertyKey;
+
+/**
+ * Resolves read permissions for a batch of nodes with a single query
+ * instead of one or more queries per node.
+ *
+ * The query returns, for each node, whether it has an owner and whether
+ * the accessing user or one of its (transitive) groups owns the node or
+ * has a SECURITY relationship that allows read access. Nodes that are
+ * granted this way are readable, all other nodes are checked with
+ * SecurityContext#isReadable, unless the result of the query is known
+ * to be complete (no permission propagation and no custom permission
+ * query), in which case nodes with an owner are not readable. Nodes of
+ * types that override isGranted are always checked with
+ * SecurityContext#isReadable, because they can grant access in other
+ * ways, e.g. thumbnails that inherit the permissions of their image.
+ *
+ * The accessing user and its groups are always readable for the user, as
+ * in AbstractNode#isGranted. Databases that don't support native queries
+ * fall back to SecurityContext#isReadable for every node.
+ */
+public class BatchPermissionResolver {
+
+	private static final Logger logger = LoggerFactory.getLogger(BatchPermissionResolver.class.getName());
+
+	private static final String QUERY  = "MATCH (n) WHERE ID(n) IN $ids"
+		+ " OPTIONAL MATCH (n)<-[o:OWNS]-()"
+		+ " OPTIONAL MATCH (n)<-[r:OWNS|SECURITY]-(p) WHERE ID(p) IN $principals AND (type(r) = 'OWNS' OR 'read' IN r.allowed)"
+		+ " RETURN ID(n) AS id, count(o) > 0 AS hasOwner, count(r) > 0 AS granted";
+
+	private SecurityContext securityContext = null;
+	private List<Long> principalIds         = null;
+	private DatabaseService db              = null;
+	private Principal user                  = null;
+	private boolean authoritative           = false;
+	private boolean enabled                 = false;
+
+	public BatchPermissionResolver(final SecurityContext securityContext) {
+
+		this.securityContext = securityContext;
+		this.user            = securityContext.getUser(false);
+
+		// admin users can read everything, and anonymous users can only see
+		// public nodes, so there is no need to resolve anything for them
+		this.enabled = user != null && !securityContext.isSuperUser() && !user.isAdmin();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Indicates whether the grants of the user and its groups are the only
+	 * way to obtain read permissions, so that a node that is neither visible
+	 * nor granted is not readable.
+	 *
+	 * @return whether the grants are the only source of read permissions
+	 */
+	public boolean isAuthoritative() {
+
+		initialize();
+
+		return authoritative;
+	}
+
+	/**
+	 * Returns the database IDs of the user and all its (transitive) groups.
+	 *
+	 * @return the principal IDs
+	 */
+	public List<Long> getPrincipalIds() {
+
+		initialize();
+
+		return principalIds;
+	}
+
+	/**
+	 * Returns the readable nodes of the given list, in the original order.
+	 *
+	 * @param nodes
+	 * @param includeHidden
+	 * @param publicOnly
+	 * @return the readable nodes
+	 */
+	public <T extends NodeInterface> List<T> filterReadable(final List<T> nodes, final boolean includeHidden, final boolean publicOnly) {
+
+		final Map<Class, Boolean> customGrants = new HashMap<>();
+		final List<T> result                   = new ArrayList<>(nodes.size());
+		final Set<Long> candidates             = new LinkedHashSet<>();
+		final Boolean[] decisions              = new Boolean[nodes.size()];
+
+		initialize();
+
+		// first pass: cheap checks that don't need any additional queries
+		for (int i=0; i<nodes.size(); i++) {
+
+			final T node = nodes.get(i);
+
+			if (node.isHidden() && !includeHidden) {
+
+				decisions[i] = false;
+
+			} else if (node.isVisibleToPublicUsers()) {
+
+				decisions[i] = true;
+
+			} else if (publicOnly) {
+
+				decisions[i] = false;
+
+			} else if (node.isVisibleToAuthenticatedUsers()) {
+
+				decisions[i] = true;
+
+			} else {
+
+				final long id = db.unwrap(node.getNode().getId());
+
+				// the user can read itself and all its groups
+				if (principalIds.contains(id)) {
+
+					decisions[i] = true;
+
+				} else if (db.supportsNativeQueries()) {
+
+					candidates.add(id);
+				}
+			}
+		}
+
+		final Map<Long, Boolean> granted = new HashMap<>();
+		final Set<Long> owned            = new LinkedHashSet<>();
+
+		if (!candidates.isEmpty()) {
+
+			final Map<String, Object> params = new HashMap<>();
+
+			params.put("ids",        new ArrayList<>(candidates));
+			params.put("principals", principalIds);
+
+			try {
+
+				for (final Map<String, Object> row : db.execute(QUERY, params)) {
+
+					final Long id = ((Number)row.get("id")).longValue();
+
+					granted.put(id, Boolean.TRUE.equals(row.get("granted")));
+
+					if (Boolean.TRUE.equals(row.get("hasOwner"))) {
+						owned.add(id);
+					}
+				}
+
+			} catch (Throwable t) {
+
+				// fall back to the per-node check below
+				logger.warn("Unable to resolve permissions in batch: {}", t.getMessage());
+				granted.clear();
+				owned.clear();
+			}
+		}
+
+		// second pass: apply results, fall back to full resolution where needed
+		for (int i=0; i<nodes.size(); i++) {
+
+			final T node     = nodes.get(i);
+			Boolean decision = decisions[i];
+
+			if (decision == null) {
+
+				final long id = db.unwrap(node.getNode().getId());
+
+				if (Boolean.TRUE.equals(granted.get(id))) {
+
+					decision = true;
+
+				} else if (authoritative && owned.contains(id) && !customGrants.computeIfAbsent(node.getClass(), BatchPermissionResolver::overridesIsGranted)) {
+
+					decision = false;
+
+				} else {
+
+					decision = securityContext.isReadable(node, includeHidden, publicOnly);
+				}
+			}
+
+			if (decision) {
+				result.add(node);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Indicates whether nodes of the given type or one of its subtypes can
+	 * be readable in ways other than the grants of the accessing user and
+	 * its groups, because the type overrides isGranted.
+	 *
+	 * @param type the type, or null for all types
+	 * @return whether the type has custom grants
+	 */
+	public static boolean hasCustomGrants(final Class type) {
+
+		if (type == null) {
+			return true;
+		}
+
+		if (!type.isInterface() && overridesIsGranted(type)) {
+			return true;
+		}
+
+		for (final String name : SearchCommand.getAllSubtypesAsStringSet(type.getSimpleName())) {
+
+			final Class subtype = StructrApp.getConfiguration().getNodeEntityClass(name);
+			if (subtype != null && !subtype.isInterface() && overridesIsGranted(subtype)) {
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	// ----- private methods -----
+	private static boolean overridesIsGranted(final Class type) {
+
+		try {
+
+			return !AbstractNode.class.equals(type.getMethod("isGranted", Permission.class, SecurityContext.class).getDeclaringClass());
+
+		} catch (NoSuchMethodException nex) {
+
+			return true;
+		}
+	}
+
+	private void initialize() {
+
+		if (principalIds == null) {
+
+			final PropertyKey<String> customQueryKey = StructrApp.getConfiguration().getPropertyKeyForJSONName(Principal.class, "customPermissionQuery" + StringUtils.capitalize(Permission.read.name()));
+			final Set<Principal> principals          = new LinkedHashSet<>();
+			final Queue<Principal> queue             = new LinkedList<>();
+			boolean hasCustomQuery                   = false;
+
+			queue.add(user);
+
+			// collect the accessing user and all its (transitive) groups
+			while (!queue.isEmpty()) {
+
+				final Principal principal = queue.poll();
+				if (principals.add(principal)) {
+
+					hasCustomQuery |= StringUtils.isNotEmpty(principal.getProperty(customQueryKey));
+
+					queue.addAll(principal.getParentsPrivileged());
+				}
+			}
+
+			this.db           = StructrApp.getInstance().getDatabaseService();
+			this.principalIds = new ArrayList<>();
+
+			for (final Principal principal : principals) {
+				principalIds.add(db.unwrap(principal.getNode().getId()));
+			}
+
+			// permissions can only be denied based on the query result if there
+			// are no other ways to obtain them
+			this.authoritative = !hasCustomQuery && SchemaRelationshipNode.getPropagatingRelationshipTypes().isEmpty();
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.property.PropertyMap;
+import org.structr.schema.SchemaHelper;
+
+/**
+ * Collects the input rows of an import chunk and creates the nodes with
+ * {@link App#createNodes}, keeping the semantics of creating one node per
+ * row.
+ *
+ * Converting a value of a relationship property looks up the related node,
+ * so a row that contains such a value must see the nodes of all preceding
+ * rows. Such a row is therefore converted and created on its own, after
+ * the nodes of the pending rows have been created. All other rows are
+ * created in bulk when the next row with references arrives or when
+ * {@link #flush()} is called.
+ *
+ * @param <T>
+ */
+public class ChunkedNodeCreator<T extends NodeInterface> {
+
+	private final List<PropertyMap> pending = new ArrayList<>();
+	private SecurityContext securityContext = null;
+	private Class<T> type                   = null;
+	private App app                         = null;
+
+	public ChunkedNodeCreator(final SecurityContext securityContext, final Class<T> type) {
+
+		this.app             = StructrApp.getInstance(securityContext);
+		this.securityContext = securityContext;
+		this.type            = type;
+	}
+
+	/**
+	 * Adds a row whose entity type is given by its type property.
+	 *
+	 * @param input
+	 * @throws FrameworkException
+	 */
+	public void add(final Map<String, Object> input) throws FrameworkException {
+
+		final Object typeName = input != null ? input.get(AbstractNode.type.jsonName()) : null;
+		final Class inputType = typeName != null ? SchemaHelper.getEntityClassForRawType(typeName.toString()) : null;
+
+		if (referencesOtherNodes(inputType, input)) {
+
+			flush();
+			app.create(type, PropertyMap.inputTypeToJavaType(securityContext, input));
+
+		} else {
+
+			pending.add(PropertyMap.inputTypeToJavaType(securityContext, input));
+		}
+	}
+
+	/**
+	 * Adds a row that is converted using the given entity type.
+	 *
+	 * @param inputType
+	 * @param input
+	 * @throws FrameworkException
+	 */
+	public void add(final Class<? extends GraphObject> inputType, final Map<String, Object> input) throws FrameworkException {
+
+		if (referencesOtherNodes(inputType, input)) {
+
+			flush();
+			app.create(type, PropertyMap.inputTypeToJavaType(securityContext, inputType, input));
+
+		} else {
+
+			pending.add(PropertyMap.inputTypeToJavaType(securityContext, inputType, input));
+		}
+	}
+
+	/**
+	 * Creates the nodes of all pending rows.
+	 *
+	 * @throws FrameworkException
+	 */
+	public void flush() throws FrameworkException {
+
+		if (!pending.isEmpty()) {
+
+			app.createNodes(type, pending);
+			pending.clear();
+		}
+	}
+
+	// ----- private methods -----
+	private boolean referencesOtherNodes(final Class inputType, final Map<String, Object> input) {
+
+		if (inputType == null || input == null) {
+			return false;
+		}
+
+		for (final Entry<String, Object> entry : input.entrySet()) {
+
+			final String name = entry.getKey();
+
+			if (name != null && entry.getValue() != null) {
+
+				final PropertyKey key = StructrApp.key(inputType, name, false);
+				if (key != null && key.relatedType() != null) {
+
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+}
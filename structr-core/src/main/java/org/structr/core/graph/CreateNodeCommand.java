@@ -18,9 +18,14 @@
  */
 package org.structr.core.graph;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -87,109 +92,210 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 
 		if (graphDb != null) {
 
-			final NodeFactory<T> nodeFactory = new NodeFactory<>(securityContext);
-			final PropertyMap properties     = new PropertyMap(attributes);
-			final PropertyMap toNotify       = new PropertyMap();
-			final Object typeObject          = properties.get(AbstractNode.type);
-			final Class nodeType             = getTypeOrGeneric(typeObject);
-			final String typeName            = nodeType.getSimpleName();
-			final Set<String> labels         = TypeProperty.getLabelsForType(nodeType);
-			final CreationContainer tmp      = new CreationContainer(true);
-			final Date now                   = new Date();
-			final boolean isCreation         = true;
+			final NodeCreation creation = prepare(graphDb, user, attributes);
 
-			// use user-supplied UUID?
-			String uuid = properties.get(GraphObject.id);
-			if (uuid == null) {
+			node = finish(user, creation, createNode(graphDb, user, creation.typeName, creation.labels, creation.data));
+		}
 
-				// no, create new one
-				uuid = getNextUuid();
+		return postProcess(node);
+	}
 
-				properties.put(GraphObject.id, uuid);
+	/**
+	 * Creates nodes for all of the given property maps. Consecutive
+	 * property maps of the same type are created in the database with
+	 * a single statement, which is much faster than calling execute()
+	 * for each element. The returned list has the same order as the
+	 * input list.
+	 *
+	 * The property maps are converted before any of the nodes is created,
+	 * so converted values cannot refer to nodes created by preceding
+	 * elements. Import code that converts raw input should use
+	 * {@link ChunkedNodeCreator}, which takes care of this.
+	 *
+	 * @param attributes
+	 * @return the created nodes
+	 * @throws FrameworkException
+	 */
+	public List<T> executeBulk(final List<PropertyMap> attributes) throws FrameworkException {
 
-			} else {
+		final DatabaseService graphDb = (DatabaseService) arguments.get("graphDb");
+		final Principal user          = securityContext.getUser(false);
+		final List<T> nodes           = new ArrayList<>(attributes.size());
 
-				// enable UUID validation
-				securityContext.uuidWasSetManually(true);
-			}
+		if (graphDb != null) {
+
+			final List<NodeCreation> chunk = new LinkedList<>();
 
-			// use property keys to set property values on creation dummy
-			// set default values for common properties in creation query
-			GraphObject.id.setProperty(securityContext, tmp, uuid);
-			GraphObject.type.setProperty(securityContext, tmp, typeName);
-			AbstractNode.createdDate.setProperty(securityContext, tmp, now);
-			AbstractNode.lastModifiedDate.setProperty(securityContext, tmp, now);
+			for (final PropertyMap properties : attributes) {
 
-			// default property values
-			AbstractNode.visibleToPublicUsers.setProperty(securityContext, tmp,        getOrDefault(properties, AbstractNode.visibleToPublicUsers, false));
-			AbstractNode.visibleToAuthenticatedUsers.setProperty(securityContext, tmp, getOrDefault(properties, AbstractNode.visibleToAuthenticatedUsers, false));
-			AbstractNode.hidden.setProperty(securityContext, tmp,                      getOrDefault(properties, AbstractNode.hidden, false));
+				final NodeCreation creation = prepare(graphDb, user, properties);
 
-			if (user != null) {
+				if (!chunk.isEmpty() && !chunk.get(0).typeName.equals(creation.typeName)) {
 
-				final String userId = user.getProperty(GraphObject.id);
+					createChunk(graphDb, user, chunk, nodes);
+					chunk.clear();
+				}
 
-				AbstractNode.createdBy.setProperty(securityContext, tmp, userId);
-				AbstractNode.lastModifiedBy.setProperty(securityContext, tmp, userId);
+				chunk.add(creation);
 			}
 
-			// prevent double setting of properties
-			properties.remove(AbstractNode.id);
-			properties.remove(AbstractNode.type);
-			properties.remove(AbstractNode.visibleToPublicUsers);
-			properties.remove(AbstractNode.visibleToAuthenticatedUsers);
-			properties.remove(AbstractNode.hidden);
-			properties.remove(AbstractNode.lastModifiedDate);
-			properties.remove(AbstractNode.lastModifiedBy);
-			properties.remove(AbstractNode.createdDate);
-			properties.remove(AbstractNode.createdBy);
+			createChunk(graphDb, user, chunk, nodes);
+		}
+
+		for (final ListIterator<T> it = nodes.listIterator(); it.hasNext();) {
+
+			it.set(postProcess(it.next()));
+		}
+
+		return nodes;
+	}
+
+	// ----- private methods -----
+	private void createChunk(final DatabaseService graphDb, final Principal user, final List<NodeCreation> chunk, final List<T> nodes) throws FrameworkException {
+
+		if (chunk.isEmpty()) {
+			return;
+		}
+
+		final NodeCreation first             = chunk.get(0);
+		final List<Map<String, Object>> data = new ArrayList<>(chunk.size());
+
+		for (final NodeCreation creation : chunk) {
+			data.add(creation.data);
+		}
+
+		final List<Node> created = createNodes(graphDb, user, first.typeName, first.labels, data);
+
+		// the query returns no rows when the owner could not be found
+		if (created.size() != chunk.size()) {
+
+			throw new FrameworkException(500, "Unable to create nodes of type " + first.typeName + ", " + created.size() + " of " + chunk.size() + " nodes were created.");
+		}
+
+		final Iterator<Node> iterator = created.iterator();
+
+		for (final NodeCreation creation : chunk) {
 
-			// move properties to creation container that can be set directly on creation
-			tmp.filterIndexableForCreation(securityContext, properties, tmp, toNotify);
+			nodes.add(finish(user, creation, iterator.next()));
+		}
+	}
+
+	private NodeCreation prepare(final DatabaseService graphDb, final Principal user, final PropertyMap attributes) throws FrameworkException {
+
+		final PropertyMap properties = new PropertyMap(attributes);
+		final PropertyMap toNotify   = new PropertyMap();
+		final Object typeObject      = properties.get(AbstractNode.type);
+		final Class nodeType         = getTypeOrGeneric(typeObject);
+		final String typeName        = nodeType.getSimpleName();
+		final Set<String> labels     = TypeProperty.getLabelsForType(nodeType);
+		final CreationContainer tmp  = new CreationContainer(true);
+		final Date now               = new Date();
+
+		// use user-supplied UUID?
+		String uuid = properties.get(GraphObject.id);
+		if (uuid == null) {
+
+			// no, create new one
+			uuid = getNextUuid();
+
+			properties.put(GraphObject.id, uuid);
 
-			// collect default values and try to set them on creation
-			for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(nodeType, PropertyView.All)) {
+		} else {
+
+			// enable UUID validation
+			securityContext.uuidWasSetManually(true);
+		}
+
+		// use property keys to set property values on creation dummy
+		// set default values for common properties in creation query
+		GraphObject.id.setProperty(securityContext, tmp, uuid);
+		GraphObject.type.setProperty(securityContext, tmp, typeName);
+		AbstractNode.createdDate.setProperty(securityContext, tmp, now);
+		AbstractNode.lastModifiedDate.setProperty(securityContext, tmp, now);
 
-				if (key instanceof AbstractPrimitiveProperty && !tmp.hasProperty(key.jsonName())) {
+		// default property values
+		AbstractNode.visibleToPublicUsers.setProperty(securityContext, tmp,        getOrDefault(properties, AbstractNode.visibleToPublicUsers, false));
+		AbstractNode.visibleToAuthenticatedUsers.setProperty(securityContext, tmp, getOrDefault(properties, AbstractNode.visibleToAuthenticatedUsers, false));
+		AbstractNode.hidden.setProperty(securityContext, tmp,                      getOrDefault(properties, AbstractNode.hidden, false));
 
-					final Object defaultValue = key.defaultValue();
-					if (defaultValue != null) {
+		if (user != null) {
+
+			final String userId = user.getProperty(GraphObject.id);
+
+			AbstractNode.createdBy.setProperty(securityContext, tmp, userId);
+			AbstractNode.lastModifiedBy.setProperty(securityContext, tmp, userId);
+		}
 
-						key.setProperty(securityContext, tmp, defaultValue);
-					}
+		// prevent double setting of properties
+		properties.remove(AbstractNode.id);
+		properties.remove(AbstractNode.type);
+		properties.remove(AbstractNode.visibleToPublicUsers);
+		properties.remove(AbstractNode.visibleToAuthenticatedUsers);
+		properties.remove(AbstractNode.hidden);
+		properties.remove(AbstractNode.lastModifiedDate);
+		properties.remove(AbstractNode.lastModifiedBy);
+		properties.remove(AbstractNode.createdDate);
+		properties.remove(AbstractNode.createdBy);
+
+		// move properties to creation container that can be set directly on creation
+		tmp.filterIndexableForCreation(securityContext, properties, tmp, toNotify);
+
+		// collect default values and try to set them on creation
+		for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(nodeType, PropertyView.All)) {
+
+			if (key instanceof AbstractPrimitiveProperty && !tmp.hasProperty(key.jsonName())) {
+
+				final Object defaultValue = key.defaultValue();
+				if (defaultValue != null) {
+
+					key.setProperty(securityContext, tmp, defaultValue);
 				}
 			}
+		}
 
-			node = (T) nodeFactory.instantiateWithType(createNode(graphDb, user, typeName, labels, tmp.getData()), nodeType, null, isCreation);
-			if (node != null) {
+		return new NodeCreation(uuid, nodeType, typeName, labels, properties, toNotify, tmp.getData());
+	}
 
-				TransactionCommand.nodeCreated(user, node);
+	private T finish(final Principal user, final NodeCreation creation, final Node dbNode) throws FrameworkException {
 
-				securityContext.disableModificationOfAccessTime();
-				node.setProperties(securityContext, properties, true);
-				securityContext.enableModificationOfAccessTime();
+		final NodeFactory<T> nodeFactory = new NodeFactory<>(securityContext);
+		final PropertyMap properties     = creation.properties;
+		final boolean isCreation         = true;
 
-				// ensure modification callbacks are called (necessary for validation)
-				for (final Entry<PropertyKey, Object> entry : toNotify.entrySet()) {
+		final T node = (T) nodeFactory.instantiateWithType(dbNode, creation.nodeType, null, isCreation);
+		if (node != null) {
 
-					final PropertyKey key = entry.getKey();
-					final Object value    = entry.getValue();
+			TransactionCommand.nodeCreated(user, node);
 
-					if (!key.isUnvalidated()) {
-						TransactionCommand.nodeModified(securityContext.getCachedUser(), (AbstractNode)node, key, null, value);
-					}
-				}
+			securityContext.disableModificationOfAccessTime();
+			node.setProperties(securityContext, properties, true);
+			securityContext.enableModificationOfAccessTime();
 
-				properties.clear();
+			// ensure modification callbacks are called (necessary for validation)
+			for (final Entry<PropertyKey, Object> entry : creation.toNotify.entrySet()) {
 
-				// ensure indexing of newly created node
-				node.addToIndex();
+				final PropertyKey key = entry.getKey();
+				final Object value    = entry.getValue();
 
-				// invalidate UUID cache
-				StructrApp.invalidate(uuid);
+				if (!key.isUnvalidated()) {
+					TransactionCommand.nodeModified(securityContext.getCachedUser(), (AbstractNode)node, key, null, value);
+				}
 			}
+
+			properties.clear();
+
+			// ensure indexing of newly created node
+			node.addToIndex();
+
+			// invalidate UUID cache
+			StructrApp.invalidate(creation.uuid);
 		}
 
+		return node;
+	}
+
+	private T postProcess(final T node) throws FrameworkException {
+
 		if (node != null) {
 
 			// notify node of its creation
@@ -206,43 +312,15 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 		return node;
 	}
 
-	// ----- private methods -----
 	private Node createNode(final DatabaseService graphDb, final Principal user, final String type, final Set<String> labels, final Map<String, Object> properties) throws FrameworkException {
 
-		final Map<String, Object> ownsProperties     = new HashMap<>();
-		final Map<String, Object> securityProperties = new HashMap<>();
-		final String newUuid                         = (String)properties.get("id");
-
 		if (user != null && user.shouldSkipSecurityRelationships() == false) {
 
-			final String userId = user.getUuid();
-
-			// configure OWNS relationship creation statement for maximum performance
-			ownsProperties.put(GraphObject.id.dbName(),                          getNextUuid());
-			ownsProperties.put(GraphObject.type.dbName(),                        PrincipalOwnsNode.class.getSimpleName());
-			ownsProperties.put(GraphObject.visibleToPublicUsers.dbName(),        false);
-			ownsProperties.put(GraphObject.visibleToAuthenticatedUsers.dbName(), false);
-			ownsProperties.put(AbstractRelationship.relType.dbName(),            "OWNS");
-			ownsProperties.put(AbstractRelationship.sourceId.dbName(),           userId);
-			ownsProperties.put(AbstractRelationship.targetId.dbName(),           newUuid);
-			ownsProperties.put(AbstractRelationship.internalTimestamp.dbName(),  graphDb.getInternalTimestamp());
-
-			// configure SECURITY relationship creation statement for maximum performance
-			securityProperties.put(GraphObject.id.dbName(),                          getNextUuid());
-			securityProperties.put(GraphObject.type.dbName(),                        Security.class.getSimpleName());
-			securityProperties.put(GraphObject.visibleToPublicUsers.dbName(),        false);
-			securityProperties.put(GraphObject.visibleToAuthenticatedUsers.dbName(), false);
-			securityProperties.put(AbstractRelationship.relType.dbName(),            "SECURITY");
-			securityProperties.put(AbstractRelationship.sourceId.dbName(),           userId);
-			securityProperties.put(AbstractRelationship.targetId.dbName(),           newUuid);
-			securityProperties.put(AbstractRelationship.internalTimestamp.dbName(),  graphDb.getInternalTimestamp());
-			securityProperties.put(Security.allowed.dbName(),                        new String[] { Permission.read.name(), Permission.write.name(), Permission.delete.name(), Permission.accessControl.name() } );
-			securityProperties.put(Security.principalId.dbName(),                    userId);
-			securityProperties.put(Security.accessControllableId.dbName(),           newUuid);
+			final String newUuid = (String)properties.get("id");
 
 			try {
 
-				final NodeWithOwnerResult result = graphDb.createNodeWithOwner(user.getNode().getId(), type, labels, properties, ownsProperties, securityProperties);
+				final NodeWithOwnerResult result = graphDb.createNodeWithOwner(user.getNode().getId(), type, labels, properties, getOwnsProperties(graphDb, user, newUuid), getSecurityProperties(graphDb, user, newUuid));
 				final Relationship securityRel   = result.getSecurityRelationship();
 				final Relationship ownsRel       = result.getOwnsRelationship();
 				final Node newNode               = result.getNewNode();
@@ -273,6 +351,93 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 		}
 	}
 
+	private List<Node> createNodes(final DatabaseService graphDb, final Principal user, final String type, final Set<String> labels, final List<Map<String, Object>> properties) throws FrameworkException {
+
+		if (user != null && user.shouldSkipSecurityRelationships() == false) {
+
+			final List<Map<String, Object>> ownsProperties     = new ArrayList<>(properties.size());
+			final List<Map<String, Object>> securityProperties = new ArrayList<>(properties.size());
+			final List<Node> nodes                             = new ArrayList<>(properties.size());
+
+			for (final Map<String, Object> data : properties) {
+
+				final String newUuid = (String)data.get("id");
+
+				ownsProperties.add(getOwnsProperties(graphDb, user, newUuid));
+				securityProperties.add(getSecurityProperties(graphDb, user, newUuid));
+			}
+
+			try {
+
+				for (final NodeWithOwnerResult result : graphDb.createNodesWithOwner(user.getNode().getId(), type, labels, properties, ownsProperties, securityProperties)) {
+
+					notifySecurityRelCreation(user, result.getSecurityRelationship());
+					notifyOwnsRelCreation(user, result.getOwnsRelationship());
+
+					nodes.add(result.getNewNode());
+				}
+
+				return nodes;
+
+			} catch (DataFormatException dex) {
+				throw new FrameworkException(422, dex.getMessage());
+			} catch (ConstraintViolationException qex) {
+				throw new FrameworkException(422, qex.getMessage());
+			}
+
+		} else {
+
+			try {
+
+				return graphDb.createNodes(type, labels, properties);
+
+			} catch (DataFormatException dex) {
+				throw new FrameworkException(422, dex.getMessage());
+			} catch (ConstraintViolationException qex) {
+				throw new FrameworkException(422, qex.getMessage());
+			}
+		}
+	}
+
+	private Map<String, Object> getOwnsProperties(final DatabaseService graphDb, final Principal user, final String newUuid) {
+
+		final Map<String, Object> ownsProperties = new HashMap<>();
+		final String userId                      = user.getUuid();
+
+		// configure OWNS relationship creation statement for maximum performance
+		ownsProperties.put(GraphObject.id.dbName(),                          getNextUuid());
+		ownsProperties.put(GraphObject.type.dbName(),                        PrincipalOwnsNode.class.getSimpleName());
+		ownsProperties.put(GraphObject.visibleToPublicUsers.dbName(),        false);
+		ownsProperties.put(GraphObject.visibleToAuthenticatedUsers.dbName(), false);
+		ownsProperties.put(AbstractRelationship.relType.dbName(),            "OWNS");
+		ownsProperties.put(AbstractRelationship.sourceId.dbName(),           userId);
+		ownsProperties.put(AbstractRelationship.targetId.dbName(),           newUuid);
+		ownsProperties.put(AbstractRelationship.internalTimestamp.dbName(),  graphDb.getInternalTimestamp());
+
+		return ownsProperties;
+	}
+
+	private Map<String, Object> getSecurityProperties(final DatabaseService graphDb, final Principal user, final String newUuid) {
+
+		final Map<String, Object> securityProperties = new HashMap<>();
+		final String userId                          = user.getUuid();
+
+		// configure SECURITY relationship creation statement for maximum performance
+		securityProperties.put(GraphObject.id.dbName(),                          getNextUuid());
+		securityProperties.put(GraphObject.type.dbName(),                        Security.class.getSimpleName());
+		securityProperties.put(GraphObject.visibleToPublicUsers.dbName(),        false);
+		securityProperties.put(GraphObject.visibleToAuthenticatedUsers.dbName(), false);
+		securityProperties.put(AbstractRelationship.relType.dbName(),            "SECURITY");
+		securityProperties.put(AbstractRelationship.sourceId.dbName(),           userId);
+		securityProperties.put(AbstractRelationship.targetId.dbName(),           newUuid);
+		securityProperties.put(AbstractRelationship.internalTimestamp.dbName(),  graphDb.getInternalTimestamp());
+		securityProperties.put(Security.allowed.dbName(),                        new String[] { Permission.read.name(), Permission.write.name(), Permission.delete.name(), Permission.accessControl.name() } );
+		securityProperties.put(Security.principalId.dbName(),                    userId);
+		securityProperties.put(Security.accessControllableId.dbName(),           newUuid);
+
+		return securityProperties;
+	}
+
 	private Class getTypeOrGeneric(final Object typeObject) {
 
 		if (typeObject != null) {
@@ -365,4 +530,27 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 
 		}
 	}
+
+	// ----- nested classes -----
+	private static class NodeCreation {
+
+		private Map<String, Object> data = null;
+		private PropertyMap properties   = null;
+		private PropertyMap toNotify     = null;
+		private Set<String> labels       = null;
+		private String typeName          = null;
+		private Class nodeType           = null;
+		private String uuid              = null;
+
+		NodeCreation(final String uuid, final Class nodeType, final String typeName, final Set<String> labels, final PropertyMap properties, final PropertyMap toNotify, final Map<String, Object> data) {
+
+			this.uuid       = uuid;
+			this.nodeType   = nodeType;
+			this.typeName   = typeName;
+			this.labels     = labels;
+			this.properties = properties;
+			this.toNotify   = toNotify;
+			this.data       = data;
+		}
+	}
 }
@@ -66,6 +66,7 @@ public class ModificationQueue {
 	private final Map<String, TransactionPostProcess> postProcesses                         = new LinkedHashMap<>();
 	private final Set<String> alreadyPropagated                                             = new LinkedHashSet<>();
 	private final Set<String> synchronizationKeys                                           = new TreeSet<>();
+	private UniquenessCache uniquenessCache                                                 = null;
 	private boolean doUpateChangelogIfEnabled                                               = true;
 
 	public ModificationQueue() {
@@ -129,23 +130,33 @@ public class ModificationQueue {
 		long validationTime = 0;
 		long indexingTime = 0;
 
-		// do validation and indexing
-		for (final GraphObjectModificationState state : getSortedModifications()) {
+		// uniqueness checks of this transaction are batched
+		uniquenessCache = new UniquenessCache(this);
 
-			PropertyContainer container = state.getGraphObject().getPropertyContainer();
-			if (container instanceof EntityWrapper && ((EntityWrapper) container).isStale()) {
-				continue;
-			}
+		try {
+
+			// do validation and indexing
+			for (final GraphObjectModificationState state : getSortedModifications()) {
 
-			// do callback according to entry state
-			boolean res = state.doValidationAndIndexing(this, securityContext, errorBuffer, doValidation);
+				PropertyContainer container = state.getGraphObject().getPropertyContainer();
+				if (container instanceof EntityWrapper && ((EntityWrapper) container).isStale()) {
+					continue;
+				}
 
-			validationTime += state.getValdationTime();
-			indexingTime += state.getIndexingTime();
+				// do callback according to entry state
+				boolean res = state.doValidationAndIndexing(this, securityContext, errorBuffer, doValidation);
 
-			if (!res) {
-				return false;
+				validationTime += state.getValdationTime();
+				indexingTime += state.getIndexingTime();
+
+				if (!res) {
+					return false;
+				}
 			}
+
+		} finally {
+
+			uniquenessCache = null;
 		}
 
 		long t = System.currentTimeMillis() - t0;
@@ -353,6 +364,42 @@ public class ModificationQueue {
 		return modificationEvents;
 	}
 
+	/**
+	 * Returns the objects that were created or modified in this queue and
+	 * are not deleted.
+	 *
+	 * @return the objects
+	 */
+	public List<GraphObject> getModifiedObjects() {
+
+		final List<GraphObject> objects = new LinkedList<>();
+
+		for (final GraphObjectModificationState state : modifications.values()) {
+
+			if ((state.isCreated() || state.isModified()) && !state.isDeleted() && !state.isPassivelyDeleted()) {
+
+				final PropertyContainer container = state.getGraphObject().getPropertyContainer();
+				if (container instanceof EntityWrapper && ((EntityWrapper) container).isStale()) {
+					continue;
+				}
+
+				objects.add(state.getGraphObject());
+			}
+		}
+
+		return objects;
+	}
+
+	/**
+	 * Returns the uniqueness cache of this queue, or null if the queue is
+	 * not being validated.
+	 *
+	 * @return the uniqueness cache or null
+	 */
+	public UniquenessCache getUniquenessCache() {
+		return uniquenessCache;
+	}
+
 	public void postProcess(final String key, final TransactionPostProcess process) {
 
 		if (!postProcesses.containsKey(key)) {
@@ -63,6 +63,15 @@ public class NativeQueryCommand extends NodeServiceCommand {
 		DatabaseService graphDb = (DatabaseService) arguments.get("graphDb");
 		if (graphDb != null) {
 
+			if (!graphDb.supportsNativeQueries()) {
+				throw new FrameworkException(422, "Cypher queries are not supported by the configured database driver");
+			}
+
+			// the types a Cypher query depends on are not known
+			if (NodeReadTracker.isActive()) {
+				NodeReadTracker.recordQuery(null);
+			}
+
 			final Iterable result    = graphDb.execute(query, parameters != null ? parameters : Collections.emptyMap());
 			final Iterable extracted = extractRows(result, includeHiddenAndDeleted, publicOnly);
 
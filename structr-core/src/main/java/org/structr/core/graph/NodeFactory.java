@@ -19,8 +19,11 @@
 package org.structr.core.graph;
 
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.graph.Identity;
@@ -83,31 +86,36 @@ public class NodeFactory<T extends NodeInterface & AccessControllable> extends F
 			return null;
 		}
 
-		SecurityContext securityContext = factoryProfile.getSecurityContext();
-		T newNode                       = null;
+		final SecurityContext securityContext = factoryProfile.getSecurityContext();
+		final T newNode                       = instantiateWithoutAccessCheck(node, nodeClass, pathSegmentId, isCreation);
 
-		try {
-			newNode = nodeClass.newInstance();
+		// check access
+		if (isCreation || securityContext.isReadable(newNode, factoryProfile.includeHidden(), factoryProfile.publicOnly())) {
 
-		} catch (NoClassDefFoundError|InstantiationException|IllegalAccessException itex) {
-			newNode = null;
+			return newNode;
 		}
 
-		if (newNode == null) {
-			newNode = (T)factoryDefinition.createGenericNode();
-		}
+		return null;
+	}
 
-		newNode.init(factoryProfile.getSecurityContext(), node, nodeClass, TransactionCommand.getCurrentTransactionId());
-		newNode.setRawPathSegmentId(pathSegmentId);
-		newNode.onNodeInstantiation(isCreation);
+	/**
+	 * Create structr nodes from all given underlying database nodes,
+	 * resolving read permissions for batches of nodes at once.
+	 *
+	 * @param input
+	 * @return nodes
+	 * @throws org.structr.common.error.FrameworkException
+	 */
+	@Override
+	public Iterable<T> bulkInstantiate(final Iterable<Node> input) throws FrameworkException {
 
-		// check access
-		if (isCreation || securityContext.isReadable(newNode, factoryProfile.includeHidden(), factoryProfile.publicOnly())) {
+		final BatchPermissionResolver resolver = new BatchPermissionResolver(factoryProfile.getSecurityContext());
+		if (resolver.isEnabled()) {
 
-			return newNode;
+			return () -> new BatchIterator(input.iterator(), resolver);
 		}
 
-		return null;
+		return super.bulkInstantiate(input);
 	}
 
 	@Override
@@ -119,6 +127,33 @@ public class NodeFactory<T extends NodeInterface & AccessControllable> extends F
 		return instantiate(node);
 	}
 
+	// ----- private methods -----
+	private T instantiateWithoutAccessCheck(final Node node, final Class<T> nodeClass, final Identity pathSegmentId, final boolean isCreation) {
+
+		T newNode = null;
+
+		try {
+			newNode = nodeClass.newInstance();
+
+		} catch (NoClassDefFoundError|InstantiationException|IllegalAccessException itex) {
+			newNode = null;
+		}
+
+		if (newNode == null) {
+			newNode = (T)factoryDefinition.createGenericNode();
+		}
+
+		newNode.init(factoryProfile.getSecurityContext(), node, nodeClass, TransactionCommand.getCurrentTransactionId());
+		newNode.setRawPathSegmentId(pathSegmentId);
+		newNode.onNodeInstantiation(isCreation);
+
+		if (NodeReadTracker.isActive()) {
+			NodeReadTracker.record(newNode);
+		}
+
+		return newNode;
+	}
+
 	/**
 	 * Return all nodes which are connected by an incoming IS_AT relationships
 	 *
@@ -142,4 +177,64 @@ public class NodeFactory<T extends NodeInterface & AccessControllable> extends F
 		return nodes;
 
 	}
+
+	// ----- nested classes -----
+	/**
+	 * Instantiates nodes in batches of increasing size and filters each
+	 * batch with a single permission query. The first batch is small so
+	 * that streaming a single page does not instantiate too many nodes.
+	 */
+	private class BatchIterator implements Iterator<T> {
+
+		private static final int MIN_BATCH_SIZE = 50;
+		private static final int MAX_BATCH_SIZE = 1000;
+
+		private BatchPermissionResolver resolver = null;
+		private Iterator<Node> source            = null;
+		private Iterator<T> current              = null;
+		private int batchSize                    = MIN_BATCH_SIZE;
+
+		public BatchIterator(final Iterator<Node> source, final BatchPermissionResolver resolver) {
+
+			this.resolver = resolver;
+			this.source   = source;
+		}
+
+		@Override
+		public boolean hasNext() {
+
+			while ((current == null || !current.hasNext()) && source.hasNext()) {
+
+				final List<T> batch = new ArrayList<>(batchSize);
+
+				while (batch.size() < batchSize && source.hasNext()) {
+
+					final Node node = source.next();
+					if (node != null && !TransactionCommand.isDeleted(node)) {
+
+						final Class<T> nodeClass = factoryDefinition.determineNodeType(node);
+						if (nodeClass != null) {
+
+							batch.add(instantiateWithoutAccessCheck(node, nodeClass, null, false));
+						}
+					}
+				}
+
+				current   = resolver.filterReadable(batch, factoryProfile.includeHidden(), factoryProfile.publicOnly()).iterator();
+				batchSize = Math.min(MAX_BATCH_SIZE, batchSize * 2);
+			}
+
+			return current != null && current.hasNext();
+		}
+
+		@Override
+		public T next() {
+
+			if (hasNext()) {
+				return current.next();
+			}
+
+			throw new NoSuchElementException();
+		}
+	}
 }
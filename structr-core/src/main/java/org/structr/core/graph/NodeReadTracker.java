@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records the nodes that are instantiated and the types that are queried
+ * in the current thread, so that the result of an operation (e.g. a
+ * rendered page) can be related to the nodes it was computed from.
+ *
+ * Tracking scopes can be nested, the nodes recorded in an inner scope are
+ * added to the enclosing scope when the inner scope ends.
+ */
+public class NodeReadTracker {
+
+	private static final ThreadLocal<Deque<ReadSet>> scopes = new ThreadLocal<>();
+
+	/**
+	 * Starts a new tracking scope in the current thread.
+	 */
+	public static void begin() {
+
+		Deque<ReadSet> stack = scopes.get();
+		if (stack == null) {
+
+			stack = new ArrayDeque<>();
+			scopes.set(stack);
+		}
+
+		stack.push(new ReadSet());
+	}
+
+	/**
+	 * Ends the current tracking scope and returns the nodes that were
+	 * read in it.
+	 *
+	 * @return the nodes that were read in the current scope
+	 */
+	public static ReadSet end() {
+
+		final Deque<ReadSet> stack = scopes.get();
+		if (stack == null || stack.isEmpty()) {
+
+			return new ReadSet();
+		}
+
+		final ReadSet readSet = stack.pop();
+
+		if (stack.isEmpty()) {
+
+			scopes.remove();
+
+		} else {
+
+			stack.peek().addAll(readSet);
+		}
+
+		return readSet;
+	}
+
+	public static boolean isActive() {
+		return scopes.get() != null;
+	}
+
+	public static void record(final NodeInterface node) {
+
+		final Deque<ReadSet> stack = scopes.get();
+		if (stack != null && !stack.isEmpty()) {
+
+			stack.peek().add(node.getUuid(), node.getClass().getSimpleName());
+		}
+	}
+
+	/**
+	 * Records a query for nodes of the given type in the current scope. A
+	 * query whose result contains no node of the type (e.g. an empty list)
+	 * still depends on the creation of such nodes. Queries whose types are
+	 * not known (e.g. Cypher queries) are recorded with a type of null and
+	 * depend on the creation of nodes of any type.
+	 *
+	 * @param type the simple name of the queried type, or null
+	 */
+	public static void recordQuery(final String type) {
+
+		final Deque<ReadSet> stack = scopes.get();
+		if (stack != null && !stack.isEmpty()) {
+
+			stack.peek().addQuery(type);
+		}
+	}
+
+	/**
+	 * Adds the given nodes to the current scope, e.g. when a result that
+	 * was computed earlier is reused.
+	 *
+	 * @param readSet
+	 */
+	public static void recordAll(final ReadSet readSet) {
+
+		final Deque<ReadSet> stack = scopes.get();
+		if (stack != null && !stack.isEmpty()) {
+
+			stack.peek().addAll(readSet);
+		}
+	}
+
+	// ----- nested classes -----
+	public static class ReadSet {
+
+		private final Set<String> uuids = new HashSet<>();
+		private final Set<String> types = new HashSet<>();
+		private boolean anyType         = false;
+
+		public void add(final String uuid, final String type) {
+
+			if (uuid != null) {
+				uuids.add(uuid);
+			}
+
+			if (type != null) {
+				types.add(type);
+			}
+		}
+
+		public void addQuery(final String type) {
+
+			if (type != null) {
+
+				types.add(type);
+
+			} else {
+
+				anyType = true;
+			}
+		}
+
+		public void addAll(final ReadSet other) {
+
+			uuids.addAll(other.uuids);
+			types.addAll(other.types);
+
+			anyType |= other.anyType;
+		}
+
+		public Set<String> getUuids() {
+			return Collections.unmodifiableSet(uuids);
+		}
+
+		public Set<String> getTypes() {
+			return Collections.unmodifiableSet(types);
+		}
+
+		/**
+		 * Indicates whether any of the given nodes or types was read.
+		 *
+		 * @param modifiedUuids
+		 * @param modifiedTypes the types and supertypes of created or deleted nodes
+		 * @return whether this set intersects the given nodes or types
+		 */
+		public boolean intersects(final Set<String> modifiedUuids, final Set<String> modifiedTypes) {
+
+			if (anyType && !modifiedTypes.isEmpty()) {
+				return true;
+			}
+
+			return !Collections.disjoint(uuids, modifiedUuids) || !Collections.disjoint(types, modifiedTypes);
+		}
+	}
+}
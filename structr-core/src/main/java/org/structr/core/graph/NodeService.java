@@ -42,6 +42,10 @@ import org.structr.core.property.PropertyKey;
  */
 public class NodeService implements SingletonService {
 
+	// drivers are loaded by class name, so they are only needed on the classpath if used
+	private static final String DIRECT_DRIVER = "org.structr.embedded.EmbeddedDatabaseService";
+	private static final String MEMORY_DRIVER = "org.structr.memory.MemoryDatabaseService";
+
 	private static final Logger logger   = LoggerFactory.getLogger(NodeService.class.getName());
 	private DatabaseService databaseService      = null;
 	private Index<Node> nodeIndex        = null;
@@ -65,7 +69,7 @@ public class NodeService implements SingletonService {
 	@Override
 	public boolean initialize(final StructrServices services) throws ClassNotFoundException, InstantiationException, IllegalAccessException {
 
-		final String databaseDriver = Settings.DatabaseDriver.getValue();
+		final String databaseDriver = getDatabaseDriver();
 		databaseService = (DatabaseService)Class.forName(databaseDriver).newInstance();
 		if (databaseService != null) {
 
@@ -238,6 +242,21 @@ public class NodeService implements SingletonService {
 	}
 
 	// ----- private methods -----
+	private String getDatabaseDriver() {
+
+		// direct mode uses the core API of the embedded database instead of Bolt
+		if ("direct".equals(Settings.DatabaseDriverMode.getValue())) {
+			return DIRECT_DRIVER;
+		}
+
+		// memory mode keeps all data on the heap, nothing is persisted
+		if ("memory".equals(Settings.DatabaseDriverMode.getValue())) {
+			return MEMORY_DRIVER;
+		}
+
+		return Settings.DatabaseDriver.getValue();
+	}
+
 	private void checkCacheSizes() {
 
 		final CountResult counts = getInitialCounts();
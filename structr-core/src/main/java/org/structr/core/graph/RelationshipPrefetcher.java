@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.DatabaseService;
+import org.structr.api.config.Settings;
+import org.structr.api.graph.Direction;
+import org.structr.api.graph.Identity;
+import org.structr.core.GraphObject;
+import org.structr.core.Services;
+import org.structr.core.entity.Relation;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.property.RelationProperty;
+
+/**
+ * Loads the relationships of a page of nodes with a single query per
+ * direction instead of one query per node and relationship property.
+ *
+ * The relationships are stored in the relationship caches of the database
+ * layer, so reading the relationship properties of the nodes afterwards
+ * doesn't need to access the database again.
+ */
+public class RelationshipPrefetcher {
+
+	private static final Logger logger = LoggerFactory.getLogger(RelationshipPrefetcher.class.getName());
+
+	/**
+	 * Returns an iterator over the given source that loads the relationships
+	 * of each page of nodes before the nodes of the page are returned.
+	 *
+	 * @param <T>
+	 * @param source
+	 * @param keys returns the property keys that will be read from an object, or null to load all relationships
+	 * @return the prefetching iterator
+	 */
+	public static <T> Iterator<T> iterator(final Iterator<T> source, final Function<GraphObject, Iterable<PropertyKey>> keys) {
+
+		final int pageSize = Settings.PrefetchPageSize.getValue();
+		if (pageSize < 2) {
+
+			return source;
+		}
+
+		return new PrefetchingIterator<>(source, keys, pageSize);
+	}
+
+	/**
+	 * Loads the relationships of the relationship properties in the given
+	 * keys for all nodes in the given list.
+	 *
+	 * @param objects
+	 * @param keys returns the property keys that will be read from an object, or null to load all relationships
+	 */
+	public static void prefetch(final List<?> objects, final Function<GraphObject, Iterable<PropertyKey>> keys) {
+
+		final Map<Class, NodeInterface> types = new LinkedHashMap<>();
+		final List<Identity> ids              = new ArrayList<>();
+
+		for (final Object obj : objects) {
+
+			if (obj instanceof NodeInterface) {
+
+				final NodeInterface node = (NodeInterface)obj;
+
+				types.putIfAbsent(node.getClass(), node);
+				ids.add(node.getNode().getId());
+			}
+		}
+
+		// nothing to gain for a single node
+		if (ids.size() < 2) {
+			return;
+		}
+
+		try {
+
+			final DatabaseService db = Services.getInstance().getDatabaseService();
+
+			if (keys == null) {
+
+				db.prefetch(ids, Direction.BOTH, null);
+
+			} else {
+
+				final Set<String> outgoing = new LinkedHashSet<>();
+				final Set<String> incoming = new LinkedHashSet<>();
+
+				for (final NodeInterface node : types.values()) {
+
+					final Iterable<PropertyKey> nodeKeys = keys.apply(node);
+					if (nodeKeys != null) {
+
+						for (final PropertyKey key : nodeKeys) {
+
+							if (key instanceof RelationProperty) {
+
+								final RelationProperty property = (RelationProperty)key;
+								final Relation relation         = property.getRelation();
+
+								if (relation != null) {
+
+									if ("out".equals(property.getDirectionKey())) {
+
+										outgoing.add(relation.name());
+
+									} else {
+
+										incoming.add(relation.name());
+									}
+								}
+							}
+						}
+					}
+				}
+
+				if (!outgoing.isEmpty()) {
+					db.prefetch(ids, Direction.OUTGOING, outgoing);
+				}
+
+				if (!incoming.isEmpty()) {
+					db.prefetch(ids, Direction.INCOMING, incoming);
+				}
+			}
+
+		} catch (Throwable t) {
+
+			// relationships are loaded per node as usual
+			logger.warn("Unable to prefetch relationships: {}", t.getMessage());
+		}
+	}
+
+	// ----- nested classes -----
+	private static class PrefetchingIterator<T> implements Iterator<T> {
+
+		private Function<GraphObject, Iterable<PropertyKey>> keys = null;
+		private Iterator<T> source                                = null;
+		private Iterator<T> page                                  = null;
+		private int pageSize                                      = 0;
+
+		public PrefetchingIterator(final Iterator<T> source, final Function<GraphObject, Iterable<PropertyKey>> keys, final int pageSize) {
+
+			this.pageSize = pageSize;
+			this.source   = source;
+			this.keys     = keys;
+		}
+
+		@Override
+		public boolean hasNext() {
+
+			if (page == null || !page.hasNext()) {
+
+				if (!source.hasNext()) {
+					return false;
+				}
+
+				final List<T> list = new ArrayList<>(pageSize);
+
+				while (source.hasNext() && list.size() < pageSize) {
+					list.add(source.next());
+				}
+
+				prefetch(list, keys);
+
+				page = list.iterator();
+			}
+
+			return page.hasNext();
+		}
+
+		@Override
+		public T next() {
+
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			return page.next();
+		}
+	}
+}
@@ -35,6 +35,7 @@ import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -771,8 +772,8 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 				final Map<String, Node> nodeMap = new LinkedHashMap<>();
 
-				// create nodes and rels
-				nodes.stream().forEach(e -> e.create(graphDb, nodeMap));
+				// create nodes in bulk and rels
+				NodeCreation.createAll(graphDb, nodes, nodeMap);
 				rels.stream().forEach(e -> e.create(graphDb, nodeMap));
 
 				totalNodeCount += nodeCount;
@@ -931,6 +932,47 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		void addLabel(final String label) {
 			this.labels.add(label);
 		}
+
+		/**
+		 * Creates the given nodes with one database operation for
+		 * each run of consecutive nodes with identical labels.
+		 */
+		static void createAll(final DatabaseService db, final List<NodeCreation> nodes, final Map<String, Node> nodeMap) {
+
+			final List<NodeCreation> chunk = new LinkedList<>();
+
+			for (final NodeCreation node : nodes) {
+
+				// nodes without type are ignored, see create()
+				if (node.get("type") == null) {
+					continue;
+				}
+
+				if (!chunk.isEmpty() && !chunk.get(0).labels.equals(node.labels)) {
+
+					createChunk(db, chunk, nodeMap);
+					chunk.clear();
+				}
+
+				chunk.add(node);
+			}
+
+			createChunk(db, chunk, nodeMap);
+		}
+
+		private static void createChunk(final DatabaseService db, final List<NodeCreation> chunk, final Map<String, Node> nodeMap) {
+
+			if (!chunk.isEmpty()) {
+
+				final NodeCreation first = chunk.get(0);
+				final Iterator<Node> it  = db.createNodes((String)first.get("type"), first.labels, new LinkedList<>(chunk)).iterator();
+
+				for (final NodeCreation node : chunk) {
+
+					nodeMap.put(node.getId(), it.next());
+				}
+			}
+		}
 	}
 
 	static class RelationshipCreation extends EntityCreation {
@@ -454,6 +454,23 @@ public class TransactionCommand {
 		throw new NotInTransactionException("Not in transaction.");
 	}
 
+	/**
+	 * Returns the uniqueness cache of the current transaction, or null if
+	 * there is no transaction or the transaction is not being validated.
+	 *
+	 * @return the uniqueness cache or null
+	 */
+	public static UniquenessCache getUniquenessCache() {
+
+		final TransactionCommand cmd = commands.get();
+		if (cmd != null && cmd.queue != null) {
+
+			return cmd.queue.getUniquenessCache();
+		}
+
+		return null;
+	}
+
 	public static boolean isDeleted(final Node node) {
 
 		TransactionCommand cmd = commands.get();
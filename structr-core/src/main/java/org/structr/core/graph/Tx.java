@@ -87,10 +87,13 @@ public class Tx implements AutoCloseable {
 						modificationQueue.doOuterCallbacks(securityContext);
 
 						// notify listeners if desired, and allow this setting to be overriden locally AND remotely
-						if ( (securityContext == null) ? doNotifications : doNotifications && securityContext.doTransactionNotifications() ) {
+						final boolean notify                                   = (securityContext == null) ? doNotifications : doNotifications && securityContext.doTransactionNotifications();
+						final Collection<ModificationEvent> modificationEvents = modificationQueue.getModificationEvents();
 
-							final Collection<ModificationEvent> modificationEvents = modificationQueue.getModificationEvents();
-							for (final StructrTransactionListener listener : TransactionCommand.getTransactionListeners()) {
+						for (final StructrTransactionListener listener : TransactionCommand.getTransactionListeners()) {
+
+							// cache listeners must see all modifications
+							if (notify || listener.isCacheListener()) {
 
 								listener.afterCommit(securityContext, modificationEvents);
 							}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.structr.api.graph.Identity;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.app.Query;
+import org.structr.core.app.StructrApp;
+import org.structr.core.property.PropertyKey;
+
+/**
+ * Batches the uniqueness checks of a transaction. The first check for a
+ * (type, key) combination fetches the matching entities for the values of
+ * all objects in the modification queue at once, subsequent checks for the
+ * same combination are answered from memory.
+ *
+ * An instance is only valid during the validation phase of a single
+ * transaction, see {@link ModificationQueue#doValidation}.
+ */
+public class UniquenessCache {
+
+	private static final int BATCH_SIZE = 100;
+
+	private final Map<String, Map<Object, List<Identity>>> cache = new HashMap<>();
+	private ModificationQueue queue                              = null;
+
+	public UniquenessCache(final ModificationQueue queue) {
+		this.queue = queue;
+	}
+
+	/**
+	 * Returns the identities of all entities of the given type that have
+	 * the given value for the given key, or null if the value cannot be
+	 * looked up in a batch.
+	 *
+	 * @param type the type that defines the scope of the uniqueness
+	 * @param key the unique key
+	 * @param value the value
+	 * @param isNode whether to look up nodes or relationships
+	 *
+	 * @return the identities of the matching entities or null
+	 *
+	 * @throws FrameworkException
+	 */
+	public List<Identity> get(final Class type, final PropertyKey key, final Object value, final boolean isNode) throws FrameworkException {
+
+		if (!isBatchable(value)) {
+			return null;
+		}
+
+		final String cacheKey                  = type.getName() + "." + key.dbName() + "." + isNode;
+		Map<Object, List<Identity>> identities = cache.get(cacheKey);
+
+		if (identities == null) {
+
+			identities = new HashMap<>();
+			cache.put(cacheKey, identities);
+
+			final Set<Object> values = new LinkedHashSet<>();
+
+			// collect the values of all objects of this type in the transaction
+			for (final GraphObject object : queue.getModifiedObjects()) {
+
+				if (type.isInstance(object) && isNode == (object instanceof NodeInterface)) {
+
+					final Object objectValue = object.getProperty(key);
+					if (isBatchable(objectValue)) {
+
+						values.add(objectValue);
+					}
+				}
+			}
+
+			values.add(value);
+
+			fetch(type, key, values, isNode, identities);
+
+		} else if (!identities.containsKey(value)) {
+
+			// value was not known when the batch was fetched
+			final Set<Object> values = new LinkedHashSet<>();
+
+			values.add(value);
+
+			fetch(type, key, values, isNode, identities);
+		}
+
+		return identities.get(value);
+	}
+
+	// ----- private methods -----
+	private void fetch(final Class type, final PropertyKey key, final Set<Object> values, final boolean isNode, final Map<Object, List<Identity>> identities) throws FrameworkException {
+
+		final List<Object> batch = new ArrayList<>(BATCH_SIZE);
+
+		for (final Object value : values) {
+
+			identities.put(value, new LinkedList<>());
+			batch.add(value);
+
+			if (batch.size() == BATCH_SIZE) {
+
+				fetchBatch(type, key, batch, isNode, identities);
+				batch.clear();
+			}
+		}
+
+		if (!batch.isEmpty()) {
+
+			fetchBatch(type, key, batch, isNode, identities);
+		}
+	}
+
+	private void fetchBatch(final Class type, final PropertyKey key, final List<Object> values, final boolean isNode, final Map<Object, List<Identity>> identities) throws FrameworkException {
+
+		final Query<GraphObject> query = isNode ? StructrApp.getInstance().nodeQuery(type) : StructrApp.getInstance().relationshipQuery(type);
+
+		for (final Object value : values) {
+			query.or(key, value);
+		}
+
+		for (final GraphObject result : query.getAsList()) {
+
+			final List<Identity> list = identities.get(result.getProperty(key));
+			if (list != null) {
+
+				list.add(result.getPropertyContainer().getId());
+			}
+		}
+	}
+
+	private boolean isBatchable(final Object value) {
+		return value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Date || value instanceof Enum;
+	}
+}
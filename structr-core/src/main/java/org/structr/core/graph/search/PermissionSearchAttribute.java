@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph.search;
+
+import java.util.List;
+import org.structr.api.search.Occurrence;
+import org.structr.api.search.PermissionQuery;
+import org.structr.core.GraphObject;
+
+/**
+ * Search attribute that restricts the query result to the nodes that
+ * are readable for a given user and its groups.
+ */
+public class PermissionSearchAttribute<T> extends SearchAttribute<T> implements PermissionQuery {
+
+	private List<Long> principalIds = null;
+
+	public PermissionSearchAttribute(final List<Long> principalIds) {
+
+		super(Occurrence.REQUIRED);
+
+		this.principalIds = principalIds;
+	}
+
+	@Override
+	public String toString() {
+		return "PermissionSearchAttribute(" + principalIds + ")";
+	}
+
+	@Override
+	public Class getQueryType() {
+		return PermissionQuery.class;
+	}
+
+	@Override
+	public boolean isExactMatch() {
+		return true;
+	}
+
+	@Override
+	public boolean includeInResult(final GraphObject entity) {
+
+		// access control is applied by the node factory as well
+		return true;
+	}
+
+	@Override
+	public List<Long> getPrincipalIds() {
+		return principalIds;
+	}
+}
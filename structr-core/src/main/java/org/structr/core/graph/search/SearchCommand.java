@@ -30,7 +30,9 @@ import java.util.Map;
 import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.DatabaseService;
 import org.structr.api.Predicate;
+import org.structr.api.config.Settings;
 import org.structr.api.graph.PropertyContainer;
 import org.structr.api.index.Index;
 import org.structr.api.search.Occurrence;
@@ -39,6 +41,7 @@ import org.structr.api.util.Iterables;
 import org.structr.api.util.PagingIterable;
 import org.structr.api.util.ResultStream;
 import org.structr.common.GraphObjectComparator;
+import org.structr.common.PagingHelper;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.geo.GeoCodingResult;
@@ -47,8 +50,11 @@ import org.structr.core.GraphObject;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.AbstractRelationship;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.BatchPermissionResolver;
 import org.structr.core.graph.Factory;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.NodeReadTracker;
 import org.structr.core.graph.NodeServiceCommand;
 import org.structr.core.graph.RelationshipInterface;
 import org.structr.core.property.AbstractPrimitiveProperty;
@@ -99,6 +105,7 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 	private Class type                           = null;
 	private int pageSize                         = Integer.MAX_VALUE;
 	private int page                             = 1;
+	private String cursor                        = null;
 	private QueryContext queryContext            = new QueryContext();
 
 	public abstract Factory<S, T> getFactory(final SecurityContext securityContext, final boolean includeHidden, final boolean publicOnly, final int pageSize, final int page);
@@ -116,6 +123,12 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		boolean hasGraphSources      = false;
 		boolean hasSpatialSource     = false;
 
+		// results that are cached (e.g. rendered output) depend on the creation of nodes of the queried type
+		if (NodeReadTracker.isActive() && !isRelationshipSearch()) {
+
+			NodeReadTracker.recordQuery(type != null ? type.getSimpleName() : null);
+		}
+
 		if (securityContext.getUser(false) == null && !isRelationshipSearch()) {
 
 			rootGroup.add(new PropertySearchAttribute(GraphObject.visibleToPublicUsers, true, Occurrence.REQUIRED, true));
@@ -132,6 +145,13 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			rootGroup.add(new PropertySearchAttribute(NodeInterface.hidden,  true, Occurrence.FORBIDDEN, true));
 		}
 
+		// a slice can only be applied by the database if the query returns readable nodes only
+		if (!applySecurityFilter() && getQueryContext().isSliced()) {
+
+			logger.warn("slice() can only be used by privileged users - not applying slice.");
+			getQueryContext().unslice();
+		}
+
 		// At this point, all search attributes are ready
 		final List<SourceSearchAttribute> sources    = new ArrayList<>();
 		boolean hasEmptySearchFields                 = false;
@@ -223,10 +243,29 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 					factory.disablePaging();
 				}
 
+				// keyset pagination is only possible if the database sort order is the final order
+				final boolean useKeyset = cursor != null && !hasSpatialSource && !hasEmptySearchFields && !hasRelationshipVisibilitySearch && comparator == null;
+				if (useKeyset) {
+
+					if (!PagingHelper.applyCursor(getQueryContext(), cursor)) {
+						throw new FrameworkException(422, "Invalid cursor " + cursor);
+					}
+				}
+
 				// do query
-				indexHits = Iterables.map(factory, index.query(getQueryContext(), rootGroup));
+				indexHits = factory.bulkInstantiate(index.query(getQueryContext(), rootGroup));
 				//indexHits = new PagingIterable<>(Iterables.map(factory, index.query(getQueryContext(), rootGroup)), pageSize, page);
 
+				if (useKeyset) {
+
+					// the seek condition replaces the page offset
+					final PagingIterable<T> result = new PagingIterable<>(indexHits, pageSize, 1);
+
+					result.setCursorFunction(this::getCursor);
+
+					return result;
+				}
+
 				if (comparator != null) {
 
 					// pull results into memory
@@ -428,6 +467,12 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		return this;
 	}
 
+	@Override
+	public org.structr.core.app.Query<T> cursor(final String cursor) {
+		this.cursor = cursor;
+		return this;
+	}
+
 	@Override
 	public org.structr.core.app.Query<T> publicOnly() {
 		this.publicOnly = true;
@@ -853,6 +898,55 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 	}
 
 	// ----- private methods ----
+	/**
+	 * Adds search attributes that restrict the result to the nodes that are
+	 * readable for the current user, if enabled and possible. Returns true
+	 * if the query result contains readable nodes only.
+	 */
+	private boolean applySecurityFilter() {
+
+		final Principal user = securityContext.getUser(false);
+
+		if (securityContext.isSuperUser() || (user != null && user.isAdmin())) {
+			return true;
+		}
+
+		if (!Settings.QuerySecurityFilter.getValue() || isRelationshipSearch()) {
+			return false;
+		}
+
+		// anonymous users are already restricted to public nodes above
+		if (user == null) {
+			return true;
+		}
+
+		if (publicOnly) {
+
+			rootGroup.add(new PropertySearchAttribute(GraphObject.visibleToPublicUsers, true, Occurrence.REQUIRED, true));
+			return true;
+		}
+
+		final BatchPermissionResolver resolver = new BatchPermissionResolver(securityContext);
+		if (resolver.isAuthoritative() && !BatchPermissionResolver.hasCustomGrants(type)) {
+
+			rootGroup.add(new PermissionSearchAttribute(resolver.getPrincipalIds()));
+			return true;
+		}
+
+		// permissions can be propagated, resolved by custom queries or granted by
+		// overridden isGranted methods, fall back to the factory
+		return false;
+	}
+
+	private String getCursor(final T obj) {
+
+		final PropertyContainer container = obj.getPropertyContainer();
+		final DatabaseService db          = StructrApp.getInstance(securityContext).getDatabaseService();
+		final Object sortValue            = sortKey != null && !doNotSort ? container.getProperty(sortKey.jsonName()) : null;
+
+		return PagingHelper.encodeCursor(sortValue, db.unwrap(container.getId()));
+	}
+
 	private void assertPropertyIsIndexed(final PropertyKey key) {
 
 		if (key != null && !key.isIndexed() && key instanceof AbstractPrimitiveProperty) {
@@ -73,8 +73,7 @@ public class AllExpression extends Expression {
 			throw new FrameworkException(422, "Invalid all() expression in builtin function: too many parameters.");
 		}
 
-		expression.parent = this;
-		expression.level  = this.level + 1;
+		adopt(expression);
 	}
 
 	@Override
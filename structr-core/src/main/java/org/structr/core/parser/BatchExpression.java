@@ -36,10 +36,10 @@ public class BatchExpression extends Expression {
 
 	public static final String ERROR_MESSAGE_SLICE = "Usage: ${batch(statement, batchSize)}. Example: ${batch(delete(find('User')), 1000)}";
 
-	private Expression batchExpression = null;
-	private Expression sizeExpression  = null;
-	private boolean background         = false;
-	private int batchSize              = -1;
+	private final ThreadLocal<Integer> batchSize = new ThreadLocal<>();
+	private Expression batchExpression           = null;
+	private Expression sizeExpression            = null;
+	private boolean background                   = false;
 
 	public BatchExpression() {
 		super("batch");
@@ -61,8 +61,7 @@ public class BatchExpression extends Expression {
 			throw new FrameworkException(422, "Invalid batch() expression in builtin function: too many parameters.");
 		}
 
-		expression.parent = this;
-		expression.level  = this.level + 1;
+		adopt(expression);
 	}
 
 	@Override
@@ -75,8 +74,7 @@ public class BatchExpression extends Expression {
 		final Object value = sizeExpression.evaluate(ctx, entity);
 		if (value != null && value instanceof Number) {
 
-			// store batch size for children to use
-			this.batchSize = ((Number)value).intValue();
+			final int size = ((Number)value).intValue();
 
 			// initialize holders to store results from worker thread (must be final)
 			final StaticValue<FrameworkException> exception = new StaticValue<>(null);
@@ -84,11 +82,19 @@ public class BatchExpression extends Expression {
 
 			final Thread workerThread = new Thread(() -> {
 
+				// store batch size for children to use (per thread because
+				// expression trees are shared between evaluations)
+				batchSize.set(size);
+
 				try {
 					result.set(null, batchExpression.evaluate(ctx, entity));
 
 				} catch (FrameworkException fex) {
 					exception.set(null, fex);
+
+				} finally {
+
+					batchSize.remove();
 				}
 
 			});
@@ -122,6 +128,13 @@ public class BatchExpression extends Expression {
 
 	@Override
 	public int getBatchSize() {
-		return batchSize;
+
+		final Integer size = batchSize.get();
+		if (size != null) {
+
+			return size;
+		}
+
+		return -1;
 	}
 }
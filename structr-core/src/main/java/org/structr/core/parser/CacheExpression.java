@@ -64,8 +64,7 @@ public class CacheExpression extends Expression {
 			throw new FrameworkException(422, "Invalid cache() expression in builtin function: too many parameters.");
 		}
 
-		expression.parent = this;
-		expression.level  = this.level + 1;
+		adopt(expression);
 	}
 
 	@Override
@@ -80,8 +80,7 @@ public class EachExpression extends Expression {
 			throw new FrameworkException(422, "Invalid each() expression in builtin function: too many parameters.");
 		}
 
-		expression.parent = this;
-		expression.level  = this.level + 1;
+		adopt(expression);
 	}
 
 	@Override
@@ -18,7 +18,8 @@
  */
 package org.structr.core.parser;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.error.UnlicensedScriptException;
@@ -26,15 +27,21 @@ import org.structr.core.GraphObject;
 import org.structr.schema.action.ActionContext;
 
 /**
+ * Base class for the nodes of a parsed StructrScript expression.
  *
- *
+ * An expression tree is built by the parser and then sealed, which makes
+ * it immutable. Sealed trees can be cached and evaluated by multiple
+ * threads concurrently, so evaluation must not store any state in the
+ * expression objects.
  */
 public abstract class Expression {
 
-	protected List<Expression> expressions = new LinkedList<>();
-	protected Expression parent            = null;
-	protected String name                  = null;
-	protected int level                    = 0;
+	private final List<Expression> children = new ArrayList<>();
+	protected List<Expression> expressions  = new ArrayList<>();
+	protected Expression parent             = null;
+	protected String name                   = null;
+	protected int level                     = 0;
+	private boolean sealed                  = false;
 
 	public Expression() {
 		this(null);
@@ -50,8 +57,7 @@ public abstract class Expression {
 
 	public void add(final Expression expression) throws FrameworkException {
 
-		expression.parent = this;
-		expression.level  = this.level + 1;
+		adopt(expression);
 
 		this.expressions.add(expression);
 	}
@@ -81,6 +87,26 @@ public abstract class Expression {
 		return !expressions.isEmpty();
 	}
 
+	/**
+	 * Makes this expression and all its children immutable.
+	 */
+	public void seal() {
+
+		if (!sealed) {
+
+			this.expressions = Collections.unmodifiableList(expressions);
+			this.sealed      = true;
+
+			for (final Expression child : children) {
+				child.seal();
+			}
+		}
+	}
+
+	public boolean isSealed() {
+		return sealed;
+	}
+
 	public boolean isBatched() {
 		return parent != null && parent.isBatched();
 	}
@@ -96,4 +122,23 @@ public abstract class Expression {
 
 	public abstract Object evaluate(final ActionContext ctx, final GraphObject entity) throws FrameworkException, UnlicensedScriptException;
 	public abstract Object transform(final ActionContext ctx, final GraphObject entity, final Object source) throws FrameworkException, UnlicensedScriptException;
+
+	// ----- protected methods -----
+	/**
+	 * Registers the given expression as a child of this expression,
+	 * must be called by all implementations of add().
+	 *
+	 * @param expression
+	 */
+	protected void adopt(final Expression expression) {
+
+		if (sealed) {
+			throw new IllegalStateException("Expression " + name + " is sealed and cannot be modified.");
+		}
+
+		expression.parent = this;
+		expression.level  = this.level + 1;
+
+		children.add(expression);
+	}
 }
@@ -58,8 +58,7 @@ public class FilterExpression extends Expression {
 			throw new FrameworkException(422, "Invalid filter() expression in builtin function: too many parameters.");
 		}
 
-		expression.parent = this;
-		expression.level  = this.level + 1;
+		adopt(expression);
 	}
 
 	@Override
@@ -48,6 +48,16 @@ public class FunctionValueExpression extends Expression {
 		return buf.toString();
 	}
 
+	@Override
+	public void seal() {
+
+		super.seal();
+
+		// wrapped expressions are not children of this expression
+		functionExpression.seal();
+		valueExpression.seal();
+	}
+
 	@Override
 	public Object evaluate(final ActionContext ctx, final GraphObject entity) throws FrameworkException, UnlicensedScriptException {
 
@@ -73,8 +73,7 @@ public class SliceExpression extends Expression {
 			throw new FrameworkException(422, "Invalid slice() expression in builtin function: too many parameters.");
 		}
 
-		expression.parent = this;
-		expression.level  = this.level + 1;
+		adopt(expression);
 	}
 
 	@Override
@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
 import org.structr.api.Predicate;
 import org.structr.api.search.SortType;
 import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
@@ -77,6 +78,10 @@ public class CypherQueryProperty extends AbstractReadOnlyProperty<Iterable<Graph
 
 				return StructrApp.getInstance(securityContext).command(NativeQueryCommand.class).execute(query, parameters);
 
+			} catch (FrameworkException fex) {
+
+				logger.warn("Unable to evaluate Cypher query of property {}: {}", jsonName(), fex.getMessage());
+
 			} catch (Throwable t) {
 				logger.warn("", t);
 			}
@@ -19,25 +19,27 @@
 package org.structr.core.script;
 
 import java.io.StringWriter;
-import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.script.*;
-import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.StringUtils;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextFactory;
 import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
 import org.mozilla.javascript.Undefined;
 import org.mozilla.javascript.WrappedException;
 import org.renjin.script.RenjinScriptEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.api.util.FixedSizeCache;
 import org.structr.api.util.Iterables;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -55,9 +57,10 @@ import org.structr.schema.parser.DatePropertyParser;
  */
 public class Scripting {
 
-	private static final Logger logger                       = LoggerFactory.getLogger(Scripting.class.getName());
-	private static final Pattern ScriptEngineExpression      = Pattern.compile("^\\$\\{(\\w+)\\{(.*)\\}\\}$", Pattern.DOTALL);
-	private static final Map<String, Script> compiledScripts = Collections.synchronizedMap(new LRUMap<>(10000));
+	private static final Logger logger                                            = LoggerFactory.getLogger(Scripting.class.getName());
+	private static final Pattern ScriptEngineExpression                           = Pattern.compile("^\\$\\{(\\w+)\\{(.*)\\}\\}$", Pattern.DOTALL);
+	private static final FixedSizeCache<String, FutureTask<Script>> compiledScripts = new FixedSizeCache<>(10000);
+	private static volatile ScriptableObject sharedScope                          = null;
 
 	public static String replaceVariables(final ActionContext actionContext, final GraphObject entity, final Object rawValue) throws FrameworkException {
 		return replaceVariables(actionContext, entity, rawValue, false);
@@ -234,7 +237,7 @@ public class Scripting {
 
 		try {
 
-			final Scriptable scope = scriptingContext.initStandardObjects();
+			final Scriptable scope             = createScope(scriptingContext);
 			final StructrScriptable scriptable = new StructrScriptable(actionContext, entity, scriptingContext);
 
 			// don't wrap Java primitives
@@ -418,21 +421,81 @@ public class Scripting {
 		return buf.toString();
 	}
 
+	/**
+	 * Returns the compiled script for the given source code. Scripts are
+	 * compiled outside of any global lock, concurrent requests for the
+	 * same source wait for the first compilation to finish.
+	 *
+	 * @param context
+	 * @param source
+	 * @param sourceName
+	 * @param lineNo
+	 * @return the compiled script
+	 */
 	public static Script compileOrGetCached(final Context context, final String source, final String sourceName, final int lineNo) {
 
-		synchronized (compiledScripts) {
+		FutureTask<Script> task = compiledScripts.get(source);
+		if (task == null) {
+
+			final FutureTask<Script> newTask = new FutureTask<>(() -> context.compileString(source, sourceName, lineNo, null));
+
+			task = compiledScripts.putIfAbsent(source, newTask);
+			if (task == newTask) {
+
+				// compile in the current thread, which has an entered context
+				newTask.run();
+			}
+		}
+
+		try {
+
+			return task.get();
+
+		} catch (InterruptedException iex) {
+
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(iex);
+
+		} catch (ExecutionException eex) {
+
+			// don't cache compilation errors
+			compiledScripts.remove(source);
 
-			Script script = compiledScripts.get(source);
-			if (script == null) {
+			final Throwable cause = eex.getCause();
+			if (cause instanceof RuntimeException) {
 
-				script = context.compileString(source, sourceName, lineNo, null);
-				compiledScripts.put(source, script);
+				throw (RuntimeException)cause;
 			}
 
-			return script;
+			throw new RuntimeException(cause);
 		}
 	}
 
+	/**
+	 * Creates a new top-level scope for a script execution. If the shared
+	 * scope is enabled, the new scope inherits the sealed standard objects
+	 * from the shared scope instead of creating its own copy.
+	 *
+	 * @param context
+	 * @return the new scope
+	 */
+	public static Scriptable createScope(final Context context) {
+
+		if (Settings.SharedJavascriptScope.getValue()) {
+
+			final ScriptableObject shared = getSharedScope(context);
+			final Scriptable scope        = context.newObject(shared);
+
+			// variables declared by the script are stored in the new scope
+			scope.setPrototype(shared);
+			scope.setParentScope(null);
+
+			return scope;
+		}
+
+		return context.initStandardObjects();
+	}
+
 	// this is only public to be testable :(
 	public static List<String> extractScripts(final String source) {
 
@@ -560,6 +623,32 @@ public class Scripting {
 	}
 
 	// ----- private methods -----
+	private static ScriptableObject getSharedScope(final Context context) {
+
+		ScriptableObject scope = sharedScope;
+		if (scope == null) {
+
+			synchronized (Scripting.class) {
+
+				scope = sharedScope;
+				if (scope == null) {
+
+					scope = context.initStandardObjects(null, true);
+
+					// force initialization of lazily loaded objects before the
+					// scope is shared between threads
+					context.evaluateString(scope, "RegExp; getClass; java; Packages; JavaAdapter;", "init", 1, null);
+
+					scope.sealObject();
+
+					sharedScope = scope;
+				}
+			}
+		}
+
+		return scope;
+	}
+
 	private static String toString(final Object obj) {
 
 		if (obj instanceof Iterable) {
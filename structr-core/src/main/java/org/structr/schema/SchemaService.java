@@ -39,6 +39,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,6 +91,7 @@ public class SchemaService implements Service {
 	private static final JsonSchema dynamicSchema                 = StructrSchema.newInstance(DynamicSchemaRootURI);
 	private static final AtomicBoolean compiling                  = new AtomicBoolean(false);
 	private static final AtomicBoolean updating                   = new AtomicBoolean(false);
+	private static final AtomicLong schemaVersion                 = new AtomicLong(0L);
 	private static final Set<String> blacklist                    = new LinkedHashSet<>();
 	private static GraphQLSchema graphQLSchema                    = null;
 
@@ -116,6 +118,17 @@ public class SchemaService implements Service {
 		return dynamicSchema;
 	}
 
+	/**
+	 * Returns a number that is incremented on every successful schema
+	 * reload, so that caches of schema-dependent information can detect
+	 * that they are outdated.
+	 *
+	 * @return the schema version
+	 */
+	public static long getSchemaVersion() {
+		return schemaVersion.get();
+	}
+
 	public static synchronized GraphQLSchema getGraphQLSchema() {
 		return graphQLSchema;
 	}
@@ -316,6 +329,9 @@ public class SchemaService implements Service {
 							// inject views in configuration provider
 							config.registerDynamicViews(dynamicViews);
 
+							// invalidate caches that depend on types and views
+							schemaVersion.incrementAndGet();
+
 							if (Services.calculateHierarchy() || !Services.isTesting()) {
 
 								calculateHierarchy(schemaNodes);
@@ -23,6 +23,7 @@ import java.net.URI;
 import java.util.LinkedList;
 import java.util.List;
 import javax.tools.SimpleJavaFileObject;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.parboiled.common.StringUtils;
 
 /**
@@ -91,6 +92,15 @@ public class SourceFile extends SimpleJavaFileObject {
 		return StringUtils.join(lines, "\n");
 	}
 
+	/**
+	 * Returns the SHA-256 hash of the source code of this file.
+	 *
+	 * @return the hex-encoded hash
+	 */
+	public String getSourceHash() {
+		return DigestUtils.sha256Hex(getContent());
+	}
+
 	public void indent() {
 		indentLevel++;
 	}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.schema.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.VersionHelper;
+
+/**
+ * On-disk cache for the byte code of dynamic classes.
+ *
+ * Each entry contains the byte code of a dynamic class and its inner
+ * classes, and is stored under a key that identifies the source code the
+ * class was compiled from (see {@link NodeExtender}), so entries never
+ * need to be invalidated. Entries that are not used by the current
+ * schema are removed by {@link #retain(Collection)}.
+ */
+public class BytecodeCache {
+
+	private static final Logger logger    = LoggerFactory.getLogger(BytecodeCache.class.getName());
+	private static final String EXTENSION = ".classes";
+	private static final int MAGIC        = 0x53434331;
+	private static boolean logged         = false;
+
+	private Path directory = null;
+
+	public BytecodeCache(final Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the cache in the configured directory, or null if the cache
+	 * is disabled.
+	 *
+	 * The cache keys contain the Structr version, so the cache is disabled
+	 * as well if the build can't be determined, e.g. when Structr is not
+	 * run from its jar files.
+	 *
+	 * @return the cache or null
+	 */
+	public static BytecodeCache getInstance() {
+
+		if (Settings.SchemaCompilationCache.getValue()) {
+
+			if (VersionHelper.isBuildKnown()) {
+
+				return new BytecodeCache(Paths.get(Settings.getFullSettingPath(Settings.SchemaCachePath)));
+			}
+
+			if (!logged) {
+
+				logger.info("Unable to determine the Structr build, schema compilation cache is disabled.");
+				logged = true;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Loads the byte code stored under the given key.
+	 *
+	 * @param key
+	 * @return a map of binary class names and byte code, or null
+	 */
+	public Map<String, byte[]> load(final String key) {
+
+		final Path file = directory.resolve(key + EXTENSION);
+		if (Files.isRegularFile(file)) {
+
+			try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+
+				if (in.readInt() == MAGIC) {
+
+					final Map<String, byte[]> classes = new LinkedHashMap<>();
+					final int count                   = in.readInt();
+
+					for (int i=0; i<count; i++) {
+
+						final String name  = in.readUTF();
+						final byte[] bytes = new byte[in.readInt()];
+
+						in.readFully(bytes);
+
+						classes.put(name, bytes);
+					}
+
+					return classes;
+				}
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to read cached byte code from {}: {}", file, ioex.getMessage());
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Stores the given byte code under the given key.
+	 *
+	 * @param key
+	 * @param classes a map of binary class names and byte code
+	 */
+	public void store(final String key, final Map<String, byte[]> classes) {
+
+		if (classes.isEmpty()) {
+			return;
+		}
+
+		try {
+
+			Files.createDirectories(directory);
+
+			// write to a temporary file first so that concurrent readers
+			// never see an incomplete entry
+			final Path tmp = Files.createTempFile(directory, key, ".tmp");
+
+			try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+
+				out.writeInt(MAGIC);
+				out.writeInt(classes.size());
+
+				for (final Map.Entry<String, byte[]> entry : classes.entrySet()) {
+
+					final byte[] bytes = entry.getValue();
+
+					out.writeUTF(entry.getKey());
+					out.writeInt(bytes.length);
+					out.write(bytes);
+				}
+			}
+
+			Files.move(tmp, directory.resolve(key + EXTENSION), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to store byte code in {}: {}", directory, ioex.getMessage());
+		}
+	}
+
+	/**
+	 * Removes all entries except the ones with the given keys.
+	 *
+	 * @param keys the keys to keep
+	 */
+	public void retain(final Collection<String> keys) {
+
+		if (!Files.isDirectory(directory)) {
+			return;
+		}
+
+		try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+
+			for (final Path file : files) {
+
+				final String name = file.getFileName().toString();
+				final String key  = name.substring(0, name.length() - EXTENSION.length());
+
+				if (!keys.contains(key)) {
+
+					Files.deleteIfExists(file);
+				}
+			}
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to remove unused byte code from {}: {}", directory, ioex.getMessage());
+		}
+	}
+}
@@ -20,25 +20,31 @@ package org.structr.schema.compiler;
 
 import java.io.IOException;
 import java.security.SecureClassLoader;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.tools.FileObject;
 import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.JavaFileObject.Kind;
 import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
 
 /**
  *
  *
  */
-public class ClassFileManager extends ForwardingJavaFileManager {
+public class ClassFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
 
 	/**
-	 * Instance of JavaClassObject that will store the compiled byte code of
-	 * our class
+	 * Instances of JavaClassObject that store the compiled byte code of
+	 * our classes. The byte code is kept across compilations so that
+	 * unchanged classes don't need to be compiled again.
 	 */
-	private final Map<String, JavaClassObject> objects = new LinkedHashMap<>();
+	private final Map<String, JavaClassObject> objects = new ConcurrentHashMap<>();
 
 	/**
 	 * Will initialize the manager with the specified standard java file
@@ -97,4 +103,116 @@ public class ClassFileManager extends ForwardingJavaFileManager {
 		
 		return obj;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Adds the byte code of the dynamic classes we already have to the
+	 * classes the compiler finds in the dynamic package, so that only the
+	 * changed classes need to be passed to the compiler.
+	 *
+	 * @param location
+	 * @param packageName
+	 * @param kinds
+	 * @param recurse
+	 * @return file objects
+	 * @throws IOException
+	 */
+	@Override
+	public Iterable<JavaFileObject> list(final Location location, final String packageName, final Set<Kind> kinds, final boolean recurse) throws IOException {
+
+		final Iterable<JavaFileObject> files = super.list(location, packageName, kinds, recurse);
+
+		if (StandardLocation.CLASS_PATH.equals(location) && kinds.contains(Kind.CLASS)) {
+
+			final List<JavaFileObject> result = new ArrayList<>();
+			final String prefix               = packageName + ".";
+
+			for (final JavaClassObject obj : objects.values()) {
+
+				final String name = obj.getBinaryName();
+
+				if (name.startsWith(prefix) && (recurse || name.indexOf('.', prefix.length()) < 0)) {
+					result.add(obj);
+				}
+			}
+
+			if (!result.isEmpty()) {
+
+				for (final JavaFileObject file : files) {
+					result.add(file);
+				}
+
+				return result;
+			}
+		}
+
+		return files;
+	}
+
+	@Override
+	public String inferBinaryName(final Location location, final JavaFileObject file) {
+
+		if (file instanceof JavaClassObject) {
+			return ((JavaClassObject)file).getBinaryName();
+		}
+
+		return super.inferBinaryName(location, file);
+	}
+
+	/**
+	 * Returns the byte code of the given class and its inner classes.
+	 *
+	 * @param fqcn the name of the class
+	 * @return a map of binary class names and byte code
+	 */
+	public Map<String, byte[]> getClasses(final String fqcn) {
+
+		final Map<String, byte[]> classes = new LinkedHashMap<>();
+
+		for (final JavaClassObject obj : objects.values()) {
+
+			final String name = obj.getBinaryName();
+
+			if (isClassOrInnerClass(name, fqcn)) {
+				classes.put(name, obj.getBytes());
+			}
+		}
+
+		return classes;
+	}
+
+	/**
+	 * Adds existing byte code, e.g. from the bytecode cache.
+	 *
+	 * @param classes a map of binary class names and byte code
+	 */
+	public void addClasses(final Map<String, byte[]> classes) {
+
+		for (final Map.Entry<String, byte[]> entry : classes.entrySet()) {
+
+			final String name = entry.getKey();
+
+			objects.put(name, new JavaClassObject(name, entry.getValue()));
+		}
+	}
+
+	/**
+	 * Removes the byte code of the given class and its inner classes.
+	 *
+	 * @param fqcn the name of the class
+	 */
+	public void removeClasses(final String fqcn) {
+		objects.keySet().removeIf(name -> isClassOrInnerClass(name, fqcn));
+	}
+
+	/**
+	 * Removes all byte code.
+	 */
+	public void clear() {
+		objects.clear();
+	}
+
+	// ----- private methods -----
+	private boolean isClassOrInnerClass(final String name, final String fqcn) {
+		return name.equals(fqcn) || name.startsWith(fqcn + "$");
+	}
+}
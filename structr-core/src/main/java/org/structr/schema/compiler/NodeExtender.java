@@ -20,29 +20,35 @@ package org.structr.schema.compiler;
 
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.tools.Diagnostic;
 import javax.tools.Diagnostic.Kind;
 import javax.tools.DiagnosticListener;
 import javax.tools.JavaCompiler;
-import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.ToolProvider;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.Predicate;
 import org.structr.api.config.Settings;
+import org.structr.common.VersionHelper;
 import org.structr.common.error.DiagnosticErrorToken;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.core.Services;
@@ -54,27 +60,36 @@ import org.structr.schema.SourceFile;
 import org.structr.schema.SourceLine;
 
 /**
+ * Compiles the source code of the dynamic schema types.
  *
- *
+ * Compilation is incremental: every type is identified by a key that is
+ * derived from its source code and the source code of all dynamic types it
+ * depends on, so only the types that changed and the types that depend on
+ * them are passed to the compiler, and the byte code of all other types is
+ * reused. The byte code is also stored in a {@link BytecodeCache} under
+ * the same key, so a restart with an unchanged schema doesn't need to
+ * invoke the compiler at all.
  */
 public class NodeExtender {
 
 	private static final Logger logger   = LoggerFactory.getLogger(NodeExtender.class.getName());
 
-	private static final JavaCompiler compiler       = ToolProvider.getSystemJavaCompiler();
-	private static final JavaFileManager fileManager = new ClassFileManager(compiler.getStandardFileManager(null, null, null));
-	private static final ClassLoader classLoader     = fileManager.getClassLoader(null);
-	private static final Map<String, Class> classes  = new TreeMap<>();
+	private static final Pattern IDENTIFIER           = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+	private static final JavaCompiler compiler        = ToolProvider.getSystemJavaCompiler();
+	private static final ClassFileManager fileManager = new ClassFileManager(compiler.getStandardFileManager(null, null, null));
+	private static final ClassLoader classLoader      = fileManager.getClassLoader(null);
+	private static final Map<String, Class> classes   = new TreeMap<>();
+	private static final Map<String, String> keys     = new HashMap<>();
 
-	private List<SourceFile> sources     = null;
-	private Set<String> fqcns            = null;
-	private String initiatedBySessionId  = null;
+	private Map<String, SourceFile> sourceFiles = null;
+	private List<SourceFile> sources            = null;
+	private String initiatedBySessionId         = null;
 
 	public NodeExtender(final String initiatedBySessionId) {
 
 		this.initiatedBySessionId = initiatedBySessionId;
+		this.sourceFiles          = new LinkedHashMap<>();
 		this.sources              = new ArrayList<>();
-		this.fqcns                = new LinkedHashSet<>();
 	}
 
 	public static ClassLoader getClassLoader() {
@@ -96,7 +111,7 @@ public class NodeExtender {
 			final String packageName = JarConfigurationProvider.DYNAMIC_TYPES_PACKAGE;
 
 			sources.add(sourceFile);
-			fqcns.add(packageName.concat(".".concat(className)));
+			sourceFiles.put(packageName.concat(".".concat(className)), sourceFile);
 
 			if (Settings.LogSchemaOutput.getValue()) {
 
@@ -118,19 +133,87 @@ public class NodeExtender {
 
 		if (!sources.isEmpty()) {
 
-			logger.info("Compiling {} dynamic entities...", sources.size());
+			final BytecodeCache cache         = BytecodeCache.getInstance();
+			final Map<String, String> newKeys = getKeys();
+			final List<SourceFile> changed    = new ArrayList<>();
+			final List<String> changedFqcns   = new ArrayList<>();
+			int cached                        = 0;
+
+			// remove byte code of types that were removed or have changed
+			for (final String fqcn : new ArrayList<>(keys.keySet())) {
+
+				if (!keys.get(fqcn).equals(newKeys.get(fqcn))) {
+
+					fileManager.removeClasses(fqcn);
+					keys.remove(fqcn);
+				}
+			}
+
+			for (final Map.Entry<String, SourceFile> entry : sourceFiles.entrySet()) {
+
+				final String fqcn = entry.getKey();
+				final String key  = newKeys.get(fqcn);
+
+				if (!keys.containsKey(fqcn)) {
+
+					final Map<String, byte[]> bytecode = cache != null ? cache.load(key) : null;
+					if (bytecode != null) {
+
+						fileManager.addClasses(bytecode);
+						keys.put(fqcn, key);
+						cached++;
+
+					} else {
+
+						// remove leftovers of earlier failed compilations
+						fileManager.removeClasses(fqcn);
+
+						changed.add(entry.getValue());
+						changedFqcns.add(fqcn);
+					}
+				}
+			}
+
+			Boolean success = true;
+
+			if (!changed.isEmpty()) {
+
+				logger.info("Compiling {} of {} dynamic entities ({} loaded from cache)...", changed.size(), sources.size(), cached);
+
+				final long t0 = System.currentTimeMillis();
+
+				success = compiler.getTask(errorWriter, fileManager, new Listener(errorBuffer), Arrays.asList("-g"), null, changed).call();
+
+				logger.info("Compiling done in {} ms", System.currentTimeMillis() - t0);
+
+				if (success) {
 
-			final long t0 = System.currentTimeMillis();
+					for (final String fqcn : changedFqcns) {
 
-			Boolean success = compiler.getTask(errorWriter, fileManager, new Listener(errorBuffer), Arrays.asList("-g"), null, sources).call();
+						final String key = newKeys.get(fqcn);
 
-			logger.info("Compiling done in {} ms", System.currentTimeMillis() - t0);
+						keys.put(fqcn, key);
+
+						if (cache != null) {
+							cache.store(key, fileManager.getClasses(fqcn));
+						}
+					}
+				}
+
+			} else {
+
+				logger.info("{} dynamic entities unchanged ({} loaded from cache), no compilation needed", sources.size(), cached);
+			}
 
 			if (success) {
 
+				if (cache != null) {
+					cache.retain(newKeys.values());
+				}
+
 				final ClassLoader loader = fileManager.getClassLoader(null);
 
-				for (final String fqcn : fqcns) {
+				for (final String fqcn : sourceFiles.keySet()) {
 
 					try {
 
@@ -141,6 +224,10 @@ public class NodeExtender {
 						logger.warn("Unable to load dynamic entity {}: {}", new Object[] { fqcn, t.toString() });
 						logger.warn("", t);
 
+						// start from scratch next time
+						fileManager.clear();
+						keys.clear();
+
 						success = false;
 					}
 				}
@@ -178,6 +265,79 @@ public class NodeExtender {
 		this.initiatedBySessionId = initiatedBySessionId;
 	}
 
+	// ----- private methods -----
+	/**
+	 * Returns a key for each type that identifies its source code, the
+	 * source code of all dynamic types it depends on (directly or
+	 * indirectly) and the environment it is compiled in. When the source
+	 * code of a type changes, the keys of all types that depend on it
+	 * change as well.
+	 */
+	private Map<String, String> getKeys() {
+
+		final Map<String, Set<String>> dependencies = new HashMap<>();
+		final Map<String, String> simpleNames       = new HashMap<>();
+		final Map<String, String> hashes            = new HashMap<>();
+		final Map<String, String> result            = new HashMap<>();
+		final String environment                    = System.getProperty("java.version") + " " + VersionHelper.getFullVersionInfo();
+
+		for (final Map.Entry<String, SourceFile> entry : sourceFiles.entrySet()) {
+
+			final String fqcn = entry.getKey();
+
+			simpleNames.put(fqcn.substring(fqcn.lastIndexOf('.') + 1), fqcn);
+			hashes.put(fqcn, entry.getValue().getSourceHash());
+		}
+
+		// a dynamic type depends on all dynamic types whose name occurs in its source code
+		for (final Map.Entry<String, SourceFile> entry : sourceFiles.entrySet()) {
+
+			final Set<String> direct = new TreeSet<>();
+			final Matcher matcher    = IDENTIFIER.matcher(entry.getValue().getContent());
+
+			while (matcher.find()) {
+
+				final String fqcn = simpleNames.get(matcher.group());
+				if (fqcn != null) {
+
+					direct.add(fqcn);
+				}
+			}
+
+			dependencies.put(entry.getKey(), direct);
+		}
+
+		for (final String fqcn : sourceFiles.keySet()) {
+
+			// collect transitive dependencies, which may contain cycles
+			final Set<String> all     = new TreeSet<>();
+			final Deque<String> queue = new ArrayDeque<>();
+			final StringBuilder buf   = new StringBuilder(environment);
+
+			queue.add(fqcn);
+
+			while (!queue.isEmpty()) {
+
+				final String next = queue.poll();
+
+				if (all.add(next)) {
+
+					queue.addAll(dependencies.get(next));
+				}
+			}
+
+			buf.append("\n").append(fqcn).append(" ").append(hashes.get(fqcn));
+
+			for (final String dependency : all) {
+				buf.append("\n").append(dependency).append(" ").append(hashes.get(dependency));
+			}
+
+			result.put(fqcn, DigestUtils.sha256Hex(buf.toString()));
+		}
+
+		return result;
+	}
+
 	private static class Listener implements DiagnosticListener<JavaFileObject> {
 
 		private ErrorBuffer errorBuffer = null;
@@ -18,10 +18,12 @@
  */
 package org.structr.test.common;
 
+import java.util.ArrayList;
 import java.util.List;
 import org.testng.annotations.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.api.graph.Direction;
 import org.structr.api.graph.Relationship;
 import org.structr.api.util.Iterables;
@@ -32,12 +34,14 @@ import org.structr.common.error.ErrorToken;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.app.App;
+import org.structr.core.app.Query;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Group;
 import org.structr.core.entity.MailTemplate;
 import org.structr.core.entity.Principal;
 import org.structr.core.entity.ResourceAccess;
+import org.structr.test.core.entity.TestFourteen;
 import org.structr.test.core.entity.TestOne;
 import org.structr.core.entity.relationship.Ownership;
 import org.structr.core.entity.relationship.PrincipalOwnsNode;
@@ -1610,6 +1614,479 @@ public class AccessControlTest extends StructrTest {
 	}
 
 
+	@Test
+	public void testPermissionCacheInvalidation() {
+
+		// remove auto-generated resource access objects
+		clearResourceAccess();
+
+		Principal owner = null;
+		Principal user  = null;
+		Group group     = null;
+		TestOne t1      = null;
+		TestOne t2      = null;
+
+		try (final Tx tx = app.tx()) {
+
+			owner = app.create(Principal.class, "owner");
+			user  = app.create(Principal.class, "user");
+			group = app.create(Group.class, "group");
+
+			final App ownerApp = StructrApp.getInstance(SecurityContext.getInstance(owner, AccessMode.Backend));
+
+			t1 = ownerApp.create(TestOne.class, "t1");
+			t2 = ownerApp.create(TestOne.class, "t2");
+
+			t1.grant(Permission.read, user);
+			t2.grant(Permission.read, user);
+
+			tx.success();
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		final App userApp  = StructrApp.getInstance(SecurityContext.getInstance(user, AccessMode.Backend));
+		final App ownerApp = StructrApp.getInstance(SecurityContext.getInstance(owner, AccessMode.Backend));
+
+		try (final Tx tx = userApp.tx()) {
+
+			// resolve permissions once so that the results are cached
+			assertEquals("Both nodes should be visible to the user", 2, userApp.nodeQuery(TestOne.class).getAsList().size());
+			tx.success();
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = ownerApp.tx()) {
+
+			t1.revoke(Permission.read, user);
+			tx.success();
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = userApp.tx()) {
+
+			final List<TestOne> result = userApp.nodeQuery(TestOne.class).getAsList();
+
+			assertEquals("Revoking a permission must invalidate the cached result", 1, result.size());
+			assertEquals("Wrong node visible after revoke", t2.getUuid(), result.get(0).getUuid());
+
+			tx.success();
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = ownerApp.tx()) {
+
+			// grant access via group, then add user to the group
+			t1.grant(Permission.read, group);
+			group.addMember(user);
+
+			tx.success();
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = userApp.tx()) {
+
+			assertEquals("Group membership change must invalidate the cached result", 2, userApp.nodeQuery(TestOne.class).getAsList().size());
+			tx.success();
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testBatchPermissionResolution() {
+
+		// remove auto-generated resource access objects
+		clearResourceAccess();
+
+		final List<String> expected = new ArrayList<>();
+		Principal user              = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final Principal owner = app.create(Principal.class, "owner");
+			final Group group     = app.create(Group.class, "group");
+			final App ownerApp    = StructrApp.getInstance(SecurityContext.getInstance(owner, AccessMode.Backend));
+
+			user = app.create(Principal.class, "user");
+
+			group.addMember(user);
+
+			// more nodes than fit into the first batches
+			for (int i=0; i<300; i++) {
+
+				final TestOne test = ownerApp.create(TestOne.class, "test" + i);
+
+				switch (i % 3) {
+
+					case 0:
+						test.grant(Permission.read, user);
+						expected.add(test.getUuid());
+						break;
+
+					case 1:
+						test.grant(Permission.read, group);
+						expected.add(test.getUuid());
+						break;
+
+					default:
+						// not readable for user
+						break;
+				}
+			}
+
+			tx.success();
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		final App userApp = StructrApp.getInstance(SecurityContext.getInstance(user, AccessMode.Backend));
+
+		try (final Tx tx = userApp.tx()) {
+
+			final List<TestOne> result = userApp.nodeQuery(TestOne.class).getAsList();
+
+			assertEquals("Invalid number of readable nodes", expected.size(), result.size());
+
+			for (final TestOne test : result) {
+				assertTrue("Node should not be readable", expected.contains(test.getUuid()));
+			}
+
+			assertEquals("Invalid page size", 20, userApp.nodeQuery(TestOne.class).pageSize(20).page(3).getAsList().size());
+
+			tx.success();
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testBatchPermissionResolutionForOwnGroups() {
+
+		// remove auto-generated resource access objects
+		clearResourceAccess();
+
+		final List<String> expected = new ArrayList<>();
+		Principal user              = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final Principal owner = app.create(Principal.class, "owner");
+			final App ownerApp    = StructrApp.getInstance(SecurityContext.getInstance(owner, AccessMode.Backend));
+			final Group group1    = ownerApp.create(Group.class, "group1");
+			final Group group2    = ownerApp.create(Group.class, "group2");
+
+			// not readable for user
+			ownerApp.create(Group.class, "group3");
+
+			user = app.create(Principal.class, "user");
+
+			// direct and transitive membership
+			group1.addMember(user);
+			group2.addMember(group1);
+
+			expected.add(group1.getUuid());
+			expected.add(group2.getUuid());
+
+			tx.success();
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		final App userApp = StructrApp.getInstance(SecurityContext.getInstance(user, AccessMode.Backend));
+
+		try (final Tx tx = userApp.tx()) {
+
+			final List<Group> result = userApp.nodeQuery(Group.class).getAsList();
+
+			assertEquals("Members should be able to read their own groups", expected.size(), result.size());
+
+			for (final Group group : result) {
+				assertTrue("Group should not be readable", expected.contains(group.getUuid()));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testBatchPermissionResolutionWithCustomGrants() {
+
+		// remove auto-generated resource access objects
+		clearResourceAccess();
+
+		final List<String> expected = new ArrayList<>();
+		Principal user              = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final Principal owner = app.create(Principal.class, "owner");
+			final App ownerApp    = StructrApp.getInstance(SecurityContext.getInstance(owner, AccessMode.Backend));
+
+			user = app.create(Principal.class, "user");
+
+			for (int i=0; i<100; i++) {
+
+				final TestFourteen test = ownerApp.create(TestFourteen.class, "test" + i);
+
+				if (i % 2 == 0) {
+
+					// readable only through the overridden isGranted method
+					test.setProperty(TestFourteen.sharedWith, "user");
+					expected.add(test.getUuid());
+				}
+			}
+
+			tx.success();
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		final App userApp           = StructrApp.getInstance(SecurityContext.getInstance(user, AccessMode.Backend));
+		final boolean securityFilter = Settings.QuerySecurityFilter.getValue();
+
+		try {
+
+			// with and without the permission filter in the database query
+			for (final boolean filter : new boolean[] { false, true }) {
+
+				Settings.QuerySecurityFilter.setValue(filter);
+
+				try (final Tx tx = userApp.tx()) {
+
+					final List<TestFourteen> result = userApp.nodeQuery(TestFourteen.class).getAsList();
+
+					assertEquals("Permission resolution must respect overridden isGranted methods", expected.size(), result.size());
+
+					for (final TestFourteen test : result) {
+						assertTrue("Node should not be readable", expected.contains(test.getUuid()));
+					}
+
+					tx.success();
+				}
+			}
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+
+		} finally {
+
+			Settings.QuerySecurityFilter.setValue(securityFilter);
+		}
+	}
+
+	@Test
+	public void testSecurityFilterInQuery() {
+
+		// remove auto-generated resource access objects
+		clearResourceAccess();
+
+		final List<String> expected = new ArrayList<>();
+		Principal user              = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final Principal owner = app.create(Principal.class, "owner");
+			final Group group     = app.create(Group.class, "group");
+			final App ownerApp    = StructrApp.getInstance(SecurityContext.getInstance(owner, AccessMode.Backend));
+
+			user = app.create(Principal.class, "user");
+
+			group.addMember(user);
+
+			for (int i=0; i<30; i++) {
+
+				final TestOne test = ownerApp.create(TestOne.class, "test" + i);
+
+				switch (i % 3) {
+
+					case 0:
+						test.grant(Permission.read, user);
+						expected.add(test.getUuid());
+						break;
+
+					case 1:
+						test.setProperty(AbstractNode.visibleToAuthenticatedUsers, true);
+						expected.add(test.getUuid());
+						break;
+
+					default:
+						// not readable for user
+						break;
+				}
+			}
+
+			tx.success();
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		Settings.QuerySecurityFilter.setValue(true);
+
+		try {
+
+			final App userApp = StructrApp.getInstance(SecurityContext.getInstance(user, AccessMode.Backend));
+
+			try (final Tx tx = userApp.tx()) {
+
+				final List<TestOne> result = userApp.nodeQuery(TestOne.class).getAsList();
+
+				assertEquals("Invalid number of readable nodes", expected.size(), result.size());
+
+				for (final TestOne test : result) {
+					assertTrue("Node should not be readable", expected.contains(test.getUuid()));
+				}
+
+				// a database slice is exact when the query contains the security filter
+				final Query<TestOne> query = userApp.nodeQuery(TestOne.class);
+
+				query.getQueryContext().slice(0, 5);
+
+				assertEquals("Slice should be applied for non-admin users", 5, query.getAsList().size());
+
+				tx.success();
+
+			} catch (FrameworkException t) {
+
+				t.printStackTrace();
+				fail("Unexpected exception.");
+			}
+
+		} finally {
+
+			Settings.QuerySecurityFilter.setValue(false);
+		}
+	}
+
+	@Test
+	public void testSecurityFilterForOwnGroups() {
+
+		// remove auto-generated resource access objects
+		clearResourceAccess();
+
+		final List<String> expected = new ArrayList<>();
+		Principal user              = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final Principal owner = app.create(Principal.class, "owner");
+			final App ownerApp    = StructrApp.getInstance(SecurityContext.getInstance(owner, AccessMode.Backend));
+			final Group group1    = ownerApp.create(Group.class, "group1");
+			final Group group2    = ownerApp.create(Group.class, "group2");
+			final Group group3    = ownerApp.create(Group.class, "group3");
+
+			// not readable for user
+			ownerApp.create(Group.class, "group4");
+
+			user = app.create(Principal.class, "user");
+
+			// direct and transitive membership
+			group1.addMember(user);
+			group2.addMember(group1);
+
+			// readable via grant
+			group3.grant(Permission.read, user);
+
+			expected.add(group1.getUuid());
+			expected.add(group2.getUuid());
+			expected.add(group3.getUuid());
+
+			tx.success();
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		final App userApp = StructrApp.getInstance(SecurityContext.getInstance(user, AccessMode.Backend));
+		List<String> unfiltered = null;
+		List<String> filtered   = null;
+		int unfilteredCount     = 0;
+		int filteredCount       = 0;
+
+		try (final Tx tx = userApp.tx()) {
+
+			unfiltered      = Iterables.toList(Iterables.map(g -> g.getUuid(), userApp.nodeQuery(Group.class).sort(AbstractNode.name).getAsList()));
+			unfilteredCount = userApp.nodeQuery(Group.class).getResultStream().calculateTotalResultCount();
+
+			tx.success();
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		Settings.QuerySecurityFilter.setValue(true);
+
+		try (final Tx tx = userApp.tx()) {
+
+			filtered      = Iterables.toList(Iterables.map(g -> g.getUuid(), userApp.nodeQuery(Group.class).sort(AbstractNode.name).getAsList()));
+			filteredCount = userApp.nodeQuery(Group.class).getResultStream().calculateTotalResultCount();
+
+			tx.success();
+
+		} catch (FrameworkException t) {
+
+			t.printStackTrace();
+			fail("Unexpected exception.");
+
+		} finally {
+
+			Settings.QuerySecurityFilter.setValue(false);
+		}
+
+		assertEquals("Invalid unfiltered result", expected, unfiltered);
+		assertEquals("Security filter changes the result", unfiltered, filtered);
+		assertEquals("Invalid unfiltered count", expected.size(), unfilteredCount);
+		assertEquals("Security filter changes the total count", unfilteredCount, filteredCount);
+	}
+
 	// ----- private methods -----
 	public static void clearResourceAccess() {
 
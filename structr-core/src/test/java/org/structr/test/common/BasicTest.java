@@ -18,9 +18,15 @@
  */
 package org.structr.test.common;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
@@ -28,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.NotFoundException;
 import org.structr.api.NotInTransactionException;
+import org.structr.api.config.Settings;
 import org.structr.api.util.Iterables;
 import org.structr.common.AccessMode;
 import org.structr.common.GraphObjectComparator;
@@ -49,10 +56,13 @@ import org.structr.core.entity.SchemaRelationshipNode;
 import org.structr.core.entity.Security;
 import org.structr.core.entity.relationship.NodeHasLocation;
 import org.structr.core.entity.relationship.PrincipalOwnsNode;
+import org.structr.core.graph.ChunkedNodeCreator;
+import org.structr.core.graph.FlushCachesCommand;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.NodeServiceCommand;
 import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.RelationshipPrefetcher;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
@@ -1975,6 +1985,191 @@ public class BasicTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testPagedAndIncrementallyCachedRelationships() {
+
+		final int threshold = Settings.RelationshipThreshold.getValue();
+		final int pageSize  = Settings.RelationshipPageSize.getValue();
+		String id           = null;
+
+		// force paging with small numbers of relationships
+		Settings.RelationshipThreshold.setValue(10);
+		Settings.RelationshipPageSize.setValue(3);
+
+		try {
+
+			try (final Tx tx = app.tx()) {
+
+				final TestSix testSix = createTestNode(TestSix.class);
+				id = testSix.getUuid();
+
+				for (int i=0; i<20; i++) {
+
+					final TestThree testThree = createTestNode(TestThree.class, new NodeAttribute<>(TestThree.oneToManyTestSix, testSix));
+
+					// relationships without timestamp are paged separately
+					if (i%4 == 0) {
+
+						final RelationshipInterface rel = testThree.getRelationships(SixThreeOneToMany.class).iterator().next();
+						rel.getRelationship().setProperty("internalTimestamp", null);
+					}
+				}
+
+				tx.success();
+
+			} catch (FrameworkException fex) {
+				logger.warn("", fex);
+				fail("Unexpected exception.");
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final TestSix testSix               = app.get(TestSix.class, id);
+				final List<SixThreeOneToMany> rels  = Iterables.toList(testSix.getOutgoingRelationships(SixThreeOneToMany.class));
+				final Set<String> uuids             = new HashSet<>();
+
+				assertEquals("Wrong number of paged relationships", 20, rels.size());
+
+				for (final SixThreeOneToMany rel : rels) {
+					uuids.add(rel.getUuid());
+				}
+
+				assertEquals("Paged relationships must not contain duplicates", 20, uuids.size());
+
+				tx.success();
+
+			} catch (FrameworkException fex) {
+				logger.warn("", fex);
+				fail("Unexpected exception.");
+			}
+
+			// cache the relationships and add more in a separate transaction
+			Settings.RelationshipThreshold.setValue(100);
+
+			try (final Tx tx = app.tx()) {
+
+				final TestSix testSix = app.get(TestSix.class, id);
+
+				assertEquals("Wrong number of cached relationships", 20, Iterables.count(testSix.getOutgoingRelationships(SixThreeOneToMany.class)));
+
+				tx.success();
+
+			} catch (FrameworkException fex) {
+				logger.warn("", fex);
+				fail("Unexpected exception.");
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final TestSix testSix = app.get(TestSix.class, id);
+
+				for (int i=0; i<5; i++) {
+					createTestNode(TestThree.class, new NodeAttribute<>(TestThree.oneToManyTestSix, testSix));
+				}
+
+				assertEquals("Relationships created in a transaction must be visible in the same transaction", 25, Iterables.count(testSix.getOutgoingRelationships(SixThreeOneToMany.class)));
+
+				tx.success();
+
+			} catch (FrameworkException fex) {
+				logger.warn("", fex);
+				fail("Unexpected exception.");
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final TestSix testSix = app.get(TestSix.class, id);
+
+				assertEquals("Relationships created in a committed transaction must be added to the cache", 25, Iterables.count(testSix.getOutgoingRelationships(SixThreeOneToMany.class)));
+				assertEquals("Relationships created in a committed transaction must be added to the cache", 25, Iterables.count(testSix.getRelationships()));
+
+				tx.success();
+
+			} catch (FrameworkException fex) {
+				logger.warn("", fex);
+				fail("Unexpected exception.");
+			}
+
+		} finally {
+
+			Settings.RelationshipThreshold.setValue(threshold);
+			Settings.RelationshipPageSize.setValue(pageSize);
+		}
+	}
+
+	@Test
+	public void testRelationshipPrefetch() {
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<10; i++) {
+
+				final TestSix testSix = createTestNode(TestSix.class);
+
+				for (int j=0; j<i; j++) {
+					createTestNode(TestThree.class, new NodeAttribute<>(TestThree.oneToManyTestSix, testSix));
+				}
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final List<TestSix> testSixs = app.nodeQuery(TestSix.class).getAsList();
+			final List<PropertyKey> keys = new LinkedList<>();
+
+			keys.add(TestSix.oneToManyTestThrees);
+			keys.add(TestSix.oneToOneTestThree);
+
+			final ByteArrayOutputStream queryLog = new ByteArrayOutputStream();
+			final PrintStream out                = System.out;
+			int prefetchQueries                  = 0;
+			int queries                          = 0;
+			int count                            = 0;
+
+			// capture the Cypher debug log to count the relationship queries
+			Settings.CypherDebugLogging.setValue(true);
+			System.setOut(new PrintStream(queryLog, true));
+
+			try {
+
+				RelationshipPrefetcher.prefetch(testSixs, obj -> keys);
+
+				prefetchQueries = countRelationshipQueries(queryLog);
+				queryLog.reset();
+
+				for (final TestSix testSix : testSixs) {
+
+					count += Iterables.count(testSix.getProperty(TestSix.oneToManyTestThrees));
+
+					assertNull("Prefetched empty relationship property should be null", testSix.getProperty(TestSix.oneToOneTestThree));
+				}
+
+				queries = countRelationshipQueries(queryLog);
+
+			} finally {
+
+				System.setOut(out);
+				Settings.CypherDebugLogging.setValue(false);
+			}
+
+			assertEquals("Wrong number of prefetched relationships", 45, count);
+			assertTrue("Relationships were not prefetched", prefetchQueries > 0);
+			assertEquals("Prefetched relationships should be read from the cache", 0, queries);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
 	@Test
 	public void testNodeCreationWithForcedUuid() {
 
@@ -2085,7 +2280,284 @@ public class BasicTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testCreateNodes() {
+
+		final List<PropertyMap> input = new LinkedList<>();
+
+		for (int i=0; i<10; i++) {
+
+			final PropertyMap properties = new PropertyMap();
+
+			properties.put(AbstractNode.name, "test" + i);
+			properties.put(TestOne.anInt, i);
+
+			input.add(properties);
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final List<TestOne> nodes = app.createNodes(TestOne.class, input);
+
+			assertEquals("Invalid bulk creation result", 10, nodes.size());
+
+			for (int i=0; i<10; i++) {
+
+				final TestOne node = nodes.get(i);
+
+				assertNotNull("Invalid bulk creation result", node.getUuid());
+				assertEquals("Invalid bulk creation result order", "test" + i, node.getProperty(AbstractNode.name));
+				assertEquals("Invalid bulk creation result order", Integer.valueOf(i), node.getProperty(TestOne.anInt));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final List<TestOne> nodes = app.nodeQuery(TestOne.class).sort(TestOne.anInt).getAsList();
+
+			assertEquals("Invalid bulk creation result", 10, nodes.size());
+
+			for (int i=0; i<10; i++) {
+
+				assertEquals("Invalid bulk creation result", "test" + i, nodes.get(i).getProperty(AbstractNode.name));
+				assertEquals("Invalid bulk creation result", Boolean.FALSE, nodes.get(i).getProperty(AbstractNode.visibleToPublicUsers));
+				assertEquals("Invalid bulk creation result", "default value", nodes.get(i).getProperty(TestOne.stringWithDefault));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testChunkedNodeCreationWithReferencesToPrecedingRows() {
+
+		final String parentId = NodeServiceCommand.getNextUuid();
+
+		try (final Tx tx = app.tx()) {
+
+			final ChunkedNodeCreator<TestTen> creator = new ChunkedNodeCreator<>(securityContext, TestTen.class);
+			final Map<String, Object> parent          = new LinkedHashMap<>();
+			final Map<String, Object> child           = new LinkedHashMap<>();
+			final Map<String, Object> other           = new LinkedHashMap<>();
+
+			parent.put("id",   parentId);
+			parent.put("name", "parent");
+
+			// refers to the node of the preceding row, which must exist when this row is converted
+			child.put("name",          "child");
+			child.put("testTenParent", parentId);
+
+			other.put("name", "other");
+
+			creator.add(TestTen.class, parent);
+			creator.add(TestTen.class, child);
+			creator.add(TestTen.class, other);
+			creator.flush();
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final TestTen child  = app.nodeQuery(TestTen.class).andName("child").getFirst();
+			final TestTen parent = child.getProperty(TestTen.tenTenParent);
+
+			assertEquals("Invalid chunked creation result", 3, app.nodeQuery(TestTen.class).getAsList().size());
+			assertNotNull("Reference to node of preceding row was not resolved", parent);
+			assertEquals("Reference to node of preceding row was not resolved", parentId, parent.getUuid());
+			assertNotNull("Invalid chunked creation result", app.nodeQuery(TestTen.class).andName("other").getFirst());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testReadOwnWritesWithImmediateWrites() {
+		readOwnWritesInTransaction(false);
+	}
+
+	@Test
+	public void testReadOwnWritesWithBatchedWrites() {
+		readOwnWritesInTransaction(true);
+	}
+
+	@Test
+	public void testRollbackWithImmediateWrites() {
+		rollbackInTheMiddleOfModifications(false);
+	}
+
+	@Test
+	public void testRollbackWithBatchedWrites() {
+		rollbackInTheMiddleOfModifications(true);
+	}
+
 	// ----- private methods -----
+	private void readOwnWritesInTransaction(final boolean batched) {
+
+		final boolean previous = Settings.BatchPropertyWrites.getValue();
+		TestOne test           = null;
+
+		Settings.BatchPropertyWrites.setValue(batched);
+
+		try {
+
+			try (final Tx tx = app.tx()) {
+
+				test = app.create(TestOne.class, "test");
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				test.setProperty(TestOne.aString, "modified");
+				test.setProperty(TestOne.anInt, 42);
+				test.setProperty(TestOne.aLong, 23L);
+
+				// modifications must be visible on the entity..
+				assertEquals("Modification not visible in transaction", "modified", test.getProperty(TestOne.aString));
+				assertEquals("Modification not visible in transaction", Integer.valueOf(42), test.getProperty(TestOne.anInt));
+
+				// ..and in queries that run in the same transaction
+				final List<TestOne> result = app.nodeQuery(TestOne.class).and(TestOne.aString, "modified").and(TestOne.anInt, 42).getAsList();
+
+				assertEquals("Modification not visible to query in transaction", 1, result.size());
+				assertEquals("Modification not visible to query in transaction", test.getUuid(), result.get(0).getUuid());
+
+				// removal after a query, i.e. in a new batch
+				test.setProperty(TestOne.aLong, null);
+
+				assertNull("Removal not visible in transaction", test.getProperty(TestOne.aLong));
+				assertEquals("Removal not visible to query in transaction", 0, app.nodeQuery(TestOne.class).and(TestOne.aLong, 23L).getAsList().size());
+
+				tx.success();
+			}
+
+			FlushCachesCommand.flushAll();
+
+			try (final Tx tx = app.tx()) {
+
+				final TestOne stored = app.get(TestOne.class, test.getUuid());
+
+				assertEquals("Modification not committed", "modified", stored.getProperty(TestOne.aString));
+				assertEquals("Modification not committed", Integer.valueOf(42), stored.getProperty(TestOne.anInt));
+				assertNull("Removal not committed", stored.getProperty(TestOne.aLong));
+				assertEquals("Modification not committed", 1, app.nodeQuery(TestOne.class).and(TestOne.aString, "modified").getAsList().size());
+
+				tx.success();
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+
+		} finally {
+
+			Settings.BatchPropertyWrites.setValue(previous);
+		}
+	}
+
+	private void rollbackInTheMiddleOfModifications(final boolean batched) {
+
+		final boolean previous = Settings.BatchPropertyWrites.getValue();
+		String uuid            = null;
+
+		Settings.BatchPropertyWrites.setValue(batched);
+
+		try {
+
+			try (final Tx tx = app.tx()) {
+
+				final TestOne test = app.create(TestOne.class,
+					new NodeAttribute<>(AbstractNode.name, "test"),
+					new NodeAttribute<>(TestOne.aString, "initial")
+				);
+
+				uuid = test.getUuid();
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final TestOne test = app.get(TestOne.class, uuid);
+
+				test.setProperty(TestOne.aString, "first");
+
+				// the query forces the first modification to be written
+				assertEquals("Modification not visible to query in transaction", 1, app.nodeQuery(TestOne.class).and(TestOne.aString, "first").getAsList().size());
+
+				// these modifications are still pending when the transaction fails
+				test.setProperty(TestOne.aString, "second");
+				test.setProperty(TestOne.anInt, 23);
+
+				throw new FrameworkException(422, "Rollback");
+
+			} catch (FrameworkException expected) {
+				assertEquals("Rollback", expected.getMessage());
+			}
+
+			FlushCachesCommand.flushAll();
+
+			try (final Tx tx = app.tx()) {
+
+				final TestOne test = app.get(TestOne.class, uuid);
+
+				assertEquals("Modification not rolled back", "initial", test.getProperty(TestOne.aString));
+				assertNull("Modification not rolled back", test.getProperty(TestOne.anInt));
+
+				assertEquals("Modification not rolled back", 1, app.nodeQuery(TestOne.class).and(TestOne.aString, "initial").getAsList().size());
+				assertEquals("Modification not rolled back", 0, app.nodeQuery(TestOne.class).and(TestOne.aString, "first").getAsList().size());
+				assertEquals("Modification not rolled back", 0, app.nodeQuery(TestOne.class).and(TestOne.aString, "second").getAsList().size());
+
+				// a transaction after the rollback must not write anything left over from the failed one
+				test.setProperty(TestOne.name, "renamed");
+
+				tx.success();
+			}
+
+			FlushCachesCommand.flushAll();
+
+			try (final Tx tx = app.tx()) {
+
+				final TestOne test = app.get(TestOne.class, uuid);
+
+				assertEquals("Modification not committed", "renamed", test.getProperty(TestOne.name));
+				assertEquals("Modification from failed transaction committed", "initial", test.getProperty(TestOne.aString));
+				assertNull("Modification from failed transaction committed", test.getProperty(TestOne.anInt));
+
+				tx.success();
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+
+		} finally {
+
+			Settings.BatchPropertyWrites.setValue(previous);
+		}
+	}
+
 	private void setPropertyTx(final GraphObject obj, final PropertyKey key, final Object value) {
 
 		try (final Tx tx = app.tx()) {
@@ -2096,4 +2568,18 @@ public class BasicTest extends StructrTest {
 		} catch (FrameworkException ex) {
 		}
 	}
+
+	private int countRelationshipQueries(final ByteArrayOutputStream queryLog) {
+
+		int count = 0;
+
+		for (final String line : queryLog.toString().split("\n")) {
+
+			if (line.contains("-[")) {
+				count++;
+			}
+		}
+
+		return count;
+	}
 }
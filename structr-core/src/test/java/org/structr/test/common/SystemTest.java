@@ -24,6 +24,7 @@ import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -31,6 +32,7 @@ import java.util.concurrent.Future;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.agent.AgentService;
 import org.structr.api.config.Settings;
 import org.structr.api.util.Iterables;
 import org.structr.common.AccessMode;
@@ -57,6 +59,7 @@ import org.structr.core.property.IntProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.StringProperty;
 import org.structr.core.script.Scripting;
+import org.structr.cron.CronTestTask;
 import org.structr.schema.action.ActionContext;
 import org.structr.schema.export.StructrSchema;
 import org.structr.schema.json.JsonObjectType;
@@ -948,6 +951,51 @@ public class SystemTest extends StructrTest {
 
 	}
 
+	@Test
+	public void testAgentServiceQueues() {
+
+		final AgentService agentService = new AgentService();
+
+		try {
+
+			agentService.startService();
+
+			for (int i=0; i<100; i++) {
+				agentService.processTask(new CronTestTask<>("Test", null, i));
+			}
+
+			Map<String, Object> statistics = null;
+			final long t0                  = System.currentTimeMillis();
+
+			// wait for the agents to process all tasks
+			while (System.currentTimeMillis() - t0 < 10000) {
+
+				statistics = (Map<String, Object>)agentService.getStatistics().get(CronTestTask.class.getName());
+				if (statistics != null && Long.valueOf(100L).equals(statistics.get("completed"))) {
+
+					break;
+				}
+
+				Thread.sleep(100);
+			}
+
+			assertNotNull("Agent service statistics are missing", statistics);
+			assertEquals("Invalid number of completed tasks", 100L, statistics.get("completed"));
+			assertEquals("Invalid number of failed tasks", 0L, statistics.get("failed"));
+			assertEquals("Invalid queue depth", 0, statistics.get("queueDepth"));
+			assertTrue("Too many agents", (Integer)statistics.get("agents") <= Settings.AgentThreads.getValue());
+
+		} catch (Exception ex) {
+
+			ex.printStackTrace();
+			fail("Unexpected exception.");
+
+		} finally {
+
+			agentService.stopService();
+		}
+	}
+
 	@Test
 	public void testConfigurationFile() {
 
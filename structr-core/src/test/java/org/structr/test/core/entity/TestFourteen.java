@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.test.core.entity;
+
+import org.structr.common.Permission;
+import org.structr.common.SecurityContext;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.Principal;
+import org.structr.core.property.Property;
+import org.structr.core.property.StringProperty;
+
+/**
+ * Test class with an additional way to grant read access, like
+ * thumbnails that inherit the permissions of their image.
+ */
+public class TestFourteen extends AbstractNode {
+
+	public static final Property<String> sharedWith = new StringProperty("sharedWith").indexed();
+
+	@Override
+	public boolean isGranted(final Permission permission, final SecurityContext securityContext) {
+
+		final Principal user = securityContext.getUser(false);
+
+		if (Permission.read.equals(permission) && user != null && user.getName().equals(getProperty(sharedWith))) {
+			return true;
+		}
+
+		return super.isGranted(permission, securityContext);
+	}
+}
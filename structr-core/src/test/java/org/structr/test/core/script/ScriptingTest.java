@@ -34,9 +34,14 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.api.util.Iterables;
 import org.structr.common.AccessControllable;
 import org.structr.common.AccessMode;
@@ -60,11 +65,14 @@ import org.structr.core.entity.SchemaRelationshipNode;
 import org.structr.core.entity.SuperUser;
 import org.structr.core.function.DateFormatFunction;
 import org.structr.core.function.FindFunction;
+import org.structr.core.function.Functions;
 import org.structr.core.function.NumberFormatFunction;
 import org.structr.core.function.RoundFunction;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
+import org.structr.core.parser.ConstantExpression;
+import org.structr.core.parser.Expression;
 import org.structr.core.property.EnumProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
@@ -632,6 +640,131 @@ public class ScriptingTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testExpressionCache() {
+
+		final String expression = "concat(this.name, '-', if(equal(this.aLong, 2), 'two', 'other'), '-', join(merge('a', 'b'), ''))";
+
+		try (final Tx tx = app.tx()) {
+
+			final Map<String, Long> before = Functions.getExpressionCacheStatistics();
+			final Expression first         = Functions.parse(expression);
+			final Expression second        = Functions.parse(expression);
+			final Map<String, Long> after  = Functions.getExpressionCacheStatistics();
+
+			assertTrue("Parsed expression must be sealed", first.isSealed());
+			assertTrue("Parsed expression must be cached", first == second);
+			assertEquals("Invalid number of cache misses", before.getOrDefault("misses", 0L) + 1, (long)after.get("misses"));
+			assertEquals("Invalid number of cache hits",   before.getOrDefault("hits", 0L) + 1,   (long)after.get("hits"));
+
+			try {
+
+				first.add(new ConstantExpression(1));
+				fail("Sealed expression must not be modifiable.");
+
+			} catch (IllegalStateException expected) {}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		// evaluate the cached expression concurrently with different entities
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		try {
+
+			final List<Future<String>> results = new LinkedList<>();
+
+			for (int i=0; i<100; i++) {
+
+				final int index = i;
+
+				results.add(executor.submit(() -> {
+
+					try (final Tx tx = app.tx()) {
+
+						final TestOne test = app.create(TestOne.class,
+							new NodeAttribute<>(TestOne.name,  "test" + index),
+							new NodeAttribute<>(TestOne.aLong, (long)(index % 3))
+						);
+
+						final String result = Scripting.replaceVariables(new ActionContext(securityContext), test, "${" + expression + "}");
+
+						tx.success();
+
+						return result;
+					}
+				}));
+			}
+
+			for (int i=0; i<100; i++) {
+
+				assertEquals("Invalid concurrent evaluation result", "test" + i + "-" + (i % 3 == 2 ? "two" : "other") + "-ab", results.get(i).get());
+			}
+
+		} catch (InterruptedException | ExecutionException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+
+		} finally {
+
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSharedJavascriptScope() {
+
+		final boolean sharedScope = Settings.SharedJavascriptScope.getValue();
+
+		Settings.SharedJavascriptScope.setValue(true);
+
+		try {
+
+			try (final Tx tx = app.tx()) {
+
+				final ActionContext ctx = new ActionContext(securityContext);
+
+				// global variables must not leak into subsequent executions
+				assertEquals("Invalid Javascript evaluation result", "number",    Scripting.evaluate(ctx, null, "${{ leaked = 42; return typeof leaked; }}", "test"));
+				assertEquals("Invalid Javascript evaluation result", "undefined", Scripting.evaluate(ctx, null, "${{ return typeof leaked; }}", "test"));
+
+				// standard objects must still be usable
+				assertEquals("Invalid Javascript evaluation result", "[1,2,3]", Scripting.evaluate(ctx, null, "${{ return JSON.stringify([3, 1, 2].sort()); }}", "test"));
+
+				tx.success();
+
+			} catch (UnlicensedScriptException | FrameworkException fex) {
+
+				logger.warn("", fex);
+				fail("Unexpected exception.");
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final ActionContext ctx = new ActionContext(securityContext);
+
+				ctx.setDisableVerboseExceptionLogging(true);
+
+				// the shared standard objects are sealed
+				Scripting.evaluate(ctx, null, "${{ Array.prototype.foo = 1; }}", "test");
+
+				fail("Modification of shared standard objects should not be allowed.");
+
+			} catch (UnlicensedScriptException | FrameworkException expected) {
+			}
+
+		} finally {
+
+			Settings.SharedJavascriptScope.setValue(sharedScope);
+		}
+	}
+
 	@Test
 	public void testPython() {
 
@@ -725,6 +725,71 @@ public class SchemaTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testIncrementalSchemaCompilation() {
+
+		cleanDatabaseAndSchema();
+
+		try (final Tx tx = app.tx()) {
+
+			final JsonSchema schema = StructrSchema.createFromDatabase(app);
+			final JsonType base     = schema.addType("IncrementalBase");
+
+			schema.addType("IncrementalDerived").setExtends(base);
+			schema.addType("IncrementalOther").addStringProperty("other");
+
+			StructrSchema.extendDatabaseSchema(app, schema);
+
+			tx.success();
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		final Class derivedType = StructrApp.getConfiguration().getNodeEntityClass("IncrementalDerived");
+		final Class otherType   = StructrApp.getConfiguration().getNodeEntityClass("IncrementalOther");
+
+		assertNotNull("Dynamic type was not compiled", derivedType);
+		assertNotNull("Dynamic type was not compiled", otherType);
+		assertNull("Invalid property key", StructrApp.getConfiguration().getPropertyKeyForJSONName(derivedType, "added", false));
+
+		// modify base type, derived type must be compiled again
+		try (final Tx tx = app.tx()) {
+
+			final JsonSchema schema = StructrSchema.createFromDatabase(app);
+
+			schema.getType("IncrementalBase").addStringProperty("added");
+
+			StructrSchema.replaceDatabaseSchema(app, schema);
+
+			tx.success();
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		final Class newDerivedType = StructrApp.getConfiguration().getNodeEntityClass("IncrementalDerived");
+		final Class newOtherType   = StructrApp.getConfiguration().getNodeEntityClass("IncrementalOther");
+
+		assertNotNull("Dependent type was not recompiled", StructrApp.getConfiguration().getPropertyKeyForJSONName(newDerivedType, "added", false));
+		assertNotNull("Unchanged type was not loaded", StructrApp.getConfiguration().getPropertyKeyForJSONName(newOtherType, "other", false));
+
+		try (final Tx tx = app.tx()) {
+
+			final NodeInterface node = app.create(newDerivedType, new NodeAttribute<>(StructrApp.key(newDerivedType, "added"), "value"));
+
+			assertEquals("Invalid property value", "value", node.getProperty(StructrApp.key(newDerivedType, "added")));
+
+			tx.success();
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
 	@Test
 	public void testModifiedPropertyValueAccessInScripting() {
 
@@ -701,6 +701,79 @@ public class ValidationTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testBulkUniquenessValidation() {
+
+		this.cleanDatabaseAndSchema();
+
+		// The goal of this test is to ensure that batched uniqueness
+		// checks find duplicates within and across transactions.
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<250; i++) {
+				app.create(TestTwelve.class, "name" + i);
+			}
+
+			// identical names in other types are allowed
+			app.create(TestOne.class, "name1");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=250; i<300; i++) {
+				app.create(TestTwelve.class, "name" + i);
+			}
+
+			app.create(TestTwelve.class, "name42");
+
+			tx.success();
+
+			fail("Uniqueness constraint violated!");
+
+		} catch (FrameworkException fex) {
+
+			final List<ErrorToken> tokens = fex.getErrorBuffer().getErrorTokens();
+			final ErrorToken token        = tokens.get(0);
+
+			assertEquals("Invalid uniqueness validation result", 1,               tokens.size());
+			assertEquals("Invalid uniqueness validation result", 422,             fex.getStatus());
+			assertEquals("Invalid uniqueness validation result", "name",          token.getProperty());
+			assertEquals("Invalid uniqueness validation result", "already_taken", token.getToken());
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(TestTwelve.class, "duplicate");
+			app.create(TestTwelve.class, "duplicate");
+
+			tx.success();
+
+			fail("Uniqueness constraint violated!");
+
+		} catch (FrameworkException fex) {
+
+			assertEquals("Invalid uniqueness validation result", 422, fex.getStatus());
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals("Invalid uniqueness validation result", 250, app.nodeQuery(TestTwelve.class).getAsList().size());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
 	// ----- string property validation tests -----
 	@Test
 	public void testEmptyStringPropertyValidationWithEmptyStrings() {
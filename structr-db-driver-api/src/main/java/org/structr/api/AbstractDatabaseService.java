@@ -18,9 +18,14 @@
  */
 package org.structr.api;
 
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.structr.api.config.Settings;
 import org.structr.api.graph.Label;
 import org.structr.api.graph.RelationshipType;
@@ -30,6 +35,7 @@ import org.structr.api.graph.RelationshipType;
  */
 public abstract class AbstractDatabaseService implements DatabaseService {
 
+	private static final Logger logger                                = LoggerFactory.getLogger(AbstractDatabaseService.class.getName());
 	private static final Map<String, RelationshipType> relTypeCache   = new ConcurrentHashMap<>();
 	private static final Map<String, Label> labelCache                = new ConcurrentHashMap<>();
 	private static final long nanoEpoch                               = System.nanoTime();
@@ -63,6 +69,167 @@ public abstract class AbstractDatabaseService implements DatabaseService {
 		return tenantId;
 	}
 
+	@Override
+	public boolean supportsNativeQueries() {
+		return true;
+	}
+
+	@Override
+	public void updateIndexConfiguration(final Map<String, Map<String, Boolean>> schemaIndexConfig, final Map<String, Map<String, Boolean>> removedClasses) {
+
+		final Map<String, String> existingDbIndexes = new HashMap<>();
+
+		try (final Transaction tx = beginTx()) {
+
+			/* Example full result of `CALL db.indexes`
+				{
+					"provider": {
+					  "version": "2.0",
+					  "key": "lucene+native"
+					},
+					"state": "ONLINE",
+					"description": "INDEX ON :Bank(BIC)",
+					"label": "Bank",
+					"properties": [
+					  "BIC"
+					],
+					"type": "node_label_property"		// possible values: node_label_property, node_unique_property
+				}
+			 */
+
+			for (final Map<String, Object> row : execute("CALL db.indexes() YIELD description, state, type WHERE type = 'node_label_property' RETURN {description: description, state: state}")) {
+
+				for (final Object value : row.values()) {
+
+					final Map<String, String> valueMap = (Map<String, String>)value;
+
+					existingDbIndexes.put(valueMap.get("description"), valueMap.get("state"));
+				}
+			}
+
+			tx.success();
+		}
+
+		logger.debug("Found {} existing indexes", existingDbIndexes.size());
+
+		Integer createdIndexes = 0;
+		Integer droppedIndexes = 0;
+
+		// create indices for properties of existing classes
+		for (final Map.Entry<String, Map<String, Boolean>> entry : schemaIndexConfig.entrySet()) {
+
+			final String typeName = entry.getKey();
+
+			for (final Map.Entry<String, Boolean> propertyIndexConfig : entry.getValue().entrySet()) {
+
+				final String indexDescription = "INDEX ON :" + typeName + "(" + propertyIndexConfig.getKey() + ")";
+				final String state            = existingDbIndexes.get(indexDescription);
+				final boolean alreadySet      = Boolean.TRUE.equals("ONLINE".equals(state));
+				final boolean createIndex     = propertyIndexConfig.getValue();
+
+				if ("FAILED".equals(state)) {
+
+					logger.warn("Index is in FAILED state - dropping the index before handling it further. {}. If this error is recurring, please verify that the data in the concerned property is indexable by Neo4j", indexDescription);
+
+					try (final Transaction tx = beginTx()) {
+
+						execute("DROP " + indexDescription);
+
+						tx.success();
+
+					} catch (Throwable t) {
+						logger.warn("", t);
+					}
+				}
+
+
+				try (final Transaction tx = beginTx()) {
+
+					if (createIndex) {
+
+						if (!alreadySet) {
+
+							try {
+
+								execute("CREATE " + indexDescription);
+								createdIndexes++;
+
+							} catch (Throwable t) {
+								logger.warn("Unable to create {}: {}", indexDescription, t.getMessage());
+							}
+						}
+
+					} else if (alreadySet) {
+
+						try {
+
+							execute("DROP " + indexDescription);
+							droppedIndexes++;
+
+						} catch (Throwable t) {
+							logger.warn("Unable to drop {}: {}", indexDescription, t.getMessage());
+						}
+					}
+
+					tx.success();
+
+				} catch (IllegalStateException i) {
+
+					// if the driver instance is already closed, there is nothing we can do => exit
+					return;
+
+				} catch (Throwable t) {
+
+					logger.warn("Unable to update index configuration: {}", t.getMessage());
+				}
+			}
+		}
+
+		if (createdIndexes > 0) {
+			logger.debug("Created {} indexes", createdIndexes);
+		}
+
+		if (droppedIndexes > 0) {
+			logger.debug("Dropped {} indexes", droppedIndexes);
+		}
+
+		Integer droppedIndexesOfRemovedTypes = 0;
+		final List removedTypes = new LinkedList();
+
+		// drop indices for all indexed properties of removed classes
+		for (final Map.Entry<String, Map<String, Boolean>> entry : removedClasses.entrySet()) {
+
+			final String typeName = entry.getKey();
+			removedTypes.add(typeName);
+
+			for (final Map.Entry<String, Boolean> propertyIndexConfig : entry.getValue().entrySet()) {
+
+				final String indexDescription = "INDEX ON :" + typeName + "(" + propertyIndexConfig.getKey() + ")";
+				final boolean indexExists     = Boolean.TRUE.equals(existingDbIndexes.get(indexDescription));
+				final boolean dropIndex       = propertyIndexConfig.getValue();
+
+				if (indexExists && dropIndex) {
+
+					try (final Transaction tx = beginTx()) {
+
+						// drop index
+						execute("DROP " + indexDescription);
+						droppedIndexesOfRemovedTypes++;
+
+						tx.success();
+
+					} catch (Throwable t) {
+						logger.warn("Unable to drop {}: {}", indexDescription, t.getMessage());
+					}
+				}
+			}
+		}
+
+		if (droppedIndexesOfRemovedTypes > 0) {
+			logger.debug("Dropped {} indexes of deleted types ({})", droppedIndexesOfRemovedTypes, StringUtils.join(removedTypes, ", "));
+		}
+	}
+
 	@Override
 	public String getInternalTimestamp() {
 
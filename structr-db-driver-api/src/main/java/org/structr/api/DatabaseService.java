@@ -18,8 +18,10 @@
  */
 package org.structr.api;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import org.structr.api.graph.Direction;
 import org.structr.api.graph.GraphProperties;
 import org.structr.api.graph.Identity;
 import org.structr.api.graph.Node;
@@ -53,9 +55,23 @@ public interface DatabaseService {
 	Node createNode(final String type, final Set<String> labels, final Map<String, Object> properties);
 	NodeWithOwnerResult createNodeWithOwner(final Identity ownerId, final String type, final Set<String> labels, final Map<String, Object> nodeProperties, final Map<String, Object> ownsProperties, final Map<String, Object> securityProperties);
 
+	/**
+	 * Creates a node for each of the given property maps in a single
+	 * operation, the returned list has the same order as the input.
+	 */
+	List<Node> createNodes(final String type, final Set<String> labels, final List<Map<String, Object>> properties);
+	List<NodeWithOwnerResult> createNodesWithOwner(final Identity ownerId, final String type, final Set<String> labels, final List<Map<String, Object>> nodeProperties, final List<Map<String, Object>> ownsProperties, final List<Map<String, Object>> securityProperties);
+
 	Node getNodeById(final Identity id);
 	Relationship getRelationshipById(final Identity id);
 
+	/**
+	 * Converts the given identity into its primitive representation
+	 * that can be stored in compact data structures, and back.
+	 */
+	long unwrap(final Identity id);
+	Identity identify(final long id);
+
 	Iterable<Node> getAllNodes();
 	Iterable<Node> getNodesByLabel(final String label);
 	Iterable<Node> getNodesByTypeProperty(final String type);
@@ -63,6 +79,15 @@ public interface DatabaseService {
 	Iterable<Relationship> getAllRelationships();
 	Iterable<Relationship> getRelationshipsByType(final String type);
 
+	/**
+	 * Loads the relationships of the given nodes in the given direction,
+	 * and their other nodes, at once, so that subsequent calls to
+	 * Node#getRelationships for these nodes, directions and types don't
+	 * need to access the database again. If relationshipTypes is null,
+	 * relationships of all types are loaded.
+	 */
+	void prefetch(final Iterable<Identity> ids, final Direction direction, final Set<String> relationshipTypes);
+
 	GraphProperties getGlobalProperties();
 
 	String getTenantIdentifier();
@@ -77,6 +102,14 @@ public interface DatabaseService {
 	CountResult getNodeAndRelationshipCount();
 
 	// native
+	/**
+	 * Indicates whether this database can execute native (Cypher) queries
+	 * with the execute methods below.
+	 *
+	 * @return whether native queries are supported
+	 */
+	boolean supportsNativeQueries();
+
 	Iterable<Map<String, Object>> execute(final String nativeQuery, final Map<String, Object> parameters);
 	Iterable<Map<String, Object>> execute(final String nativeQuery);
 }
@@ -70,6 +70,8 @@ public class Settings {
 	public static final Setting<String> SnapshotsPath          = new StringSetting(generalGroup,             "Paths",       "snapshot.path",                    "snapshots" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<String> LayoutsPath            = new StringSetting(generalGroup,             "Paths",       "layouts.path",                     "layouts" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<String> WebDataPath            = new StringSetting(generalGroup,             "Paths",       "data.webapp.path",                 "webapp-data" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<String> SchemaCachePath        = new StringSetting(generalGroup,             "Paths",       "schema.cache.path",                "schema-cache" + File.separator, "Path of the compiled schema classes. IMPORTANT: Path is relative to base.path");
+	public static final Setting<String> AgentJournalPath       = new StringSetting(generalGroup,             "Paths",       "agent.journal.path",               "agents" + File.separator, "Path of the task journal of the agent service. IMPORTANT: Path is relative to base.path");
 	public static final Setting<Boolean> LogSchemaOutput       = new BooleanSetting(generalGroup,            "Logging",     "NodeExtender.log",                 false, "Whether to write dynamically created Java code to the logfile, for debugging purposes.");
 	public static final Setting<Boolean> LogSchemaErrors       = new BooleanSetting(generalGroup,            "Logging",     "NodeExtender.log.errors",          true);
 	public static final Setting<Boolean> RequestLogging        = new BooleanSetting(generalGroup,            "Logging",     "log.requests",                     false);
@@ -129,16 +131,21 @@ public class Settings {
 
 	// database settings
 	public static final Setting<String> DatabaseDriver          = new StringSetting(databaseGroup,  "Database Driver",     "database.driver",                  "org.structr.bolt.BoltDatabaseService");
-	public static final Setting<String> DatabaseDriverMode      = new ChoiceSetting(databaseGroup,  "Database Driver",     "database.driver.mode",             "embedded", Settings.getStringsAsSet("embedded", "remote"));
+	public static final Setting<String> DatabaseDriverMode      = new ChoiceSetting(databaseGroup,  "Database Driver",     "database.driver.mode",             "embedded", Settings.getStringsAsSet("embedded", "remote", "direct", "memory"));
 	public static final Setting<String> ConnectionUrl           = new StringSetting(databaseGroup,  "Database Connection", "database.connection.url",          "bolt://localhost:7688");
 	public static final Setting<String> TestingConnectionUrl    = new StringSetting(databaseGroup,  "hidden",              "testing.connection.url",           "bolt://localhost:7689");
 	public static final Setting<String> ConnectionUser          = new StringSetting(databaseGroup,  "Database Connection", "database.connection.username",     "neo4j");
 	public static final Setting<String> ConnectionPassword      = new StringSetting(databaseGroup,  "Database Connection", "database.connection.password",     "neo4j");
 	public static final Setting<String> TenantIdentifier        = new StringSetting(databaseGroup,  "Database Connection", "database.tenant.identifier",       "");
 	public static final Setting<Integer> RelationshipCacheSize  = new IntegerSetting(databaseGroup, "Caching",             "database.cache.relationship.size", 500000);
+	public static final Setting<Integer> RelationshipThreshold  = new IntegerSetting(databaseGroup, "Caching",             "database.cache.rel.threshold",     10000, "Maximum number of relationships of a node (per type and direction) that are cached, relationships of nodes with more relationships are read in pages");
+	public static final Setting<Integer> RelationshipBudget     = new IntegerSetting(databaseGroup, "Caching",             "database.cache.rel.budget",        2000000, "Maximum number of relationships in the relationship caches of all nodes");
 	public static final Setting<Integer> NodeCacheSize          = new IntegerSetting(databaseGroup, "Caching",             "database.cache.node.size",         100000, "Size of the database driver node cache");
-	public static final Setting<Integer> UuidCacheSize          = new IntegerSetting(databaseGroup, "Caching",             "database.cache.uuid.size",         1000000, "Size of the database driver relationship cache");
+	public static final Setting<Integer> UuidCacheSize          = new IntegerSetting(databaseGroup, "Caching",             "database.cache.uuid.size",         1000000, "Size of the UUID to database ID index");
 	public static final Setting<Boolean> ForceResultStreaming   = new BooleanSetting(databaseGroup, "Result Streaming",    "database.result.lazy",             false, "Forces Structr to use lazy evaluation for relationship queries");
+	public static final Setting<Integer> RelationshipPageSize   = new IntegerSetting(databaseGroup, "Result Streaming",    "database.result.pagesize",         1000, "Number of relationships that are read at once when the relationships of a node are not cached");
+	public static final Setting<Integer> PrefetchPageSize       = new IntegerSetting(databaseGroup, "Result Streaming",    "database.prefetch.pagesize",       100, "Number of nodes whose relationships are loaded with a single query when a list of nodes is serialized or rendered, 0 disables prefetching");
+	public static final Setting<Boolean> BatchPropertyWrites    = new BooleanSetting(databaseGroup, "Write Behind",        "database.write.batched",           false, "Collects property modifications in memory and writes them to the database in a single statement before the next query and on commit");
 	public static final Setting<Boolean> CypherDebugLogging     = new BooleanSetting(databaseGroup, "Debugging",           "log.cypher.debug",                 false, "Turns on debug logging for the generated Cypher queries");
 	public static final Setting<Boolean> CypherDebugLoggingPing = new BooleanSetting(databaseGroup, "Debugging",           "log.cypher.debug.ping",            false, "Turns on debug logging for the generated Cypher queries of the websocket PING command. Can only be used in conjunction with log.cypher.debug");
 	public static final Setting<Boolean> SyncDebugging          = new BooleanSetting(databaseGroup, "Sync debugging",      "sync.debug",                       false);
@@ -149,20 +156,31 @@ public class Settings {
 	public static final Setting<Boolean> FilesystemEnabled        = new BooleanSetting(applicationGroup, "Filesystem",   "application.filesystem.enabled",              false, "If enabled, Structr will create a separate home directory for each user. See Filesystem for more information.");
 	public static final Setting<Boolean> UniquePaths              = new BooleanSetting(applicationGroup, "Filesystem",   "application.filesystem.unique.paths",         true,  "If enabled, Structr will not allow files of the same name in the same folder.");
 	public static final Setting<String> DefaultChecksums          = new StringSetting(applicationGroup,  "Filesystem",   "application.filesystem.checksums.default",    "",    "List of checksums to be calculated on file creation by default.");
+	public static final Setting<Integer> ChecksumParallelSize     = new IntegerSetting(applicationGroup, "Filesystem",   "application.filesystem.checksums.parallel",   64,    "Minimum size (MB) of a file for which multiple checksums are calculated in parallel");
 	public static final Setting<Integer> IndexingMaxFileSize      = new IntegerSetting(applicationGroup, "Filesystem",   "application.filesystem.indexing.maxsize",     10,    "Maximum size (MB) of a file to be indexed");
 	public static final Setting<Integer> IndexingLimit            = new IntegerSetting(applicationGroup, "Filesystem",   "application.filesystem.indexing.limit",       50000, "Maximum number of words to be indexed per file.");
 	public static final Setting<Integer> IndexingMinLength        = new IntegerSetting(applicationGroup, "Filesystem",   "application.filesystem.indexing.minlength",   3,     "Minimum length of words to be indexed");
 	public static final Setting<Integer> IndexingMaxLength        = new IntegerSetting(applicationGroup, "Filesystem",   "application.filesystem.indexing.maxlength",   30,    "Maximum length of words to be indexed");
 	public static final Setting<Boolean> FollowSymlinks           = new BooleanSetting(applicationGroup, "Filesystem",   "application.filesystem.mount.followsymlinks", true);
 	public static final Setting<String> DefaultUploadFolder       = new StringSetting(applicationGroup,  "Filesystem",   "application.uploads.folder",                  "", "The default path for files uploaded via the UploadServlet (available from Structr 2.1+)");
+	public static final Setting<Integer> ThumbnailThreads         = new IntegerSetting(applicationGroup, "Thumbnails",   "application.thumbnails.threads",              4,    "Number of threads that create thumbnails in the background");
+	public static final Setting<Integer> ThumbnailQueueSize       = new IntegerSetting(applicationGroup, "Thumbnails",   "application.thumbnails.queue.size",           1000, "Maximum number of queued thumbnails, more thumbnails are created in the requesting thread");
+	public static final Setting<Integer> ThumbnailWaitTime        = new IntegerSetting(applicationGroup, "Thumbnails",   "application.thumbnails.wait",                 3000, "Maximum time (ms) an HTTP request waits for thumbnails to be created, after which no thumbnail is returned until it is ready");
+	public static final Setting<String> ThumbnailPregenerate      = new StringSetting(applicationGroup,  "Thumbnails",   "application.thumbnails.pregenerate",          "",   "List of thumbnail sizes that are created when an image is uploaded, e.g. \"100x100 300x300 200x200:crop\"");
+	public static final Setting<Integer> AgentThreads             = new IntegerSetting(applicationGroup, "Agents",       "application.agents.threads",                  4,     "Default number of agents (threads) that process the tasks of a task type");
+	public static final Setting<String> AgentThreadsPerType       = new StringSetting(applicationGroup,  "Agents",       "application.agents.threads.pertype",          "",    "Number of agents for individual task types, e.g. \"FulltextIndexingTask:2 UpdateFeedTask:1\"");
+	public static final Setting<Boolean> AgentJournalEnabled      = new BooleanSetting(applicationGroup, "Agents",       "application.agents.journal",                  false, "If enabled, queued tasks like fulltext indexing are written to a journal and processed after a restart if they were not finished");
 	public static final Setting<String> HttpProxyUrl              = new StringSetting(applicationGroup,  "Proxy",        "application.proxy.http.url",                  "");
 	public static final Setting<String> HttpProxyUser             = new StringSetting(applicationGroup,  "Proxy",        "application.proxy.http.username",             "");
 	public static final Setting<String> HttpProxyPassword         = new StringSetting(applicationGroup,  "Proxy",        "application.proxy.http.password",             "");
 	public static final Setting<Boolean> SchemaAutoMigration      = new BooleanSetting(applicationGroup, "Schema",       "application.schema.automigration",            false, "Enable automatic migration of schema information between versions (if possible -- may delete schema nodes)");
 	public static final Setting<Boolean> AllowUnknownPropertyKeys = new BooleanSetting(applicationGroup, "Schema",       "application.schema.allowunknownkeys",         false, "Enables get() and set() built-in functions to use property keys that are not defined in the schema.");
+	public static final Setting<Boolean> SchemaCompilationCache   = new BooleanSetting(applicationGroup, "Schema",       "application.schema.compilation.cache",        true,  "Stores the compiled schema classes on disk so that a restart with an unchanged schema doesn't need to compile them again. The cache is not used if the Structr build can't be determined from the jar files.");
 	public static final Setting<Boolean> logMissingLocalizations  = new BooleanSetting(applicationGroup, "Localization", "application.localization.logmissing",         false, "Turns on logging for requested but non-existing localizations.");
 	public static final Setting<String> SchemaDeploymentFormat    = new ChoiceSetting(applicationGroup,  "Deployment",   "deployment.schema.format",                    "file", Settings.getStringsAsSet("file", "tree"), "Configures how the schema is exported in a deployment export. <code>file</code> exports the schema as a single file. <code>tree</code> exports the schema as a tree where methods/function properties are written to single files in a tree structure.");
 	public static final Setting<String> GlobalSecret              = new StringSetting(applicationGroup,  "Encryption",   "application.encryption.secret",               null,   "Sets the global secret for encrypted string properties. Using this configuration setting is one of several possible ways to set the secret, and it is not recommended for production environments because the key can easily be read by an attacker with scripting access.");
+	public static final Setting<Integer> ExpressionCacheSize      = new IntegerSetting(applicationGroup, "Scripting",    "application.scripting.expressioncache.size",  10000, "Maximum number of parsed StructrScript expressions to keep in memory. Set to 0 to disable caching.");
+	public static final Setting<Boolean> SharedJavascriptScope    = new BooleanSetting(applicationGroup, "Scripting",    "application.scripting.js.sharedscope",        false, "If enabled, all Javascript executions share one sealed instance of the standard objects instead of creating them for every execution. Only enable this if no script or included library modifies built-in objects like Array.prototype.");
 
 
 	// mail settings
@@ -176,7 +194,10 @@ public class Settings {
 
 	// advanced settings
 	public static final Setting<Boolean> JsonRedundancyReduction      = new BooleanSetting(advancedGroup, "JSON",   "json.redundancyreduction",       true);
-	public static final Setting<Integer> JsonParallelizationThreshold = new IntegerSetting(advancedGroup, "JSON",   "json.parallelization.threshold", 100, "Collection size threshold for multi-threaded JSON generation");
+	public static final Setting<Integer> JsonParallelizationThreads   = new IntegerSetting(advancedGroup, "JSON",   "json.parallelization.threads",   Runtime.getRuntime().availableProcessors(), "Number of threads for multi-threaded JSON generation, shared by all requests");
+	public static final Setting<Integer> JsonParallelizationQueueSize = new IntegerSetting(advancedGroup, "JSON",   "json.parallelization.queuesize", 64,   "Maximum number of chunks waiting for a thread in multi-threaded JSON generation. If the queue is full, chunks are serialized in the request thread.");
+	public static final Setting<Integer> JsonParallelizationBudget    = new IntegerSetting(advancedGroup, "JSON",   "json.parallelization.budget",    4,    "Maximum number of chunks a single request can have in progress in multi-threaded JSON generation");
+	public static final Setting<Integer> JsonParallelizationChunkTime = new IntegerSetting(advancedGroup, "JSON",   "json.parallelization.chunktime", 10,   "Target serialization time (in milliseconds) of a chunk in multi-threaded JSON generation, the chunk size is calculated from the measured time of the first objects. Collections that can be serialized faster are serialized in the request thread.");
 	public static final Setting<Boolean> JsonLenient                  = new BooleanSetting(advancedGroup, "JSON",   "json.lenient",                   false, "Whether to use lenient serialization, e.g. allow to serialize NaN, -Infinity, Infinity instead of just returning null. Note: as long as Javascript doesn’t support NaN etc., most of the UI will be broken");
 	public static final Setting<Boolean> ForceArrays                  = new BooleanSetting(advancedGroup, "JSON",   "json.output.forcearrays",        false);
 
@@ -223,6 +244,9 @@ public class Settings {
 	public static final Setting<Boolean> HtmlUserAutocreate       = new BooleanSetting(servletsGroup, "HtmlServlet", "htmlservlet.user.autocreate",       true);
 	public static final Setting<String> HtmlResolveProperties     = new StringSetting(servletsGroup,  "HtmlServlet", "htmlservlet.resolveproperties",     "AbstractNode.name", "Specifies the list of properties that are be used to resolve entities from URL paths.");
 	public static final Setting<String> HtmlCustomResponseHeaders = new TextSetting(servletsGroup,    "HtmlServlet", "htmlservlet.customresponseheaders", "Strict-Transport-Security:max-age=60,X-Content-Type-Options:nosniff,X-Frame-Options:SAMEORIGIN,X-XSS-Protection:1;mode=block", "List of custom response headers that will be added to every HTTP response");
+	public static final Setting<Integer> HtmlRenderThreads        = new IntegerSetting(servletsGroup, "HtmlServlet", "htmlservlet.async.render.threads",  32, "Maximum number of threads that render pages for asynchronous responses. Requests that exceed this number wait until a render thread becomes available.");
+	public static final Setting<Integer> HtmlRenderCacheSize      = new IntegerSetting(servletsGroup, "HtmlServlet", "htmlservlet.rendercache.size",      1000, "Maximum number of rendered pages and page elements that are cached on the server. Only pages and elements with a renderCacheSeconds value are cached. Set to 0 to disable the cache.");
+	public static final Setting<Integer> HtmlRenderBufferSize     = new IntegerSetting(servletsGroup, "HtmlServlet", "htmlservlet.async.buffer.size",     262144, "Maximum number of bytes of rendered output that are buffered per asynchronous response. When the client reads slower than the page is rendered, rendering is paused until the buffered output has been written.");
 
 	public static final Setting<String> PdfServletPath           = new StringSetting(servletsGroup,  "PdfServlet", "pdfservlet.path",                  "/structr/pdf/*");
 	public static final Setting<String> PdfServletClass          = new StringSetting(servletsGroup,  "PdfServlet", "pdfservlet.class",                 "org.structr.pdf.servlet.PdfServlet");
@@ -244,6 +268,8 @@ public class Settings {
 	public static final Setting<Boolean> WebsocketUserAutologin    = new BooleanSetting(servletsGroup, "WebSocketServlet", "websocketservlet.user.autologin",    false, "Unused");
 	public static final Setting<Boolean> WebsocketUserAutocreate   = new BooleanSetting(servletsGroup, "WebSocketServlet", "websocketservlet.user.autocreate",   false, "Unused");
 	public static final Setting<Boolean> WebsocketFrontendAccess   = new BooleanSetting(servletsGroup, "WebSocketServlet", "websocketservlet.frontendaccess",    false);
+	public static final Setting<Integer> WebsocketBroadcastWindow  = new IntegerSetting(servletsGroup, "WebSocketServlet", "websocketservlet.broadcast.window",  20, "Time in milliseconds during which updates of the same object are combined into a single broadcast message");
+	public static final Setting<Integer> WebsocketOutboundQueueSize = new IntegerSetting(servletsGroup, "WebSocketServlet", "websocketservlet.outbound.queue.size", 1000, "Maximum number of messages waiting to be sent to a single websocket client. Clients that fall further behind are disconnected.");
 
 	public static final Setting<String> CsvServletPath       = new StringSetting(servletsGroup,  "CsvServlet", "csvservlet.path",              "/structr/csv/*", "URL pattern for CSV output. Do not change unless you know what you are doing.");
 	public static final Setting<String> CsvServletClass      = new StringSetting(servletsGroup,  "CsvServlet", "csvservlet.class",             "org.structr.rest.servlet.CsvServlet", "Servlet class to use for CSV output. Do not change unless you know what you are doing.");
@@ -307,6 +333,7 @@ public class Settings {
 	public static final Setting<String> SuperUserPassword              = new PasswordSetting(securityGroup,   "Superuser",            "superuser.password",                    RandomStringUtils.randomAlphanumeric(12), "Password of the superuser (or empty to create a random password at runtime)");
 	public static final Setting<Integer> ResolutionDepth               = new IntegerSetting(applicationGroup, "Application Security", "application.security.resolution.depth", 5);
 	public static final Setting<String> OwnerlessNodes                 = new StringSetting(applicationGroup,  "Application Security", "application.security.ownerless.nodes",  "read", "The permission level for users on nodes without an owner. One or more of: <code>read, write, delete, accessControl</code>");
+	public static final Setting<Boolean> QuerySecurityFilter           = new BooleanSetting(applicationGroup, "Application Security", "application.security.queryfilter",       false, "Compiles the read permissions of non-admin users into the database query so that only readable nodes are returned. Not used if permissions can be propagated or custom permission queries exist.");
 
 	public static final Setting<Integer> TwoFactorLevel                = new IntegerChoiceSetting(securityGroup, "Two Factor Authentication", "security.twofactorauthentication.level",                1,             Settings.getTwoFactorSettingOptions());
 	public static final Setting<String> TwoFactorIssuer                = new StringSetting(securityGroup,        "Two Factor Authentication", "security.twofactorauthentication.issuer",               "Structr",     "Must be URL-compliant in order to scan the created QR code");
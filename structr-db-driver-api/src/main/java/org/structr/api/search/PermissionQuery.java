@@ -0,0 +1,32 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.search;
+
+import java.util.List;
+
+/**
+ * Restricts a node query to the nodes that are readable for a user,
+ * i.e. nodes that are visible to authenticated users, the user node
+ * itself and its (transitive) groups, and nodes owned by or shared with
+ * the user or one of its groups.
+ */
+public interface PermissionQuery extends QueryPredicate {
+
+	List<Long> getPrincipalIds();
+}
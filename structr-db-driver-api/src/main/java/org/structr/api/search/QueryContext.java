@@ -29,6 +29,11 @@ public class QueryContext {
 
 	private boolean isPing = false;
 
+	private boolean keyset    = false;
+	private boolean hasSeek   = false;
+	private Object seekValue  = null;
+	private long seekId       = -1L;
+
 	public QueryContext() {
 	}
 
@@ -41,6 +46,15 @@ public class QueryContext {
 		return this;
 	}
 
+	public QueryContext unslice() {
+
+		sliced = false;
+		skip   = -1;
+		limit  = -1;
+
+		return this;
+	}
+
 	public boolean isSliced () {
 		return sliced;
 	}
@@ -62,4 +76,51 @@ public class QueryContext {
 		return this.isPing;
 	}
 
+	/**
+	 * Enables keyset pagination, i.e. the result is ordered by the sort
+	 * key and the internal database ID so that a subsequent query can
+	 * continue after the last element with a seek condition instead
+	 * of skipping over all previous results.
+	 *
+	 * @param keyset
+	 * @return this
+	 */
+	public QueryContext keyset(final boolean keyset) {
+		this.keyset = keyset;
+		return this;
+	}
+
+	public boolean isKeyset() {
+		return keyset;
+	}
+
+	/**
+	 * Sets the position after which a keyset-paginated query continues.
+	 *
+	 * @param sortValue the database value of the sort key of the last element, or null
+	 * @param id the internal database ID of the last element
+	 * @return this
+	 */
+	public QueryContext seek(final Object sortValue, final long id) {
+
+		this.keyset    = true;
+		this.hasSeek   = true;
+		this.seekValue = sortValue;
+		this.seekId    = id;
+
+		return this;
+	}
+
+	public boolean hasSeek() {
+		return hasSeek;
+	}
+
+	public Object getSeekValue() {
+		return seekValue;
+	}
+
+	public long getSeekId() {
+		return seekId;
+	}
+
 }
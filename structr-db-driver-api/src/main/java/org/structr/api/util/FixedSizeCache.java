@@ -18,10 +18,12 @@
  */
 package org.structr.api.util;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Map;
-import org.apache.commons.collections4.map.LRUMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A map-like storage structure with a fixed maximum size that
@@ -29,61 +31,332 @@ import org.apache.commons.collections4.map.LRUMap;
  * a new entry causes the map to exceed the specified maximum
  * size.
  *
+ * The cache is split into independent segments, each of which
+ * evicts approximately least recently used entries with the
+ * CLOCK algorithm. Reads do not take any locks, writes only
+ * lock the segment the key belongs to. Values that implement
+ * {@link Cachable} are notified when they are evicted.
+ *
  * @param <K>
  * @param <V>
  */
 public class FixedSizeCache<K, V> {
 
-	private Map<K, V> cache  = null;
+	private static final int MIN_SEGMENT_SIZE = 1024;
+	private static final int MAX_SEGMENTS     = 64;
+
+	private final LongAdder hits      = new LongAdder();
+	private final LongAdder misses    = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private Segment<K, V>[] segments  = null;
+	private int segmentShift          = 0;
+	private int maxSize               = 0;
 
 	public FixedSizeCache(final int maxSize) {
-		this.cache   = Collections.synchronizedMap(new InvalidatingLRUMap<>(maxSize));
+
+		final int segmentCount = getSegmentCount(maxSize);
+		final int baseSize     = maxSize / segmentCount;
+		final int remainder    = maxSize % segmentCount;
+
+		this.maxSize      = maxSize;
+		this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+		this.segments     = new Segment[segmentCount];
+
+		for (int i=0; i<segmentCount; i++) {
+
+			segments[i] = new Segment<>(i < remainder ? baseSize + 1 : baseSize);
+		}
 	}
 
-	public synchronized void put(final K key, final V value) {
-		cache.put(key, value);
+	public void put(final K key, final V value) {
+		notifyEvicted(segmentFor(key).put(key, value, false));
+	}
+
+	/**
+	 * Stores the given value only if no value is cached for the given
+	 * key yet, and returns the value that is stored in the cache after
+	 * this call.
+	 *
+	 * @param key
+	 * @param value
+	 * @return the cached value
+	 */
+	public V putIfAbsent(final K key, final V value) {
+
+		final Segment<K, V> segment = segmentFor(key);
+		final V existing            = segment.get(key);
+
+		if (existing != null) {
+			return existing;
+		}
+
+		final List<V> evicted = segment.put(key, value, true);
+		final V result        = segment.get(key);
+
+		notifyEvicted(evicted);
+
+		return result != null ? result : value;
 	}
 
-	public synchronized V get(final K key) {
-		return cache.get(key);
+	public V get(final K key) {
+
+		final V value = segmentFor(key).get(key);
+		if (value != null) {
+
+			hits.increment();
+
+		} else {
+
+			misses.increment();
+		}
+
+		return value;
 	}
 
-	public synchronized void removeAll(final Collection<K> keys) {
-		cache.keySet().removeAll(keys);
+	public void removeAll(final Collection<K> keys) {
+
+		for (final K key : keys) {
+			remove(key);
+		}
 	}
 
-	public synchronized V remove(final K key) {
-		return cache.remove(key);
+	public V remove(final K key) {
+		return segmentFor(key).remove(key);
 	}
 
-	public synchronized void clear() {
-		cache.clear();
+	public void clear() {
+
+		for (final Segment<K, V> segment : segments) {
+			segment.clear();
+		}
 	}
 
-	public synchronized int size() {
-		return cache.size();
+	public int size() {
+
+		int size = 0;
+
+		for (final Segment<K, V> segment : segments) {
+			size += segment.size();
+		}
+
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	// ----- private methods -----
+	private Segment<K, V> segmentFor(final K key) {
+
+		if (segments.length == 1) {
+			return segments[0];
+		}
+
+		// Fibonacci hashing so the segment index does not correlate
+		// with the bucket index of the segment's ConcurrentHashMap
+		return segments[(key.hashCode() * 0x9E3779B9) >>> segmentShift];
+	}
+
+	private void notifyEvicted(final List<V> evicted) {
+
+		if (evicted != null) {
+
+			for (final V value : evicted) {
+
+				evictions.increment();
+
+				if (value instanceof Cachable) {
+					((Cachable)value).onRemoveFromCache();
+				}
+			}
+		}
+	}
+
+	private static int getSegmentCount(final int maxSize) {
+
+		final int concurrency = Runtime.getRuntime().availableProcessors() * 4;
+		final int bySize      = maxSize / MIN_SEGMENT_SIZE;
+		final int count       = Math.min(MAX_SEGMENTS, Math.min(concurrency, bySize));
+
+		// segment count must be a power of two
+		return count > 1 ? Integer.highestOneBit(count) : 1;
 	}
 
-	public synchronized boolean isEmpty() {
-		return cache.isEmpty();
+	// ----- nested classes -----
+	private static class Entry<K, V> {
+
+		private volatile boolean referenced = false;
+		private volatile V value            = null;
+		private K key                       = null;
+		private int slot                    = -1;
+
+		Entry(final K key, final V value, final int slot) {
+
+			this.key   = key;
+			this.value = value;
+			this.slot  = slot;
+		}
 	}
 
-	private static class InvalidatingLRUMap<K, V> extends LRUMap<K, V> {
+	/**
+	 * One segment of the cache. Lookups go directly to a concurrent map,
+	 * modifications are serialized on the segment. Entries are arranged
+	 * in a ring that is swept by the clock hand to find an eviction
+	 * candidate that was not accessed since the last sweep.
+	 */
+	private static class Segment<K, V> {
+
+		private final ConcurrentHashMap<K, Entry<K, V>> map = new ConcurrentHashMap<>();
+		private Entry<K, V>[] ring                          = null;
+		private int[] freeSlots                             = new int[16];
+		private int freeCount                               = 0;
+		private int nextSlot                                = 0;
+		private int capacity                                = 0;
+		private int hand                                    = 0;
+
+		Segment(final int capacity) {
+
+			this.capacity = Math.max(1, capacity);
+			this.ring     = new Entry[Math.min(this.capacity, 16)];
+		}
+
+		V get(final K key) {
+
+			final Entry<K, V> entry = map.get(key);
+			if (entry != null) {
+
+				// avoid a volatile write if the flag is already set
+				if (!entry.referenced) {
+					entry.referenced = true;
+				}
+
+				return entry.value;
+			}
 
-		public InvalidatingLRUMap(final int maxSize) {
-			super(maxSize, true);
+			return null;
 		}
 
-		@Override
-		protected boolean removeLRU(final LinkEntry<K, V> entry) {
+		synchronized List<V> put(final K key, final V value, final boolean onlyIfAbsent) {
 
-			final V value = entry.getValue();
-			if (value != null && value instanceof Cachable) {
+			final Entry<K, V> existing = map.get(key);
+			if (existing != null) {
 
-				((Cachable)value).onRemoveFromCache();
+				if (!onlyIfAbsent) {
+
+					existing.value      = value;
+					existing.referenced = true;
+				}
+
+				return null;
+			}
+
+			List<V> evicted = null;
+			int slot        = -1;
+
+			if (freeCount > 0) {
+
+				slot = freeSlots[--freeCount];
+
+			} else if (nextSlot < capacity) {
+
+				slot = nextSlot++;
+
+				if (slot >= ring.length) {
+					ring = Arrays.copyOf(ring, Math.min(capacity, ring.length * 2));
+				}
+
+			} else {
+
+				final Entry<K, V> victim = evict();
+
+				slot    = victim.slot;
+				evicted = new LinkedList<>();
+
+				evicted.add(victim.value);
 			}
 
-			return true;
+			final Entry<K, V> entry = new Entry<>(key, value, slot);
+
+			ring[slot] = entry;
+			map.put(key, entry);
+
+			return evicted;
+		}
+
+		synchronized V remove(final K key) {
+
+			final Entry<K, V> entry = map.remove(key);
+			if (entry != null) {
+
+				ring[entry.slot] = null;
+
+				if (freeCount == freeSlots.length) {
+					freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+				}
+
+				freeSlots[freeCount++] = entry.slot;
+
+				return entry.value;
+			}
+
+			return null;
+		}
+
+		synchronized void clear() {
+
+			map.clear();
+
+			ring      = new Entry[Math.min(capacity, 16)];
+			freeSlots = new int[16];
+			freeCount = 0;
+			nextSlot  = 0;
+			hand      = 0;
+		}
+
+		int size() {
+			return map.size();
+		}
+
+		// ----- private methods -----
+		private Entry<K, V> evict() {
+
+			// only called when the segment is full, so every slot is occupied
+			while (true) {
+
+				final Entry<K, V> candidate = ring[hand];
+
+				hand = (hand + 1) % capacity;
+
+				if (candidate.referenced) {
+
+					// second chance
+					candidate.referenced = false;
+
+				} else {
+
+					map.remove(candidate.key);
+					ring[candidate.slot] = null;
+
+					return candidate;
+				}
+			}
 		}
 	}
 }
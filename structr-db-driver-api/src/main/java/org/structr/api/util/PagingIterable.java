@@ -19,6 +19,7 @@
 package org.structr.api.util;
 
 import java.util.Iterator;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +31,7 @@ public class PagingIterable<T> implements ResultStream<T> {
 	private static final Logger logger = LoggerFactory.getLogger(PagingIterable.class);
 	private PagingIterator<T> source   = null;
 	private String queryTimeFormatted  = null;
+	private Function<T, String> cursor = null;
 
 	public PagingIterable(final Iterable<T> source) {
 		this(source, Integer.MAX_VALUE, 1);
@@ -71,6 +73,32 @@ public class PagingIterable<T> implements ResultStream<T> {
 		return source.getPage();
 	}
 
+	@Override
+	public String getNextCursor() {
+
+		// a partial page means there are no more results
+		if (cursor != null && source.isPageFull()) {
+
+			final T last = source.getLast();
+			if (last != null) {
+
+				return cursor.apply(last);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Sets the function that creates the keyset pagination cursor
+	 * from the last element of the current page.
+	 *
+	 * @param cursor
+	 */
+	public void setCursorFunction(final Function<T, String> cursor) {
+		this.cursor = cursor;
+	}
+
 	@Override
 	public void setQueryTime(String formattedTime) {
 		this.queryTimeFormatted = formattedTime;
@@ -30,7 +30,9 @@ public class PagingIterator<T> implements Iterator<T> {
 	private final int page;
 	private final int pageSize;
 	private int currentIndex;
+	private int returned     = 0;
 	private boolean consumed = false;
+	private T last           = null;
 
 	public PagingIterator(final Iterator<T> iterator, final int page, final int pageSize) {
 
@@ -107,6 +109,9 @@ public class PagingIterator<T> implements Iterator<T> {
 
 			T next = iterator.next();
 			currentIndex++;
+			returned++;
+
+			last = next;
 
 			return next;
 
@@ -144,6 +149,20 @@ public class PagingIterator<T> implements Iterator<T> {
 		return this.page;
 	}
 
+	/**
+	 * Returns the last element that was returned by next(), elements
+	 * consumed by getResultCount() are not taken into account.
+	 *
+	 * @return the last element of the current page or null
+	 */
+	public T getLast() {
+		return last;
+	}
+
+	public boolean isPageFull() {
+		return returned >= pageSize;
+	}
+
 	public boolean isConsumed() {
 		return consumed;
 	}
@@ -45,6 +45,17 @@ public interface ResultStream<T> extends Iterable<T> {
 	int getPageSize();
 	int getPage();
 
+	/**
+	 * Returns an opaque token that can be used to request the page
+	 * following this one with keyset pagination, or null if there is
+	 * no such page or the result does not support keyset pagination.
+	 *
+	 * @return the cursor for the next page or null
+	 */
+	default String getNextCursor() {
+		return null;
+	}
+
 	void setQueryTime(final String formattedTime);
 	String getQueryTime();
 }
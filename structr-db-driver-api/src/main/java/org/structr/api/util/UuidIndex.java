@@ -0,0 +1,463 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A compact, fixed-size mapping from UUID strings to database IDs.
+ *
+ * UUIDs are stored as two primitive longs next to the database ID in
+ * open-addressed arrays, so an entry costs about 32 bytes instead of a
+ * String, an Identity object and a map entry. The index is split into
+ * segments with optimistic (lock-free) reads, and evicts entries with
+ * the CLOCK algorithm once a segment is full.
+ *
+ * Only UUIDs in Structr's canonical format (32 lowercase hex digits)
+ * can be stored, all other keys are silently ignored.
+ */
+public class UuidIndex {
+
+	public static final long NOT_FOUND = -1L;
+
+	private static final int SEGMENT_COUNT = 64;
+	private static final float LOAD_FACTOR = 0.75f;
+
+	private final LongAdder hits      = new LongAdder();
+	private final LongAdder misses    = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private Segment[] segments        = null;
+	private int maxSize               = 0;
+
+	public UuidIndex(final int maxSize) {
+
+		final int segmentCount = Math.max(1, Math.min(SEGMENT_COUNT, maxSize / 64));
+		final int baseSize     = maxSize / segmentCount;
+		final int remainder    = maxSize % segmentCount;
+
+		this.maxSize  = maxSize;
+		this.segments = new Segment[segmentCount];
+
+		for (int i=0; i<segmentCount; i++) {
+
+			segments[i] = new Segment(i < remainder ? baseSize + 1 : baseSize);
+		}
+	}
+
+	/**
+	 * Returns the database ID for the given UUID, or NOT_FOUND.
+	 *
+	 * @param uuid
+	 * @return the database ID or NOT_FOUND
+	 */
+	public long get(final String uuid) {
+
+		final long hi = parseHex(uuid, 0);
+		final long lo = parseHex(uuid, 16);
+
+		if (isValid(uuid, hi, lo)) {
+
+			final long hash = hash(hi, lo);
+			final long id   = segmentFor(hash).get(hi, lo, hash);
+
+			if (id != NOT_FOUND) {
+
+				hits.increment();
+				return id;
+			}
+		}
+
+		misses.increment();
+
+		return NOT_FOUND;
+	}
+
+	public void put(final String uuid, final long id) {
+
+		final long hi = parseHex(uuid, 0);
+		final long lo = parseHex(uuid, 16);
+
+		if (id >= 0 && isValid(uuid, hi, lo)) {
+
+			final long hash = hash(hi, lo);
+
+			if (segmentFor(hash).put(hi, lo, hash, id)) {
+				evictions.increment();
+			}
+		}
+	}
+
+	public void remove(final String uuid) {
+
+		final long hi = parseHex(uuid, 0);
+		final long lo = parseHex(uuid, 16);
+
+		if (isValid(uuid, hi, lo)) {
+
+			final long hash = hash(hi, lo);
+
+			segmentFor(hash).remove(hi, lo, hash);
+		}
+	}
+
+	public void clear() {
+
+		for (final Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	public int size() {
+
+		int size = 0;
+
+		for (final Segment segment : segments) {
+			size += segment.size;
+		}
+
+		return size;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	// ----- private methods -----
+	private Segment segmentFor(final long hash) {
+		return segments[(int)((hash >>> 32) % segments.length)];
+	}
+
+	private boolean isValid(final String uuid, final long hi, final long lo) {
+
+		// a parse error is signalled by -1, so we need to double-check
+		// in the (very unlikely) case that a UUID contains -1 legitimately
+		if (hi == -1L || lo == -1L) {
+
+			return uuid != null && uuid.length() == 32 && uuid.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'));
+		}
+
+		return true;
+	}
+
+	// ----- private static methods -----
+	private static long parseHex(final String uuid, final int offset) {
+
+		if (uuid == null || uuid.length() != 32) {
+			return -1L;
+		}
+
+		long value = 0L;
+
+		for (int i=offset; i<offset+16; i++) {
+
+			final char c = uuid.charAt(i);
+			final int digit;
+
+			if (c >= '0' && c <= '9') {
+
+				digit = c - '0';
+
+			} else if (c >= 'a' && c <= 'f') {
+
+				digit = c - 'a' + 10;
+
+			} else {
+
+				return -1L;
+			}
+
+			value = (value << 4) | digit;
+		}
+
+		return value;
+	}
+
+	private static long hash(final long hi, final long lo) {
+
+		// MurmurHash3 finalizer, UUIDs are usually random but
+		// we cannot rely on that for user-supplied values
+		long h = hi ^ Long.rotateLeft(lo, 32);
+
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+
+		return h;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * One segment of the index, a linear probing hash table with
+	 * backward-shift deletion (so no tombstones are needed).
+	 */
+	private static class Segment {
+
+		private final StampedLock lock = new StampedLock();
+		private long[] his             = null;
+		private long[] los             = null;
+		private long[] ids             = null;
+		private byte[] referenced      = null;
+		private volatile int size      = 0;
+		private int maxEntries         = 0;
+		private int hand               = 0;
+
+		Segment(final int maxEntries) {
+
+			final int capacity = Math.max(2, (int)Math.ceil(maxEntries / LOAD_FACTOR) + 1);
+
+			this.maxEntries = Math.max(1, maxEntries);
+			this.his        = new long[capacity];
+			this.los        = new long[capacity];
+			this.ids        = new long[capacity];
+			this.referenced = new byte[capacity];
+
+			Arrays.fill(ids, NOT_FOUND);
+		}
+
+		long get(final long hi, final long lo, final long hash) {
+
+			final long stamp = lock.tryOptimisticRead();
+			final int slot   = find(hi, lo, hash);
+			final long id    = slot >= 0 ? ids[slot] : NOT_FOUND;
+
+			if (lock.validate(stamp)) {
+
+				if (slot >= 0) {
+					referenced[slot] = 1;
+				}
+
+				return id;
+			}
+
+			// concurrent modification, retry with read lock
+			final long readStamp = lock.readLock();
+			try {
+
+				final int lockedSlot = find(hi, lo, hash);
+				if (lockedSlot >= 0) {
+
+					referenced[lockedSlot] = 1;
+					return ids[lockedSlot];
+				}
+
+				return NOT_FOUND;
+
+			} finally {
+
+				lock.unlockRead(readStamp);
+			}
+		}
+
+		/**
+		 * Stores the given mapping and returns true if another
+		 * entry had to be evicted to make room for it.
+		 */
+		boolean put(final long hi, final long lo, final long hash, final long id) {
+
+			final long stamp = lock.writeLock();
+			try {
+
+				final int existing = find(hi, lo, hash);
+				if (existing >= 0) {
+
+					ids[existing] = id;
+					return false;
+				}
+
+				boolean evicted = false;
+
+				if (size >= maxEntries) {
+
+					evict();
+					evicted = true;
+				}
+
+				int slot = indexFor(hash);
+
+				while (ids[slot] != NOT_FOUND) {
+					slot = next(slot);
+				}
+
+				his[slot]        = hi;
+				los[slot]        = lo;
+				ids[slot]        = id;
+				referenced[slot] = 0;
+
+				size++;
+
+				return evicted;
+
+			} finally {
+
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		void remove(final long hi, final long lo, final long hash) {
+
+			final long stamp = lock.writeLock();
+			try {
+
+				final int slot = find(hi, lo, hash);
+				if (slot >= 0) {
+
+					delete(slot);
+				}
+
+			} finally {
+
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		void clear() {
+
+			final long stamp = lock.writeLock();
+			try {
+
+				Arrays.fill(ids, NOT_FOUND);
+				Arrays.fill(referenced, (byte)0);
+
+				size = 0;
+				hand = 0;
+
+			} finally {
+
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		// ----- private methods -----
+		private int find(final long hi, final long lo, final long hash) {
+
+			final int capacity = ids.length;
+			int slot           = indexFor(hash);
+
+			// bounded so that an inconsistent optimistic read cannot loop forever
+			for (int i=0; i<capacity; i++) {
+
+				if (ids[slot] == NOT_FOUND) {
+					return -1;
+				}
+
+				if (his[slot] == hi && los[slot] == lo) {
+					return slot;
+				}
+
+				slot = next(slot);
+			}
+
+			return -1;
+		}
+
+		private void evict() {
+
+			while (true) {
+
+				final int slot = hand;
+
+				hand = next(hand);
+
+				if (ids[slot] != NOT_FOUND) {
+
+					if (referenced[slot] != 0) {
+
+						// second chance
+						referenced[slot] = 0;
+
+					} else {
+
+						delete(slot);
+						return;
+					}
+				}
+			}
+		}
+
+		private void delete(final int slot) {
+
+			int gap  = slot;
+			int next = next(slot);
+
+			// backward-shift deletion: move subsequent entries of the
+			// probe sequence into the gap so lookups never stop early
+			while (ids[next] != NOT_FOUND) {
+
+				final int home = indexFor(hash(his[next], los[next]));
+
+				if (isBetween(home, gap, next)) {
+
+					next = next(next);
+					continue;
+				}
+
+				his[gap]        = his[next];
+				los[gap]        = los[next];
+				ids[gap]        = ids[next];
+				referenced[gap] = referenced[next];
+
+				gap  = next;
+				next = next(next);
+			}
+
+			ids[gap]        = NOT_FOUND;
+			referenced[gap] = 0;
+
+			size--;
+		}
+
+		/**
+		 * Returns true if home lies cyclically in (gap, slot], i.e. the
+		 * entry at slot cannot be moved to gap without breaking its
+		 * probe sequence.
+		 */
+		private boolean isBetween(final int home, final int gap, final int slot) {
+
+			if (gap <= slot) {
+				return gap < home && home <= slot;
+			}
+
+			return gap < home || home <= slot;
+		}
+
+		private int indexFor(final long hash) {
+			return (int)((hash & 0x7fffffffL) % ids.length);
+		}
+
+		private int next(final int slot) {
+			return slot + 1 == ids.length ? 0 : slot + 1;
+		}
+	}
+}
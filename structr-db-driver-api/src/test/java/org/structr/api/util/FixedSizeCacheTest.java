@@ -18,8 +18,15 @@
  */
 package org.structr.api.util;
 
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
 import org.testng.annotations.Test;
 
 /**
@@ -58,4 +65,83 @@ public class FixedSizeCacheTest {
 		}
 
 	}
+
+	@Test
+	public void testSecondChanceEviction() {
+
+		final FixedSizeCache<Long, Long> test = new FixedSizeCache<>(10);
+
+		for (int i=0; i<10; i++) {
+
+			final Long value = Long.valueOf(i);
+			test.put(value, value);
+		}
+
+		// access the first entry so it survives the next eviction
+		assertEquals("Invalid FixedSizeCache contents", Long.valueOf(0), test.get(0L));
+
+		test.put(10L, 10L);
+
+		assertEquals("Invalid FixedSizeCache size", 10, test.size());
+		assertEquals("Recently used entry was evicted", Long.valueOf(0), test.get(0L));
+		assertNull("Least recently used entry was not evicted", test.get(1L));
+	}
+
+	@Test
+	public void testStatisticsAndInvalidation() {
+
+		final AtomicInteger removed               = new AtomicInteger();
+		final FixedSizeCache<Long, Cachable> test   = new FixedSizeCache<>(5);
+
+		for (int i=0; i<8; i++) {
+			test.put(Long.valueOf(i), () -> removed.incrementAndGet());
+		}
+
+		// explicit removal must not trigger the invalidation callback
+		test.remove(7L);
+
+		test.get(6L);
+		test.get(0L);
+
+		assertEquals("Invalid number of invalidated entries", 3, removed.get());
+		assertEquals("Invalid eviction count", 3, test.getEvictionCount());
+		assertEquals("Invalid hit count",      1, test.getHitCount());
+		assertEquals("Invalid miss count",     1, test.getMissCount());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+
+		final int maxSize                     = 100000;
+		final FixedSizeCache<Long, Long> test = new FixedSizeCache<>(maxSize);
+		final ExecutorService executor        = Executors.newFixedThreadPool(8);
+		final List<Future<?>> futures         = new LinkedList<>();
+
+		for (int t=0; t<8; t++) {
+
+			final int offset = t;
+
+			futures.add(executor.submit(() -> {
+
+				for (int i=0; i<50000; i++) {
+
+					final Long value = Long.valueOf(i * 8 + offset);
+
+					assertEquals("Invalid putIfAbsent result", value, test.putIfAbsent(value, value));
+
+					final Long cached = test.get(value);
+					assertTrue("Invalid FixedSizeCache contents", cached == null || cached.equals(value));
+				}
+			}));
+		}
+
+		for (final Future<?> future : futures) {
+			future.get();
+		}
+
+		executor.shutdown();
+
+		assertEquals("Invalid FixedSizeCache size", maxSize, test.size());
+		assertEquals("Invalid eviction count", 400000 - maxSize, test.getEvictionCount());
+	}
 }
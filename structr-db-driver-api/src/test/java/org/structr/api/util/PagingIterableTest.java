@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.LinkedList;
+import java.util.List;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import org.testng.annotations.Test;
+
+public class PagingIterableTest {
+
+	@Test
+	public void testNextCursor() {
+
+		final List<Integer> list = new LinkedList<>();
+
+		// fill list with numbers
+		for (int i=1; i<=10; i++) {
+			list.add(i);
+		}
+
+		// full page => cursor is created from the last element
+		final PagingIterable<Integer> first = new PagingIterable<>(list, 4, 1);
+		first.setCursorFunction(i -> "after" + i);
+
+		assertEquals("Invalid page content", "[1, 2, 3, 4]", Iterables.toList(first).toString());
+		assertEquals("Invalid cursor", "after4", first.getNextCursor());
+
+		// counting the total result must not move the cursor
+		assertEquals("Invalid result count", 10, first.calculateTotalResultCount());
+		assertEquals("Invalid cursor", "after4", first.getNextCursor());
+
+		// partial page => no more results, no cursor
+		final PagingIterable<Integer> last = new PagingIterable<>(list, 4, 3);
+		last.setCursorFunction(i -> "after" + i);
+
+		assertEquals("Invalid page content", "[9, 10]", Iterables.toList(last).toString());
+		assertNull("Partial page must not have a cursor", last.getNextCursor());
+
+		// no cursor function => no cursor
+		final PagingIterable<Integer> plain = new PagingIterable<>(list, 4, 1);
+
+		Iterables.toList(plain);
+
+		assertNull("Result without cursor function must not have a cursor", plain.getNextCursor());
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import static org.testng.AssertJUnit.assertEquals;
+import org.testng.annotations.Test;
+
+/**
+ *
+ */
+public class UuidIndexTest {
+
+	@Test
+	public void testPutGetRemove() {
+
+		final UuidIndex index       = new UuidIndex(100000);
+		final Map<String, Long> ref = new HashMap<>();
+		final List<String> uuids    = new ArrayList<>();
+		final Random random         = new Random(42L);
+
+		for (int i=0; i<50000; i++) {
+
+			final String uuid = newUuid();
+
+			index.put(uuid, i);
+			ref.put(uuid, Long.valueOf(i));
+			uuids.add(uuid);
+		}
+
+		// remove every third entry to exercise backward-shift deletion
+		for (int i=0; i<uuids.size(); i+=3) {
+
+			final String uuid = uuids.get(i);
+
+			index.remove(uuid);
+			ref.remove(uuid);
+		}
+
+		// overwrite some entries
+		for (int i=0; i<1000; i++) {
+
+			final String uuid = uuids.get(random.nextInt(uuids.size()));
+			if (ref.containsKey(uuid)) {
+
+				index.put(uuid, i);
+				ref.put(uuid, Long.valueOf(i));
+			}
+		}
+
+		assertEquals("Invalid UuidIndex size", ref.size(), index.size());
+
+		for (final String uuid : uuids) {
+
+			final Long expected = ref.get(uuid);
+
+			assertEquals("Invalid UuidIndex contents", expected != null ? expected.longValue() : UuidIndex.NOT_FOUND, index.get(uuid));
+		}
+	}
+
+	@Test
+	public void testEviction() {
+
+		final UuidIndex index    = new UuidIndex(1000);
+		final List<String> uuids = new ArrayList<>();
+
+		for (int i=0; i<5000; i++) {
+
+			final String uuid = newUuid();
+
+			index.put(uuid, i);
+			uuids.add(uuid);
+		}
+
+		assertEquals("Invalid UuidIndex size", 1000, index.size());
+		assertEquals("Invalid eviction count", 4000, index.getEvictionCount());
+
+		int found = 0;
+
+		for (int i=0; i<uuids.size(); i++) {
+
+			final long id = index.get(uuids.get(i));
+			if (id != UuidIndex.NOT_FOUND) {
+
+				assertEquals("Invalid UuidIndex contents", i, id);
+				found++;
+			}
+		}
+
+		assertEquals("Invalid number of entries", 1000, found);
+	}
+
+	@Test
+	public void testInvalidKeys() {
+
+		final UuidIndex index = new UuidIndex(100);
+
+		index.put(null, 1L);
+		index.put("not-a-uuid", 2L);
+		index.put("ABCDEF0123456789ABCDEF0123456789", 3L);
+		index.put(UUID.randomUUID().toString(), 4L);
+		index.put("ffffffffffffffffffffffffffffffff", 5L);
+
+		assertEquals("Invalid UuidIndex size", 1, index.size());
+		assertEquals("Invalid UuidIndex contents", UuidIndex.NOT_FOUND, index.get("ABCDEF0123456789ABCDEF0123456789"));
+		assertEquals("Invalid UuidIndex contents", UuidIndex.NOT_FOUND, index.get("abcdef0123456789abcdef0123456789"));
+		assertEquals("Invalid UuidIndex contents", 5L, index.get("ffffffffffffffffffffffffffffffff"));
+	}
+
+	// ----- private methods -----
+	private String newUuid() {
+		return UUID.randomUUID().toString().replaceAll("[\\-]+", "");
+	}
+}
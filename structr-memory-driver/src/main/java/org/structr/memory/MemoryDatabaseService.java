@@ -0,0 +1,490 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.AbstractDatabaseService;
+import org.structr.api.NotFoundException;
+import org.structr.api.NotInTransactionException;
+import org.structr.api.Transaction;
+import org.structr.api.graph.Direction;
+import org.structr.api.graph.GraphProperties;
+import org.structr.api.graph.Identity;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.Relationship;
+import org.structr.api.index.Index;
+import org.structr.api.util.CountResult;
+import org.structr.api.util.Iterables;
+import org.structr.api.util.NodeWithOwnerResult;
+import org.structr.memory.graph.MemoryIdentity;
+import org.structr.memory.graph.MemoryNode;
+import org.structr.memory.graph.MemoryRelationship;
+import org.structr.memory.index.MemoryNodeIndex;
+import org.structr.memory.index.MemoryRelationshipIndex;
+import org.structr.memory.store.MemoryStore;
+import org.structr.memory.store.NodeRecord;
+import org.structr.memory.store.RelationshipRecord;
+import org.structr.memory.store.Values;
+
+/**
+ * Database service that keeps all data on the heap, for tests, benchmarks
+ * and ephemeral instances. Data is lost when the service is shut down.
+ *
+ * Transactions read committed data, concurrent modifications of the same
+ * entity are detected on commit, see {@link MemoryTransaction}. All
+ * properties are indexed, so there is no index configuration. Cypher is
+ * not supported, see {@link #supportsNativeQueries}.
+ */
+public class MemoryDatabaseService extends AbstractDatabaseService implements GraphProperties {
+
+	private static final Logger logger                               = LoggerFactory.getLogger(MemoryDatabaseService.class.getName());
+	private static final ThreadLocal<MemoryTransaction> transactions = new ThreadLocal<>();
+	private final Properties globalGraphProperties                   = new Properties();
+	private MemoryRelationshipIndex relationshipIndex                = null;
+	private MemoryNodeIndex nodeIndex                                = null;
+	private MemoryStore store                                        = null;
+
+	@Override
+	public boolean initialize() {
+
+		store = new MemoryStore();
+
+		logger.info("Using in-memory database, all data will be lost on shutdown");
+
+		return true;
+	}
+
+	@Override
+	public void shutdown() {
+
+		if (store != null) {
+			store.clear();
+		}
+	}
+
+	@Override
+	public Transaction beginTx() {
+
+		MemoryTransaction tx = transactions.get();
+		if (tx == null || tx.isClosed()) {
+
+			tx = new MemoryTransaction(store);
+			transactions.set(tx);
+		}
+
+		return tx;
+	}
+
+	@Override
+	public Node createNode(final String type, final Set<String> labels, final Map<String, Object> properties) {
+
+		final MemoryTransaction tx  = getCurrentTransaction();
+		final Set<String> allLabels = new LinkedHashSet<>();
+		final String tenantId       = getTenantIdentifier();
+
+		if (tenantId != null) {
+			allLabels.add(tenantId);
+		}
+
+		allLabels.addAll(labels);
+
+		final NodeRecord node = tx.createNode(allLabels, toStore(properties));
+
+		return new MemoryNode(this, node.getId());
+	}
+
+	@Override
+	public NodeWithOwnerResult createNodeWithOwner(final Identity userId, final String type, final Set<String> labels, final Map<String, Object> nodeProperties, final Map<String, Object> ownsProperties, final Map<String, Object> securityProperties) {
+
+		final MemoryNode owner = getOwner(userId);
+		if (owner != null) {
+
+			return createNodeWithOwner(owner, type, labels, nodeProperties, ownsProperties, securityProperties);
+		}
+
+		return null;
+	}
+
+	@Override
+	public List<Node> createNodes(final String type, final Set<String> labels, final List<Map<String, Object>> properties) {
+
+		final List<Node> result = new LinkedList<>();
+
+		for (final Map<String, Object> nodeProperties : properties) {
+
+			result.add(createNode(type, labels, nodeProperties));
+		}
+
+		return result;
+	}
+
+	@Override
+	public List<NodeWithOwnerResult> createNodesWithOwner(final Identity userId, final String type, final Set<String> labels, final List<Map<String, Object>> nodeProperties, final List<Map<String, Object>> ownsProperties, final List<Map<String, Object>> securityProperties) {
+
+		final List<NodeWithOwnerResult> result = new LinkedList<>();
+		final MemoryNode owner                 = getOwner(userId);
+
+		if (owner != null) {
+
+			for (int i=0; i<nodeProperties.size(); i++) {
+
+				result.add(createNodeWithOwner(owner, type, labels, nodeProperties.get(i), ownsProperties.get(i), securityProperties.get(i)));
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public Node getNodeById(final Identity id) {
+		return getNodeById(unwrap(id));
+	}
+
+	@Override
+	public Relationship getRelationshipById(final Identity id) {
+		return getRelationshipById(unwrap(id));
+	}
+
+	@Override
+	public Iterable<Node> getAllNodes() {
+
+		final String tenantId = getTenantIdentifier();
+		if (tenantId != null) {
+
+			return getNodesByLabel(tenantId);
+		}
+
+		return getNodes(store.getNodeIds(), null);
+	}
+
+	@Override
+	public Iterable<Node> getNodesByLabel(final String type) {
+
+		if (type == null) {
+			return getAllNodes();
+		}
+
+		return getNodes(store.getNodeIds(type), type);
+	}
+
+	@Override
+	public Iterable<Node> getNodesByTypeProperty(final String type) {
+
+		if (type == null) {
+			return getAllNodes();
+		}
+
+		return Iterables.filter(n -> type.equals(n.getProperty("type")), getNodes(store.getNodeProperties().get("type", type), getTenantIdentifier()));
+	}
+
+	@Override
+	public void deleteNodesByLabel(final String label) {
+
+		for (final Node node : Iterables.toList(getNodesByLabel(label))) {
+
+			node.delete(true);
+		}
+	}
+
+	@Override
+	public Iterable<Relationship> getAllRelationships() {
+		return getRelationshipsByType(null);
+	}
+
+	@Override
+	public Iterable<Relationship> getRelationshipsByType(final String type) {
+
+		final List<Relationship> result = new ArrayList<>();
+		final MemoryTransaction tx      = getReadTransaction();
+		final String tenantId           = getTenantIdentifier();
+
+		for (final Long id : tx.withLocalRelationships(type != null ? store.getRelationshipIds(type) : store.getRelationshipIds())) {
+
+			final RelationshipRecord rel = tx.getRelationship(id);
+			if (rel != null && (type == null || type.equals(rel.getType()))) {
+
+				if (tenantId == null || (hasLabel(tx.getNode(rel.getSourceId()), tenantId) && hasLabel(tx.getNode(rel.getTargetId()), tenantId))) {
+
+					result.add(new MemoryRelationship(this, id));
+				}
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public GraphProperties getGlobalProperties() {
+		return this;
+	}
+
+	@Override
+	public Index<Node> nodeIndex() {
+
+		if (nodeIndex == null) {
+			nodeIndex = new MemoryNodeIndex(this);
+		}
+
+		return nodeIndex;
+	}
+
+	@Override
+	public Index<Relationship> relationshipIndex() {
+
+		if (relationshipIndex == null) {
+			relationshipIndex = new MemoryRelationshipIndex(this);
+		}
+
+		return relationshipIndex;
+	}
+
+	@Override
+	public void updateIndexConfiguration(final Map<String, Map<String, Boolean>> schemaIndexConfig, final Map<String, Map<String, Boolean>> removedClasses) {
+		// all properties are indexed, nothing to do
+	}
+
+	@Override
+	public boolean supportsNativeQueries() {
+		return false;
+	}
+
+	@Override
+	public Iterable<Map<String, Object>> execute(final String nativeQuery) {
+		return execute(nativeQuery, null);
+	}
+
+	@Override
+	public Iterable<Map<String, Object>> execute(final String nativeQuery, final Map<String, Object> parameters) {
+		throw new UnsupportedOperationException("Cypher queries are not supported by the in-memory database");
+	}
+
+	@Override
+	public void clearCaches() {
+		// entities are not cached, nothing to do
+	}
+
+	@Override
+	public void cleanDatabase() {
+
+		for (final Node node : Iterables.toList(getAllNodes())) {
+
+			node.delete(true);
+		}
+	}
+
+	public MemoryTransaction getCurrentTransaction() {
+		return getCurrentTransaction(true);
+	}
+
+	public MemoryTransaction getCurrentTransaction(final boolean throwNotInTransactionException) {
+
+		final MemoryTransaction tx = transactions.get();
+		if (tx == null || tx.isClosed()) {
+
+			if (throwNotInTransactionException) {
+				throw new NotInTransactionException("Not in transaction");
+			}
+
+			return null;
+		}
+
+		return tx;
+	}
+
+	/**
+	 * Returns the current transaction, or a read-only view of the most
+	 * recent version if there is no transaction.
+	 *
+	 * @return a transaction to read from
+	 */
+	public MemoryTransaction getReadTransaction() {
+
+		final MemoryTransaction tx = getCurrentTransaction(false);
+		if (tx != null) {
+
+			return tx;
+		}
+
+		return MemoryTransaction.readOnly(store);
+	}
+
+	public MemoryStore getStore() {
+		return store;
+	}
+
+	@Override
+	public void prefetch(final Iterable<Identity> ids, final Direction direction, final Set<String> relationshipTypes) {
+		// all data is in memory, nothing to prefetch
+	}
+
+	@Override
+	public long unwrap(final Identity identity) {
+
+		if (identity instanceof MemoryIdentity) {
+
+			return ((MemoryIdentity)identity).getId();
+		}
+
+		throw new IllegalArgumentException("This implementation cannot handle Identity objects of type " + identity.getClass().getName() + ".");
+	}
+
+	@Override
+	public Identity identify(final long id) {
+		return new MemoryIdentity(id);
+	}
+
+	public Node getNodeById(final long id) {
+
+		if (getReadTransaction().getNode(id) == null) {
+
+			throw new NotFoundException("Node " + id + " not found");
+		}
+
+		return new MemoryNode(this, id);
+	}
+
+	public Relationship getRelationshipById(final long id) {
+
+		if (getReadTransaction().getRelationship(id) == null) {
+
+			throw new NotFoundException("Relationship " + id + " not found");
+		}
+
+		return new MemoryRelationship(this, id);
+	}
+
+	// ----- interface GraphProperties -----
+	@Override
+	public void setProperty(final String name, final Object value) {
+
+		if (value != null) {
+
+			globalGraphProperties.setProperty(name, value.toString());
+
+		} else {
+
+			globalGraphProperties.remove(name);
+		}
+	}
+
+	@Override
+	public Object getProperty(final String name) {
+		return globalGraphProperties.getProperty(name);
+	}
+
+	@Override
+	public CountResult getNodeAndRelationshipCount() {
+
+		final MemoryTransaction tx = getReadTransaction();
+		final String tenantId      = getTenantIdentifier();
+		long nodeCount             = 0L;
+		long relCount              = 0L;
+
+		for (final Long id : tx.withLocalNodes(store.getNodeIds("NodeInterface"))) {
+
+			final NodeRecord node = tx.getNode(id);
+			if (hasLabel(node, "NodeInterface") && (tenantId == null || node.hasLabel(tenantId))) {
+
+				nodeCount++;
+				relCount += tx.getRelationships(id, Direction.OUTGOING).size();
+			}
+		}
+
+		return new CountResult(nodeCount, relCount);
+	}
+
+	// ----- private methods -----
+	private NodeWithOwnerResult createNodeWithOwner(final MemoryNode owner, final String type, final Set<String> labels, final Map<String, Object> nodeProperties, final Map<String, Object> ownsProperties, final Map<String, Object> securityProperties) {
+
+		final MemoryTransaction tx = getCurrentTransaction();
+		final MemoryNode newNode   = (MemoryNode)createNode(type, labels, nodeProperties);
+		final long ownerId         = owner.getDatabaseId();
+		final long nodeId          = newNode.getDatabaseId();
+
+		final MemoryRelationship ownsRel     = new MemoryRelationship(this, tx.createRelationship("OWNS", ownerId, nodeId, toStore(ownsProperties)).getId());
+		final MemoryRelationship securityRel = new MemoryRelationship(this, tx.createRelationship("SECURITY", ownerId, nodeId, toStore(securityProperties)).getId());
+
+		return new NodeWithOwnerResult(newNode, securityRel, ownsRel);
+	}
+
+	private MemoryNode getOwner(final Identity userId) {
+
+		final NodeRecord node = getCurrentTransaction().getNode(unwrap(userId));
+		final String tenantId = getTenantIdentifier();
+
+		// same restrictions as the Cypher statement of the Bolt driver
+		if (hasLabel(node, "NodeInterface") && node.hasLabel("Principal") && (tenantId == null || node.hasLabel(tenantId))) {
+
+			return new MemoryNode(this, node.getId());
+		}
+
+		return null;
+	}
+
+	private Iterable<Node> getNodes(final Collection<Long> candidates, final String label) {
+
+		final MemoryTransaction tx = getReadTransaction();
+		final String tenantId      = getTenantIdentifier();
+		final List<Node> result    = new ArrayList<>();
+
+		for (final Long id : tx.withLocalNodes(candidates)) {
+
+			final NodeRecord node = tx.getNode(id);
+			if (node != null && (label == null || node.hasLabel(label)) && (tenantId == null || node.hasLabel(tenantId))) {
+
+				result.add(new MemoryNode(this, id));
+			}
+		}
+
+		return result;
+	}
+
+	private boolean hasLabel(final NodeRecord node, final String label) {
+		return node != null && node.hasLabel(label);
+	}
+
+	private Map<String, Object> toStore(final Map<String, Object> properties) {
+
+		final Map<String, Object> result = new LinkedHashMap<>();
+
+		if (properties != null) {
+
+			for (final Map.Entry<String, Object> entry : properties.entrySet()) {
+
+				final Object value = entry.getValue();
+				if (value != null) {
+
+					result.put(entry.getKey(), Values.toStore(value));
+				}
+			}
+		}
+
+		return result;
+	}
+}
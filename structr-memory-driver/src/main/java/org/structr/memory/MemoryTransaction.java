@@ -0,0 +1,357 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.structr.api.NotFoundException;
+import org.structr.api.Transaction;
+import org.structr.api.graph.Direction;
+import org.structr.memory.store.MemoryStore;
+import org.structr.memory.store.NodeRecord;
+import org.structr.memory.store.RelationshipRecord;
+
+/**
+ * A transaction of the in-memory database.
+ *
+ * The transaction reads the most recently committed state, overlaid with
+ * its own changes (read committed, like Neo4j). Changes are collected in
+ * private copies of the modified records and become visible to other
+ * transactions atomically on commit. The version each copy is based on is
+ * recorded, so that concurrent modifications of the same entity can be
+ * detected on commit.
+ */
+public class MemoryTransaction implements Transaction {
+
+	private static final AtomicLong idSource = new AtomicLong();
+
+	private final Map<Long, RelationshipRecord> relationships = new LinkedHashMap<>();
+	private final Map<Long, Long> relationshipVersions        = new HashMap<>();
+	private final Map<Long, NodeRecord> nodes                 = new LinkedHashMap<>();
+	private final Map<Long, Long> nodeVersions                = new HashMap<>();
+	private final Map<Long, Set<Long>> outgoing               = new HashMap<>();
+	private final Map<Long, Set<Long>> incoming               = new HashMap<>();
+	private MemoryStore store                                 = null;
+	private long transactionId                                = 0L;
+	private long snapshot                                     = 0L;
+	private boolean registered                                = false;
+	private boolean success                                   = false;
+	private boolean failure                                   = false;
+	private boolean closed                                    = false;
+
+	public MemoryTransaction(final MemoryStore store) {
+
+		// the snapshot prevents the versions this transaction
+		// reads from being pruned by concurrent commits
+		this(store, store.acquireSnapshot(), true);
+	}
+
+	private MemoryTransaction(final MemoryStore store, final long snapshot, final boolean registered) {
+
+		this.transactionId = idSource.incrementAndGet();
+		this.registered    = registered;
+		this.snapshot      = snapshot;
+		this.store         = store;
+	}
+
+	/**
+	 * Creates a read-only view of the current version, for read access
+	 * outside of a transaction.
+	 *
+	 * @param store
+	 * @return a read-only transaction
+	 */
+	public static MemoryTransaction readOnly(final MemoryStore store) {
+		return new MemoryTransaction(store, store.getVersion(), false);
+	}
+
+	@Override
+	public void failure() {
+		failure = true;
+	}
+
+	@Override
+	public void success() {
+		success = true;
+	}
+
+	@Override
+	public long getTransactionId() {
+		return transactionId;
+	}
+
+	@Override
+	public void close() {
+
+		if (!closed) {
+
+			try {
+
+				if (success && !failure && (!nodes.isEmpty() || !relationships.isEmpty())) {
+
+					store.commit(nodes, nodeVersions, relationships, relationshipVersions);
+				}
+
+			} finally {
+
+				closed = true;
+
+				nodes.clear();
+				nodeVersions.clear();
+				relationships.clear();
+				relationshipVersions.clear();
+				outgoing.clear();
+				incoming.clear();
+
+				if (registered) {
+					store.releaseSnapshot(snapshot);
+				}
+			}
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public MemoryStore getStore() {
+		return store;
+	}
+
+	// ----- read access -----
+	public NodeRecord getNode(final long id) {
+
+		if (nodes.containsKey(id)) {
+			return nodes.get(id);
+		}
+
+		return store.getNode(store.getVersion(), id);
+	}
+
+	public RelationshipRecord getRelationship(final long id) {
+
+		if (relationships.containsKey(id)) {
+			return relationships.get(id);
+		}
+
+		return store.getRelationship(store.getVersion(), id);
+	}
+
+	/**
+	 * Adds the IDs of the nodes that were created or modified in this
+	 * transaction to the given candidates from the indexes of the store.
+	 *
+	 * @param candidates
+	 * @return the candidates
+	 */
+	public Collection<Long> withLocalNodes(final Collection<Long> candidates) {
+		return withLocalChanges(candidates, nodes);
+	}
+
+	/**
+	 * Adds the IDs of the relationships that were created or modified in
+	 * this transaction to the given candidates from the indexes of the store.
+	 *
+	 * @param candidates
+	 * @return the candidates
+	 */
+	public Collection<Long> withLocalRelationships(final Collection<Long> candidates) {
+		return withLocalChanges(candidates, relationships);
+	}
+
+	/**
+	 * Returns the relationships of the given node that are visible in
+	 * this transaction.
+	 *
+	 * @param nodeId
+	 * @param direction
+	 * @return the relationships
+	 */
+	public List<RelationshipRecord> getRelationships(final long nodeId, final Direction direction) {
+
+		final List<RelationshipRecord> result = new ArrayList<>();
+		final Set<Long> ids                   = new LinkedHashSet<>();
+		final boolean includeOutgoing         = !Direction.INCOMING.equals(direction);
+		final boolean includeIncoming         = !Direction.OUTGOING.equals(direction);
+
+		// relationships that were created in this transaction are not in the store yet
+		if (includeOutgoing) {
+
+			ids.addAll(store.getOutgoingRelationshipIds(nodeId));
+			ids.addAll(outgoing.getOrDefault(nodeId, Collections.emptySet()));
+		}
+
+		if (includeIncoming) {
+
+			ids.addAll(store.getIncomingRelationshipIds(nodeId));
+			ids.addAll(incoming.getOrDefault(nodeId, Collections.emptySet()));
+		}
+
+		for (final Long id : ids) {
+
+			final RelationshipRecord rel = getRelationship(id);
+			if (rel != null && ((includeOutgoing && rel.getSourceId() == nodeId) || (includeIncoming && rel.getTargetId() == nodeId))) {
+
+				result.add(rel);
+			}
+		}
+
+		return result;
+	}
+
+	// ----- write access -----
+	public NodeRecord createNode(final Set<String> labels, final Map<String, Object> properties) {
+
+		final NodeRecord node = new NodeRecord(store.nextNodeId(), labels, properties);
+
+		nodes.put(node.getId(), node);
+
+		return node;
+	}
+
+	public RelationshipRecord createRelationship(final String type, final long sourceId, final long targetId, final Map<String, Object> properties) {
+
+		// throws NotFoundException
+		getExistingNode(sourceId);
+		getExistingNode(targetId);
+
+		final RelationshipRecord rel = new RelationshipRecord(store.nextRelationshipId(), type, sourceId, targetId, properties);
+
+		relationships.put(rel.getId(), rel);
+
+		outgoing.computeIfAbsent(sourceId, k -> new LinkedHashSet<>()).add(rel.getId());
+		incoming.computeIfAbsent(targetId, k -> new LinkedHashSet<>()).add(rel.getId());
+
+		return rel;
+	}
+
+	/**
+	 * Returns the private copy of the given node that can be modified in
+	 * this transaction.
+	 *
+	 * @param id
+	 * @return the modifiable record
+	 * @throws NotFoundException if the node does not exist
+	 */
+	public NodeRecord modifyNode(final long id) {
+
+		if (!nodes.containsKey(id)) {
+
+			final long version    = store.getVersion();
+			final NodeRecord node = store.getNode(version, id);
+
+			if (node == null) {
+				throw new NotFoundException("Node " + id + " not found");
+			}
+
+			nodes.put(id, node.copy());
+			nodeVersions.put(id, version);
+		}
+
+		return getExistingNode(id);
+	}
+
+	/**
+	 * Returns the private copy of the given relationship that can be
+	 * modified in this transaction.
+	 *
+	 * @param id
+	 * @return the modifiable record
+	 * @throws NotFoundException if the relationship does not exist
+	 */
+	public RelationshipRecord modifyRelationship(final long id) {
+
+		if (!relationships.containsKey(id)) {
+
+			final long version           = store.getVersion();
+			final RelationshipRecord rel = store.getRelationship(version, id);
+
+			if (rel == null) {
+				throw new NotFoundException("Relationship " + id + " not found");
+			}
+
+			relationships.put(id, rel.copy());
+			relationshipVersions.put(id, version);
+		}
+
+		return getExistingRelationship(id);
+	}
+
+	public void deleteNode(final long id) {
+
+		// throws NotFoundException
+		modifyNode(id);
+
+		nodes.put(id, null);
+	}
+
+	public void deleteRelationship(final long id) {
+
+		// throws NotFoundException
+		modifyRelationship(id);
+
+		relationships.put(id, null);
+	}
+
+	// ----- private methods -----
+	private NodeRecord getExistingNode(final long id) {
+
+		final NodeRecord node = getNode(id);
+		if (node == null) {
+
+			throw new NotFoundException("Node " + id + " not found");
+		}
+
+		return node;
+	}
+
+	private RelationshipRecord getExistingRelationship(final long id) {
+
+		final RelationshipRecord rel = getRelationship(id);
+		if (rel == null) {
+
+			throw new NotFoundException("Relationship " + id + " not found");
+		}
+
+		return rel;
+	}
+
+	private Collection<Long> withLocalChanges(final Collection<Long> candidates, final Map<Long, ?> changes) {
+
+		final Set<Long> result = new LinkedHashSet<>(candidates);
+
+		for (final Entry<Long, ?> entry : changes.entrySet()) {
+
+			if (entry.getValue() != null) {
+				result.add(entry.getKey());
+			}
+		}
+
+		return result;
+	}
+}
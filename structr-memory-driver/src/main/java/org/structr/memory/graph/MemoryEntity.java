@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.graph;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.structr.api.NotFoundException;
+import org.structr.api.graph.Identity;
+import org.structr.api.graph.PropertyContainer;
+import org.structr.memory.MemoryDatabaseService;
+import org.structr.memory.MemoryTransaction;
+import org.structr.memory.store.EntityRecord;
+import org.structr.memory.store.Values;
+
+/**
+ * Base class for nodes and relationships of the in-memory database. An
+ * entity only holds the ID, the data is read from the current transaction
+ * on every access, so entities can be shared between transactions.
+ */
+public abstract class MemoryEntity<R extends EntityRecord> implements PropertyContainer {
+
+	protected MemoryDatabaseService db = null;
+	protected long id                  = -1L;
+
+	protected abstract R read(final MemoryTransaction tx);
+	protected abstract R modify(final MemoryTransaction tx);
+
+	public MemoryEntity(final MemoryDatabaseService db, final long id) {
+
+		this.db = db;
+		this.id = id;
+	}
+
+	public long getDatabaseId() {
+		return id;
+	}
+
+	public MemoryDatabaseService getDatabaseService() {
+		return db;
+	}
+
+	@Override
+	public Identity getId() {
+		return new MemoryIdentity(id);
+	}
+
+	@Override
+	public boolean hasProperty(final String name) {
+		return read().getProperties().containsKey(name);
+	}
+
+	@Override
+	public Object getProperty(final String name) {
+		return Values.fromStore(read().getProperties().get(name));
+	}
+
+	@Override
+	public Object getProperty(final String name, final Object defaultValue) {
+
+		final Object value = getProperty(name);
+		if (value == null) {
+
+			return defaultValue;
+		}
+
+		return value;
+	}
+
+	@Override
+	public void setProperty(final String key, final Object value) {
+
+		final Map<String, Object> properties = modify().getProperties();
+
+		if (value != null) {
+
+			properties.put(key, Values.toStore(value));
+
+		} else {
+
+			properties.remove(key);
+		}
+	}
+
+	@Override
+	public void setProperties(final Map<String, Object> values) {
+
+		final Map<String, Object> properties = modify().getProperties();
+
+		for (final Entry<String, Object> entry : values.entrySet()) {
+
+			final String key   = entry.getKey();
+			final Object value = entry.getValue();
+
+			if (value != null) {
+
+				properties.put(key, Values.toStore(value));
+
+			} else {
+
+				properties.remove(key);
+			}
+		}
+	}
+
+	@Override
+	public void removeProperty(final String key) {
+		modify().getProperties().remove(key);
+	}
+
+	@Override
+	public Iterable<String> getPropertyKeys() {
+		return new ArrayList<>(read().getProperties().keySet());
+	}
+
+	@Override
+	public boolean isDeleted() {
+		return read(db.getReadTransaction()) == null;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.valueOf(id).hashCode();
+	}
+
+	@Override
+	public boolean equals(final Object other) {
+
+		if (other != null && other.getClass().equals(getClass())) {
+
+			return ((MemoryEntity)other).id == id;
+		}
+
+		return false;
+	}
+
+	// ----- protected methods -----
+	/**
+	 * Returns the version of this entity that is visible in the current
+	 * transaction, or the most recent version if there is no transaction.
+	 *
+	 * @return the record
+	 * @throws NotFoundException if the entity does not exist
+	 */
+	protected R read() {
+
+		final R record = read(db.getReadTransaction());
+		if (record == null) {
+
+			throw new NotFoundException(toString() + " not found");
+		}
+
+		return record;
+	}
+
+	/**
+	 * Returns the modifiable copy of this entity in the current transaction.
+	 *
+	 * @return the record
+	 * @throws org.structr.api.NotInTransactionException if there is no transaction
+	 * @throws NotFoundException if the entity does not exist
+	 */
+	protected R modify() {
+		return modify(db.getCurrentTransaction());
+	}
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.structr.api.NotInTransactionException;
+import org.structr.api.graph.Direction;
+import org.structr.api.graph.Label;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipType;
+import org.structr.memory.MemoryDatabaseService;
+import org.structr.memory.MemoryTransaction;
+import org.structr.memory.store.NodeRecord;
+import org.structr.memory.store.RelationshipRecord;
+
+/**
+ *
+ */
+public class MemoryNode extends MemoryEntity<NodeRecord> implements Node {
+
+	private static final Comparator<RelationshipRecord> relationshipOrder = Comparator.comparing((RelationshipRecord r) -> (String)r.getProperties().get("internalTimestamp"), Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(RelationshipRecord::getId);
+
+	public MemoryNode(final MemoryDatabaseService db, final long id) {
+		super(db, id);
+	}
+
+	@Override
+	public String toString() {
+		return "N" + id;
+	}
+
+	@Override
+	public Relationship createRelationshipTo(final Node endNode, final RelationshipType relationshipType) {
+		return createRelationshipTo(endNode, relationshipType, Collections.emptyMap());
+	}
+
+	@Override
+	public Relationship createRelationshipTo(final Node endNode, final RelationshipType relationshipType, final Map<String, Object> properties) {
+
+		final MemoryTransaction tx = db.getCurrentTransaction();
+		final long endNodeId       = ((MemoryNode)endNode).getDatabaseId();
+		final String type          = relationshipType.name();
+
+		// same semantics as the MERGE of the Bolt driver: an existing
+		// relationship of the same type between the two nodes is reused
+		RelationshipRecord rel = findRelationshipTo(tx, type, endNodeId);
+		if (rel == null) {
+
+			rel = tx.createRelationship(type, id, endNodeId, new LinkedHashMap<>());
+		}
+
+		final MemoryRelationship relationship = new MemoryRelationship(db, rel.getId());
+
+		relationship.setProperties(properties);
+
+		return relationship;
+	}
+
+	@Override
+	public void addLabel(final Label label) {
+		modify().getLabels().add(label.name());
+	}
+
+	@Override
+	public void removeLabel(final Label label) {
+		modify().getLabels().remove(label.name());
+	}
+
+	@Override
+	public Iterable<Label> getLabels() {
+
+		final List<Label> result = new ArrayList<>();
+
+		for (final String label : read().getLabels()) {
+			result.add(db.forName(Label.class, label));
+		}
+
+		return result;
+	}
+
+	@Override
+	public boolean hasRelationshipTo(final RelationshipType relationshipType, final Node targetNode) {
+		return findRelationshipTo(db.getReadTransaction(), relationshipType.name(), ((MemoryNode)targetNode).getDatabaseId()) != null;
+	}
+
+	@Override
+	public Iterable<Relationship> getRelationships() {
+		return getRelationships(Direction.BOTH);
+	}
+
+	@Override
+	public Iterable<Relationship> getRelationships(final Direction direction) {
+		return getRelationships(direction, null);
+	}
+
+	@Override
+	public Iterable<Relationship> getRelationships(final Direction direction, final RelationshipType relationshipType) {
+
+		final MemoryTransaction tx             = db.getReadTransaction();
+		final List<RelationshipRecord> records = new ArrayList<>();
+		final List<Relationship> result        = new ArrayList<>();
+
+		// throws NotFoundException
+		read();
+
+		for (final RelationshipRecord rel : tx.getRelationships(id, direction)) {
+
+			if (relationshipType == null || relationshipType.name().equals(rel.getType())) {
+
+				records.add(rel);
+			}
+		}
+
+		// same order as the Bolt driver, i.e. sorted by creation time
+		records.sort(relationshipOrder);
+
+		for (final RelationshipRecord rel : records) {
+			result.add(new MemoryRelationship(db, rel.getId()));
+		}
+
+		return Collections.unmodifiableList(result);
+	}
+
+	@Override
+	public void delete(final boolean deleteRelationships) throws NotInTransactionException {
+
+		final MemoryTransaction tx = db.getCurrentTransaction();
+
+		if (deleteRelationships) {
+
+			for (final RelationshipRecord rel : tx.getRelationships(id, Direction.BOTH)) {
+				tx.deleteRelationship(rel.getId());
+			}
+		}
+
+		tx.deleteNode(id);
+	}
+
+	// ----- protected methods -----
+	@Override
+	protected NodeRecord read(final MemoryTransaction tx) {
+		return tx.getNode(id);
+	}
+
+	@Override
+	protected NodeRecord modify(final MemoryTransaction tx) {
+		return tx.modifyNode(id);
+	}
+
+	// ----- private methods -----
+	private RelationshipRecord findRelationshipTo(final MemoryTransaction tx, final String type, final long otherId) {
+
+		for (final RelationshipRecord rel : tx.getRelationships(id, Direction.OUTGOING)) {
+
+			if (rel.getTargetId() == otherId && type.equals(rel.getType())) {
+				return rel;
+			}
+		}
+
+		return null;
+	}
+}
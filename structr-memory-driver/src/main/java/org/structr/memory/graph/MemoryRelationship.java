@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.graph;
+
+import org.structr.api.NotInTransactionException;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipType;
+import org.structr.memory.MemoryDatabaseService;
+import org.structr.memory.MemoryTransaction;
+import org.structr.memory.store.RelationshipRecord;
+
+/**
+ *
+ */
+public class MemoryRelationship extends MemoryEntity<RelationshipRecord> implements Relationship {
+
+	public MemoryRelationship(final MemoryDatabaseService db, final long id) {
+		super(db, id);
+	}
+
+	@Override
+	public String toString() {
+		return "R" + id;
+	}
+
+	@Override
+	public Node getStartNode() {
+		return new MemoryNode(db, read().getSourceId());
+	}
+
+	@Override
+	public Node getEndNode() {
+		return new MemoryNode(db, read().getTargetId());
+	}
+
+	@Override
+	public Node getOtherNode(final Node node) {
+
+		final RelationshipRecord rel = read();
+		final long nodeId            = ((MemoryNode)node).getDatabaseId();
+
+		if (rel.getSourceId() == nodeId) {
+			return new MemoryNode(db, rel.getTargetId());
+		}
+
+		return new MemoryNode(db, rel.getSourceId());
+	}
+
+	@Override
+	public RelationshipType getType() {
+		return db.forName(RelationshipType.class, read().getType());
+	}
+
+	@Override
+	public void delete(final boolean deleteRelationships) throws NotInTransactionException {
+		db.getCurrentTransaction().deleteRelationship(id);
+	}
+
+	// ----- protected methods -----
+	@Override
+	protected RelationshipRecord read(final MemoryTransaction tx) {
+		return tx.getRelationship(id);
+	}
+
+	@Override
+	protected RelationshipRecord modify(final MemoryTransaction tx) {
+		return tx.modifyRelationship(id);
+	}
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.structr.api.DatabaseService;
+import org.structr.api.graph.PropertyContainer;
+import org.structr.api.index.AbstractIndex;
+import org.structr.api.index.QueryFactory;
+import org.structr.api.search.*;
+import org.structr.memory.MemoryDatabaseService;
+import org.structr.memory.MemoryTransaction;
+import org.structr.memory.graph.MemoryEntity;
+import org.structr.memory.index.converter.DateTypeConverter;
+import org.structr.memory.index.converter.StringTypeConverter;
+import org.structr.memory.index.factory.*;
+import org.structr.memory.index.filter.Filter;
+import org.structr.memory.store.PropertyIndex;
+import org.structr.memory.store.Values;
+
+/**
+ * Evaluates search queries against the in-memory database.
+ *
+ * The candidates of a query are taken from the label or type index, or
+ * from the property index if that is more selective, and verified against
+ * the version of each entity that is visible in the current transaction.
+ * Sorting, keyset pagination and paging follow the semantics of the
+ * Cypher queries of the Bolt driver.
+ */
+public abstract class AbstractMemoryIndex<T extends PropertyContainer> extends AbstractIndex<MemoryQuery, T> {
+
+	private final Map<Class, TypeConverter> converters = new HashMap<>();
+	private final Map<Class, QueryFactory> factories   = new HashMap<>();
+	protected MemoryDatabaseService db                 = null;
+
+	/**
+	 * Returns the IDs of the committed entities that can match the type
+	 * labels of the given query.
+	 *
+	 * @param query
+	 * @return the candidate IDs
+	 */
+	protected abstract Set<Long> getTypeCandidates(final MemoryQuery query);
+	protected abstract Collection<Long> withLocalChanges(final MemoryTransaction tx, final Collection<Long> candidates);
+	protected abstract PropertyIndex getPropertyIndex();
+
+	/**
+	 * Returns the entity with the given ID if it is visible in the given
+	 * transaction and matches the type labels and the tenant of the given
+	 * query, or null otherwise.
+	 *
+	 * @param tx
+	 * @param id
+	 * @param query
+	 * @return the entity or null
+	 */
+	protected abstract MemoryEntity getEntity(final MemoryTransaction tx, final long id, final MemoryQuery query);
+
+	public AbstractMemoryIndex(final MemoryDatabaseService db) {
+
+		this.db = db;
+
+		init();
+	}
+
+	@Override
+	public MemoryQuery createQuery(final QueryContext context) {
+		return new MemoryQuery(context);
+	}
+
+	@Override
+	public QueryFactory getFactoryForType(final Class type) {
+		return factories.get(type);
+	}
+
+	@Override
+	public TypeConverter getConverterForType(final Class type) {
+		return converters.get(type);
+	}
+
+	@Override
+	public DatabaseService getDatabaseService() {
+		return db;
+	}
+
+	@Override
+	public Iterable<T> getResult(final MemoryQuery query) {
+
+		final MemoryTransaction tx      = db.getCurrentTransaction();
+		final QueryContext context      = query.getQueryContext();
+		final Filter filter             = query.getFilter();
+		final Comparator<Element> order = getOrder(query);
+		final List<Element> elements    = new ArrayList<>();
+		final Element seek              = context.hasSeek() ? new Element(null, getSortValue(query, context.getSeekValue()), context.getSeekId()) : null;
+		Set<Long> candidates            = getTypeCandidates(query);
+
+		if (filter != null) {
+
+			final Set<Long> indexed = filter.getCandidates(getPropertyIndex());
+			if (indexed != null && indexed.size() < candidates.size()) {
+
+				candidates = indexed;
+			}
+		}
+
+		// changes of the current transaction are not in the indexes yet
+		for (final Long id : withLocalChanges(tx, candidates)) {
+
+			final MemoryEntity entity = getEntity(tx, id, query);
+			if (entity != null && (filter == null || Boolean.TRUE.equals(filter.evaluate(entity)))) {
+
+				final String sortKey  = query.getSortKey();
+				final Element element = new Element(entity, sortKey != null ? getSortValue(query, entity.getProperty(sortKey)) : null, id);
+
+				// keyset pagination: continue after the last element of the previous page
+				if (seek == null || order.compare(element, seek) > 0) {
+
+					elements.add(element);
+				}
+			}
+		}
+
+		elements.sort(order);
+
+		int fromIndex = 0;
+		int toIndex   = elements.size();
+
+		if (context.isSliced()) {
+
+			fromIndex = Math.min(Math.max(0, context.getSkip()), toIndex);
+			toIndex   = Math.min(fromIndex + Math.max(0, context.getLimit()), toIndex);
+		}
+
+		final List<T> result = new ArrayList<>(toIndex - fromIndex);
+
+		for (final Element element : elements.subList(fromIndex, toIndex)) {
+			result.add((T)element.entity);
+		}
+
+		return result;
+	}
+
+	// ----- protected methods -----
+	protected Set<Long> union(final Collection<Set<Long>> sets) {
+
+		final Set<Long> result = new LinkedHashSet<>();
+
+		for (final Set<Long> set : sets) {
+			result.addAll(set);
+		}
+
+		return result;
+	}
+
+	// ----- private methods -----
+	private Object getSortValue(final MemoryQuery query, final Object value) {
+
+		final SortType sortType = query.getSortType();
+
+		if (value == null && sortType != null && !SortType.Default.equals(sortType)) {
+
+			// same as the COALESCE of the Cypher query
+			return -1L;
+		}
+
+		return value;
+	}
+
+	private Comparator<Element> getOrder(final MemoryQuery query) {
+
+		if (query.getSortKey() == null) {
+
+			return (a, b) -> Long.compare(a.id, b.id);
+		}
+
+		// null values are sorted last, like in Cypher
+		final Comparator<Element> byValue = (a, b) -> {
+
+			if (a.sortValue == null || b.sortValue == null) {
+
+				if (a.sortValue == b.sortValue) {
+					return 0;
+				}
+
+				return a.sortValue == null ? 1 : -1;
+			}
+
+			return Values.compare(a.sortValue, b.sortValue);
+		};
+
+		// internal ID as tie-breaker, same direction as the sort key
+		final Comparator<Element> order = byValue.thenComparing((a, b) -> Long.compare(a.id, b.id));
+
+		if (query.isSortDescending()) {
+			return order.reversed();
+		}
+
+		return order;
+	}
+
+	private void init() {
+
+		factories.put(NotEmptyQuery.class,     new NotEmptyQueryFactory(this));
+		factories.put(FulltextQuery.class,     new KeywordQueryFactory(this));
+		factories.put(SpatialQuery.class,      new SpatialQueryFactory(this));
+		factories.put(GroupQuery.class,        new GroupQueryFactory(this));
+		factories.put(RangeQuery.class,        new RangeQueryFactory(this));
+		factories.put(ExactQuery.class,        new KeywordQueryFactory(this));
+		factories.put(ArrayQuery.class,        new ArrayQueryFactory(this));
+		factories.put(EmptyQuery.class,        new EmptyQueryFactory(this));
+		factories.put(TypeQuery.class,         new TypeQueryFactory(this));
+		factories.put(UuidQuery.class,         new UuidQueryFactory(this));
+		factories.put(RelationshipQuery.class, new RelationshipQueryFactory(this));
+		factories.put(ComparisonQuery.class,   new ComparisonQueryFactory(this));
+		factories.put(PermissionQuery.class,   new PermissionQueryFactory(this));
+
+		converters.put(String.class, new StringTypeConverter());
+		converters.put(Date.class,   new DateTypeConverter());
+	}
+
+	// ----- nested classes -----
+	private static class Element {
+
+		private MemoryEntity entity = null;
+		private Object sortValue    = null;
+		private long id             = -1L;
+
+		Element(final MemoryEntity entity, final Object sortValue, final long id) {
+
+			this.sortValue = sortValue;
+			this.entity    = entity;
+			this.id        = id;
+		}
+	}
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import org.structr.api.index.DatabaseQuery;
+import org.structr.api.search.QueryContext;
+import org.structr.api.search.SortType;
+import org.structr.memory.index.filter.AndFilter;
+import org.structr.memory.index.filter.Filter;
+import org.structr.memory.index.filter.NotFilter;
+import org.structr.memory.index.filter.OrFilter;
+
+/**
+ * A search query of the in-memory database.
+ *
+ * The query factories add filters and boolean operators in the same
+ * order as they build the WHERE clause of a Cypher query, the resulting
+ * expression is parsed with the operator precedence of Cypher (NOT before
+ * AND before OR).
+ */
+public class MemoryQuery implements DatabaseQuery {
+
+	private final Deque<List<Object>> groups = new ArrayDeque<>();
+	private final List<String> typeLabels    = new LinkedList<>();
+	private String sourceTypeLabel           = null;
+	private String targetTypeLabel           = null;
+	private boolean sortDescending           = false;
+	private SortType sortType                = null;
+	private String sortKey                   = null;
+	private QueryContext queryContext        = null;
+
+	public MemoryQuery(final QueryContext queryContext) {
+
+		this.queryContext = queryContext;
+
+		groups.push(new ArrayList<>());
+	}
+
+	public void beginGroup() {
+		groups.push(new ArrayList<>());
+	}
+
+	public void endGroup() {
+
+		if (groups.size() > 1) {
+
+			final Filter filter = parse(groups.pop());
+			if (filter != null) {
+
+				groups.peek().add(filter);
+			}
+		}
+	}
+
+	@Override
+	public void and() {
+		groups.peek().add(Operator.And);
+	}
+
+	@Override
+	public void not() {
+		groups.peek().add(Operator.Not);
+	}
+
+	@Override
+	public void andNot() {
+
+		groups.peek().add(Operator.And);
+		groups.peek().add(Operator.Not);
+	}
+
+	@Override
+	public void or() {
+		groups.peek().add(Operator.Or);
+	}
+
+	public void addFilter(final Filter filter) {
+		groups.peek().add(filter);
+	}
+
+	public void typeLabel(final String typeLabel) {
+		this.typeLabels.add(typeLabel);
+	}
+
+	public List<String> getTypeLabels() {
+		return typeLabels;
+	}
+
+	public void setSourceType(final String sourceTypeLabel) {
+		this.sourceTypeLabel = sourceTypeLabel;
+	}
+
+	public String getSourceType() {
+		return sourceTypeLabel;
+	}
+
+	public void setTargetType(final String targetTypeLabel) {
+		this.targetTypeLabel = targetTypeLabel;
+	}
+
+	public String getTargetType() {
+		return targetTypeLabel;
+	}
+
+	@Override
+	public void sort(final SortType sortType, final String sortKey, final boolean sortDescending) {
+
+		this.sortDescending = sortDescending;
+		this.sortType       = sortType;
+		this.sortKey        = sortKey;
+	}
+
+	public String getSortKey() {
+		return sortKey;
+	}
+
+	public SortType getSortType() {
+		return sortType;
+	}
+
+	public boolean isSortDescending() {
+		return sortDescending;
+	}
+
+	public QueryContext getQueryContext() {
+		return queryContext;
+	}
+
+	/**
+	 * Returns the filter expression of this query, or null if the query
+	 * has no filters.
+	 *
+	 * @return the filter or null
+	 */
+	public Filter getFilter() {
+
+		// close unbalanced groups
+		while (groups.size() > 1) {
+			endGroup();
+		}
+
+		return parse(groups.peek());
+	}
+
+	// ----- private methods -----
+	private Filter parse(final List<Object> tokens) {
+
+		final List<Filter> alternatives = new ArrayList<>();
+		List<Filter> conjunction        = new ArrayList<>();
+		boolean negate                  = false;
+
+		for (final Object token : tokens) {
+
+			if (Operator.Or.equals(token)) {
+
+				addConjunction(alternatives, conjunction);
+				conjunction = new ArrayList<>();
+
+			} else if (Operator.Not.equals(token)) {
+
+				negate = !negate;
+
+			} else if (token instanceof Filter) {
+
+				conjunction.add(negate ? new NotFilter((Filter)token) : (Filter)token);
+				negate = false;
+			}
+		}
+
+		addConjunction(alternatives, conjunction);
+
+		switch (alternatives.size()) {
+
+			case 0:
+				return null;
+
+			case 1:
+				return alternatives.get(0);
+
+			default:
+				return new OrFilter(alternatives);
+		}
+	}
+
+	private void addConjunction(final List<Filter> alternatives, final List<Filter> conjunction) {
+
+		switch (conjunction.size()) {
+
+			case 0:
+				break;
+
+			case 1:
+				alternatives.add(conjunction.get(0));
+				break;
+
+			default:
+				alternatives.add(new AndFilter(conjunction));
+				break;
+		}
+	}
+
+	// ----- nested classes -----
+	private enum Operator {
+		And, Or, Not
+	}
+}
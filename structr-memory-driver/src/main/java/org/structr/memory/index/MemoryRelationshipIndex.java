@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import org.structr.api.graph.Relationship;
+import org.structr.memory.MemoryDatabaseService;
+import org.structr.memory.MemoryTransaction;
+import org.structr.memory.graph.MemoryEntity;
+import org.structr.memory.graph.MemoryRelationship;
+import org.structr.memory.store.NodeRecord;
+import org.structr.memory.store.PropertyIndex;
+import org.structr.memory.store.RelationshipRecord;
+
+/**
+ *
+ */
+public class MemoryRelationshipIndex extends AbstractMemoryIndex<Relationship> {
+
+	public MemoryRelationshipIndex(final MemoryDatabaseService db) {
+		super(db);
+	}
+
+	@Override
+	protected Set<Long> getTypeCandidates(final MemoryQuery query) {
+
+		final List<String> typeLabels = query.getTypeLabels();
+
+		switch (typeLabels.size()) {
+
+			case 0:
+				return db.getStore().getRelationshipIds();
+
+			case 1:
+				return db.getStore().getRelationshipIds(typeLabels.get(0));
+
+			default:
+
+				final List<Set<Long>> sets = new ArrayList<>();
+
+				for (final String typeLabel : typeLabels) {
+					sets.add(db.getStore().getRelationshipIds(typeLabel));
+				}
+
+				return union(sets);
+		}
+	}
+
+	@Override
+	protected Collection<Long> withLocalChanges(final MemoryTransaction tx, final Collection<Long> candidates) {
+		return tx.withLocalRelationships(candidates);
+	}
+
+	@Override
+	protected PropertyIndex getPropertyIndex() {
+		return db.getStore().getRelationshipProperties();
+	}
+
+	@Override
+	protected MemoryEntity getEntity(final MemoryTransaction tx, final long id, final MemoryQuery query) {
+
+		final RelationshipRecord rel  = tx.getRelationship(id);
+		final List<String> typeLabels = query.getTypeLabels();
+
+		if (rel == null || (!typeLabels.isEmpty() && !typeLabels.contains(rel.getType()))) {
+			return null;
+		}
+
+		if (!matches(tx.getNode(rel.getSourceId()), query.getSourceType()) || !matches(tx.getNode(rel.getTargetId()), query.getTargetType())) {
+			return null;
+		}
+
+		return new MemoryRelationship(db, id);
+	}
+
+	// ----- private methods -----
+	private boolean matches(final NodeRecord node, final String typeLabel) {
+
+		final String tenantId = db.getTenantIdentifier();
+
+		if (node == null) {
+			return false;
+		}
+
+		if (tenantId != null && !node.hasLabel(tenantId)) {
+			return false;
+		}
+
+		return typeLabel == null || node.hasLabel(typeLabel);
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index.factory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.structr.api.index.AbstractIndex;
+import org.structr.api.index.AbstractQueryFactory;
+import org.structr.api.search.ComparisonQuery.Operation;
+import org.structr.api.search.QueryPredicate;
+import org.structr.memory.index.MemoryQuery;
+import org.structr.memory.index.filter.ListFilter;
+import org.structr.memory.index.filter.PropertyFilter;
+
+public class ArrayQueryFactory extends AbstractQueryFactory<MemoryQuery> {
+
+	protected static final Map<Character, String> SPECIAL_CHARS = new HashMap<>();
+
+	static {
+
+		SPECIAL_CHARS.put('+', "\\");
+		SPECIAL_CHARS.put('-', "\\");
+		SPECIAL_CHARS.put('*', ".");
+		SPECIAL_CHARS.put('?', ".");
+		SPECIAL_CHARS.put('~', "\\");
+		SPECIAL_CHARS.put('.', "\\");
+		SPECIAL_CHARS.put('(', "\\");
+		SPECIAL_CHARS.put(')', "\\");
+		SPECIAL_CHARS.put('{', "\\");
+		SPECIAL_CHARS.put('}', "\\");
+		SPECIAL_CHARS.put('[', "\\");
+		SPECIAL_CHARS.put(']', "\\");
+		SPECIAL_CHARS.put(':', "\\");
+		SPECIAL_CHARS.put('^', "\\");
+		SPECIAL_CHARS.put('&', "\\");
+		SPECIAL_CHARS.put('|', "\\");
+	}
+
+	public ArrayQueryFactory(final AbstractIndex index) {
+		super(index);
+	}
+
+	@Override
+	public boolean createQuery(final QueryPredicate predicate, final MemoryQuery query, final boolean isFirst) {
+
+		final Object value = getReadValue(predicate.getValue());
+		final String name  = predicate.getName();
+
+		checkOccur(query, predicate.getOccurrence(), isFirst);
+
+		if (value == null) {
+
+			query.addFilter(new PropertyFilter(name, Operation.isNull, null));
+
+		} else {
+
+			if (predicate.isExactMatch()) {
+
+				query.addFilter(new ListFilter(name, value));
+
+			} else {
+
+				// same regular expression as the Bolt driver
+				query.addFilter(new ListFilter(name, Pattern.compile("(?i).*" + escape(value) + ".*")));
+			}
+		}
+
+		return true;
+	}
+
+	// ----- private methods -----
+	protected String escape(final Object src) {
+
+		final StringBuilder output = new StringBuilder();
+		final String input         = src.toString();
+
+		for (int i = 0; i < input.length(); i++) {
+
+			final char c        = input.charAt(i);
+			final String prefix = SPECIAL_CHARS.get(c);
+
+			if (prefix != null) {
+				output.append(prefix);
+			}
+
+			output.append(c);
+		}
+
+		return output.toString();
+	}
+}
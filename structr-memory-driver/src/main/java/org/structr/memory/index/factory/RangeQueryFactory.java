@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index.factory;
+
+import java.util.Arrays;
+import org.structr.api.index.AbstractIndex;
+import org.structr.api.index.AbstractQueryFactory;
+import org.structr.api.search.ComparisonQuery.Operation;
+import org.structr.api.search.QueryPredicate;
+import org.structr.api.search.RangeQuery;
+import org.structr.memory.index.MemoryQuery;
+import org.structr.memory.index.filter.AndFilter;
+import org.structr.memory.index.filter.PropertyFilter;
+
+/**
+ *
+ */
+public class RangeQueryFactory extends AbstractQueryFactory<MemoryQuery> {
+
+	public RangeQueryFactory(final AbstractIndex index) {
+		super(index);
+	}
+
+	@Override
+	public boolean createQuery(final QueryPredicate predicate, final MemoryQuery query, final boolean isFirst) {
+
+		if (predicate instanceof RangeQuery) {
+
+			checkOccur(query, predicate.getOccurrence(), isFirst);
+
+			final RangeQuery rangeQuery = (RangeQuery)predicate;
+			final Object rangeStart     = getReadValue(rangeQuery.getRangeStart());
+			final Object rangeEnd       = getReadValue(rangeQuery.getRangeEnd());
+			final String name           = predicate.getName();
+
+			if (rangeStart == null && rangeEnd == null) {
+				return false;
+			}
+
+			// range start is not set => less than
+			if (rangeStart == null && rangeEnd != null) {
+
+				query.addFilter(new PropertyFilter(name, getLessThanOperation(rangeQuery.getIncludeEnd()), rangeEnd));
+				return true;
+			}
+
+			// range end is not set => greater than
+			if (rangeStart != null && rangeEnd == null) {
+
+				query.addFilter(new PropertyFilter(name, getGreaterThanOperation(rangeQuery.getIncludeStart()), rangeStart));
+				return true;
+			}
+
+			// both are set => range
+			query.addFilter(new AndFilter(Arrays.asList(
+				new PropertyFilter(name, getGreaterThanOperation(rangeQuery.getIncludeStart()), rangeStart),
+				new PropertyFilter(name, getLessThanOperation(rangeQuery.getIncludeEnd()), rangeEnd)
+			)));
+
+			return true;
+		}
+
+		return false;
+	}
+
+	private Operation getLessThanOperation(final boolean includeBounds) {
+
+		if (includeBounds) {
+			return Operation.lessOrEqual;
+		}
+
+		return Operation.less;
+	}
+
+	private Operation getGreaterThanOperation(final boolean includeBounds) {
+
+		if (includeBounds) {
+			return Operation.greaterOrEqual;
+		}
+
+		return Operation.greater;
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index.filter;
+
+import java.util.Set;
+import org.structr.memory.graph.MemoryEntity;
+import org.structr.memory.store.PropertyIndex;
+
+/**
+ * A predicate of a search query, evaluated with the three-valued logic of
+ * Cypher: a comparison with a missing value evaluates to null, and only
+ * entities for which the whole expression is true are returned.
+ */
+public interface Filter {
+
+	/**
+	 * Evaluates this filter for the given entity.
+	 *
+	 * @param entity
+	 * @return true, false or null
+	 */
+	Boolean evaluate(final MemoryEntity entity);
+
+	/**
+	 * Returns the IDs of all entities that can match this filter, based on
+	 * the given property index, or null if the index can't be used.
+	 *
+	 * @param index
+	 * @return the candidate IDs or null
+	 */
+	default Set<Long> getCandidates(final PropertyIndex index) {
+		return null;
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index.filter;
+
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.structr.memory.graph.MemoryEntity;
+import org.structr.memory.store.PropertyIndex;
+import org.structr.memory.store.Values;
+
+/**
+ * Matches array properties that contain an element that is equal to the
+ * given value, or that matches the given regular expression.
+ */
+public class ListFilter implements Filter {
+
+	private Pattern pattern = null;
+	private Object value    = null;
+	private String key      = null;
+
+	public ListFilter(final String key, final Object value) {
+
+		this.value = value;
+		this.key   = key;
+	}
+
+	public ListFilter(final String key, final Pattern pattern) {
+
+		this.pattern = pattern;
+		this.key     = key;
+	}
+
+	@Override
+	public Boolean evaluate(final MemoryEntity entity) {
+
+		final Object property = entity.getProperty(key);
+
+		if (!(property instanceof Object[])) {
+			return null;
+		}
+
+		for (final Object element : (Object[])property) {
+
+			if (pattern != null) {
+
+				if (element instanceof String && pattern.matcher((String)element).matches()) {
+					return true;
+				}
+
+			} else if (Values.isEqual(element, value)) {
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public Set<Long> getCandidates(final PropertyIndex index) {
+
+		if (pattern == null) {
+
+			return index.get(key, value);
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index.filter;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.structr.memory.graph.MemoryEntity;
+import org.structr.memory.store.PropertyIndex;
+
+/**
+ *
+ */
+public class OrFilter implements Filter {
+
+	private List<Filter> filters = null;
+
+	public OrFilter(final List<Filter> filters) {
+		this.filters = filters;
+	}
+
+	@Override
+	public Boolean evaluate(final MemoryEntity entity) {
+
+		boolean unknown = false;
+
+		for (final Filter filter : filters) {
+
+			final Boolean value = filter.evaluate(entity);
+			if (value == null) {
+
+				unknown = true;
+
+			} else if (value) {
+
+				return true;
+			}
+		}
+
+		return unknown ? null : false;
+	}
+
+	@Override
+	public Set<Long> getCandidates(final PropertyIndex index) {
+
+		final Set<Long> result = new HashSet<>();
+
+		// the index can only be used if all alternatives can use it
+		for (final Filter filter : filters) {
+
+			final Set<Long> candidates = filter.getCandidates(index);
+			if (candidates == null) {
+
+				return null;
+			}
+
+			result.addAll(candidates);
+		}
+
+		return result;
+	}
+}
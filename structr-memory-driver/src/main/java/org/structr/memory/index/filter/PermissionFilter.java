@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index.filter;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.structr.api.graph.Direction;
+import org.structr.memory.graph.MemoryEntity;
+import org.structr.memory.store.RelationshipRecord;
+
+/**
+ * Matches nodes that are readable for a user, based on the visibility
+ * flags, ownership and SECURITY relationships of the user and its groups.
+ * The user and its groups are readable for the user as well.
+ */
+public class PermissionFilter implements Filter {
+
+	private Set<Long> principalIds = null;
+
+	public PermissionFilter(final List<Long> principalIds) {
+		this.principalIds = new HashSet<>(principalIds);
+	}
+
+	@Override
+	public Boolean evaluate(final MemoryEntity entity) {
+
+		final Boolean visibleToPublicUsers        = isTrue(entity.getProperty("visibleToPublicUsers"));
+		final Boolean visibleToAuthenticatedUsers = isTrue(entity.getProperty("visibleToAuthenticatedUsers"));
+
+		if (Boolean.TRUE.equals(visibleToPublicUsers) || Boolean.TRUE.equals(visibleToAuthenticatedUsers)) {
+			return true;
+		}
+
+		if (principalIds.contains(entity.getDatabaseId()) || hasAccess(entity)) {
+			return true;
+		}
+
+		if (visibleToPublicUsers == null || visibleToAuthenticatedUsers == null) {
+			return null;
+		}
+
+		return false;
+	}
+
+	// ----- private methods -----
+	private Boolean isTrue(final Object value) {
+
+		if (value == null) {
+			return null;
+		}
+
+		return Boolean.TRUE.equals(value);
+	}
+
+	private boolean hasAccess(final MemoryEntity entity) {
+
+		for (final RelationshipRecord rel : entity.getDatabaseService().getReadTransaction().getRelationships(entity.getDatabaseId(), Direction.INCOMING)) {
+
+			if (principalIds.contains(rel.getSourceId())) {
+
+				switch (rel.getType()) {
+
+					case "OWNS":
+						return true;
+
+					case "SECURITY":
+
+						final Object allowed = rel.getProperties().get("allowed");
+						if (allowed instanceof Object[]) {
+
+							for (final Object permission : (Object[])allowed) {
+
+								if ("read".equals(permission)) {
+									return true;
+								}
+							}
+						}
+						break;
+				}
+			}
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index.filter;
+
+import java.util.Collection;
+import java.util.Set;
+import org.structr.api.search.ComparisonQuery.Operation;
+import org.structr.memory.graph.MemoryEntity;
+import org.structr.memory.store.PropertyIndex;
+import org.structr.memory.store.Values;
+
+/**
+ * Compares a property with a value, with the semantics of the operators
+ * that the Bolt driver uses for the same query.
+ */
+public class PropertyFilter implements Filter {
+
+	private Operation operation = null;
+	private Object value        = null;
+	private String key          = null;
+
+	public PropertyFilter(final String key, final Operation operation, final Object value) {
+
+		this.operation = operation;
+		this.value     = value;
+		this.key       = key;
+	}
+
+	@Override
+	public Boolean evaluate(final MemoryEntity entity) {
+
+		final Object property = entity.getProperty(key);
+
+		switch (operation) {
+
+			case isNull:
+				return property == null;
+
+			case isNotNull:
+				return property != null;
+		}
+
+		if (property == null || value == null) {
+			return null;
+		}
+
+		switch (operation) {
+
+			case equal:
+				return Values.isEqual(property, value);
+
+			case notEqual:
+				return !Values.isEqual(property, value);
+
+			case greater:
+				return Values.isComparable(property, value) ? Values.compare(property, value) > 0 : null;
+
+			case greaterOrEqual:
+				return Values.isComparable(property, value) ? Values.compare(property, value) >= 0 : null;
+
+			case less:
+				return Values.isComparable(property, value) ? Values.compare(property, value) < 0 : null;
+
+			case lessOrEqual:
+				return Values.isComparable(property, value) ? Values.compare(property, value) <= 0 : null;
+		}
+
+		if (!(property instanceof String)) {
+			return null;
+		}
+
+		final String string = (String)property;
+		final String search = value.toString();
+
+		switch (operation) {
+
+			case startsWith:
+				return string.startsWith(search);
+
+			case endsWith:
+				return string.endsWith(search);
+
+			case contains:
+				return string.contains(search);
+
+			case caseInsensitiveStartsWith:
+				return string.toLowerCase().startsWith(search.toLowerCase());
+
+			case caseInsensitiveEndsWith:
+				return string.toLowerCase().endsWith(search.toLowerCase());
+
+			case caseInsensitiveContains:
+				return string.toLowerCase().contains(search.toLowerCase());
+		}
+
+		return null;
+	}
+
+	@Override
+	public Set<Long> getCandidates(final PropertyIndex index) {
+
+		// arrays are indexed by their elements
+		if (value == null || value instanceof Collection || value.getClass().isArray()) {
+			return null;
+		}
+
+		switch (operation) {
+
+			case equal:
+				return index.get(key, value);
+
+			case greater:
+				return index.getRange(key, value, false, null, false);
+
+			case greaterOrEqual:
+				return index.getRange(key, value, true, null, false);
+
+			case less:
+				return index.getRange(key, null, false, value, false);
+
+			case lessOrEqual:
+				return index.getRange(key, null, false, value, true);
+		}
+
+		return null;
+	}
+}
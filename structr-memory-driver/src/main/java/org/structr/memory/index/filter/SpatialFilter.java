@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index.filter;
+
+import org.structr.memory.graph.MemoryEntity;
+
+/**
+ * Matches nodes whose latitude and longitude are within the given
+ * distance of a point, using the same haversine formula and earth
+ * radius as the distance function of Cypher.
+ */
+public class SpatialFilter implements Filter {
+
+	private static final double EARTH_RADIUS_METERS = 6378140.0;
+
+	private double latitude  = 0.0;
+	private double longitude = 0.0;
+	private double distance  = 0.0;
+
+	/**
+	 * @param latitude
+	 * @param longitude
+	 * @param distance the distance in meters
+	 */
+	public SpatialFilter(final double latitude, final double longitude, final double distance) {
+
+		this.latitude  = latitude;
+		this.longitude = longitude;
+		this.distance  = distance;
+	}
+
+	@Override
+	public Boolean evaluate(final MemoryEntity entity) {
+
+		final Object lat = entity.getProperty("latitude");
+		final Object lon = entity.getProperty("longitude");
+
+		// do not include nodes that have no lat/lon properties
+		if (!(lat instanceof Number) || !(lon instanceof Number)) {
+			return false;
+		}
+
+		final double lat1 = Math.toRadians(latitude);
+		final double lat2 = Math.toRadians(((Number)lat).doubleValue());
+		final double dLat = lat2 - lat1;
+		final double dLon = Math.toRadians(((Number)lon).doubleValue() - longitude);
+		final double a    = Math.pow(Math.sin(dLat / 2), 2) + Math.cos(lat1) * Math.cos(lat2) * Math.pow(Math.sin(dLon / 2), 2);
+		final double c    = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+		return EARTH_RADIUS_METERS * c < distance;
+	}
+}
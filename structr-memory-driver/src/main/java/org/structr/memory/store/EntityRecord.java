@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.store;
+
+import java.util.Map;
+
+/**
+ * The state of a node or relationship in a given version.
+ *
+ * Records are copied when a transaction modifies them for the first time,
+ * and are never modified again once they are committed.
+ */
+public abstract class EntityRecord {
+
+	protected Map<String, Object> properties = null;
+	protected long id                        = -1L;
+
+	protected EntityRecord(final long id, final Map<String, Object> properties) {
+
+		this.properties = properties;
+		this.id         = id;
+	}
+
+	public abstract EntityRecord copy();
+
+	public long getId() {
+		return id;
+	}
+
+	public Map<String, Object> getProperties() {
+		return properties;
+	}
+}
@@ -0,0 +1,497 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.store;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.structr.api.ConstraintViolationException;
+import org.structr.api.RetryException;
+
+/**
+ * Multi-version storage of nodes and relationships.
+ *
+ * Each entity has a chain of committed versions. A reader sees the newest
+ * version that is not newer than the version it reads at, so readers never
+ * block and never see uncommitted or partially committed data. Commits are
+ * serialized, a transaction that modified an entity that was modified by
+ * another transaction after it was read fails with a RetryException (first
+ * committer wins).
+ *
+ * Adjacency lists, label and type sets and property indexes are keyed by
+ * entity ID and contain all entities that are visible in any active
+ * snapshot. Entries of versions that are no longer visible are removed
+ * once the oldest active snapshot has moved past them.
+ */
+public class MemoryStore {
+
+	private static final String CONSTRAINT_VIOLATION = "Neo.ClientError.Schema.ConstraintValidationFailed";
+
+	private final Map<Long, Version<RelationshipRecord>> relationships = new ConcurrentHashMap<>();
+	private final Map<Long, Version<NodeRecord>> nodes                 = new ConcurrentHashMap<>();
+	private final Map<Long, Set<Long>> outgoing                        = new ConcurrentHashMap<>();
+	private final Map<Long, Set<Long>> incoming                        = new ConcurrentHashMap<>();
+	private final Map<String, Set<Long>> labels                        = new ConcurrentHashMap<>();
+	private final Map<String, Set<Long>> types                         = new ConcurrentHashMap<>();
+	private final NavigableMap<Long, Integer> activeSnapshots          = new ConcurrentSkipListMap<>();
+	private final PropertyIndex relationshipProperties                 = new PropertyIndex();
+	private final PropertyIndex nodeProperties                         = new PropertyIndex();
+	private final Deque<Cleanup> cleanups                              = new ArrayDeque<>();
+	private final AtomicLong relationshipIds                           = new AtomicLong();
+	private final AtomicLong nodeIds                                   = new AtomicLong();
+	private final AtomicLong version                                   = new AtomicLong();
+	private final Object lock                                          = new Object();
+
+	/**
+	 * Registers and returns a new snapshot of the current version, which
+	 * must be released with {@link #releaseSnapshot} when it is no longer
+	 * used.
+	 *
+	 * @return the snapshot
+	 */
+	public long acquireSnapshot() {
+
+		synchronized (lock) {
+
+			final long snapshot = version.get();
+
+			activeSnapshots.merge(snapshot, 1, Integer::sum);
+
+			return snapshot;
+		}
+	}
+
+	public void releaseSnapshot(final long snapshot) {
+
+		synchronized (lock) {
+
+			activeSnapshots.computeIfPresent(snapshot, (k, v) -> v > 1 ? v - 1 : null);
+
+			runCleanups();
+		}
+	}
+
+	/**
+	 * Returns the current version, i.e. the snapshot in which all committed
+	 * changes are visible.
+	 *
+	 * @return the current version
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	public long nextNodeId() {
+		return nodeIds.getAndIncrement();
+	}
+
+	public long nextRelationshipId() {
+		return relationshipIds.getAndIncrement();
+	}
+
+	public NodeRecord getNode(final long snapshot, final long id) {
+
+		final Version<NodeRecord> head = nodes.get(id);
+		if (head != null) {
+
+			return head.getRecord(snapshot);
+		}
+
+		return null;
+	}
+
+	public RelationshipRecord getRelationship(final long snapshot, final long id) {
+
+		final Version<RelationshipRecord> head = relationships.get(id);
+		if (head != null) {
+
+			return head.getRecord(snapshot);
+		}
+
+		return null;
+	}
+
+	// ----- candidates -----
+	public Set<Long> getNodeIds() {
+		return nodes.keySet();
+	}
+
+	public Set<Long> getNodeIds(final String label) {
+		return labels.getOrDefault(label, Collections.emptySet());
+	}
+
+	public Set<Long> getRelationshipIds() {
+		return relationships.keySet();
+	}
+
+	public Set<Long> getRelationshipIds(final String type) {
+		return types.getOrDefault(type, Collections.emptySet());
+	}
+
+	public Set<Long> getOutgoingRelationshipIds(final long nodeId) {
+		return outgoing.getOrDefault(nodeId, Collections.emptySet());
+	}
+
+	public Set<Long> getIncomingRelationshipIds(final long nodeId) {
+		return incoming.getOrDefault(nodeId, Collections.emptySet());
+	}
+
+	public PropertyIndex getNodeProperties() {
+		return nodeProperties;
+	}
+
+	public PropertyIndex getRelationshipProperties() {
+		return relationshipProperties;
+	}
+
+	/**
+	 * Commits the given changes, a null record marks a deleted entity.
+	 *
+	 * @param nodeChanges
+	 * @param nodeVersions the versions the modified nodes are based on
+	 * @param relationshipChanges
+	 * @param relationshipVersions the versions the modified relationships are based on
+	 *
+	 * @throws RetryException if an entity was modified concurrently
+	 * @throws ConstraintViolationException if a deleted node still has relationships
+	 */
+	public void commit(final Map<Long, NodeRecord> nodeChanges, final Map<Long, Long> nodeVersions, final Map<Long, RelationshipRecord> relationshipChanges, final Map<Long, Long> relationshipVersions) {
+
+		synchronized (lock) {
+
+			// first committer wins
+			for (final Entry<Long, Long> entry : nodeVersions.entrySet()) {
+				checkConflict(nodes.get(entry.getKey()), entry.getValue(), "Node", entry.getKey());
+			}
+
+			for (final Entry<Long, Long> entry : relationshipVersions.entrySet()) {
+				checkConflict(relationships.get(entry.getKey()), entry.getValue(), "Relationship", entry.getKey());
+			}
+
+			checkIntegrity(nodeChanges, relationshipChanges);
+
+			final long minimum = getMinimumSnapshot();
+			final long next    = version.get() + 1;
+
+			for (final Entry<Long, NodeRecord> entry : nodeChanges.entrySet()) {
+
+				final long id                  = entry.getKey();
+				final NodeRecord record        = entry.getValue();
+				final Version<NodeRecord> head = nodes.get(id);
+				final NodeRecord previous      = head != null ? head.getRecord() : null;
+
+				if (previous == null && record == null) {
+
+					// created and deleted in the same transaction
+					continue;
+				}
+
+				if (head != null) {
+					head.prune(minimum);
+				}
+
+				nodes.put(id, new Version<>(next, record, head));
+
+				index(id, previous, record, next);
+			}
+
+			for (final Entry<Long, RelationshipRecord> entry : relationshipChanges.entrySet()) {
+
+				final long id                          = entry.getKey();
+				final RelationshipRecord record        = entry.getValue();
+				final Version<RelationshipRecord> head = relationships.get(id);
+				final RelationshipRecord previous      = head != null ? head.getRecord() : null;
+
+				if (previous == null && record == null) {
+
+					// created and deleted in the same transaction
+					continue;
+				}
+
+				if (head != null) {
+					head.prune(minimum);
+				}
+
+				relationships.put(id, new Version<>(next, record, head));
+
+				index(id, previous, record, next);
+			}
+
+			// make changes visible
+			version.set(next);
+
+			runCleanups();
+		}
+	}
+
+	/**
+	 * Removes all data, must only be called when there are no transactions.
+	 */
+	public void clear() {
+
+		synchronized (lock) {
+
+			relationships.clear();
+			nodes.clear();
+			outgoing.clear();
+			incoming.clear();
+			labels.clear();
+			types.clear();
+			relationshipProperties.clear();
+			nodeProperties.clear();
+			cleanups.clear();
+		}
+	}
+
+	// ----- private methods -----
+	private void checkConflict(final Version head, final long base, final String kind, final long id) {
+
+		if (head != null && head.getVersion() > base) {
+
+			throw new RetryException(kind + " " + id + " was modified by a concurrent transaction");
+		}
+	}
+
+	private void checkIntegrity(final Map<Long, NodeRecord> nodeChanges, final Map<Long, RelationshipRecord> relationshipChanges) {
+
+		for (final RelationshipRecord record : relationshipChanges.values()) {
+
+			if (record != null) {
+
+				checkNodeExists(nodeChanges, record.getSourceId(), record);
+				checkNodeExists(nodeChanges, record.getTargetId(), record);
+			}
+		}
+
+		for (final Entry<Long, NodeRecord> entry : nodeChanges.entrySet()) {
+
+			if (entry.getValue() == null) {
+
+				final long id          = entry.getKey();
+				final Set<Long> relIds = new HashSet<>(getOutgoingRelationshipIds(id));
+
+				relIds.addAll(getIncomingRelationshipIds(id));
+
+				for (final Long relId : relIds) {
+
+					final RelationshipRecord rel = relationshipChanges.containsKey(relId) ? relationshipChanges.get(relId) : latest(relationships.get(relId));
+					if (rel != null) {
+
+						throw new ConstraintViolationException(null, CONSTRAINT_VIOLATION, "Cannot delete node " + id + " because it still has relationships");
+					}
+				}
+			}
+		}
+	}
+
+	private void checkNodeExists(final Map<Long, NodeRecord> nodeChanges, final long nodeId, final RelationshipRecord rel) {
+
+		if (nodeChanges.containsKey(nodeId)) {
+
+			if (nodeChanges.get(nodeId) == null) {
+
+				throw new ConstraintViolationException(null, CONSTRAINT_VIOLATION, "Relationship " + rel.getId() + " refers to deleted node " + nodeId);
+			}
+
+		} else if (latest(nodes.get(nodeId)) == null) {
+
+			throw new RetryException("Node " + nodeId + " was deleted by a concurrent transaction");
+		}
+	}
+
+	private void index(final long id, final NodeRecord previous, final NodeRecord record, final long next) {
+
+		if (record != null) {
+
+			for (final String label : record.getLabels()) {
+				labels.computeIfAbsent(label, k -> ConcurrentHashMap.newKeySet()).add(id);
+			}
+
+			for (final Entry<String, Object> property : record.getProperties().entrySet()) {
+				nodeProperties.add(property.getKey(), property.getValue(), id);
+			}
+		}
+
+		if (previous != null) {
+
+			// stale entries are removed when no snapshot can see the previous version
+			for (final String label : previous.getLabels()) {
+
+				if (record == null || !record.hasLabel(label)) {
+
+					cleanups.add(new Cleanup(next, () -> {
+
+						final NodeRecord current = latest(nodes.get(id));
+						if (current == null || !current.hasLabel(label)) {
+
+							remove(labels, label, id);
+						}
+					}));
+				}
+			}
+
+			for (final Entry<String, Object> property : previous.getProperties().entrySet()) {
+
+				final String key   = property.getKey();
+				final Object value = property.getValue();
+
+				if (record == null || !Values.isEqual(value, record.getProperties().get(key))) {
+
+					cleanups.add(new Cleanup(next, () -> {
+
+						final NodeRecord current = latest(nodes.get(id));
+
+						nodeProperties.remove(key, value, current != null ? current.getProperties().get(key) : null, id);
+					}));
+				}
+			}
+		}
+
+		if (record == null) {
+
+			cleanups.add(new Cleanup(next, () -> {
+
+				final Version<NodeRecord> head = nodes.get(id);
+				if (head != null && head.getRecord() == null) {
+
+					nodes.remove(id);
+					outgoing.remove(id);
+					incoming.remove(id);
+				}
+			}));
+		}
+	}
+
+	private void index(final long id, final RelationshipRecord previous, final RelationshipRecord record, final long next) {
+
+		if (record != null) {
+
+			if (previous == null) {
+
+				outgoing.computeIfAbsent(record.getSourceId(), k -> ConcurrentHashMap.newKeySet()).add(id);
+				incoming.computeIfAbsent(record.getTargetId(), k -> ConcurrentHashMap.newKeySet()).add(id);
+				types.computeIfAbsent(record.getType(), k -> ConcurrentHashMap.newKeySet()).add(id);
+			}
+
+			for (final Entry<String, Object> property : record.getProperties().entrySet()) {
+				relationshipProperties.add(property.getKey(), property.getValue(), id);
+			}
+		}
+
+		if (previous != null) {
+
+			for (final Entry<String, Object> property : previous.getProperties().entrySet()) {
+
+				final String key   = property.getKey();
+				final Object value = property.getValue();
+
+				if (record == null || !Values.isEqual(value, record.getProperties().get(key))) {
+
+					cleanups.add(new Cleanup(next, () -> {
+
+						final RelationshipRecord current = latest(relationships.get(id));
+
+						relationshipProperties.remove(key, value, current != null ? current.getProperties().get(key) : null, id);
+					}));
+				}
+			}
+		}
+
+		if (record == null) {
+
+			cleanups.add(new Cleanup(next, () -> {
+
+				final Version<RelationshipRecord> head = relationships.get(id);
+				if (head != null && head.getRecord() == null) {
+
+					relationships.remove(id);
+
+					remove(outgoing, previous.getSourceId(), id);
+					remove(incoming, previous.getTargetId(), id);
+					remove(types, previous.getType(), id);
+				}
+			}));
+		}
+	}
+
+	private <K> void remove(final Map<K, Set<Long>> map, final K key, final long id) {
+
+		final Set<Long> ids = map.get(key);
+		if (ids != null) {
+
+			ids.remove(id);
+
+			if (ids.isEmpty()) {
+				map.remove(key);
+			}
+		}
+	}
+
+	private <R extends EntityRecord> R latest(final Version<R> head) {
+
+		if (head != null) {
+
+			return head.getRecord();
+		}
+
+		return null;
+	}
+
+	private long getMinimumSnapshot() {
+
+		final long current = version.get();
+
+		if (activeSnapshots.isEmpty()) {
+			return current;
+		}
+
+		return Math.min(activeSnapshots.firstKey(), current);
+	}
+
+	private void runCleanups() {
+
+		final long minimum = getMinimumSnapshot();
+
+		while (!cleanups.isEmpty() && cleanups.peek().version <= minimum) {
+
+			cleanups.poll().runnable.run();
+		}
+	}
+
+	// ----- nested classes -----
+	private static class Cleanup {
+
+		private Runnable runnable = null;
+		private long version      = 0L;
+
+		Cleanup(final long version, final Runnable runnable) {
+
+			this.runnable = runnable;
+			this.version  = version;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.store;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ */
+public class NodeRecord extends EntityRecord {
+
+	private Set<String> labels = null;
+
+	public NodeRecord(final long id, final Set<String> labels, final Map<String, Object> properties) {
+
+		super(id, properties);
+
+		this.labels = labels;
+	}
+
+	@Override
+	public NodeRecord copy() {
+		return new NodeRecord(id, new LinkedHashSet<>(labels), new LinkedHashMap<>(properties));
+	}
+
+	public Set<String> getLabels() {
+		return labels;
+	}
+
+	public boolean hasLabel(final String label) {
+		return labels.contains(label);
+	}
+}
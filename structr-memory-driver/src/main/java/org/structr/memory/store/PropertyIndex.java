@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.store;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Hash and sorted index of all property values of nodes or relationships.
+ *
+ * Each property key has a hash index that maps values to entity IDs,
+ * and a sorted index for numbers, strings and booleans that shares its
+ * ID sets with the hash index. Array properties are indexed by their
+ * elements.
+ *
+ * The index contains the values of all committed versions that are still
+ * visible in a snapshot, so its results are a superset of the actual
+ * matches and must be verified against the visible version of each entity.
+ * The index is only modified by the committing thread.
+ */
+public class PropertyIndex {
+
+	private final Map<String, NavigableMap<Object, Set<Long>>> sortedIndexes = new ConcurrentHashMap<>();
+	private final Map<String, Map<Object, Set<Long>>> hashIndexes            = new ConcurrentHashMap<>();
+
+	public void add(final String key, final Object value, final long id) {
+
+		for (final Object indexKey : Values.getIndexKeys(value)) {
+
+			Map<Object, Set<Long>> hashIndex = hashIndexes.get(key);
+			if (hashIndex == null) {
+
+				hashIndex = new ConcurrentHashMap<>();
+				hashIndexes.put(key, hashIndex);
+			}
+
+			Set<Long> ids = hashIndex.get(indexKey);
+			if (ids == null) {
+
+				ids = ConcurrentHashMap.newKeySet();
+				hashIndex.put(indexKey, ids);
+
+				if (Values.isSortable(indexKey)) {
+
+					NavigableMap<Object, Set<Long>> sortedIndex = sortedIndexes.get(key);
+					if (sortedIndex == null) {
+
+						sortedIndex = new ConcurrentSkipListMap<>(Values::compare);
+						sortedIndexes.put(key, sortedIndex);
+					}
+
+					sortedIndex.put(indexKey, ids);
+				}
+			}
+
+			ids.add(id);
+		}
+	}
+
+	/**
+	 * Removes the index entries of the given old value of an entity,
+	 * except for the entries that also belong to the current value.
+	 *
+	 * @param key
+	 * @param oldValue
+	 * @param currentValue the current value of the property, or null
+	 * @param id
+	 */
+	public void remove(final String key, final Object oldValue, final Object currentValue, final long id) {
+
+		final Map<Object, Set<Long>> hashIndex = hashIndexes.get(key);
+		if (hashIndex != null) {
+
+			final Set<Object> currentKeys = Values.getIndexKeys(currentValue);
+
+			for (final Object indexKey : Values.getIndexKeys(oldValue)) {
+
+				if (!currentKeys.contains(indexKey)) {
+
+					final Set<Long> ids = hashIndex.get(indexKey);
+					if (ids != null) {
+
+						ids.remove(id);
+
+						if (ids.isEmpty()) {
+
+							hashIndex.remove(indexKey);
+
+							final NavigableMap<Object, Set<Long>> sortedIndex = sortedIndexes.get(key);
+							if (sortedIndex != null) {
+
+								sortedIndex.remove(indexKey);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the IDs of all entities that have (or had) the given value.
+	 *
+	 * @param key
+	 * @param value
+	 * @return the candidate IDs
+	 */
+	public Set<Long> get(final String key, final Object value) {
+
+		final Map<Object, Set<Long>> hashIndex = hashIndexes.get(key);
+		if (hashIndex != null && value != null) {
+
+			final Set<Long> ids = hashIndex.get(Values.getIndexKey(value));
+			if (ids != null) {
+
+				return ids;
+			}
+		}
+
+		return Collections.emptySet();
+	}
+
+	/**
+	 * Returns the IDs of all entities that have (or had) a value in the
+	 * given range, a bound of null means that the range is open.
+	 *
+	 * @param key
+	 * @param from
+	 * @param includeFrom
+	 * @param to
+	 * @param includeTo
+	 * @return the candidate IDs
+	 */
+	public Set<Long> getRange(final String key, final Object from, final boolean includeFrom, final Object to, final boolean includeTo) {
+
+		final NavigableMap<Object, Set<Long>> sortedIndex = sortedIndexes.get(key);
+		final Set<Long> result                            = new HashSet<>();
+
+		// empty range
+		if (from != null && to != null && Values.compare(Values.getIndexKey(from), Values.getIndexKey(to)) > 0) {
+			return result;
+		}
+
+		if (sortedIndex != null) {
+
+			NavigableMap<Object, Set<Long>> range = sortedIndex;
+
+			if (from != null) {
+				range = range.tailMap(Values.getIndexKey(from), includeFrom);
+			}
+
+			if (to != null) {
+				range = range.headMap(Values.getIndexKey(to), includeTo);
+			}
+
+			for (final Set<Long> ids : range.values()) {
+				result.addAll(ids);
+			}
+		}
+
+		return result;
+	}
+
+	public void clear() {
+
+		sortedIndexes.clear();
+		hashIndexes.clear();
+	}
+}
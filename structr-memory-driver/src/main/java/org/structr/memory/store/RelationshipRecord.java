@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.store;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *
+ */
+public class RelationshipRecord extends EntityRecord {
+
+	private String type   = null;
+	private long sourceId = -1L;
+	private long targetId = -1L;
+
+	public RelationshipRecord(final long id, final String type, final long sourceId, final long targetId, final Map<String, Object> properties) {
+
+		super(id, properties);
+
+		this.type     = type;
+		this.sourceId = sourceId;
+		this.targetId = targetId;
+	}
+
+	@Override
+	public RelationshipRecord copy() {
+		return new RelationshipRecord(id, type, sourceId, targetId, new LinkedHashMap<>(properties));
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public long getSourceId() {
+		return sourceId;
+	}
+
+	public long getTargetId() {
+		return targetId;
+	}
+}
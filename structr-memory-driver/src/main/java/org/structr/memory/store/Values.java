@@ -0,0 +1,323 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.store;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Conversion and comparison of property values, with the same semantics
+ * as the values that are stored and compared by Cypher: integral numbers
+ * are stored as Long, floating point numbers as Double, collections as
+ * arrays, and numbers of different types are compared by their value.
+ */
+public class Values {
+
+	/**
+	 * Converts a value to the type that is stored.
+	 *
+	 * @param value
+	 * @return the value to store
+	 */
+	public static Object toStore(final Object value) {
+
+		if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return ((Number)value).longValue();
+		}
+
+		if (value instanceof Float) {
+			return ((Float)value).doubleValue();
+		}
+
+		if (value instanceof Character) {
+			return value.toString();
+		}
+
+		if (value instanceof Collection) {
+			return toStore(((Collection)value).toArray());
+		}
+
+		if (value != null && value.getClass().isArray() && !(value instanceof byte[])) {
+
+			final int length = Array.getLength(value);
+			if (length == 0) {
+
+				return new String[0];
+			}
+
+			final Object first = toStore(Array.get(value, 0));
+			final Object array = Array.newInstance(first.getClass(), length);
+
+			for (int i=0; i<length; i++) {
+				Array.set(array, i, toStore(Array.get(value, i)));
+			}
+
+			return array;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Converts a stored value to the type that the Bolt driver returns,
+	 * i.e. empty arrays to null. Arrays are copied so that callers can't
+	 * modify the stored value.
+	 *
+	 * @param value
+	 * @return the value to return
+	 */
+	public static Object fromStore(final Object value) {
+
+		if (value instanceof Object[]) {
+
+			final Object[] array = (Object[])value;
+			if (array.length == 0) {
+
+				return null;
+			}
+
+			return array.clone();
+		}
+
+		return value;
+	}
+
+	/**
+	 * Compares two values like the = operator of Cypher, i.e. numbers are
+	 * compared by value and arrays element by element.
+	 *
+	 * @param a
+	 * @param b
+	 * @return whether the values are equal
+	 */
+	public static boolean isEqual(final Object a, final Object b) {
+
+		if (a == null || b == null) {
+			return a == b;
+		}
+
+		if (a instanceof Number && b instanceof Number) {
+			return compareNumbers((Number)a, (Number)b) == 0;
+		}
+
+		if (a.getClass().isArray() && b.getClass().isArray()) {
+
+			final int length = Array.getLength(a);
+			if (length != Array.getLength(b)) {
+
+				return false;
+			}
+
+			for (int i=0; i<length; i++) {
+
+				if (!isEqual(Array.get(a, i), Array.get(b, i))) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		return a.equals(b);
+	}
+
+	/**
+	 * Indicates whether the two values can be compared with &lt; and &gt;,
+	 * i.e. both are numbers, strings or booleans.
+	 *
+	 * @param a
+	 * @param b
+	 * @return whether the values are comparable
+	 */
+	public static boolean isComparable(final Object a, final Object b) {
+
+		final int kind = kind(a);
+
+		return kind > 0 && kind < 4 && kind == kind(b);
+	}
+
+	/**
+	 * Defines a total order of all values, in the same order as the ORDER
+	 * BY clause of Cypher for values of different types: arrays, strings,
+	 * booleans, numbers. Null values are not allowed here.
+	 *
+	 * @param a
+	 * @param b
+	 * @return the comparison result
+	 */
+	public static int compare(final Object a, final Object b) {
+
+		final int kindA = kind(a);
+		final int kindB = kind(b);
+
+		if (kindA != kindB) {
+			return Integer.compare(kindA, kindB);
+		}
+
+		switch (kindA) {
+
+			case 0:
+
+				final int lengthA = Array.getLength(a);
+				final int lengthB = Array.getLength(b);
+
+				for (int i=0; i<lengthA && i<lengthB; i++) {
+
+					final Object elementA = Array.get(a, i);
+					final Object elementB = Array.get(b, i);
+
+					if (elementA == null || elementB == null) {
+
+						if (elementA != elementB) {
+							return elementA == null ? 1 : -1;
+						}
+
+					} else {
+
+						final int result = compare(elementA, elementB);
+						if (result != 0) {
+
+							return result;
+						}
+					}
+				}
+
+				return Integer.compare(lengthA, lengthB);
+
+			case 1:
+				return ((String)a).compareTo((String)b);
+
+			case 2:
+				return Boolean.compare((Boolean)a, (Boolean)b);
+
+			case 3:
+				return compareNumbers((Number)a, (Number)b);
+		}
+
+		return a.toString().compareTo(b.toString());
+	}
+
+	/**
+	 * Returns the keys under which the given value is indexed, i.e. the
+	 * value itself or the elements of an array.
+	 *
+	 * @param value
+	 * @return the index keys
+	 */
+	public static Set<Object> getIndexKeys(final Object value) {
+
+		if (value == null) {
+			return Collections.emptySet();
+		}
+
+		if (value instanceof Object[]) {
+
+			final Set<Object> keys = new LinkedHashSet<>();
+
+			for (final Object element : (Object[])value) {
+
+				if (element != null) {
+					keys.add(getIndexKey(element));
+				}
+			}
+
+			return keys;
+		}
+
+		return Collections.singleton(getIndexKey(value));
+	}
+
+	/**
+	 * Returns the key under which the given scalar value is indexed, so
+	 * that numbers that are equal by value have the same key.
+	 *
+	 * @param value
+	 * @return the index key
+	 */
+	public static Object getIndexKey(final Object value) {
+
+		final Object stored = toStore(value);
+
+		if (stored instanceof Double) {
+
+			final double d = (Double)stored;
+			if (d == Math.rint(d) && !Double.isInfinite(d) && Math.abs(d) < 9.007199254740992E15) {
+
+				return (long)d;
+			}
+		}
+
+		return stored;
+	}
+
+	/**
+	 * Indicates whether the given index key can be stored in a sorted index.
+	 *
+	 * @param key
+	 * @return whether the key is sortable
+	 */
+	public static boolean isSortable(final Object key) {
+
+		final int kind = kind(key);
+
+		return kind > 0 && kind < 4;
+	}
+
+	// ----- private methods -----
+	private static int kind(final Object value) {
+
+		if (value == null) {
+			return -1;
+		}
+
+		if (value.getClass().isArray()) {
+			return 0;
+		}
+
+		if (value instanceof String) {
+			return 1;
+		}
+
+		if (value instanceof Boolean) {
+			return 2;
+		}
+
+		if (value instanceof Number) {
+			return 3;
+		}
+
+		return 4;
+	}
+
+	private static int compareNumbers(final Number a, final Number b) {
+
+		if (isIntegral(a) && isIntegral(b)) {
+			return Long.compare(a.longValue(), b.longValue());
+		}
+
+		return Double.compare(a.doubleValue(), b.doubleValue());
+	}
+
+	private static boolean isIntegral(final Number number) {
+		return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.store;
+
+/**
+ * An element of the version chain of an entity, newest first. A version
+ * without a record marks the deletion of the entity.
+ */
+class Version<R extends EntityRecord> {
+
+	private volatile Version<R> previous = null;
+	private R record                     = null;
+	private long version                 = 0L;
+
+	Version(final long version, final R record, final Version<R> previous) {
+
+		this.previous = previous;
+		this.version  = version;
+		this.record   = record;
+	}
+
+	long getVersion() {
+		return version;
+	}
+
+	R getRecord() {
+		return record;
+	}
+
+	/**
+	 * Returns the record that is visible in the given snapshot, or null
+	 * if the entity did not exist or was deleted in that snapshot.
+	 */
+	R getRecord(final long snapshot) {
+
+		for (Version<R> current = this; current != null; current = current.previous) {
+
+			if (current.version <= snapshot) {
+				return current.record;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Removes all versions that are not visible in any snapshot at or
+	 * after the given minimum snapshot.
+	 */
+	void prune(final long minimum) {
+
+		for (Version<R> current = this; current != null; current = current.previous) {
+
+			if (current.version <= minimum) {
+
+				current.previous = null;
+				return;
+			}
+		}
+	}
+}
@@ -19,13 +19,23 @@
 package org.structr.text;
 
 import org.structr.agent.AbstractTask;
+import org.structr.agent.PersistentTask;
 
 /**
  *
  */
-public class FulltextIndexingTask extends AbstractTask<String> {
+public class FulltextIndexingTask extends AbstractTask<String> implements PersistentTask {
+
+	public FulltextIndexingTask() {
+		super(FulltextIndexingAgent.TASK_NAME, null);
+	}
 
 	public FulltextIndexingTask(final String indexableId) {
 		super(FulltextIndexingAgent.TASK_NAME, null, indexableId);
 	}
+
+	@Override
+	public void addWorkObject(final String workObject) {
+		addNode(workObject);
+	}
 }
@@ -24,6 +24,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -33,7 +34,6 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import org.apache.commons.lang.StringUtils;
 import org.neo4j.driver.v1.AuthTokens;
 import org.neo4j.driver.v1.Config;
 import org.neo4j.driver.v1.Driver;
@@ -54,6 +54,7 @@ import org.structr.api.NetworkException;
 import org.structr.api.NotInTransactionException;
 import org.structr.api.Transaction;
 import org.structr.api.config.Settings;
+import org.structr.api.graph.Direction;
 import org.structr.api.graph.GraphProperties;
 import org.structr.api.graph.Identity;
 import org.structr.api.graph.Label;
@@ -62,6 +63,7 @@ import org.structr.api.graph.Relationship;
 import org.structr.api.graph.RelationshipType;
 import org.structr.api.index.Index;
 import org.structr.api.util.CountResult;
+import org.structr.api.util.FixedSizeCache;
 import org.structr.api.util.Iterables;
 import org.structr.api.util.NodeWithOwnerResult;
 import org.structr.bolt.index.CypherNodeIndex;
@@ -174,6 +176,9 @@ public class BoltDatabaseService extends AbstractDatabaseService implements Grap
 	@Override
 	public void shutdown() {
 
+		logCacheStatistics("Node", NodeCacheAccess.getWrapperCache());
+		logCacheStatistics("Relationship", RelationshipCacheAccess.getWrapperCache());
+
 		clearCaches();
 		driver.close();
 
@@ -302,6 +307,130 @@ public class BoltDatabaseService extends AbstractDatabaseService implements Grap
 		return null;
 	}
 
+	@Override
+	public List<Node> createNodes(final String type, final Set<String> labels, final List<Map<String, Object>> properties) {
+
+		final StringBuilder buf       = new StringBuilder("UNWIND $rows AS properties CREATE (n");
+		final Map<String, Object> map = new HashMap<>();
+		final List<Node> result       = new LinkedList<>();
+		final String tenantId         = getTenantIdentifier();
+
+		if (tenantId != null) {
+
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		for (final String label : labels) {
+
+			buf.append(":");
+			buf.append(label);
+		}
+
+		buf.append(") SET n = properties RETURN n");
+
+		// make properties available to Cypher statement
+		map.put("rows", properties);
+
+		for (final org.neo4j.driver.v1.types.Node node : getCurrentTransaction().getNodes(buf.toString(), map)) {
+
+			final NodeWrapper newNode = NodeWrapper.newInstance(this, node);
+
+			newNode.setModified();
+			result.add(newNode);
+		}
+
+		return result;
+	}
+
+	@Override
+	public List<NodeWithOwnerResult> createNodesWithOwner(final Identity userId, final String type, final Set<String> labels, final List<Map<String, Object>> nodeProperties, final List<Map<String, Object>> ownsProperties, final List<Map<String, Object>> securityProperties) {
+
+		final List<Map<String, Object>> rows   = new LinkedList<>();
+		final List<NodeWithOwnerResult> result = new LinkedList<>();
+		final Map<String, Object> parameters   = new HashMap<>();
+		final StringBuilder buf                = new StringBuilder();
+		final String tenantId                  = getTenantIdentifier();
+
+		buf.append("MATCH (u:NodeInterface:Principal");
+
+		if (tenantId != null) {
+
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		buf.append(") WHERE ID(u) = $userId");
+		buf.append(" UNWIND $rows AS row");
+		buf.append(" CREATE (u)-[o:OWNS]->(n");
+
+		if (tenantId != null) {
+
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		for (final String label : labels) {
+
+			buf.append(":");
+			buf.append(label);
+		}
+
+		buf.append(")<-[s:SECURITY]-(u)");
+		buf.append(" SET n = row.n, o = row.o, s = row.s");
+		buf.append(" RETURN n, s, o");
+
+		for (int i=0; i<nodeProperties.size(); i++) {
+
+			final Map<String, Object> row = new HashMap<>();
+
+			row.put("n", nodeProperties.get(i));
+			row.put("o", ownsProperties.get(i));
+			row.put("s", securityProperties.get(i));
+
+			rows.add(row);
+		}
+
+		// store properties in statement
+		parameters.put("userId", unwrap(userId));
+		parameters.put("rows",   rows);
+
+		try {
+
+			NodeWrapper owner = null;
+
+			for (final Map<String, Object> data : execute(buf.toString(), parameters)) {
+
+				final NodeWrapper newNode             = (NodeWrapper)         data.get("n");
+				final RelationshipWrapper securityRel = (RelationshipWrapper) data.get("s");
+				final RelationshipWrapper ownsRel     = (RelationshipWrapper) data.get("o");
+
+				newNode.setModified();
+
+				securityRel.setModified();
+				securityRel.stale();
+
+				ownsRel.setModified();
+				ownsRel.stale();
+
+				if (owner == null) {
+
+					owner = (NodeWrapper)ownsRel.getStartNode();
+					owner.setModified();
+				}
+
+				result.add(new NodeWithOwnerResult(newNode, securityRel, ownsRel));
+			}
+
+		} catch (ClientException dex) {
+			throw SessionTransaction.translateClientException(dex);
+		} catch (DatabaseException dex) {
+			throw SessionTransaction.translateDatabaseException(dex);
+		}
+
+		return result;
+	}
+
 	@Override
 	public Node getNodeById(final Identity id) {
 		return getNodeById(unwrap(id));
@@ -481,162 +610,6 @@ public class BoltDatabaseService extends AbstractDatabaseService implements Grap
 		return relationshipIndex;
 	}
 
-	@Override
-	public void updateIndexConfiguration(final Map<String, Map<String, Boolean>> schemaIndexConfig, final Map<String, Map<String, Boolean>> removedClasses) {
-
-		final Map<String, String> existingDbIndexes = new HashMap<>();
-
-		try (final Transaction tx = beginTx()) {
-
-			/* Example full result of `CALL db.indexes`
-				{
-					"provider": {
-					  "version": "2.0",
-					  "key": "lucene+native"
-					},
-					"state": "ONLINE",
-					"description": "INDEX ON :Bank(BIC)",
-					"label": "Bank",
-					"properties": [
-					  "BIC"
-					],
-					"type": "node_label_property"		// possible values: node_label_property, node_unique_property
-				}
-			 */
-
-			for (final Map<String, Object> row : execute("CALL db.indexes() YIELD description, state, type WHERE type = 'node_label_property' RETURN {description: description, state: state}")) {
-
-				for (final Object value : row.values()) {
-
-					final Map<String, String> valueMap = (Map<String, String>)value;
-
-					existingDbIndexes.put(valueMap.get("description"), valueMap.get("state"));
-				}
-			}
-
-			tx.success();
-		}
-
-		logger.debug("Found {} existing indexes", existingDbIndexes.size());
-
-		Integer createdIndexes = 0;
-		Integer droppedIndexes = 0;
-
-		// create indices for properties of existing classes
-		for (final Map.Entry<String, Map<String, Boolean>> entry : schemaIndexConfig.entrySet()) {
-
-			final String typeName = entry.getKey();
-
-			for (final Map.Entry<String, Boolean> propertyIndexConfig : entry.getValue().entrySet()) {
-
-				final String indexDescription = "INDEX ON :" + typeName + "(" + propertyIndexConfig.getKey() + ")";
-				final String state            = existingDbIndexes.get(indexDescription);
-				final boolean alreadySet      = Boolean.TRUE.equals("ONLINE".equals(state));
-				final boolean createIndex     = propertyIndexConfig.getValue();
-
-				if ("FAILED".equals(state)) {
-
-					logger.warn("Index is in FAILED state - dropping the index before handling it further. {}. If this error is recurring, please verify that the data in the concerned property is indexable by Neo4j", indexDescription);
-
-					try (final Transaction tx = beginTx()) {
-
-						execute("DROP " + indexDescription);
-
-						tx.success();
-
-					} catch (Throwable t) {
-						logger.warn("", t);
-					}
-				}
-
-
-				try (final Transaction tx = beginTx()) {
-
-					if (createIndex) {
-
-						if (!alreadySet) {
-
-							try {
-
-								execute("CREATE " + indexDescription);
-								createdIndexes++;
-
-							} catch (Throwable t) {
-								logger.warn("Unable to create {}: {}", indexDescription, t.getMessage());
-							}
-						}
-
-					} else if (alreadySet) {
-
-						try {
-
-							execute("DROP " + indexDescription);
-							droppedIndexes++;
-
-						} catch (Throwable t) {
-							logger.warn("Unable to drop {}: {}", indexDescription, t.getMessage());
-						}
-					}
-
-					tx.success();
-
-				} catch (IllegalStateException i) {
-
-					// if the driver instance is already closed, there is nothing we can do => exit
-					return;
-
-				} catch (Throwable t) {
-
-					logger.warn("Unable to update index configuration: {}", t.getMessage());
-				}
-			}
-		}
-
-		if (createdIndexes > 0) {
-			logger.debug("Created {} indexes", createdIndexes);
-		}
-
-		if (droppedIndexes > 0) {
-			logger.debug("Dropped {} indexes", droppedIndexes);
-		}
-
-		Integer droppedIndexesOfRemovedTypes = 0;
-		final List removedTypes = new LinkedList();
-
-		// drop indices for all indexed properties of removed classes
-		for (final Map.Entry<String, Map<String, Boolean>> entry : removedClasses.entrySet()) {
-
-			final String typeName = entry.getKey();
-			removedTypes.add(typeName);
-
-			for (final Map.Entry<String, Boolean> propertyIndexConfig : entry.getValue().entrySet()) {
-
-				final String indexDescription = "INDEX ON :" + typeName + "(" + propertyIndexConfig.getKey() + ")";
-				final boolean indexExists     = Boolean.TRUE.equals(existingDbIndexes.get(indexDescription));
-				final boolean dropIndex       = propertyIndexConfig.getValue();
-
-				if (indexExists && dropIndex) {
-
-					try (final Transaction tx = beginTx()) {
-
-						// drop index
-						execute("DROP " + indexDescription);
-						droppedIndexesOfRemovedTypes++;
-
-						tx.success();
-
-					} catch (Throwable t) {
-						logger.warn("Unable to drop {}: {}", indexDescription, t.getMessage());
-					}
-				}
-			}
-		}
-
-		if (droppedIndexesOfRemovedTypes > 0) {
-			logger.debug("Dropped {} indexes of deleted types ({})", droppedIndexesOfRemovedTypes, StringUtils.join(removedTypes, ", "));
-		}
-	}
-
 	@Override
 	public Iterable<Map<String, Object>> execute(final String nativeQuery) {
 		return execute(nativeQuery, Collections.EMPTY_MAP);
@@ -691,6 +664,22 @@ public class BoltDatabaseService extends AbstractDatabaseService implements Grap
 		return Settings.CypherDebugLoggingPing.getValue();
 	}
 
+	@Override
+	public void prefetch(final Iterable<Identity> ids, final Direction direction, final Set<String> relationshipTypes) {
+
+		final List<Long> list = new ArrayList<>();
+
+		for (final Identity id : ids) {
+			list.add(unwrap(id));
+		}
+
+		if (!list.isEmpty()) {
+
+			NodeWrapper.prefetch(this, list, direction, relationshipTypes);
+		}
+	}
+
+	@Override
 	public long unwrap(final Identity identity) {
 
 		if (identity instanceof BoltIdentity) {
@@ -701,6 +690,11 @@ public class BoltDatabaseService extends AbstractDatabaseService implements Grap
 		throw new IllegalArgumentException("This implementation cannot handle Identity objects of type " + identity.getClass().getName() + ".");
 	}
 
+	@Override
+	public Identity identify(final long id) {
+		return new BoltIdentity(id);
+	}
+
 	public Node getNodeById(final long id) {
 		return NodeWrapper.newInstance(this, id);
 	}
@@ -784,6 +778,14 @@ public class BoltDatabaseService extends AbstractDatabaseService implements Grap
 		}
 	}
 
+	private void logCacheStatistics(final String name, final FixedSizeCache<Long, ?> cache) {
+
+		if (cache != null) {
+
+			logger.info("{} cache: {} of {} entries used, {} hits, {} misses, {} evictions", name, cache.size(), cache.getMaxSize(), cache.getHitCount(), cache.getMissCount(), cache.getEvictionCount());
+		}
+	}
+
 	private Properties getProperties() {
 
 		if (globalGraphProperties == null) {
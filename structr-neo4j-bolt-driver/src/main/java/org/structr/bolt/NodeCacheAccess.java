@@ -18,6 +18,7 @@
  */
 package org.structr.bolt;
 
+import org.structr.api.util.FixedSizeCache;
 import org.structr.bolt.wrapper.NodeWrapper;
 
 /**
@@ -29,4 +30,8 @@ class NodeCacheAccess extends NodeWrapper {
 	static void clearAllCaches() {
 		NodeCacheAccess.clearCache();
 	}
+
+	static FixedSizeCache<Long, NodeWrapper> getWrapperCache() {
+		return NodeCacheAccess.getCache();
+	}
 }
@@ -18,6 +18,7 @@
  */
 package org.structr.bolt;
 
+import org.structr.api.util.FixedSizeCache;
 import org.structr.bolt.wrapper.RelationshipWrapper;
 
 /**
@@ -29,4 +30,8 @@ class RelationshipCacheAccess extends RelationshipWrapper {
 	static void clearAllCaches() {
 		RelationshipCacheAccess.clearCache();
 	}
+
+	static FixedSizeCache<Long, RelationshipWrapper> getWrapperCache() {
+		return RelationshipCacheAccess.getCache();
+	}
 }
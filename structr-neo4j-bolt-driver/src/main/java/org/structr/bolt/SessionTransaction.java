@@ -19,9 +19,15 @@
 package org.structr.bolt;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import org.neo4j.driver.v1.Record;
@@ -45,6 +51,7 @@ import org.structr.api.NotFoundException;
 import org.structr.api.RetryException;
 import org.structr.api.UnknownClientException;
 import org.structr.api.UnknownDatabaseException;
+import org.structr.api.config.Settings;
 import org.structr.api.util.Iterables;
 import org.structr.bolt.mapper.RecordNodeMapper;
 import org.structr.bolt.mapper.RecordNodeIdMapper;
@@ -60,22 +67,26 @@ import org.structr.bolt.wrapper.RelationshipWrapper;
  */
 public class SessionTransaction implements org.structr.api.Transaction {
 
-	private static final AtomicLong idSource          = new AtomicLong();
-	private final Set<EntityWrapper> accessedEntities = new HashSet<>();
-	private final Set<EntityWrapper> modifiedEntities = new HashSet<>();
-	private final Set<Long> deletedNodes              = new HashSet<>();
-	private final Set<Long> deletedRels               = new HashSet<>();
-	private BoltDatabaseService db                    = null;
-	private Session session                           = null;
-	private Transaction tx                            = null;
-	private long transactionId                        = 0L;
-	private boolean closed                            = false;
-	private boolean success                           = false;
-	private boolean isPing                            = false;
+	private static final AtomicLong idSource                           = new AtomicLong();
+	private final Map<EntityWrapper, Map<String, Object>> pendingWrites = new LinkedHashMap<>();
+	private final Set<EntityWrapper> accessedEntities                  = new HashSet<>();
+	private final Set<EntityWrapper> modifiedEntities                  = new HashSet<>();
+	private final Set<RelationshipWrapper> createdRels                 = new LinkedHashSet<>();
+	private final Set<Long> deletedNodes                               = new HashSet<>();
+	private final Set<Long> deletedRels                                = new HashSet<>();
+	private BoltDatabaseService db                                     = null;
+	private Session session                                            = null;
+	private Transaction tx                                             = null;
+	private long transactionId                                         = 0L;
+	private boolean batchWrites                                        = false;
+	private boolean closed                                             = false;
+	private boolean success                                            = false;
+	private boolean isPing                                             = false;
 
 	public SessionTransaction(final BoltDatabaseService db, final Session session) {
 
 		this.transactionId = idSource.getAndIncrement();
+		this.batchWrites   = Settings.BatchPropertyWrites.getValue();
 		this.session       = session;
 		this.tx            = session.beginTransaction();
 		this.db            = db;
@@ -89,6 +100,9 @@ public class SessionTransaction implements org.structr.api.Transaction {
 	@Override
 	public void success() {
 
+		// write pending property modifications before commit
+		flush();
+
 		tx.success();
 
 		// transaction must be marked successfull explicitly
@@ -100,6 +114,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		if (!success) {
 
+			pendingWrites.clear();
+
 			for (final EntityWrapper entity : accessedEntities) {
 
 				entity.rollback(transactionId);
@@ -120,6 +136,17 @@ public class SessionTransaction implements org.structr.api.Transaction {
 			}
 
 			for (final EntityWrapper entity : modifiedEntities) {
+
+				// created relationships are added to the caches after commit, and
+				// changes to node properties don't affect the relationship caches
+				if (entity instanceof NodeWrapper && !isDeleted(entity)) {
+					continue;
+				}
+
+				if (createdRels.contains(entity) && !isDeleted(entity)) {
+					continue;
+				}
+
 				entity.clearCaches();
 			}
 		}
@@ -133,6 +160,17 @@ public class SessionTransaction implements org.structr.api.Transaction {
 			tx.close();
 			session.close();
 
+			if (success) {
+
+				for (final RelationshipWrapper rel : createdRels) {
+
+					if (!deletedRels.contains(rel.getDatabaseId())) {
+
+						NodeWrapper.relationshipCreated(rel);
+					}
+				}
+			}
+
 		} catch (TransientException tex) {
 
 			// transient exceptions can be retried
@@ -188,6 +226,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
+			flush();
 			logQuery(statement, map);
 			return tx.run(statement, map).next().get(0).asBoolean();
 
@@ -234,6 +273,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
+			flush();
 			logQuery(statement, map);
 			return tx.run(statement, map).next().get(0).asLong();
 
@@ -257,6 +297,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
+			flush();
 			logQuery(statement, map);
 			final StatementResult result = tx.run(statement, map);
 			if (result.hasNext()) {
@@ -286,6 +327,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
+			flush();
 			logQuery(statement, map);
 			return tx.run(statement, map).next().get(0).asEntity();
 
@@ -309,6 +351,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
+			flush();
 			logQuery(statement, map);
 			return tx.run(statement, map).next().get(0).asNode();
 
@@ -332,6 +375,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
+			flush();
 			logQuery(statement, map);
 			return tx.run(statement, map).next().get(0).asRelationship();
 
@@ -355,6 +399,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
+			flush();
 			logQuery(statement, map);
 			return Iterables.map(new RecordNodeMapper(), new IteratorWrapper<>(tx.run(statement, map)));
 
@@ -378,6 +423,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
+			flush();
 			logQuery(statement, map);
 			return Iterables.map(new RecordRelationshipMapper(db), new IteratorWrapper<>(tx.run(statement, map)));
 
@@ -401,6 +447,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
+			flush();
 			logQuery(statement, map);
 			return Iterables.map(new RecordNodeIdMapper(), new IteratorWrapper<>(tx.run(statement, map)));
 
@@ -424,6 +471,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
+			flush();
 			logQuery(statement, map);
 			final StatementResult result = tx.run(statement, map);
 			final Record record          = result.next();
@@ -451,6 +499,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
+			flush();
 			logQuery(statement, map);
 			return Iterables.map(new RecordMapMapper(db), new IteratorWrapper<>(tx.run(statement, map)));
 
@@ -474,6 +523,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
+			flush();
 			logQuery(statement, map);
 			tx.run(statement, map).consume();
 
@@ -491,6 +541,76 @@ public class SessionTransaction implements org.structr.api.Transaction {
 		}
 	}
 
+	public boolean isBatchingWrites() {
+		return batchWrites;
+	}
+
+	/**
+	 * Registers the given property values of the given entity to
+	 * be written with the next flush. Null values remove the
+	 * corresponding property.
+	 *
+	 * @param wrapper
+	 * @param values
+	 */
+	public void setProperties(final EntityWrapper wrapper, final Map<String, Object> values) {
+
+		Map<String, Object> pending = pendingWrites.get(wrapper);
+		if (pending == null) {
+
+			pending = new LinkedHashMap<>();
+			pendingWrites.put(wrapper, pending);
+		}
+
+		pending.putAll(values);
+	}
+
+	/**
+	 * Writes all pending property modifications to the database, using
+	 * one UNWIND statement per entity kind. This method is called before
+	 * every statement so that queries can observe the changes.
+	 */
+	public void flush() {
+
+		if (pendingWrites.isEmpty()) {
+			return;
+		}
+
+		final Map<String, List<Map<String, Object>>> batches = new LinkedHashMap<>();
+
+		for (final Entry<EntityWrapper, Map<String, Object>> entry : pendingWrites.entrySet()) {
+
+			final EntityWrapper wrapper     = entry.getKey();
+			final String prefix             = wrapper.getQueryPrefix();
+			List<Map<String, Object>> batch = batches.get(prefix);
+
+			if (batch == null) {
+
+				batch = new LinkedList<>();
+				batches.put(prefix, batch);
+			}
+
+			final Map<String, Object> data = new HashMap<>();
+
+			data.put("id",         wrapper.getDatabaseId());
+			data.put("properties", entry.getValue());
+
+			batch.add(data);
+		}
+
+		// clear before running the statements, set() calls flush() again
+		pendingWrites.clear();
+
+		for (final Entry<String, List<Map<String, Object>>> entry : batches.entrySet()) {
+
+			final Map<String, Object> map = new HashMap<>();
+
+			map.put("batch", entry.getValue());
+
+			set("UNWIND $batch AS b " + entry.getKey() + " WHERE ID(n) = b.id SET n += b.properties", map);
+		}
+	}
+
 	public void logQuery(final String statement) {
 		logQuery(statement, null);
 	}
@@ -517,6 +637,10 @@ public class SessionTransaction implements org.structr.api.Transaction {
 		}
 	}
 
+	public void created(final RelationshipWrapper wrapper) {
+		createdRels.add(wrapper);
+	}
+
 	public void deleted(final NodeWrapper wrapper) {
 		deletedNodes.add(wrapper.getDatabaseId());
 	}
@@ -31,7 +31,6 @@ import org.structr.api.graph.PropertyContainer;
 import org.structr.api.index.AbstractIndex;
 import org.structr.api.index.QueryFactory;
 import org.structr.api.search.*;
-import org.structr.bolt.BoltDatabaseService;
 import org.structr.bolt.index.converter.BooleanTypeConverter;
 import org.structr.bolt.index.converter.ByteTypeConverter;
 import org.structr.bolt.index.converter.DateTypeConverter;
@@ -57,12 +56,12 @@ public abstract class AbstractCypherIndex<T extends PropertyContainer> extends A
 
 	private final Map<Class, TypeConverter> converters = new HashMap<>();
 	private final Map<Class, QueryFactory> factories   = new HashMap<>();
-	protected BoltDatabaseService db                   = null;
+	private DatabaseService db                         = null;
 
 	public abstract String getQueryPrefix(final String mainType, final String sourceTypeLabel, final String targetTypeLabel);
 	public abstract String getQuerySuffix(final AdvancedCypherQuery query);
 
-	public AbstractCypherIndex(final BoltDatabaseService db) {
+	public AbstractCypherIndex(final DatabaseService db) {
 
 		this.db = db;
 
@@ -104,6 +103,7 @@ public abstract class AbstractCypherIndex<T extends PropertyContainer> extends A
 		factories.put(UuidQuery.class,         new UuidQueryFactory(this));
 		factories.put(RelationshipQuery.class, new RelationshipQueryFactory(this));
 		factories.put(ComparisonQuery.class,   new ComparisonQueryFactory(this));
+		factories.put(PermissionQuery.class,   new PermissionQueryFactory(this));
 
 		converters.put(Boolean.class, new BooleanTypeConverter());
 		converters.put(String.class,  new StringTypeConverter());
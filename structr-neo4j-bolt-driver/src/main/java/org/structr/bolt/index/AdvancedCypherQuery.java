@@ -83,10 +83,7 @@ public class AdvancedCypherQuery implements CypherQuery {
 
 				buf.append(index.getQueryPrefix(null, sourceTypeLabel, targetTypeLabel));
 
-				if (buffer.length() > 0) {
-					buf.append(" WHERE ");
-					buf.append(buffer);
-				}
+				appendWhereClause(buf);
 
 				buf.append(index.getQuerySuffix(this));
 				break;
@@ -95,10 +92,7 @@ public class AdvancedCypherQuery implements CypherQuery {
 
 				buf.append(index.getQueryPrefix(typeLabels.get(0), sourceTypeLabel, targetTypeLabel));
 
-				if (buffer.length() > 0) {
-					buf.append(" WHERE ");
-					buf.append(buffer);
-				}
+				appendWhereClause(buf);
 
 				buf.append(index.getQuerySuffix(this));
 				break;
@@ -110,10 +104,7 @@ public class AdvancedCypherQuery implements CypherQuery {
 
 					buf.append(index.getQueryPrefix(it.next(), sourceTypeLabel, targetTypeLabel));
 
-					if (buffer.length() > 0) {
-						buf.append(" WHERE ");
-						buf.append(buffer);
-					}
+					appendWhereClause(buf);
 
 					buf.append(index.getQuerySuffix(this));
 
@@ -150,6 +141,20 @@ public class AdvancedCypherQuery implements CypherQuery {
 			if (sortDescending) {
 				buf.append(" DESC");
 			}
+
+			if (queryContext.isKeyset()) {
+
+				// internal ID as tie-breaker, same direction as the sort key
+				buf.append(", nodeId");
+
+				if (sortDescending) {
+					buf.append(" DESC");
+				}
+			}
+
+		} else if (queryContext.isKeyset()) {
+
+			buf.append(" ORDER BY nodeId");
 		}
 
 		if (queryContext.isSliced()) {
@@ -313,6 +318,27 @@ public class AdvancedCypherQuery implements CypherQuery {
 		parameters.put(paramKey2, value2);
 	}
 
+	/**
+	 * Restricts the result to nodes that are readable for the given user,
+	 * based on the visibility flags, ownership and SECURITY relationships
+	 * of the user and its groups. The user and its groups are readable
+	 * for the user as well.
+	 *
+	 * @param principalIds the database IDs of the user and all its groups
+	 */
+	public void addPermissionFilter(final List<Long> principalIds) {
+
+		final String principalsKey = "param" + count++;
+
+		buffer.append("(n.visibleToPublicUsers = true OR n.visibleToAuthenticatedUsers = true OR ID(n) IN {");
+		buffer.append(principalsKey);
+		buffer.append("} OR size([(n)<-[r:OWNS|SECURITY]-(p) WHERE ID(p) IN {");
+		buffer.append(principalsKey);
+		buffer.append("} AND (type(r) = 'OWNS' OR 'read' IN r.allowed) | r]) > 0)");
+
+		parameters.put(principalsKey, principalIds);
+	}
+
 	@Override
 	public void sort(final SortType sortType, final String sortKey, final boolean sortDescending) {
 
@@ -333,4 +359,98 @@ public class AdvancedCypherQuery implements CypherQuery {
 	public QueryContext getQueryContext() {
 		return queryContext;
 	}
+
+	// ----- private methods -----
+	private void appendWhereClause(final StringBuilder buf) {
+
+		final boolean hasSeek = queryContext.hasSeek();
+
+		if (buffer.length() > 0 || hasSeek) {
+
+			buf.append(" WHERE ");
+		}
+
+		if (buffer.length() > 0) {
+
+			if (hasSeek) {
+
+				buf.append("(");
+				buf.append(buffer);
+				buf.append(") AND ");
+
+			} else {
+
+				buf.append(buffer);
+			}
+		}
+
+		if (hasSeek) {
+
+			appendSeekCondition(buf);
+		}
+	}
+
+	/**
+	 * Appends the keyset condition that selects all elements after
+	 * (sortKey, ID) of the last element of the previous page, taking
+	 * into account that Cypher sorts null values last.
+	 */
+	private void appendSeekCondition(final StringBuilder buf) {
+
+		final boolean isDefault = sortType == null || SortType.Default.equals(sortType);
+		final String operator   = sortDescending ? " < " : " > ";
+		Object seekValue        = queryContext.getSeekValue();
+
+		parameters.put("seekId", queryContext.getSeekId());
+
+		if (sortKey == null) {
+
+			// no sort key => ascending order of internal ID
+			buf.append("ID(n) > {seekId}");
+			return;
+		}
+
+		final String value = isDefault ? "n.`" + sortKey + "`" : "COALESCE(n.`" + sortKey + "`, -1)";
+
+		if (seekValue == null && !isDefault) {
+
+			// must match the COALESCE value in the ORDER BY clause
+			seekValue = -1;
+		}
+
+		if (seekValue != null) {
+
+			parameters.put("seekValue", seekValue);
+
+			buf.append("(");
+			buf.append(value);
+			buf.append(operator);
+			buf.append("{seekValue}");
+
+			if (isDefault && !sortDescending) {
+
+				buf.append(" OR ");
+				buf.append(value);
+				buf.append(" IS NULL");
+			}
+
+			buf.append(" OR (");
+			buf.append(value);
+			buf.append(" = {seekValue} AND ID(n)");
+			buf.append(operator);
+			buf.append("{seekId}))");
+
+		} else if (sortDescending) {
+
+			buf.append("(");
+			buf.append(value);
+			buf.append(" IS NOT NULL OR ID(n) < {seekId})");
+
+		} else {
+
+			buf.append("(");
+			buf.append(value);
+			buf.append(" IS NULL AND ID(n) > {seekId})");
+		}
+	}
 }
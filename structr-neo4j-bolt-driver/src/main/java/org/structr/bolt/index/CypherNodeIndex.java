@@ -18,6 +18,7 @@
  */
 package org.structr.bolt.index;
 
+import org.structr.api.DatabaseService;
 import org.structr.api.graph.Node;
 import org.structr.api.util.Iterables;
 import org.structr.bolt.BoltDatabaseService;
@@ -29,7 +30,22 @@ import org.structr.bolt.mapper.NodeNodeMapper;
  */
 public class CypherNodeIndex extends AbstractCypherIndex<Node> {
 
+	private BoltDatabaseService db = null;
+
 	public CypherNodeIndex(final BoltDatabaseService db) {
+
+		super(db);
+
+		this.db = db;
+	}
+
+	/**
+	 * Creates an index for a database service that is not based on
+	 * Bolt, subclasses must override {@link #getResult}.
+	 *
+	 * @param db
+	 */
+	protected CypherNodeIndex(final DatabaseService db) {
 		super(db);
 	}
 
@@ -37,7 +53,7 @@ public class CypherNodeIndex extends AbstractCypherIndex<Node> {
 	public String getQueryPrefix(final String typeLabel, final String sourceTypeLabel, final String targetTypeLabel) {
 
 		final StringBuilder buf = new StringBuilder("MATCH (n:NodeInterface");
-		final String tenantId   = db.getTenantIdentifier();
+		final String tenantId   = getDatabaseService().getTenantIdentifier();
 
 		if (tenantId != null) {
 
@@ -71,6 +87,10 @@ public class CypherNodeIndex extends AbstractCypherIndex<Node> {
 			buf.append("` AS sortKey");
 		}
 
+		if (query.getQueryContext().isKeyset()) {
+			buf.append(", ID(n) AS nodeId");
+		}
+
 		return buf.toString();
 	}
 
@@ -18,6 +18,7 @@
  */
 package org.structr.bolt.index;
 
+import org.structr.api.DatabaseService;
 import org.structr.api.graph.Relationship;
 import org.structr.api.util.Iterables;
 import org.structr.bolt.BoltDatabaseService;
@@ -29,7 +30,22 @@ import org.structr.bolt.mapper.RelationshipRelationshipMapper;
  */
 public class CypherRelationshipIndex extends AbstractCypherIndex<Relationship> {
 
+	private BoltDatabaseService db = null;
+
 	public CypherRelationshipIndex(final BoltDatabaseService db) {
+
+		super(db);
+
+		this.db = db;
+	}
+
+	/**
+	 * Creates an index for a database service that is not based on
+	 * Bolt, subclasses must override {@link #getResult}.
+	 *
+	 * @param db
+	 */
+	protected CypherRelationshipIndex(final DatabaseService db) {
 		super(db);
 	}
 
@@ -37,7 +53,7 @@ public class CypherRelationshipIndex extends AbstractCypherIndex<Relationship> {
 	public String getQueryPrefix(final String typeLabel, final String sourceTypeLabel, final String targetTypeLabel) {
 
 		final StringBuilder buf       = new StringBuilder();
-		final String tenantIdentifier = db.getTenantIdentifier();
+		final String tenantIdentifier = getDatabaseService().getTenantIdentifier();
 
 		buf.append("MATCH (");
 
@@ -90,6 +106,10 @@ public class CypherRelationshipIndex extends AbstractCypherIndex<Relationship> {
 			buf.append("` AS sortKey");
 		}
 
+		if (query.getQueryContext().isKeyset()) {
+			buf.append(", ID(n) AS nodeId");
+		}
+
 		return buf.toString();
 	}
 
@@ -20,6 +20,7 @@ package org.structr.bolt.wrapper;
 
 import java.lang.reflect.Array;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -63,7 +64,7 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 		this.db   = db;
 	}
 
-	protected abstract String getQueryPrefix();
+	public abstract String getQueryPrefix();
 	protected abstract boolean isNode();
 	public abstract void removeFromCache();
 	public abstract void clearCaches();
@@ -141,6 +142,16 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 		// only update values if actually different from what is stored
 		if (needsUpdate(key, value)) {
 
+			if (tx.isBatchingWrites()) {
+
+				tx.setProperties(this, Collections.singletonMap(key, value));
+
+				accessData().put(key, value);
+				setModified();
+
+				return;
+			}
+
 			final Map<String, Object> map = new HashMap<>();
 			final String query            = getQueryPrefix() + " WHERE ID(n) = $id SET n.`" + key + "` = $value";
 
@@ -169,8 +180,19 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 		// only update values if actually different from what is stored
 		if (!values.isEmpty()) {
 
+			final SessionTransaction tx = db.getCurrentTransaction();
+
+			if (tx.isBatchingWrites()) {
+
+				tx.setProperties(this, values);
+
+				update(values);
+				setModified();
+
+				return;
+			}
+
 			final Map<String, Object> map = new HashMap<>();
-			final SessionTransaction tx   = db.getCurrentTransaction();
 			final String query            = getQueryPrefix() + " WHERE ID(n) = $id SET n += $properties";
 
 			// overwrite a potential "id" property
@@ -192,7 +214,19 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 		assertNotStale();
 
-		final SessionTransaction tx   = db.getCurrentTransaction();
+		final SessionTransaction tx = db.getCurrentTransaction();
+
+		if (tx.isBatchingWrites()) {
+
+			// a null value in SET n += $properties removes the property
+			tx.setProperties(this, Collections.singletonMap(key, null));
+
+			accessData().put(key, null);
+			setModified();
+
+			return;
+		}
+
 		final Map<String, Object> map = new HashMap<>();
 		final String query            = getQueryPrefix() + " WHERE ID(n) = $id SET n.`" + key + "` = Null";
 
@@ -397,9 +431,10 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 	// ----- private methods -----
 	private Map<String, Object> accessData() {
 
-		// read-only access does not need a transaction
+		// read-only access does not need a transaction, and access
+		// after the transaction was closed sees the committed data
 		final SessionTransaction tx = db.getCurrentTransaction(false);
-		if (tx != null) {
+		if (tx != null && !tx.isClosed()) {
 
 			if (deleted || tx.isDeleted(this)) {
 				throw new NotFoundException("Entity with ID " + id + " not found.");
@@ -18,6 +18,8 @@
  */
 package org.structr.bolt.wrapper;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -26,6 +28,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,10 +52,12 @@ import org.structr.bolt.mapper.RelationshipRelationshipMapper;
 public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> implements Node {
 
 	private static final Logger logger                                           = LoggerFactory.getLogger(NodeWrapper.class);
+	private static final AtomicLong cachedRelationships                          = new AtomicLong();
+	private static final AtomicInteger cacheGeneration                           = new AtomicInteger();
 	protected static FixedSizeCache<Long, NodeWrapper> nodeCache                 = null;
 
 	private final Map<String, Map<String, RelationshipResult>> relationshipCache = new HashMap<>();
-	private boolean dontUseCache                                                 = false;
+	private volatile boolean dontUseCache                                        = false;
 
 	protected NodeWrapper() {
 		// nop constructor for cache access
@@ -72,7 +78,7 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 	}
 
 	@Override
-	protected String getQueryPrefix() {
+	public String getQueryPrefix() {
 
 		return concat("MATCH (n", getTenantIdentifer(db), ")");
 	}
@@ -80,21 +86,22 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 	@Override
 	public void onRemoveFromCache() {
 
-		relationshipCache.clear();
+		clearRelationshipCache();
 		this.stale = true;
 	}
 
 	@Override
 	public void clearCaches() {
 
-		relationshipCache.clear();
+		clearRelationshipCache();
 	}
 
 	@Override
 	public void onClose() {
 
+		// relationships created in the transaction are added to
+		// the caches after commit, see relationshipCreated()
 		dontUseCache = false;
-		relationshipCache.clear();
 	}
 
 	@Override
@@ -105,13 +112,16 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 	@Override
 	public Relationship createRelationshipTo(final Node endNode, final RelationshipType relationshipType, final Map<String, Object> properties) {
 
-		dontUseCache = true;
+		final NodeWrapper otherNode = (NodeWrapper)endNode;
+
+		// the shared caches must not see uncommitted relationships
+		otherNode.dontUseCache = true;
+		dontUseCache           = true;
 
 		assertNotStale();
 
 		final SessionTransaction tx   = db.getCurrentTransaction();
 		final Map<String, Object> map = new HashMap<>();
-		final NodeWrapper otherNode   = (NodeWrapper)endNode;
 		final String tenantIdentifier = getTenantIdentifer(db);
 		final StringBuilder buf       = new StringBuilder();
 
@@ -134,13 +144,10 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		setModified();
 		otherNode.setModified();
 
-		// clear caches
-		((NodeWrapper)endNode).relationshipCache.clear();
-		relationshipCache.clear();
-
 		final RelationshipWrapper createdRelationship = RelationshipWrapper.newInstance(db, rel);
 
 		createdRelationship.setModified();
+		tx.created(createdRelationship);
 
 		return createdRelationship;
 	}
@@ -231,7 +238,7 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		final RelationshipResult cache = getRelationshipCache(null, null);
 		final String tenantIdentifier = getTenantIdentifer(db);
 
-		return cache.getResult(db, id, concat("(n", tenantIdentifier, ")-[r]-(o)"), "(n)-[]-()", "RETURN r, o ORDER BY r.internalTimestamp");
+		return cache.getResult(db, id, concat("(n", tenantIdentifier, ")-[r]-(o)"), "(n)-[]-()", "o");
 	}
 
 	@Override
@@ -248,10 +255,10 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 				return getRelationships();
 
 			case OUTGOING:
-				return cache.getResult(db, id, concat("(n", tenantIdentifier, ")-[r]->(t)"), "(n)-[]->()", "RETURN r, t ORDER BY r.internalTimestamp");
+				return cache.getResult(db, id, concat("(n", tenantIdentifier, ")-[r]->(t)"), "(n)-[]->()", "t");
 
 			case INCOMING:
-				return cache.getResult(db, id, concat("(n", tenantIdentifier , ")<-[r]-(s)"), "(n)<-[]-()", "RETURN r, s ORDER BY r.internalTimestamp");
+				return cache.getResult(db, id, concat("(n", tenantIdentifier , ")<-[r]-(s)"), "(n)<-[]-()", "s");
 		}
 
 		return null;
@@ -269,13 +276,13 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		switch (direction) {
 
 			case BOTH:
-				return cache.getResult(db, id, concat("(n", tenantIdentifier, ")-[r:", rel, "]-(o)"), concat("(n)-[:", rel, "]-()"), "RETURN r, o ORDER BY r.internalTimestamp");
+				return cache.getResult(db, id, concat("(n", tenantIdentifier, ")-[r:", rel, "]-(o)"), concat("(n)-[:", rel, "]-()"), "o");
 
 			case OUTGOING:
-				return cache.getResult(db, id, concat("(n", tenantIdentifier, ")-[r:", rel, "]->(t)"), concat("(n)-[:", rel, "]->()"), "RETURN r, t ORDER BY r.internalTimestamp");
+				return cache.getResult(db, id, concat("(n", tenantIdentifier, ")-[r:", rel, "]->(t)"), concat("(n)-[:", rel, "]->()"), "t");
 
 			case INCOMING:
-				return cache.getResult(db, id, concat("(n", tenantIdentifier, ")<-[r:", rel, "]-(s)"), concat("(n)<-[:", rel, "]-()"), "RETURN r, s ORDER BY r.internalTimestamp");
+				return cache.getResult(db, id, concat("(n", tenantIdentifier, ")<-[r:", rel, "]-(s)"), concat("(n)<-[:", rel, "]-()"), "s");
 		}
 
 		return null;
@@ -311,15 +318,7 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 	}
 
 	public void addToCache(final RelationshipWrapper rel) {
-
-		synchronized (relationshipCache) {
-
-			final Direction direction   = rel.getDirectionForNode(this);
-			final RelationshipType type = rel.getType();
-			RelationshipResult list = getRelationshipCache(direction, type);
-
-			list.add(rel);
-		}
+		addToCache(rel, rel.getDirectionForNode(this));
 	}
 
 	// ----- protected methods -----
@@ -328,12 +327,144 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		return true;
 	}
 
+	// ----- package-private methods -----
+	void relationshipDeleted() {
+
+		// the shared caches must not see uncommitted deletions
+		dontUseCache = true;
+		setModified();
+	}
+
 	// ----- private methods -----
-	private Map<String, RelationshipResult> getCache(final Direction direction) {
+	private void addToCache(final RelationshipWrapper rel, final Direction direction) {
+
+		synchronized (relationshipCache) {
+
+			final String type = rel.getTypeName();
+
+			// only results that are already known need to be updated,
+			// all others are read from the database when requested
+			addToResult(direction.name(), type, rel);
+			addToResult(direction.name(), "*", rel);
+			addToResult(Direction.BOTH.name(), type, rel);
+			addToResult("*", "*", rel);
+		}
+	}
+
+	private void addToResult(final String directionKey, final String relTypeKey, final RelationshipWrapper rel) {
+
+		final Map<String, RelationshipResult> cache = relationshipCache.get(directionKey);
+		if (cache != null) {
+
+			final RelationshipResult result = cache.get(relTypeKey);
+			if (result != null) {
+
+				result.add(rel);
+			}
+		}
+	}
+
+	private void seed(final Direction direction, final Set<String> types, final List<RelationshipWrapper> rels) {
+
+		final Map<String, List<Relationship>> outgoing = new HashMap<>();
+		final Map<String, List<Relationship>> incoming = new HashMap<>();
+		final Map<String, List<Relationship>> both     = new HashMap<>();
+		final List<Relationship> all                   = new ArrayList<>();
+
+		if (types != null) {
+
+			// requested types without relationships are known to be empty
+			for (final String type : types) {
+
+				outgoing.put(type, new ArrayList<>());
+				incoming.put(type, new ArrayList<>());
+				both.put(type, new ArrayList<>());
+			}
+		}
+
+		for (final RelationshipWrapper rel : rels) {
+
+			final String type = rel.getTypeName();
+
+			if (rel.getSourceNodeId() == id) {
+				outgoing.computeIfAbsent(type, k -> new ArrayList<>()).add(rel);
+			}
+
+			if (rel.getTargetNodeId() == id) {
+				incoming.computeIfAbsent(type, k -> new ArrayList<>()).add(rel);
+			}
+
+			both.computeIfAbsent(type, k -> new ArrayList<>()).add(rel);
+			all.add(rel);
+		}
+
+		synchronized (relationshipCache) {
+
+			switch (direction) {
+
+				case OUTGOING:
+					seed(Direction.OUTGOING.name(), outgoing, types == null ? all : null);
+					break;
+
+				case INCOMING:
+					seed(Direction.INCOMING.name(), incoming, types == null ? all : null);
+					break;
+
+				case BOTH:
+					seed(Direction.OUTGOING.name(), outgoing, null);
+					seed(Direction.INCOMING.name(), incoming, null);
+					seed(Direction.BOTH.name(), both, null);
+
+					if (types == null) {
+
+						final List<Relationship> allOutgoing = new ArrayList<>();
+						final List<Relationship> allIncoming = new ArrayList<>();
+
+						outgoing.values().forEach(allOutgoing::addAll);
+						incoming.values().forEach(allIncoming::addAll);
+
+						getRelationshipResult(Direction.OUTGOING.name(), "*").seed(allOutgoing);
+						getRelationshipResult(Direction.INCOMING.name(), "*").seed(allIncoming);
+						getRelationshipResult("*", "*").seed(all);
+					}
+					break;
+			}
+		}
+	}
+
+	private void seed(final String directionKey, final Map<String, List<Relationship>> rels, final List<Relationship> all) {
+
+		for (final Map.Entry<String, List<Relationship>> entry : rels.entrySet()) {
+
+			getRelationshipResult(directionKey, entry.getKey()).seed(entry.getValue());
+		}
+
+		if (all != null) {
+
+			getRelationshipResult(directionKey, "*").seed(all);
+		}
+	}
+
+	private void clearRelationshipCache() {
+
+		synchronized (relationshipCache) {
+
+			for (final Map<String, RelationshipResult> cache : relationshipCache.values()) {
+
+				for (final RelationshipResult result : cache.values()) {
+
+					result.clear();
+				}
+			}
+
+			relationshipCache.clear();
+		}
+	}
+
+	private Map<String, RelationshipResult> getCache(final String directionKey) {
 
 		synchronized (relationshipCache) {
 
-			final String directionKey             = direction != null ? direction.name() : "*";
 			Map<String, RelationshipResult> cache = relationshipCache.get(directionKey);
 
 			if (cache == null) {
@@ -347,11 +478,14 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 	}
 
 	private RelationshipResult getRelationshipCache(final Direction direction, final RelationshipType relType) {
+		return getRelationshipResult(direction != null ? direction.name() : "*", relType != null ? relType.name() : "*");
+	}
+
+	private RelationshipResult getRelationshipResult(final String directionKey, final String relTypeKey) {
 
 		synchronized (relationshipCache) {
 
-			final String relTypeKey                     = relType != null ? relType.name() : "*";
-			final Map<String, RelationshipResult> cache = getCache(direction);
+			final Map<String, RelationshipResult> cache = getCache(directionKey);
 
 			RelationshipResult count = cache.get(relTypeKey);
 			if (count == null) {
@@ -368,86 +502,179 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 	// ----- public static methods -----
 	public static NodeWrapper newInstance(final BoltDatabaseService db, final org.neo4j.driver.v1.types.Node node) {
 
-		synchronized (nodeCache) {
-
-			NodeWrapper wrapper = nodeCache.get(node.id());
-			if (wrapper == null) { // || wrapper.stale) {
+		NodeWrapper wrapper = nodeCache.get(node.id());
+		if (wrapper == null) { // || wrapper.stale) {
 
-				wrapper = new NodeWrapper(db, node);
-				nodeCache.put(node.id(), wrapper);
-			}
-
-			return wrapper;
+			// another thread may have cached a wrapper in the meantime
+			wrapper = nodeCache.putIfAbsent(node.id(), new NodeWrapper(db, node));
 		}
+
+		return wrapper;
 	}
 
 	public static NodeWrapper newInstance(final BoltDatabaseService db, final long id) {
 
-		synchronized (nodeCache) {
+		NodeWrapper wrapper = nodeCache.get(id);
+		if (wrapper == null) { // || wrapper.stale) {
 
-			NodeWrapper wrapper = nodeCache.get(id);
-			if (wrapper == null) { // || wrapper.stale) {
+			final SessionTransaction tx   = db.getCurrentTransaction();
+			final String tenantIdentifier = getTenantIdentifer(db);
+			final Map<String, Object> map = new HashMap<>();
 
-				final SessionTransaction tx   = db.getCurrentTransaction();
-				final String tenantIdentifier = getTenantIdentifer(db);
-				final Map<String, Object> map = new HashMap<>();
+			map.put("id", id);
 
-				map.put("id", id);
+			final Iterable<org.neo4j.driver.v1.types.Node> result   = tx.getNodes(concat("MATCH (n", tenantIdentifier, ") WHERE ID(n) = $id RETURN DISTINCT n"), map);
+			final Iterator<org.neo4j.driver.v1.types.Node> iterator = result.iterator();
 
-				final Iterable<org.neo4j.driver.v1.types.Node> result   = tx.getNodes(concat("MATCH (n", tenantIdentifier, ") WHERE ID(n) = $id RETURN DISTINCT n"), map);
-				final Iterator<org.neo4j.driver.v1.types.Node> iterator = result.iterator();
+			if (iterator.hasNext()) {
 
-				if (iterator.hasNext()) {
+				wrapper = NodeWrapper.newInstance(db, iterator.next());
 
-					wrapper = NodeWrapper.newInstance(db, iterator.next());
+			} else {
 
-					nodeCache.put(id, wrapper);
+				throw new NotFoundException("Node with ID " + id + " not found.");
+			}
+		}
 
-				} else {
+		return wrapper;
+	}
 
-					throw new NotFoundException("Node with ID " + id + " not found.");
-				}
+	/**
+	 * Adds a relationship that was created in a committed transaction to
+	 * the relationship caches of its start and end node.
+	 *
+	 * @param rel
+	 */
+	public static void relationshipCreated(final RelationshipWrapper rel) {
+
+		final NodeWrapper startNode = nodeCache.get(rel.getSourceNodeId());
+		final NodeWrapper endNode   = nodeCache.get(rel.getTargetNodeId());
+
+		if (startNode != null && startNode == endNode) {
+
+			// self-referencing relationships are rare, rebuild caches
+			startNode.clearCaches();
+
+		} else {
+
+			if (startNode != null) {
+				startNode.addToCache(rel, Direction.OUTGOING);
 			}
 
-			return wrapper;
+			if (endNode != null) {
+				endNode.addToCache(rel, Direction.INCOMING);
+			}
 		}
 	}
 
-	// ----- package-private static methods
-	static FixedSizeCache<Long, NodeWrapper> getCache() {
-		return nodeCache;
-	}
+	/**
+	 * Loads the relationships of the given type(s) of all given nodes with
+	 * a single query and stores them in the relationship caches. Nodes with
+	 * more relationships than the cache threshold are skipped.
+	 *
+	 * @param db
+	 * @param ids
+	 * @param direction
+	 * @param types the relationship types, or null for all types
+	 */
+	public static void prefetch(final BoltDatabaseService db, final Collection<Long> ids, final Direction direction, final Set<String> types) {
 
-	public static void expunge(final Set<Long> toRemove) {
+		if (Settings.ForceResultStreaming.getValue() || (types != null && types.isEmpty())) {
+			return;
+		}
+
+		final Map<Long, List<RelationshipWrapper>> rels = new LinkedHashMap<>();
+		final SessionTransaction tx                     = db.getCurrentTransaction();
+		final Map<String, Object> map                   = new HashMap<>();
+		final String typeList                           = types != null ? ":" + StringUtils.join(types, "|") : "";
+		final String other;
+		final String match;
+		final String pattern;
+
+		switch (direction) {
+
+			case OUTGOING:
+				match   = concat("(n)-[r", typeList, "]->(t)");
+				pattern = concat("(n)-[", typeList, "]->()");
+				other   = "t";
+				break;
+
+			case INCOMING:
+				match   = concat("(n)<-[r", typeList, "]-(s)");
+				pattern = concat("(n)<-[", typeList, "]-()");
+				other   = "s";
+				break;
+
+			default:
+				match   = concat("(n)-[r", typeList, "]-(o)");
+				pattern = concat("(n)-[", typeList, "]-()");
+				other   = "o";
+				break;
+		}
 
-		synchronized (nodeCache) {
+		map.put("ids",       ids);
+		map.put("threshold", Settings.RelationshipThreshold.getValue());
 
-			for (final Long id : toRemove) {
+		final String query = concat(
+			"MATCH (n", getTenantIdentifer(db), ") WHERE ID(n) IN $ids AND size(", pattern, ") <= $threshold ",
+			"OPTIONAL MATCH ", match, " RETURN ID(n) AS id, r, ", other
+		);
 
-				expunge(id);
+		for (final Map<String, Object> row : tx.run(query, map)) {
+
+			final List<RelationshipWrapper> list = rels.computeIfAbsent(((Number)row.get("id")).longValue(), k -> new ArrayList<>());
+			final Object rel                     = row.get("r");
+
+			// make sure that the other node is cached as well
+			row.get(other);
+
+			if (rel instanceof RelationshipWrapper) {
+
+				list.add((RelationshipWrapper)rel);
 			}
 		}
-	}
 
-	public static void expunge(final Long toRemove) {
+		for (final Map.Entry<Long, List<RelationshipWrapper>> entry : rels.entrySet()) {
 
-		synchronized (nodeCache) {
+			final NodeWrapper node = nodeCache.get(entry.getKey());
 
-			final NodeWrapper node = nodeCache.remove(toRemove);
-			if (node != null) {
+			// uncommitted changes must not be cached
+			if (node != null && !node.dontUseCache) {
 
-				node.clearCaches();
+				node.seed(direction, types, entry.getValue());
 			}
 		}
 	}
 
+	public static void expunge(final Set<Long> toRemove) {
+
+		for (final Long id : toRemove) {
+
+			expunge(id);
+		}
+	}
+
+	public static void expunge(final Long toRemove) {
+
+		final NodeWrapper node = nodeCache.remove(toRemove);
+		if (node != null) {
+
+			node.clearCaches();
+		}
+	}
+
 	// ----- protected static methods -----
+	protected static FixedSizeCache<Long, NodeWrapper> getCache() {
+		return nodeCache;
+	}
+
 	protected static void clearCache() {
 
-		synchronized (nodeCache) {
+		nodeCache.clear();
 
-			nodeCache.clear();
-		}
+		// results of the old generation don't count anymore
+		cacheGeneration.incrementAndGet();
+		cachedRelationships.set(0L);
 	}
 
 	// ----- private static methods -----
@@ -467,6 +694,25 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		return buf.toString();
 	}
 
+	private static boolean acquireBudget(final long count) {
+
+		final long budget = Settings.RelationshipBudget.getValue();
+
+		while (true) {
+
+			final long current = cachedRelationships.get();
+			if (current + count > budget) {
+
+				return false;
+			}
+
+			if (cachedRelationships.compareAndSet(current, current + count)) {
+
+				return true;
+			}
+		}
+	}
+
 	private static String getTenantIdentifer(final BoltDatabaseService db) {
 
 		final String identifier = db.getTenantIdentifier();
@@ -488,40 +734,122 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 	// ----- nested classes -----
 	private class RelationshipResult {
 
-		private Set<Relationship> set = null;
+		private TreeSet<Relationship> set = null;
+		private Long degree               = null;
+		private int generation            = 0;
+		private int accounted             = 0;
 
-		public void add(final Relationship rel) {
+		public synchronized void add(final RelationshipWrapper rel) {
 
 			if (set != null) {
 
-				set.add(rel);
+				if (set.contains(rel)) {
+					return;
+				}
+
+				if (accounted >= Settings.RelationshipThreshold.getValue() || !acquireBudget(1)) {
+
+					// result too large, read from the database again
+					clear();
+					return;
+				}
+
+				// copy on write, callers may still be iterating over the old set
+				final TreeSet<Relationship> copy = new TreeSet<>(set);
+
+				copy.add(rel);
+
+				set = copy;
+				accounted++;
+			}
+
+			if (degree != null) {
+				degree++;
 			}
 		}
 
-		public synchronized Iterable<Relationship> getResult(final BoltDatabaseService db, final long id, final String match, final String pattern, final String returnStatement) {
+		public synchronized void seed(final List<Relationship> rels) {
+
+			if (set != null || rels.size() > Settings.RelationshipThreshold.getValue() || !acquireBudget(rels.size())) {
+				return;
+			}
+
+			final TreeSet<Relationship> newSet = new TreeSet<>((o1, o2) -> { return compare("internalTimestamp", o1, o2); });
+
+			newSet.addAll(rels);
+
+			generation = cacheGeneration.get();
+			accounted  = newSet.size();
+			degree     = Long.valueOf(accounted);
+			set        = newSet;
+		}
+
+		public synchronized void clear() {
+
+			if (accounted > 0 && generation == cacheGeneration.get()) {
+
+				cachedRelationships.addAndGet(-accounted);
+			}
+
+			accounted = 0;
+			degree    = null;
+			set       = null;
+		}
+
+		public synchronized Iterable<Relationship> getResult(final BoltDatabaseService db, final long id, final String match, final String pattern, final String other) {
 
 			final RelationshipRelationshipMapper mapper = new RelationshipRelationshipMapper(db);
 			final Map<String, Object> map               = new HashMap<>();
 			final SessionTransaction tx                 = db.getCurrentTransaction();
 			final String whereStatement                 = " WHERE ID(n) = $id ";
+			final String returnStatement                = concat("RETURN r, ", other, " ORDER BY r.internalTimestamp");
 
 			map.put("id", id);
 
-			if (Settings.ForceResultStreaming.getValue() || dontUseCache) {
+			if (Settings.ForceResultStreaming.getValue()) {
 
 				// return streaming result
 				return Iterables.map(mapper, tx.getRelationships(concat("MATCH ", match, whereStatement, returnStatement), map));
 
+			} else if (dontUseCache) {
+
+				// uncommitted changes must not be cached
+				return new PagedRelationshipIterable(db, id, match, other);
+
 			} else {
 
 				// else: return cached result
 				if (set == null) {
 
+					if (degree == null) {
+
+						degree = tx.getLong(concat("MATCH (n", getTenantIdentifer(db), ")", whereStatement, "RETURN size(", pattern, ")"), map);
+					}
+
+					// do not materialize the relationships of supernodes
+					if (degree > Settings.RelationshipThreshold.getValue() || !acquireBudget(degree)) {
+
+						return new PagedRelationshipIterable(db, id, match, other);
+					}
+
 					// create sorted set (important if nodes are added later on)
-					set = new TreeSet<>((o1, o2) -> { return compare("internalTimestamp", o1, o2); });
+					final TreeSet<Relationship> newSet = new TreeSet<>((o1, o2) -> { return compare("internalTimestamp", o1, o2); });
+
+					try {
+
+						// add elements
+						newSet.addAll(Iterables.toList(Iterables.map(mapper, tx.getRelationships(concat("MATCH ", match, whereStatement, returnStatement), map))));
+
+					} finally {
+
+						// the degree includes relationships to other tenants
+						cachedRelationships.addAndGet(newSet.size() - degree);
+					}
 
-					// add elements
-					set.addAll(Iterables.toList(Iterables.map(mapper, tx.getRelationships(concat("MATCH ", match, whereStatement, returnStatement), map))));
+					generation = cacheGeneration.get();
+					accounted  = newSet.size();
+					degree     = Long.valueOf(accounted);
+					set        = newSet;
 				}
 
 				return set;
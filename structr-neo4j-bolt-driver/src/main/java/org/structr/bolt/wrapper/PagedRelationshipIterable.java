@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.bolt.wrapper;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.structr.api.config.Settings;
+import org.structr.api.graph.Relationship;
+import org.structr.api.util.Iterables;
+import org.structr.bolt.BoltDatabaseService;
+import org.structr.bolt.SessionTransaction;
+import org.structr.bolt.mapper.RelationshipRelationshipMapper;
+
+/**
+ * Iterates over the relationships of a node in pages of a fixed size, so
+ * that the relationships of nodes with a very large number of relationships
+ * are never held in memory all at once.
+ *
+ * Pages are read with keyset pagination in the same order as the cached
+ * results: relationships without internal timestamp first (ordered by ID),
+ * then ordered by internal timestamp and ID.
+ */
+class PagedRelationshipIterable implements Iterable<Relationship> {
+
+	private BoltDatabaseService db = null;
+	private String match           = null;
+	private String other           = null;
+	private long id                = -1L;
+
+	public PagedRelationshipIterable(final BoltDatabaseService db, final long id, final String match, final String other) {
+
+		this.match = match;
+		this.other = other;
+		this.id    = id;
+		this.db    = db;
+	}
+
+	@Override
+	public Iterator<Relationship> iterator() {
+		return new PageIterator();
+	}
+
+	// ----- nested classes -----
+	private class PageIterator implements Iterator<Relationship> {
+
+		private final RelationshipRelationshipMapper mapper = new RelationshipRelationshipMapper(db);
+		private final int pageSize                          = Math.max(1, Settings.RelationshipPageSize.getValue());
+		private Iterator<Relationship> page                 = null;
+		private boolean withTimestamp                       = false;
+		private boolean finished                            = false;
+		private String lastTimestamp                        = null;
+		private long lastId                                 = -1L;
+
+		@Override
+		public boolean hasNext() {
+
+			while (!finished && (page == null || !page.hasNext())) {
+
+				final List<Relationship> list = fetchPage();
+
+				if (list.size() < pageSize) {
+
+					if (withTimestamp) {
+
+						finished = true;
+
+					} else {
+
+						// continue with the relationships that have a timestamp
+						withTimestamp = true;
+						lastId        = -1L;
+					}
+				}
+
+				page = list.iterator();
+
+				if (page.hasNext()) {
+					break;
+				}
+			}
+
+			return page != null && page.hasNext();
+		}
+
+		@Override
+		public Relationship next() {
+
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			final Relationship rel = page.next();
+
+			if (rel instanceof RelationshipWrapper) {
+
+				lastId = ((RelationshipWrapper)rel).getDatabaseId();
+			}
+
+			if (withTimestamp) {
+
+				lastTimestamp = (String)rel.getProperty("internalTimestamp");
+			}
+
+			return rel;
+		}
+
+		// ----- private methods -----
+		private List<Relationship> fetchPage() {
+
+			final SessionTransaction tx   = db.getCurrentTransaction();
+			final Map<String, Object> map = new HashMap<>();
+			final StringBuilder buf       = new StringBuilder();
+
+			map.put("id",    id);
+			map.put("rid",   lastId);
+			map.put("limit", pageSize);
+
+			buf.append("MATCH ");
+			buf.append(match);
+			buf.append(" WHERE ID(n) = $id AND ");
+
+			if (withTimestamp) {
+
+				buf.append("r.internalTimestamp IS NOT NULL");
+
+				if (lastTimestamp != null) {
+
+					buf.append(" AND (r.internalTimestamp > $ts OR (r.internalTimestamp = $ts AND ID(r) > $rid))");
+					map.put("ts", lastTimestamp);
+				}
+
+				buf.append(" RETURN r, ");
+				buf.append(other);
+				buf.append(" ORDER BY r.internalTimestamp, ID(r)");
+
+			} else {
+
+				buf.append("r.internalTimestamp IS NULL AND ID(r) > $rid RETURN r, ");
+				buf.append(other);
+				buf.append(" ORDER BY ID(r)");
+			}
+
+			buf.append(" LIMIT $limit");
+
+			return Iterables.toList(Iterables.map(mapper, tx.getRelationships(buf.toString(), map)));
+		}
+	}
+}
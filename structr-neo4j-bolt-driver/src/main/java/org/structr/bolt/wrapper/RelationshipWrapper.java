@@ -64,7 +64,7 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 	}
 
 	@Override
-	protected String getQueryPrefix() {
+	public String getQueryPrefix() {
 
 		final String tenantIdentifier = db.getTenantIdentifier();
 		if (tenantIdentifier != null) {
@@ -82,23 +82,17 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 
 	public static void expunge(final Set<Long> toRemove) {
 
-		synchronized (relationshipCache) {
-
-			for (final Long id : toRemove) {
-				expunge(id);
-			}
+		for (final Long id : toRemove) {
+			expunge(id);
 		}
 	}
 
 	public static void expunge(final Long toRemove) {
 
-		synchronized (relationshipCache) {
+		final RelationshipWrapper wrapper = relationshipCache.remove(toRemove);
+		if (wrapper != null) {
 
-			final RelationshipWrapper wrapper = relationshipCache.remove(toRemove);
-			if (wrapper != null) {
-
-				wrapper.clearCaches();
-			}
+			wrapper.clearCaches();
 		}
 	}
 
@@ -165,6 +159,18 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 		final SessionTransaction tx = db.getCurrentTransaction();
 		tx.deleted(this);
 
+		final NodeWrapper startNode = (NodeWrapper)getStartNode();
+		if (startNode != null) {
+
+			startNode.relationshipDeleted();
+		}
+
+		final NodeWrapper endNode = (NodeWrapper)getEndNode();
+		if (endNode != null) {
+
+			endNode.relationshipDeleted();
+		}
+
 		clearCaches();
 	}
 
@@ -188,6 +194,19 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 		return false;
 	}
 
+	// ----- package-private methods -----
+	long getSourceNodeId() {
+		return sourceNodeId;
+	}
+
+	long getTargetNodeId() {
+		return targetNodeId;
+	}
+
+	String getTypeName() {
+		return type;
+	}
+
 	// ----- public static methods -----
 	protected static void clearCache() {
 		relationshipCache.clear();
@@ -195,55 +214,54 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 
 	public static RelationshipWrapper newInstance(final BoltDatabaseService db, final org.neo4j.driver.v1.types.Relationship relationship) {
 
-		synchronized (relationshipCache) {
-
-			RelationshipWrapper wrapper = relationshipCache.get(relationship.id());
-			if (wrapper == null || wrapper.stale) {
-
-				wrapper = new RelationshipWrapper(db, relationship);
-				relationshipCache.put(relationship.id(), wrapper);
-			}
+		RelationshipWrapper wrapper = relationshipCache.get(relationship.id());
+		if (wrapper == null || wrapper.stale) {
 
-			return wrapper;
+			wrapper = new RelationshipWrapper(db, relationship);
+			relationshipCache.put(relationship.id(), wrapper);
 		}
+
+		return wrapper;
 	}
 
 	public static RelationshipWrapper newInstance(final BoltDatabaseService db, final long id) {
 
-		synchronized (relationshipCache) {
+		RelationshipWrapper wrapper = relationshipCache.get(id);
+		if (wrapper == null || wrapper.stale) {
 
-			RelationshipWrapper wrapper = relationshipCache.get(id);
-			if (wrapper == null || wrapper.stale) {
+			final SessionTransaction tx   = db.getCurrentTransaction();
+			final Map<String, Object> map = new HashMap<>();
+			final StringBuilder buf       = new StringBuilder();
+			final String tenantIdentifier = db.getTenantIdentifier();
 
-				final SessionTransaction tx   = db.getCurrentTransaction();
-				final Map<String, Object> map = new HashMap<>();
-				final StringBuilder buf       = new StringBuilder();
-				final String tenantIdentifier = db.getTenantIdentifier();
+			map.put("id", id);
 
-				map.put("id", id);
+			buf.append("MATCH (");
 
-				buf.append("MATCH (");
+			if (tenantIdentifier != null) {
+				buf.append(":");
+				buf.append(tenantIdentifier);
+			}
 
-				if (tenantIdentifier != null) {
-					buf.append(":");
-					buf.append(tenantIdentifier);
-				}
+			buf.append(")-[n]-(");
 
-				buf.append(")-[n]-(");
+			if (tenantIdentifier != null) {
+				buf.append(":");
+				buf.append(tenantIdentifier);
+			}
 
-				if (tenantIdentifier != null) {
-					buf.append(":");
-					buf.append(tenantIdentifier);
-				}
+			buf.append(") WHERE ID(n) = $id RETURN n");
 
-				buf.append(") WHERE ID(n) = $id RETURN n");
+			wrapper = new RelationshipWrapper(db, tx.getRelationship(buf.toString(), map));
 
-				wrapper = new RelationshipWrapper(db, tx.getRelationship(buf.toString(), map));
+			relationshipCache.put(id, wrapper);
+		}
 
-				relationshipCache.put(id, wrapper);
-			}
+		return wrapper;
+	}
 
-			return wrapper;
-		}
+	// ----- protected static methods -----
+	protected static FixedSizeCache<Long, RelationshipWrapper> getCache() {
+		return relationshipCache;
 	}
 }
@@ -0,0 +1,690 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.embedded;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.factory.GraphDatabaseBuilder;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.AbstractDatabaseService;
+import org.structr.api.NotFoundException;
+import org.structr.api.NotInTransactionException;
+import org.structr.api.Transaction;
+import org.structr.api.config.Settings;
+import org.structr.api.graph.Direction;
+import org.structr.api.graph.GraphProperties;
+import org.structr.api.graph.Identity;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipType;
+import org.structr.api.index.Index;
+import org.structr.api.util.CountResult;
+import org.structr.api.util.Iterables;
+import org.structr.api.util.NodeWithOwnerResult;
+import org.structr.embedded.index.EmbeddedNodeIndex;
+import org.structr.embedded.index.EmbeddedRelationshipIndex;
+import org.structr.embedded.wrapper.EmbeddedIdentity;
+import org.structr.embedded.wrapper.EntityWrapper;
+import org.structr.embedded.wrapper.NodeWrapper;
+import org.structr.embedded.wrapper.PathWrapper;
+import org.structr.embedded.wrapper.RelationshipWrapper;
+
+/**
+ * Database service that uses the core API of an embedded Neo4j database
+ * directly, without a Bolt connection. Nodes and relationships are read
+ * and modified through the kernel, Cypher is only used for searches.
+ */
+public class EmbeddedDatabaseService extends AbstractDatabaseService implements GraphProperties {
+
+	private static final Logger logger                                 = LoggerFactory.getLogger(EmbeddedDatabaseService.class.getName());
+	private static final ThreadLocal<EmbeddedTransaction> transactions = new ThreadLocal<>();
+	private Properties globalGraphProperties                           = null;
+	private EmbeddedRelationshipIndex relationshipIndex                = null;
+	private EmbeddedNodeIndex nodeIndex                                = null;
+	private GraphDatabaseService graphDb                               = null;
+	private String databasePath                                        = null;
+
+	@Override
+	public boolean initialize() {
+
+		this.databasePath = Settings.DatabasePath.getValue();
+
+		final String confPath = databasePath + "/neo4j.conf";
+		final File confFile   = new File(confPath);
+
+		// create db directory if it does not exist
+		new File(databasePath).mkdirs();
+
+		try {
+
+			final GraphDatabaseBuilder builder = new GraphDatabaseFactory()
+				.newEmbeddedDatabaseBuilder(new File(databasePath))
+				.setConfig( GraphDatabaseSettings.allow_upgrade, "true");
+
+			if (confFile.exists()) {
+				builder.loadPropertiesFromFile(confPath);
+			}
+
+			graphDb = builder.newGraphDatabase();
+
+			logger.info("Using embedded database at {}", databasePath);
+
+			// signal success
+			return true;
+
+		} catch (Throwable t) {
+			logger.error("Unable to start embedded database at {}: {}", databasePath, t.getMessage());
+		}
+
+		// service failed to initialize
+		return false;
+	}
+
+	@Override
+	public void shutdown() {
+
+		if (graphDb != null) {
+			graphDb.shutdown();
+		}
+	}
+
+	@Override
+	public Transaction beginTx() {
+
+		EmbeddedTransaction tx = transactions.get();
+		if (tx == null || tx.isClosed()) {
+
+			try {
+
+				tx = new EmbeddedTransaction(graphDb.beginTx());
+				transactions.set(tx);
+
+			} catch (RuntimeException ex) {
+				throw EmbeddedTransaction.translate(ex);
+			}
+		}
+
+		return tx;
+	}
+
+	@Override
+	public Node createNode(final String type, final Set<String> labels, final Map<String, Object> properties) {
+
+		getCurrentTransaction();
+
+		try {
+
+			final NodeWrapper newNode = new NodeWrapper(this, graphDb.createNode(getLabels(labels)));
+
+			newNode.setProperties(properties);
+
+			return newNode;
+
+		} catch (RuntimeException ex) {
+			throw EmbeddedTransaction.translate(ex);
+		}
+	}
+
+	@Override
+	public NodeWithOwnerResult createNodeWithOwner(final Identity userId, final String type, final Set<String> labels, final Map<String, Object> nodeProperties, final Map<String, Object> ownsProperties, final Map<String, Object> securityProperties) {
+
+		final NodeWrapper owner = getOwner(userId);
+		if (owner != null) {
+
+			return createNodeWithOwner(owner, type, labels, nodeProperties, ownsProperties, securityProperties);
+		}
+
+		return null;
+	}
+
+	@Override
+	public List<Node> createNodes(final String type, final Set<String> labels, final List<Map<String, Object>> properties) {
+
+		final List<Node> result = new LinkedList<>();
+
+		for (final Map<String, Object> nodeProperties : properties) {
+
+			result.add(createNode(type, labels, nodeProperties));
+		}
+
+		return result;
+	}
+
+	@Override
+	public List<NodeWithOwnerResult> createNodesWithOwner(final Identity userId, final String type, final Set<String> labels, final List<Map<String, Object>> nodeProperties, final List<Map<String, Object>> ownsProperties, final List<Map<String, Object>> securityProperties) {
+
+		final List<NodeWithOwnerResult> result = new LinkedList<>();
+		final NodeWrapper owner                = getOwner(userId);
+
+		if (owner != null) {
+
+			for (int i=0; i<nodeProperties.size(); i++) {
+
+				result.add(createNodeWithOwner(owner, type, labels, nodeProperties.get(i), ownsProperties.get(i), securityProperties.get(i)));
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public Node getNodeById(final Identity id) {
+		return getNodeById(unwrap(id));
+	}
+
+	@Override
+	public Relationship getRelationshipById(final Identity id) {
+		return getRelationshipById(unwrap(id));
+	}
+
+	@Override
+	public Iterable<Node> getAllNodes() {
+
+		final String tenantId = getTenantIdentifier();
+		if (tenantId != null) {
+
+			return Iterables.map(n -> new NodeWrapper(this, n), () -> graphDb.findNodes(org.neo4j.graphdb.Label.label(tenantId)));
+		}
+
+		return Iterables.map(n -> new NodeWrapper(this, n), graphDb.getAllNodes());
+	}
+
+	@Override
+	public Iterable<Node> getNodesByLabel(final String type) {
+
+		if (type == null) {
+			return getAllNodes();
+		}
+
+		final Iterable<org.neo4j.graphdb.Node> nodes = () -> graphDb.findNodes(org.neo4j.graphdb.Label.label(type));
+		final String tenantId                        = getTenantIdentifier();
+
+		if (tenantId != null) {
+
+			final org.neo4j.graphdb.Label tenantLabel = org.neo4j.graphdb.Label.label(tenantId);
+
+			return Iterables.map(n -> new NodeWrapper(this, n), Iterables.filter(n -> n.hasLabel(tenantLabel), nodes));
+		}
+
+		return Iterables.map(n -> new NodeWrapper(this, n), nodes);
+	}
+
+	@Override
+	public Iterable<Node> getNodesByTypeProperty(final String type) {
+
+		if (type == null) {
+			return getAllNodes();
+		}
+
+		final StringBuilder buf = new StringBuilder();
+		final String tenantId   = getTenantIdentifier();
+
+		buf.append("MATCH (n");
+
+		if (tenantId != null) {
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		buf.append(") WHERE n.type = $type RETURN n");
+
+		return Iterables.map(row -> (Node)row.get("n"), execute(buf.toString(), Collections.singletonMap("type", type)));
+	}
+
+	@Override
+	public void deleteNodesByLabel(final String label) {
+
+		final StringBuilder buf = new StringBuilder();
+		final String tenantId   = getTenantIdentifier();
+
+		buf.append("MATCH (n");
+
+		if (tenantId != null) {
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		buf.append(":");
+		buf.append(label);
+		buf.append(") DETACH DELETE n");
+
+		// consume result to execute the statement
+		Iterables.count(execute(buf.toString()));
+	}
+
+	@Override
+	public Iterable<Relationship> getAllRelationships() {
+		return getRelationshipsByType(null);
+	}
+
+	@Override
+	public Iterable<Relationship> getRelationshipsByType(final String type) {
+
+		final Iterable<org.neo4j.graphdb.Relationship> relationships = graphDb.getAllRelationships();
+		final String tenantId                                        = getTenantIdentifier();
+		final org.neo4j.graphdb.Label tenantLabel                    = tenantId != null ? org.neo4j.graphdb.Label.label(tenantId) : null;
+
+		return Iterables.map(r -> new RelationshipWrapper(this, r), Iterables.filter(r -> {
+
+			if (type != null && !type.equals(r.getType().name())) {
+				return false;
+			}
+
+			if (tenantLabel != null) {
+				return r.getStartNode().hasLabel(tenantLabel) && r.getEndNode().hasLabel(tenantLabel);
+			}
+
+			return true;
+
+		}, relationships));
+	}
+
+	@Override
+	public GraphProperties getGlobalProperties() {
+		return this;
+	}
+
+	@Override
+	public Index<Node> nodeIndex() {
+
+		if (nodeIndex == null) {
+			nodeIndex = new EmbeddedNodeIndex(this);
+		}
+
+		return nodeIndex;
+	}
+
+	@Override
+	public Index<Relationship> relationshipIndex() {
+
+		if (relationshipIndex == null) {
+			relationshipIndex = new EmbeddedRelationshipIndex(this);
+		}
+
+		return relationshipIndex;
+	}
+
+	@Override
+	public Iterable<Map<String, Object>> execute(final String nativeQuery) {
+		return execute(nativeQuery, Collections.EMPTY_MAP);
+	}
+
+	@Override
+	public Iterable<Map<String, Object>> execute(final String nativeQuery, final Map<String, Object> parameters) {
+
+		getCurrentTransaction();
+
+		try {
+
+			if (Settings.CypherDebugLogging.getValue()) {
+				logger.info("{}: {}", nativeQuery, parameters);
+			}
+
+			return new ResultIterable(graphDb.execute(nativeQuery, parameters));
+
+		} catch (RuntimeException ex) {
+			throw EmbeddedTransaction.translate(ex);
+		}
+	}
+
+	@Override
+	public void clearCaches() {
+		// entities are not cached, nothing to do
+	}
+
+	@Override
+	public void cleanDatabase() {
+
+		final String tenantId = getTenantIdentifier();
+		if (tenantId != null) {
+
+			Iterables.count(execute("MATCH (n:" + tenantId + ") DETACH DELETE n"));
+
+		} else {
+
+			Iterables.count(execute("MATCH (n) DETACH DELETE n"));
+		}
+	}
+
+	public EmbeddedTransaction getCurrentTransaction() {
+		return getCurrentTransaction(true);
+	}
+
+	public EmbeddedTransaction getCurrentTransaction(final boolean throwNotInTransactionException) {
+
+		final EmbeddedTransaction tx = transactions.get();
+		if (tx == null || tx.isClosed()) {
+
+			if (throwNotInTransactionException) {
+				throw new NotInTransactionException("Not in transaction");
+			}
+
+			return null;
+		}
+
+		return tx;
+	}
+
+	public GraphDatabaseService getGraphDatabaseService() {
+		return graphDb;
+	}
+
+	@Override
+	public void prefetch(final Iterable<Identity> ids, final Direction direction, final Set<String> relationshipTypes) {
+		// relationships are read from the embedded database directly, nothing to prefetch
+	}
+
+	@Override
+	public long unwrap(final Identity identity) {
+
+		if (identity instanceof EmbeddedIdentity) {
+
+			return ((EmbeddedIdentity)identity).getId();
+		}
+
+		throw new IllegalArgumentException("This implementation cannot handle Identity objects of type " + identity.getClass().getName() + ".");
+	}
+
+	@Override
+	public Identity identify(final long id) {
+		return new EmbeddedIdentity(id);
+	}
+
+	public Node getNodeById(final long id) {
+
+		try {
+
+			return new NodeWrapper(this, graphDb.getNodeById(id));
+
+		} catch (RuntimeException ex) {
+			throw EmbeddedTransaction.translate(ex);
+		}
+	}
+
+	public Relationship getRelationshipById(final long id) {
+
+		try {
+
+			return new RelationshipWrapper(this, graphDb.getRelationshipById(id));
+
+		} catch (RuntimeException ex) {
+			throw EmbeddedTransaction.translate(ex);
+		}
+	}
+
+	// ----- interface GraphProperties -----
+	@Override
+	public void setProperty(final String name, final Object value) {
+
+		final Properties properties = getProperties();
+		boolean hasChanges          = false;
+
+		if (value == null) {
+
+			if (properties.containsKey(name)) {
+
+				properties.remove(name);
+				hasChanges = true;
+			}
+
+		} else {
+
+			properties.setProperty(name, value.toString());
+			hasChanges = true;
+		}
+
+		if (hasChanges) {
+
+			final File propertiesFile = new File(databasePath + "/graph.properties");
+
+			try (final Writer writer = new FileWriter(propertiesFile)) {
+
+				properties.store(writer, "Created by Structr at " + new Date());
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to write properties file", ioex);
+			}
+		}
+	}
+
+	@Override
+	public Object getProperty(final String name) {
+		return getProperties().getProperty(name);
+	}
+
+	@Override
+	public CountResult getNodeAndRelationshipCount() {
+
+		final String tenantId = getTenantIdentifier();
+		final String part     = tenantId != null ? ":" + tenantId : "";
+		final long nodeCount  = getCount("MATCH (n" + part + ":NodeInterface) RETURN COUNT(n) AS count", "count");
+		final long relCount   = getCount("MATCH (n" + part + ":NodeInterface)-[r]->() RETURN count(r) AS count", "count");
+
+		return new CountResult(nodeCount, relCount);
+	}
+
+	// ----- private methods -----
+	private NodeWithOwnerResult createNodeWithOwner(final NodeWrapper owner, final String type, final Set<String> labels, final Map<String, Object> nodeProperties, final Map<String, Object> ownsProperties, final Map<String, Object> securityProperties) {
+
+		final NodeWrapper newNode = (NodeWrapper)createNode(type, labels, nodeProperties);
+
+		try {
+
+			final RelationshipWrapper ownsRel     = new RelationshipWrapper(this, owner.getEntity().createRelationshipTo(newNode.getEntity(), org.neo4j.graphdb.RelationshipType.withName("OWNS")));
+			final RelationshipWrapper securityRel = new RelationshipWrapper(this, owner.getEntity().createRelationshipTo(newNode.getEntity(), org.neo4j.graphdb.RelationshipType.withName("SECURITY")));
+
+			ownsRel.setProperties(ownsProperties);
+			securityRel.setProperties(securityProperties);
+
+			return new NodeWithOwnerResult(newNode, securityRel, ownsRel);
+
+		} catch (RuntimeException ex) {
+			throw EmbeddedTransaction.translate(ex);
+		}
+	}
+
+	private NodeWrapper getOwner(final Identity userId) {
+
+		final String tenantId = getTenantIdentifier();
+
+		try {
+
+			final NodeWrapper owner           = (NodeWrapper)getNodeById(userId);
+			final org.neo4j.graphdb.Node node = owner.getEntity();
+
+			// same restrictions as the Cypher statement of the Bolt driver
+			if (node.hasLabel(org.neo4j.graphdb.Label.label("NodeInterface")) && node.hasLabel(org.neo4j.graphdb.Label.label("Principal")) && (tenantId == null || node.hasLabel(org.neo4j.graphdb.Label.label(tenantId)))) {
+
+				return owner;
+			}
+
+		} catch (NotFoundException nfex) {
+
+			// owner does not exist
+
+		} catch (RuntimeException ex) {
+			throw EmbeddedTransaction.translate(ex);
+		}
+
+		return null;
+	}
+
+	private org.neo4j.graphdb.Label[] getLabels(final Set<String> labels) {
+
+		final List<org.neo4j.graphdb.Label> list = new ArrayList<>();
+		final String tenantId                    = getTenantIdentifier();
+
+		if (tenantId != null) {
+			list.add(org.neo4j.graphdb.Label.label(tenantId));
+		}
+
+		for (final String label : labels) {
+			list.add(org.neo4j.graphdb.Label.label(label));
+		}
+
+		return list.toArray(new org.neo4j.graphdb.Label[0]);
+	}
+
+	private Object wrap(final Object value) {
+
+		if (value instanceof org.neo4j.graphdb.Node) {
+			return new NodeWrapper(this, (org.neo4j.graphdb.Node)value);
+		}
+
+		if (value instanceof org.neo4j.graphdb.Relationship) {
+			return new RelationshipWrapper(this, (org.neo4j.graphdb.Relationship)value);
+		}
+
+		if (value instanceof org.neo4j.graphdb.Path) {
+			return new PathWrapper(this, (org.neo4j.graphdb.Path)value);
+		}
+
+		if (value instanceof Map) {
+
+			final Map<String, Object> map = new LinkedHashMap<>();
+
+			for (final Entry<String, Object> entry : ((Map<String, Object>)value).entrySet()) {
+				map.put(entry.getKey(), wrap(entry.getValue()));
+			}
+
+			return map;
+		}
+
+		if (value instanceof Collection) {
+
+			final List<Object> list = new LinkedList<>();
+
+			for (final Object element : (Collection)value) {
+				list.add(wrap(element));
+			}
+
+			return list;
+		}
+
+		final Object converted = EntityWrapper.fromDatabase(value);
+
+		// Cypher returns lists for array properties
+		if (converted instanceof Object[]) {
+			return Arrays.asList((Object[])converted);
+		}
+
+		if (converted == null && value != null) {
+			return new LinkedList<>();
+		}
+
+		return converted;
+	}
+
+	private Properties getProperties() {
+
+		if (globalGraphProperties == null) {
+
+			globalGraphProperties     = new Properties();
+			final File propertiesFile = new File(databasePath + "/graph.properties");
+
+			try (final Reader reader = new FileReader(propertiesFile)) {
+
+				globalGraphProperties.load(reader);
+
+			} catch (IOException ioex) {}
+		}
+
+		return globalGraphProperties;
+	}
+
+	private long getCount(final String query, final String resultKey) {
+
+		for (final Map<String, Object> row : execute(query)) {
+
+			if (row.containsKey(resultKey)) {
+
+				final Object value = row.get(resultKey);
+				if (value != null && value instanceof Number) {
+
+					final Number number = (Number)value;
+					return number.intValue();
+				}
+			}
+		}
+
+		return 0;
+	}
+
+	// ----- nested classes -----
+	private class ResultIterable implements Iterable<Map<String, Object>> {
+
+		private Result result = null;
+
+		public ResultIterable(final Result result) {
+			this.result = result;
+		}
+
+		@Override
+		public Iterator<Map<String, Object>> iterator() {
+
+			return new Iterator<Map<String, Object>>() {
+
+				@Override
+				public boolean hasNext() {
+
+					try {
+						return result.hasNext();
+
+					} catch (RuntimeException ex) {
+						throw EmbeddedTransaction.translate(ex);
+					}
+				}
+
+				@Override
+				public Map<String, Object> next() {
+
+					try {
+						return (Map<String, Object>)wrap(result.next());
+
+					} catch (RuntimeException ex) {
+						throw EmbeddedTransaction.translate(ex);
+					}
+				}
+			};
+		}
+	}
+}
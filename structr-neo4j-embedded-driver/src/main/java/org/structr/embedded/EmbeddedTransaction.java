@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.embedded;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.TransactionFailureException;
+import org.neo4j.graphdb.TransientFailureException;
+import org.structr.api.ConstraintViolationException;
+import org.structr.api.DataFormatException;
+import org.structr.api.NotFoundException;
+import org.structr.api.NotInTransactionException;
+import org.structr.api.RetryException;
+import org.structr.api.Transaction;
+import org.structr.api.UnknownClientException;
+import org.structr.api.UnknownDatabaseException;
+
+/**
+ * A transaction of the embedded database, translates the exceptions
+ * of the kernel API to the exceptions of the driver API.
+ */
+public class EmbeddedTransaction implements Transaction {
+
+	private static final String CONSTRAINT_VIOLATION = "Neo.ClientError.Schema.ConstraintValidationFailed";
+	private static final AtomicLong idSource         = new AtomicLong();
+
+	private org.neo4j.graphdb.Transaction tx = null;
+	private long transactionId               = 0L;
+	private boolean closed                   = false;
+
+	public EmbeddedTransaction(final org.neo4j.graphdb.Transaction tx) {
+
+		this.transactionId = idSource.incrementAndGet();
+		this.tx            = tx;
+	}
+
+	@Override
+	public void failure() {
+		tx.failure();
+	}
+
+	@Override
+	public void success() {
+		tx.success();
+	}
+
+	@Override
+	public long getTransactionId() {
+		return transactionId;
+	}
+
+	@Override
+	public void close() {
+
+		if (!closed) {
+
+			try {
+
+				tx.close();
+
+			} catch (RuntimeException ex) {
+
+				throw translate(ex);
+
+			} finally {
+
+				closed = true;
+			}
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public static RuntimeException translate(final RuntimeException ex) {
+
+		if (ex instanceof org.neo4j.graphdb.NotFoundException) {
+			return new NotFoundException(ex);
+		}
+
+		if (ex instanceof org.neo4j.graphdb.NotInTransactionException) {
+			return new NotInTransactionException(ex);
+		}
+
+		if (ex instanceof org.neo4j.graphdb.ConstraintViolationException) {
+			return new ConstraintViolationException(ex, CONSTRAINT_VIOLATION, ex.getMessage());
+		}
+
+		if (ex instanceof TransientFailureException) {
+			return new RetryException(ex);
+		}
+
+		if (ex instanceof QueryExecutionException) {
+
+			final String code = ((QueryExecutionException)ex).getStatusCode();
+
+			switch (code) {
+
+				case CONSTRAINT_VIOLATION:
+					return new ConstraintViolationException(ex, code, ex.getMessage());
+
+				case "Neo.DatabaseError.General.UnknownError":
+					return new DataFormatException(ex, code, ex.getMessage());
+			}
+
+			if (code.startsWith("Neo.TransientError")) {
+				return new RetryException(ex);
+			}
+
+			if (code.startsWith("Neo.ClientError")) {
+				return new UnknownClientException(ex, code, ex.getMessage());
+			}
+
+			return new UnknownDatabaseException(ex, code, ex.getMessage());
+		}
+
+		if (ex instanceof TransactionFailureException) {
+
+			// constraint violations can be detected on commit and are reported as the cause
+			for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+
+				if (cause instanceof org.neo4j.graphdb.ConstraintViolationException || cause instanceof TransientFailureException) {
+
+					return translate((RuntimeException)cause);
+				}
+			}
+
+			return new UnknownDatabaseException(ex, "Neo.DatabaseError.Transaction.TransactionCommitFailed", ex.getMessage());
+		}
+
+		return ex;
+	}
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.embedded.index;
+
+import org.structr.api.graph.Relationship;
+import org.structr.api.util.Iterables;
+import org.structr.bolt.index.AdvancedCypherQuery;
+import org.structr.bolt.index.CypherRelationshipIndex;
+import org.structr.embedded.EmbeddedDatabaseService;
+
+/**
+ * Uses the Cypher query builder of the Bolt driver and executes the
+ * queries in the embedded database.
+ */
+public class EmbeddedRelationshipIndex extends CypherRelationshipIndex {
+
+	private EmbeddedDatabaseService db = null;
+
+	public EmbeddedRelationshipIndex(final EmbeddedDatabaseService db) {
+
+		super(db);
+
+		this.db = db;
+	}
+
+	@Override
+	public Iterable<Relationship> getResult(final AdvancedCypherQuery query) {
+		return Iterables.map(row -> (Relationship)row.get("n"), db.execute(query.getStatement(), query.getParameters()));
+	}
+}
@@ -0,0 +1,323 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.embedded.wrapper;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Function;
+import org.neo4j.graphdb.Entity;
+import org.structr.api.NotInTransactionException;
+import org.structr.api.graph.Identity;
+import org.structr.api.graph.PropertyContainer;
+import org.structr.api.util.Iterables;
+import org.structr.embedded.EmbeddedDatabaseService;
+import org.structr.embedded.EmbeddedTransaction;
+
+/**
+ * Base class for nodes and relationships of the embedded database. All
+ * property access goes directly to the kernel, values are converted so
+ * that they have the same types as with the Bolt driver.
+ */
+public abstract class EntityWrapper<T extends Entity> implements PropertyContainer {
+
+	protected EmbeddedDatabaseService db = null;
+	protected boolean deleted            = false;
+	protected T entity                   = null;
+	protected long id                    = -1L;
+
+	public EntityWrapper(final EmbeddedDatabaseService db, final T entity) {
+
+		this.id     = entity.getId();
+		this.entity = entity;
+		this.db     = db;
+	}
+
+	public T getEntity() {
+		return entity;
+	}
+
+	@Override
+	public Identity getId() {
+		return new EmbeddedIdentity(id);
+	}
+
+	public long getDatabaseId() {
+		return id;
+	}
+
+	@Override
+	public boolean hasProperty(final String name) {
+		return read(e -> e.hasProperty(name));
+	}
+
+	@Override
+	public Object getProperty(final String name) {
+		return read(e -> fromDatabase(e.getProperty(name, null)));
+	}
+
+	@Override
+	public Object getProperty(final String name, final Object defaultValue) {
+
+		final Object value = getProperty(name);
+		if (value == null) {
+
+			return defaultValue;
+		}
+
+		return value;
+	}
+
+	@Override
+	public void setProperty(final String key, final Object value) {
+
+		write(e -> {
+
+			if (value != null) {
+
+				e.setProperty(key, toDatabase(value));
+
+			} else {
+
+				e.removeProperty(key);
+			}
+
+			return null;
+		});
+	}
+
+	@Override
+	public void setProperties(final Map<String, Object> values) {
+
+		write(e -> {
+
+			for (final Entry<String, Object> entry : values.entrySet()) {
+
+				final String key   = entry.getKey();
+				final Object value = entry.getValue();
+
+				if (value != null) {
+
+					e.setProperty(key, toDatabase(value));
+
+				} else {
+
+					e.removeProperty(key);
+				}
+			}
+
+			return null;
+		});
+	}
+
+	@Override
+	public void removeProperty(final String key) {
+		write(e -> e.removeProperty(key));
+	}
+
+	@Override
+	public Iterable<String> getPropertyKeys() {
+		return read(e -> Iterables.toList(e.getPropertyKeys()));
+	}
+
+	@Override
+	public boolean isDeleted() {
+		return deleted;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.valueOf(id).hashCode();
+	}
+
+	@Override
+	public boolean equals(final Object other) {
+
+		if (other != null && other.getClass().equals(getClass())) {
+
+			return ((EntityWrapper)other).id == id;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Converts a value to the type that Cypher would store, i.e. integral
+	 * numbers to long, floating point numbers to double and collections to
+	 * arrays.
+	 *
+	 * @param value
+	 * @return the value to store
+	 */
+	public static Object toDatabase(final Object value) {
+
+		if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return ((Number)value).longValue();
+		}
+
+		if (value instanceof Float) {
+			return ((Float)value).doubleValue();
+		}
+
+		if (value instanceof Character) {
+			return value.toString();
+		}
+
+		if (value instanceof Collection) {
+			return toDatabase(((Collection)value).toArray());
+		}
+
+		if (value instanceof Object[]) {
+
+			final Object[] source = (Object[])value;
+			if (source.length == 0) {
+
+				return new String[0];
+			}
+
+			final Object first = toDatabase(source[0]);
+			final Object array = Array.newInstance(primitiveType(first.getClass()), source.length);
+
+			for (int i=0; i<source.length; i++) {
+				Array.set(array, i, toDatabase(source[i]));
+			}
+
+			return array;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Converts a stored value to the type that the Bolt driver returns,
+	 * i.e. arrays to boxed arrays and empty arrays to null.
+	 *
+	 * @param value
+	 * @return the converted value
+	 */
+	public static Object fromDatabase(final Object value) {
+
+		if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return ((Number)value).longValue();
+		}
+
+		if (value instanceof Float) {
+			return ((Float)value).doubleValue();
+		}
+
+		if (value instanceof Character) {
+			return value.toString();
+		}
+
+		if (value != null && value.getClass().isArray() && !(value instanceof byte[])) {
+
+			final int length = Array.getLength(value);
+			if (length == 0) {
+
+				return null;
+			}
+
+			final Object first = fromDatabase(Array.get(value, 0));
+			final Object array = Array.newInstance(first.getClass(), length);
+
+			for (int i=0; i<length; i++) {
+				Array.set(array, i, fromDatabase(Array.get(value, i)));
+			}
+
+			return array;
+		}
+
+		return value;
+	}
+
+	// ----- protected methods -----
+	/**
+	 * Reads from the entity. Read access does not need a transaction of
+	 * the caller, a short-lived transaction is used in that case.
+	 *
+	 * @param <R>
+	 * @param function
+	 * @return the result of the function
+	 */
+	protected <R> R read(final Function<T, R> function) {
+
+		try {
+
+			if (db.getCurrentTransaction(false) != null) {
+
+				return function.apply(entity);
+			}
+
+			try (final org.neo4j.graphdb.Transaction tx = db.getGraphDatabaseService().beginTx()) {
+
+				final R result = function.apply(entity);
+
+				tx.success();
+
+				return result;
+			}
+
+		} catch (RuntimeException ex) {
+
+			throw EmbeddedTransaction.translate(ex);
+		}
+	}
+
+	/**
+	 * Modifies the entity in the current transaction.
+	 *
+	 * @param <R>
+	 * @param function
+	 * @return the result of the function
+	 * @throws NotInTransactionException if there is no transaction
+	 */
+	protected <R> R write(final Function<T, R> function) {
+
+		// throws NotInTransactionException
+		db.getCurrentTransaction();
+
+		try {
+
+			return function.apply(entity);
+
+		} catch (RuntimeException ex) {
+
+			throw EmbeddedTransaction.translate(ex);
+		}
+	}
+
+	// ----- private methods -----
+	private static Class primitiveType(final Class type) {
+
+		if (Long.class.equals(type)) {
+			return Long.TYPE;
+		}
+
+		if (Double.class.equals(type)) {
+			return Double.TYPE;
+		}
+
+		if (Boolean.class.equals(type)) {
+			return Boolean.TYPE;
+		}
+
+		return type;
+	}
+}
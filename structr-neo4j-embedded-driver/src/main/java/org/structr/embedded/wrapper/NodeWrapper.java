@@ -0,0 +1,223 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.embedded.wrapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import org.structr.api.NotInTransactionException;
+import org.structr.api.graph.Direction;
+import org.structr.api.graph.Label;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipType;
+import org.structr.embedded.EmbeddedDatabaseService;
+
+/**
+ *
+ */
+public class NodeWrapper extends EntityWrapper<org.neo4j.graphdb.Node> implements Node {
+
+	private static final Comparator<RelationshipWrapper> relationshipOrder = Comparator.comparing(RelationshipWrapper::getInternalTimestamp, Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(RelationshipWrapper::getDatabaseId);
+
+	public NodeWrapper(final EmbeddedDatabaseService db, final org.neo4j.graphdb.Node node) {
+		super(db, node);
+	}
+
+	@Override
+	public String toString() {
+		return "N" + getId();
+	}
+
+	@Override
+	public Relationship createRelationshipTo(final Node endNode, final RelationshipType relationshipType) {
+		return createRelationshipTo(endNode, relationshipType, Collections.emptyMap());
+	}
+
+	@Override
+	public Relationship createRelationshipTo(final Node endNode, final RelationshipType relationshipType, final Map<String, Object> properties) {
+
+		final org.neo4j.graphdb.Node otherNode = ((NodeWrapper)endNode).getEntity();
+		final org.neo4j.graphdb.RelationshipType type = org.neo4j.graphdb.RelationshipType.withName(relationshipType.name());
+
+		final RelationshipWrapper relationship = write(n -> {
+
+			// same semantics as the MERGE of the Bolt driver: an existing
+			// relationship of the same type between the two nodes is reused
+			org.neo4j.graphdb.Relationship rel = findRelationshipTo(n, type, otherNode);
+			if (rel == null) {
+
+				rel = n.createRelationshipTo(otherNode, type);
+			}
+
+			return new RelationshipWrapper(db, rel);
+		});
+
+		relationship.setProperties(properties);
+
+		return relationship;
+	}
+
+	@Override
+	public void addLabel(final Label label) {
+
+		write(n -> {
+			n.addLabel(org.neo4j.graphdb.Label.label(label.name()));
+			return null;
+		});
+	}
+
+	@Override
+	public void removeLabel(final Label label) {
+
+		write(n -> {
+			n.removeLabel(org.neo4j.graphdb.Label.label(label.name()));
+			return null;
+		});
+	}
+
+	@Override
+	public Iterable<Label> getLabels() {
+
+		return read(n -> {
+
+			final List<Label> result = new ArrayList<>();
+
+			for (final org.neo4j.graphdb.Label label : n.getLabels()) {
+				result.add(db.forName(Label.class, label.name()));
+			}
+
+			return result;
+		});
+	}
+
+	@Override
+	public boolean hasRelationshipTo(final RelationshipType relationshipType, final Node targetNode) {
+
+		final org.neo4j.graphdb.Node otherNode = ((NodeWrapper)targetNode).getEntity();
+		final org.neo4j.graphdb.RelationshipType type = org.neo4j.graphdb.RelationshipType.withName(relationshipType.name());
+
+		return read(n -> findRelationshipTo(n, type, otherNode) != null);
+	}
+
+	@Override
+	public Iterable<Relationship> getRelationships() {
+		return getRelationships(Direction.BOTH);
+	}
+
+	@Override
+	public Iterable<Relationship> getRelationships(final Direction direction) {
+		return read(n -> sorted(n.getRelationships(convert(direction))));
+	}
+
+	@Override
+	public Iterable<Relationship> getRelationships(final Direction direction, final RelationshipType relationshipType) {
+
+		final org.neo4j.graphdb.RelationshipType type = org.neo4j.graphdb.RelationshipType.withName(relationshipType.name());
+
+		return read(n -> sorted(n.getRelationships(convert(direction), type)));
+	}
+
+	@Override
+	public void delete(final boolean deleteRelationships) throws NotInTransactionException {
+
+		write(n -> {
+
+			if (deleteRelationships) {
+
+				for (final org.neo4j.graphdb.Relationship rel : n.getRelationships()) {
+					rel.delete();
+				}
+			}
+
+			n.delete();
+
+			return null;
+		});
+
+		deleted = true;
+	}
+
+	// ----- private methods -----
+	/**
+	 * Returns the relationships in the same order as the Bolt driver,
+	 * i.e. sorted by creation time.
+	 */
+	private List<Relationship> sorted(final Iterable<org.neo4j.graphdb.Relationship> relationships) {
+
+		final List<RelationshipWrapper> list = new ArrayList<>();
+
+		for (final org.neo4j.graphdb.Relationship rel : relationships) {
+
+			final RelationshipWrapper wrapper = new RelationshipWrapper(db, rel);
+
+			wrapper.setInternalTimestamp((String)rel.getProperty("internalTimestamp", null));
+
+			list.add(wrapper);
+		}
+
+		list.sort(relationshipOrder);
+
+		return Collections.unmodifiableList(list);
+	}
+
+	private org.neo4j.graphdb.Relationship findRelationshipTo(final org.neo4j.graphdb.Node node, final org.neo4j.graphdb.RelationshipType type, final org.neo4j.graphdb.Node otherNode) {
+
+		final long nodeId  = node.getId();
+		final long otherId = otherNode.getId();
+
+		// search from the side with fewer relationships
+		if (node.getDegree(type, org.neo4j.graphdb.Direction.OUTGOING) <= otherNode.getDegree(type, org.neo4j.graphdb.Direction.INCOMING)) {
+
+			for (final org.neo4j.graphdb.Relationship rel : node.getRelationships(org.neo4j.graphdb.Direction.OUTGOING, type)) {
+
+				if (rel.getEndNodeId() == otherId) {
+					return rel;
+				}
+			}
+
+		} else {
+
+			for (final org.neo4j.graphdb.Relationship rel : otherNode.getRelationships(org.neo4j.graphdb.Direction.INCOMING, type)) {
+
+				if (rel.getStartNodeId() == nodeId) {
+					return rel;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private org.neo4j.graphdb.Direction convert(final Direction direction) {
+
+		switch (direction) {
+
+			case INCOMING:
+				return org.neo4j.graphdb.Direction.INCOMING;
+
+			case OUTGOING:
+				return org.neo4j.graphdb.Direction.OUTGOING;
+		}
+
+		return org.neo4j.graphdb.Direction.BOTH;
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.embedded.wrapper;
+
+import java.util.Iterator;
+import org.structr.api.graph.Path;
+import org.structr.api.graph.PropertyContainer;
+import org.structr.api.util.Iterables;
+import org.structr.embedded.EmbeddedDatabaseService;
+
+/**
+ *
+ */
+public class PathWrapper implements Path {
+
+	private org.neo4j.graphdb.Path path = null;
+	private EmbeddedDatabaseService db  = null;
+
+	public PathWrapper(final EmbeddedDatabaseService db, final org.neo4j.graphdb.Path path) {
+
+		this.path = path;
+		this.db   = db;
+	}
+
+	@Override
+	public Iterator<PropertyContainer> iterator() {
+
+		return Iterables.map(entity -> {
+
+			if (entity instanceof org.neo4j.graphdb.Node) {
+
+				return (PropertyContainer)new NodeWrapper(db, (org.neo4j.graphdb.Node)entity);
+			}
+
+			return (PropertyContainer)new RelationshipWrapper(db, (org.neo4j.graphdb.Relationship)entity);
+
+		}, path).iterator();
+	}
+}
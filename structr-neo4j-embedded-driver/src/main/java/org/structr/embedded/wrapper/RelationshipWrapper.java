@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.embedded.wrapper;
+
+import org.structr.api.NotInTransactionException;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipType;
+import org.structr.embedded.EmbeddedDatabaseService;
+
+/**
+ *
+ */
+public class RelationshipWrapper extends EntityWrapper<org.neo4j.graphdb.Relationship> implements Relationship {
+
+	private String internalTimestamp = null;
+	private boolean hasTimestamp     = false;
+
+	public RelationshipWrapper(final EmbeddedDatabaseService db, final org.neo4j.graphdb.Relationship relationship) {
+		super(db, relationship);
+	}
+
+	@Override
+	public String toString() {
+		return "R" + getId();
+	}
+
+	@Override
+	public Node getStartNode() {
+		return read(r -> new NodeWrapper(db, r.getStartNode()));
+	}
+
+	@Override
+	public Node getEndNode() {
+		return read(r -> new NodeWrapper(db, r.getEndNode()));
+	}
+
+	@Override
+	public Node getOtherNode(final Node node) {
+
+		final org.neo4j.graphdb.Node otherNode = ((NodeWrapper)node).getEntity();
+
+		return read(r -> new NodeWrapper(db, r.getOtherNode(otherNode)));
+	}
+
+	@Override
+	public RelationshipType getType() {
+		return read(r -> db.forName(RelationshipType.class, r.getType().name()));
+	}
+
+	@Override
+	public void delete(final boolean deleteRelationships) throws NotInTransactionException {
+
+		write(r -> {
+			r.delete();
+			return null;
+		});
+
+		deleted = true;
+	}
+
+	/**
+	 * Returns the creation time that defines the order of relationships,
+	 * the value is read only once since it never changes.
+	 *
+	 * @return the internal timestamp or null
+	 */
+	String getInternalTimestamp() {
+
+		if (!hasTimestamp) {
+
+			internalTimestamp = (String)getProperty("internalTimestamp");
+			hasTimestamp      = true;
+		}
+
+		return internalTimestamp;
+	}
+
+	void setInternalTimestamp(final String internalTimestamp) {
+
+		this.internalTimestamp = internalTimestamp;
+		this.hasTimestamp      = true;
+	}
+}
@@ -0,0 +1,367 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.embedded;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.structr.api.NotFoundException;
+import org.structr.api.Transaction;
+import org.structr.api.config.Settings;
+import org.structr.api.graph.Direction;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.RelationshipType;
+import org.structr.api.search.ExactQuery;
+import org.structr.api.search.GroupQuery;
+import org.structr.api.search.Occurrence;
+import org.structr.api.search.QueryContext;
+import org.structr.api.search.QueryPredicate;
+import org.structr.api.search.SortType;
+import org.structr.api.search.TypeQuery;
+import org.structr.api.util.Iterables;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ */
+public class EmbeddedDatabaseServiceTest {
+
+	private EmbeddedDatabaseService db = null;
+	private File databasePath          = null;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+
+		databasePath = Files.createTempDirectory("structr-embedded-test-").toFile();
+
+		Settings.DatabasePath.setValue(databasePath.getAbsolutePath());
+
+		db = new EmbeddedDatabaseService();
+
+		assertTrue("Embedded database could not be started", db.initialize());
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+
+		db.shutdown();
+
+		try (final Stream<Path> paths = Files.walk(databasePath.toPath())) {
+
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public void testCreateReadDelete() {
+
+		Node a = null;
+		Node b = null;
+
+		try (final Transaction tx = db.beginTx()) {
+
+			a = createNode("Test", "name", "a");
+			b = createNode("Test", "name", "b");
+
+			a.setProperty("numbers", Arrays.asList(1, 2, 3));
+			a.setProperty("count", 5);
+			a.createRelationshipTo(b, db.forName(RelationshipType.class, "KNOWS"));
+
+			tx.success();
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			assertEquals("Invalid property value", "a", a.getProperty("name"));
+			assertEquals("Integer values should be returned as Long", 5L, a.getProperty("count"));
+			assertTrue("Collections should be returned as arrays", Arrays.equals(new Long[] { 1L, 2L, 3L }, (Object[])a.getProperty("numbers")));
+
+			assertEquals("Invalid number of outgoing relationships", 1, Iterables.count(a.getRelationships(Direction.OUTGOING)));
+			assertEquals("Invalid number of incoming relationships", 1, Iterables.count(b.getRelationships(Direction.INCOMING)));
+			assertEquals("Invalid number of nodes", 2, Iterables.count(db.getNodesByLabel("Test")));
+
+			tx.success();
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			a.delete(true);
+			tx.success();
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			db.getNodeById(a.getId());
+			fail("Deleted node should not be found");
+
+		} catch (NotFoundException expected) {}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			assertEquals("Relationships of deleted node should be deleted", 0, Iterables.count(b.getRelationships()));
+			tx.success();
+		}
+	}
+
+	@Test
+	public void testRollback() {
+
+		Node a = null;
+
+		try (final Transaction tx = db.beginTx()) {
+
+			a = createNode("Test", "name", "a");
+			tx.success();
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			a.setProperty("name", "changed");
+			createNode("Test", "name", "b");
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			assertEquals("Changes of a failed transaction should be discarded", "a", a.getProperty("name"));
+			assertEquals("Nodes of a failed transaction should be discarded", 1, Iterables.count(db.getNodesByLabel("Test")));
+
+			tx.success();
+		}
+	}
+
+	@Test
+	public void testIndexQuery() {
+
+		try (final Transaction tx = db.beginTx()) {
+
+			for (int i=0; i<10; i++) {
+
+				final Node node = createNode("Test", "name", "node" + i);
+
+				node.setProperty("index", i);
+				node.setProperty("group", i % 2 == 0 ? "even" : "odd");
+			}
+
+			createNode("Other", "group", "even");
+
+			tx.success();
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			final List<Node> result = Iterables.toList(db.nodeIndex().query(new QueryContext(), new Group("index", true, new Type("Test"), new Exact("group", "even"))));
+
+			assertEquals("Invalid query result size", 5, result.size());
+			assertEquals("Invalid sort order", 8L, result.get(0).getProperty("index"));
+			assertEquals("Invalid sort order", 0L, result.get(4).getProperty("index"));
+
+			// nodes created in the current transaction must be found before the commit
+			createNode("Test", "group", "even");
+
+			assertEquals("Local changes should be visible in queries", 6, Iterables.count(db.nodeIndex().query(new QueryContext(), new Group(null, false, new Type("Test"), new Exact("group", "even")))));
+
+			tx.success();
+		}
+	}
+
+	@Test
+	public void testCypher() {
+
+		Node a = null;
+
+		try (final Transaction tx = db.beginTx()) {
+
+			a = createNode("Test", "name", "a");
+			createNode("Test", "name", "b");
+
+			tx.success();
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			final Map<String, Object> parameters = new HashMap<>();
+
+			parameters.put("name", "a");
+
+			final List<Map<String, Object>> rows = Iterables.toList(db.execute("MATCH (n:Test) WHERE n.name = $name RETURN n, count(*) AS count", parameters));
+
+			assertEquals("Invalid number of rows", 1, rows.size());
+			assertEquals("Nodes should be returned as wrappers", a, rows.get(0).get("n"));
+			assertEquals("Integer values should be returned as Long", 1L, rows.get(0).get("count"));
+
+			assertTrue("Embedded database should support native queries", db.supportsNativeQueries());
+
+			tx.success();
+		}
+	}
+
+	// ----- private methods -----
+	private Node createNode(final String type, final String key, final Object value) {
+
+		final Set<String> labels         = new LinkedHashSet<>(Arrays.asList("NodeInterface", type));
+		final Map<String, Object> values = new HashMap<>();
+
+		values.put("type", type);
+		values.put(key, value);
+
+		return db.createNode(type, labels, values);
+	}
+
+	// ----- nested classes -----
+	private static abstract class Predicate implements QueryPredicate {
+
+		private String name  = null;
+		private Object value = null;
+
+		Predicate(final String name, final Object value) {
+
+			this.name  = name;
+			this.value = value;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Class getType() {
+			return String.class;
+		}
+
+		@Override
+		public Object getValue() {
+			return value;
+		}
+
+		@Override
+		public Occurrence getOccurrence() {
+			return Occurrence.REQUIRED;
+		}
+
+		@Override
+		public boolean isExactMatch() {
+			return true;
+		}
+
+		@Override
+		public String getSortKey() {
+			return null;
+		}
+
+		@Override
+		public SortType getSortType() {
+			return null;
+		}
+
+		@Override
+		public boolean sortDescending() {
+			return false;
+		}
+	}
+
+	private static class Type extends Predicate implements TypeQuery {
+
+		Type(final String type) {
+			super(null, type);
+		}
+
+		@Override
+		public Class getQueryType() {
+			return TypeQuery.class;
+		}
+
+		@Override
+		public Class getSourceType() {
+			return null;
+		}
+
+		@Override
+		public Class getTargetType() {
+			return null;
+		}
+	}
+
+	private static class Exact extends Predicate implements ExactQuery {
+
+		Exact(final String name, final Object value) {
+			super(name, value);
+		}
+
+		@Override
+		public Class getQueryType() {
+			return ExactQuery.class;
+		}
+	}
+
+	private static class Group extends Predicate implements GroupQuery {
+
+		private List<QueryPredicate> predicates = null;
+		private boolean descending              = false;
+		private String sortKey                  = null;
+
+		Group(final String sortKey, final boolean descending, final QueryPredicate... predicates) {
+
+			super(null, null);
+
+			this.predicates = Arrays.asList(predicates);
+			this.descending = descending;
+			this.sortKey    = sortKey;
+		}
+
+		@Override
+		public Class getQueryType() {
+			return GroupQuery.class;
+		}
+
+		@Override
+		public List<QueryPredicate> getQueryPredicates() {
+			return predicates;
+		}
+
+		@Override
+		public String getSortKey() {
+			return sortKey;
+		}
+
+		@Override
+		public SortType getSortType() {
+			return sortKey != null ? SortType.Default : null;
+		}
+
+		@Override
+		public boolean sortDescending() {
+			return descending;
+		}
+	}
+}
@@ -18,10 +18,12 @@
  */
 package org.structr.rest.resource;
 
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
+import org.structr.agent.AgentService;
 import org.structr.api.service.LicenseManager;
 import org.structr.api.util.PagingIterable;
 import org.structr.api.util.ResultStream;
@@ -30,6 +32,8 @@ import org.structr.common.VersionHelper;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObjectMap;
 import org.structr.core.Services;
+import org.structr.core.entity.Principal;
+import org.structr.core.function.Functions;
 import org.structr.core.property.ArrayProperty;
 import org.structr.core.property.DateProperty;
 import org.structr.core.property.GenericProperty;
@@ -38,6 +42,7 @@ import org.structr.core.property.StringProperty;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalMethodException;
 import org.structr.rest.exception.IllegalPathException;
+import org.structr.rest.serialization.SerializationExecutor;
 
 /**
  *
@@ -85,6 +90,23 @@ public class EnvResource extends Resource {
 			info.setProperty(new StringProperty("licensee"), "Unlicensed");
 		}
 
+		final Principal user = securityContext.getUser(false);
+		if (securityContext.isSuperUser() || (user != null && user.isAdmin())) {
+
+			final Map<String, Object> statistics = new LinkedHashMap<>();
+
+			statistics.put("expressionCache",       Functions.getExpressionCacheStatistics());
+			statistics.put("serializationExecutor", SerializationExecutor.getInstance().getStatistics());
+
+			final AgentService agentService = Services.getInstance().getService(AgentService.class);
+			if (agentService != null) {
+
+				statistics.put("agentService", agentService.getStatistics());
+			}
+
+			info.setProperty(new GenericProperty("statistics"), statistics);
+		}
+
 		resultList.add(info);
 
 		return new PagingIterable(resultList);
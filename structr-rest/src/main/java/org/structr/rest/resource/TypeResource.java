@@ -52,6 +52,7 @@ import org.structr.core.property.PropertyMap;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalPathException;
 import org.structr.rest.exception.NotFoundException;
+import org.structr.rest.servlet.JsonRestServlet;
 import org.structr.schema.SchemaHelper;
 
 /**
@@ -146,6 +147,7 @@ public class TypeResource extends WrappingResource {
 					.order(sortDescending)
 					.pageSize(pageSize)
 					.page(page)
+					.cursor(request != null ? request.getParameter(JsonRestServlet.REQUEST_PARAMETER_CURSOR) : null)
 					.getResultStream();
 			}
 
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.serialization;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.structr.api.config.Settings;
+
+/**
+ * Process-wide, bounded thread pool for multi-threaded JSON output.
+ *
+ * The pool has a fixed number of threads and a bounded queue. When the
+ * queue is full, submitted chunks are rejected, and the submitting request
+ * serializes them itself in its own transaction. This slows down the
+ * producers instead of piling up work in memory.
+ */
+public class SerializationExecutor {
+
+	private static SerializationExecutor instance = null;
+
+	private final AtomicLong maxChunkLatency = new AtomicLong();
+	private final LongAdder chunkLatency     = new LongAdder();
+	private final LongAdder chunkCount       = new LongAdder();
+	private final LongAdder rejectedCount    = new LongAdder();
+	private ThreadPoolExecutor executor      = null;
+
+	private SerializationExecutor(final int threads, final int queueSize) {
+
+		final AtomicInteger threadNumber = new AtomicInteger();
+
+		this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), r -> {
+
+			final Thread thread = new Thread(r, "SerializationExecutor-" + threadNumber.incrementAndGet());
+
+			thread.setDaemon(true);
+
+			return thread;
+
+		}, new ThreadPoolExecutor.AbortPolicy());
+
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	public static synchronized SerializationExecutor getInstance() {
+
+		if (instance == null) {
+
+			instance = new SerializationExecutor(
+				Math.max(1, Settings.JsonParallelizationThreads.getValue()),
+				Math.max(1, Settings.JsonParallelizationQueueSize.getValue())
+			);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Submits the given chunk for serialization. The latency of a chunk is
+	 * measured from submission to completion, so it includes queue time.
+	 *
+	 * @param <T>
+	 * @param chunk
+	 * @return a future for the result, or null if the queue is full
+	 */
+	public <T> Future<T> submit(final Callable<T> chunk) {
+
+		final long submitted = System.nanoTime();
+
+		try {
+
+			return executor.submit(() -> {
+
+				try {
+
+					return chunk.call();
+
+				} finally {
+
+					final long latency = System.nanoTime() - submitted;
+
+					chunkLatency.add(latency);
+					chunkCount.increment();
+					maxChunkLatency.accumulateAndGet(latency, Math::max);
+				}
+			});
+
+		} catch (RejectedExecutionException rex) {
+
+			rejectedCount.increment();
+		}
+
+		return null;
+	}
+
+	public int getParallelism() {
+		return executor.getMaximumPoolSize();
+	}
+
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+
+	public long getChunkCount() {
+		return chunkCount.sum();
+	}
+
+	/**
+	 * Returns queue depth, active threads, number of executed and rejected
+	 * chunks and average and maximum chunk latency (in milliseconds).
+	 *
+	 * @return the statistics
+	 */
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+		final long count                     = chunkCount.sum();
+
+		statistics.put("threads",          executor.getMaximumPoolSize());
+		statistics.put("activeThreads",    executor.getActiveCount());
+		statistics.put("queueDepth",       executor.getQueue().size());
+		statistics.put("chunks",           count);
+		statistics.put("rejectedChunks",   rejectedCount.sum());
+		statistics.put("averageLatencyMs", count > 0 ? (chunkLatency.sum() / count) / 1000000.0 : 0.0);
+		statistics.put("maxLatencyMs",     maxChunkLatency.get() / 1000000.0);
+
+		return statistics;
+	}
+}
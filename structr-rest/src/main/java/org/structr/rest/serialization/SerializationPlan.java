@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.serialization;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.structr.common.SecurityContext;
+import org.structr.common.View;
+import org.structr.core.GraphObject;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.AbstractRelationship;
+import org.structr.core.property.PropertyKey;
+import org.structr.schema.SchemaService;
+
+/**
+ * The precomputed list of properties to serialize for a given type and
+ * view, so that the view, the property keys and their JSON names don't
+ * need to be resolved again for every object of a collection.
+ *
+ * Plans are cached for types whose property keys only depend on the
+ * type and the view, and are discarded when the schema is reloaded.
+ */
+public class SerializationPlan {
+
+	private static final Map<PlanKey, SerializationPlan> plans = new ConcurrentHashMap<>();
+	private static final Map<Class, Boolean> cacheableTypes    = new ConcurrentHashMap<>();
+	private static volatile long cachedSchemaVersion           = -1L;
+
+	private final List<Entry> entries = new ArrayList<>();
+	private long schemaVersion        = 0L;
+
+	private SerializationPlan(final GraphObject source, final Iterable<PropertyKey> keys, final String view, final long schemaVersion) {
+
+		this.schemaVersion = schemaVersion;
+
+		for (final PropertyKey key : keys) {
+
+			PropertyKey localKey = key;
+
+			// special handling for the internal _graph view: replace name with
+			// the name property from the ui view, in case it was overwritten
+			if (View.INTERNAL_GRAPH_VIEW.equals(view) && AbstractNode.name.equals(key)) {
+
+				localKey = StructrApp.key(source.getClass(), AbstractNode.name.jsonName());
+			}
+
+			entries.add(new Entry(key, localKey));
+		}
+	}
+
+	/**
+	 * Returns the serialization plan for the given object and view.
+	 *
+	 * @param securityContext
+	 * @param source
+	 * @param view
+	 * @param compactKeys the keys to use instead of the view, or null
+	 * @return the serialization plan
+	 */
+	public static SerializationPlan get(final SecurityContext securityContext, final GraphObject source, final String view, final Set<PropertyKey> compactKeys) {
+
+		final long version = SchemaService.getSchemaVersion();
+		final Class type   = source.getClass();
+
+		if (compactKeys == null && (securityContext.hasCustomView() || !isCacheable(type))) {
+
+			final Iterable<PropertyKey> keys = source.getPropertyKeys(view);
+
+			// property keys depend on the object or the request
+			return new SerializationPlan(source, keys != null ? keys : new ArrayList<>(), view, version);
+		}
+
+		if (version != cachedSchemaVersion) {
+
+			// drop plans (and the classes they reference) from older schema versions
+			plans.clear();
+			cacheableTypes.clear();
+
+			cachedSchemaVersion = version;
+		}
+
+		final PlanKey planKey  = new PlanKey(type, view, compactKeys != null);
+		SerializationPlan plan = plans.get(planKey);
+
+		if (plan == null || plan.schemaVersion != version) {
+
+			final Iterable<PropertyKey> keys = compactKeys != null ? compactKeys : source.getPropertyKeys(view);
+
+			plan = new SerializationPlan(source, keys != null ? keys : new ArrayList<>(), view, version);
+
+			plans.put(planKey, plan);
+		}
+
+		return plan;
+	}
+
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	// ----- private static methods -----
+	private static boolean isCacheable(final Class type) {
+
+		return cacheableTypes.computeIfAbsent(type, t -> {
+
+			try {
+
+				// only types that use the default implementation have
+				// property keys that depend on type and view alone
+				final Class declaringClass = t.getMethod("getPropertyKeys", String.class).getDeclaringClass();
+
+				return AbstractNode.class.equals(declaringClass) || AbstractRelationship.class.equals(declaringClass);
+
+			} catch (NoSuchMethodException nsmex) {
+				return false;
+			}
+		});
+	}
+
+	// ----- nested classes -----
+	public static class Entry {
+
+		private PropertyKey localKey = null;
+		private PropertyKey key      = null;
+		private String jsonName      = null;
+		private String localJsonName = null;
+
+		private Entry(final PropertyKey key, final PropertyKey localKey) {
+
+			this.key           = key;
+			this.localKey      = localKey;
+			this.jsonName      = key.jsonName();
+			this.localJsonName = localKey.jsonName();
+		}
+
+		/**
+		 * The key from the view, used to write the property name.
+		 */
+		public PropertyKey getKey() {
+			return key;
+		}
+
+		/**
+		 * The key to read the property value with.
+		 */
+		public PropertyKey getLocalKey() {
+			return localKey;
+		}
+
+		public String getJsonName() {
+			return jsonName;
+		}
+
+		public String getLocalJsonName() {
+			return localJsonName;
+		}
+	}
+
+	private static class PlanKey {
+
+		private Class type      = null;
+		private String view     = null;
+		private boolean compact = false;
+
+		PlanKey(final Class type, final String view, final boolean compact) {
+
+			this.type    = type;
+			this.view    = view;
+			this.compact = compact;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(type, view, compact);
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+
+			if (other instanceof PlanKey) {
+
+				final PlanKey key = (PlanKey)other;
+
+				return type.equals(key.type) && Objects.equals(view, key.view) && compact == key.compact;
+			}
+
+			return false;
+		}
+	}
+}
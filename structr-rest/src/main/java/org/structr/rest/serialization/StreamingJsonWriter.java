@@ -36,4 +36,9 @@ public class StreamingJsonWriter extends StreamingWriter {
 	public RestWriter getRestWriter(final SecurityContext securityContext, Writer writer) {
 		return new StructrJsonWriter(securityContext, writer);
 	}
+
+	@Override
+	protected boolean supportsRawOutput() {
+		return true;
+	}
 }
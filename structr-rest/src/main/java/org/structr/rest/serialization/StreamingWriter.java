@@ -23,19 +23,22 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import org.apache.commons.collections4.ListUtils;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.config.Settings;
@@ -43,12 +46,12 @@ import org.structr.api.util.ResultStream;
 import org.structr.common.PropertyView;
 import org.structr.common.QueryRange;
 import org.structr.common.SecurityContext;
-import org.structr.common.View;
 import org.structr.core.GraphObject;
 import org.structr.core.Value;
 import org.structr.core.app.StructrApp;
 import org.structr.core.converter.PropertyConverter;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.RelationshipPrefetcher;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
@@ -74,11 +77,10 @@ public abstract class StreamingWriter {
 		restrictedViews.add(PropertyView.Custom);
 	}
 
-	private final ExecutorService threadPool              = Executors.newWorkStealingPool();
-	private final Map<String, Serializer> serializerCache = new LinkedHashMap<>();
+	private final Map<String, Serializer> serializerCache = new ConcurrentHashMap<>();
 	private final Map<String, Serializer> serializers     = new LinkedHashMap<>();
 	private final Serializer<GraphObject> root            = new RootSerializer();
-	private final Set<String> nonSerializerClasses        = new LinkedHashSet<>();
+	private final Set<String> nonSerializerClasses        = ConcurrentHashMap.newKeySet();
 	private final DecimalFormat decimalFormat             = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
 	private String resultKeyName                          = "result";
 	private boolean renderSerializationTime               = true;
@@ -174,6 +176,12 @@ public abstract class StreamingWriter {
 				}
 
 				rootWriter.name("page_size").value(pageSize);
+
+				final String nextCursor = result.getNextCursor();
+				if (nextCursor != null) {
+
+					rootWriter.name("next_cursor").value(nextCursor);
+				}
 			}
 
 			if (queryTime != null) {
@@ -195,8 +203,6 @@ public abstract class StreamingWriter {
 		// finished
 		rootWriter.endObject();
 		rootWriter.endDocument();
-
-		threadPool.shutdown();
 	}
 
 	public void setResultKeyName(final String resultKeyName) {
@@ -209,10 +215,11 @@ public abstract class StreamingWriter {
 
 	private Serializer getSerializerForType(Class type) {
 
+		final String typeName = type.getName();
 		Class localType       = type;
-		Serializer serializer = serializerCache.get(type.getName());
+		Serializer serializer = serializerCache.get(typeName);
 
-		if (serializer == null && !nonSerializerClasses.contains(type.getName())) {
+		if (serializer == null && !nonSerializerClasses.contains(typeName)) {
 
 			do {
 				serializer = serializers.get(localType.getName());
@@ -234,12 +241,19 @@ public abstract class StreamingWriter {
 
 				localType = localType.getSuperclass();
 
-			} while (serializer == null && !localType.equals(Object.class));
+			} while (serializer == null && localType != null && !localType.equals(Object.class));
 
 
 			// cache found serializer
 			if (serializer != null) {
-				serializerCache.put(type.getName(), serializer);
+
+				serializerCache.put(typeName, serializer);
+
+			} else {
+
+				// remember types without serializer as well, so the
+				// type hierarchy is only walked once per type
+				nonSerializerClasses.add(typeName);
 			}
 		}
 
@@ -282,6 +296,17 @@ public abstract class StreamingWriter {
 		}
 	}
 
+	/**
+	 * Indicates whether the RestWriter of this implementation can write
+	 * pre-rendered chunks with RestWriter#raw, which is required for
+	 * multi-threaded output.
+	 *
+	 * @return whether raw output is supported
+	 */
+	protected boolean supportsRawOutput() {
+		return false;
+	}
+
 	private void configureWriter(final RestWriter writer) {
 
 		if (indent && !writer.getSecurityContext().doMultiThreadedJsonOutput()) {
@@ -363,49 +388,32 @@ public abstract class StreamingWriter {
 				// prevent endless recursion by pruning at depth n
 				if (depth <= outputNestingDepth) {
 
-					// property keys
-					Iterable<PropertyKey> keys = source.getPropertyKeys(localPropertyView);
-					if (keys != null) {
+					final SecurityContext securityContext = writer.getSecurityContext();
 
-						// speciality for all, custom and ui view: limit recursive rendering to (id, name)
-						if (compactNestedProperties && depth > 0 && restrictedViews.contains(localPropertyView)) {
-							keys = idTypeNameOnly;
-						}
+					// speciality for all, custom and ui view: limit recursive rendering to (id, name)
+					final boolean compact        = compactNestedProperties && depth > 0 && restrictedViews.contains(localPropertyView);
+					final SerializationPlan plan = SerializationPlan.get(securityContext, source, localPropertyView, compact ? idTypeNameOnly : null);
 
-						for (final PropertyKey key : keys) {
+					for (final SerializationPlan.Entry entry : plan.getEntries()) {
 
-							final QueryRange range = writer.getSecurityContext().getRange(key.jsonName());
-							if (range != null) {
-								// Reset count for each key
-								range.resetCount();
-							}
-
-							// special handling for the internal _graph view: replace name with
-							// the name property from the ui view, in case it was overwritten
-							PropertyKey localKey = key;
+						final QueryRange range = securityContext.getRange(entry.getJsonName());
+						if (range != null) {
+							// Reset count for each key
+							range.resetCount();
+						}
 
-							if (View.INTERNAL_GRAPH_VIEW.equals(localPropertyView)) {
+						final Object value = source.getProperty(entry.getLocalKey(), range);
+						if (value != null) {
 
-								if (AbstractNode.name.equals(localKey)) {
+							if (!(reduceRedundancy && value instanceof GraphObject && visitedObjects.contains(value.hashCode()))) {
 
-									// replace key
-									localKey = StructrApp.key(source.getClass(), AbstractNode.name.jsonName());
-								}
+								writer.name(entry.getJsonName());
+								serializeProperty(writer, entry.getLocalKey(), value, localPropertyView, depth+1, visitedObjects);
 							}
 
-							final Object value = source.getProperty(localKey, range);
-							if (value != null) {
+						} else {
 
-								if (!(reduceRedundancy && value instanceof GraphObject && visitedObjects.contains(value.hashCode()))) {
-
-									writer.name(key.jsonName());
-									serializeProperty(writer, localKey, value, localPropertyView, depth+1, visitedObjects);
-								}
-
-							} else {
-
-								writer.name(localKey.jsonName()).nullValue();
-							}
+							writer.name(entry.getLocalJsonName()).nullValue();
 						}
 					}
 				}
@@ -423,7 +431,7 @@ public abstract class StreamingWriter {
 		@Override
 		public void serialize(final RestWriter parentWriter, final Iterable value, final String localPropertyView, final int depth, final Set<Integer> visitedObjects) throws IOException {
 
-			final Iterator iterator  = value.iterator();
+			final Iterator iterator  = getIterator(parentWriter.getSecurityContext(), value, localPropertyView, depth);
 			final Object firstValue  = iterator.hasNext() ? iterator.next() : null;
 			final Object secondValue = iterator.hasNext() ? iterator.next() : null;
 
@@ -442,6 +450,8 @@ public abstract class StreamingWriter {
 				// prevent endless recursion by pruning at depth n
 				if (depth <= outputNestingDepth) {
 
+					final long t0 = System.nanoTime();
+
 					// first value?
 					if (firstValue != null) {
 						serializeRoot(parentWriter, firstValue, localPropertyView, depth, visitedObjects);
@@ -453,9 +463,17 @@ public abstract class StreamingWriter {
 						serializeRoot(parentWriter, secondValue, localPropertyView, depth, visitedObjects);
 
 						// more values?
-						while (iterator.hasNext()) {
+						if (depth == 0 && iterator.hasNext() && supportsRawOutput() && parentWriter.getSecurityContext().doMultiThreadedJsonOutput()) {
+
+							// use the time of the first two objects as the cost estimate for the rest
+							doParallel(parentWriter, iterator, (System.nanoTime() - t0) / 2, localPropertyView, depth, visitedObjects);
+
+						} else {
 
-							serializeRoot(parentWriter, iterator.next(), localPropertyView, depth, visitedObjects);
+							while (iterator.hasNext()) {
+
+								serializeRoot(parentWriter, iterator.next(), localPropertyView, depth, visitedObjects);
+							}
 						}
 					}
 				}
@@ -516,69 +534,126 @@ public abstract class StreamingWriter {
 	}
 
 	// ----- private methods -----
-	private void doParallel(final List list, final RestWriter parentWriter, final Set<Integer> visitedObjects, final Operation op) {
+	/**
+	 * Returns an iterator that loads the relationships of the relationship
+	 * properties in the view for each page of nodes at once, instead of
+	 * once per node and property.
+	 */
+	private Iterator getIterator(final SecurityContext securityContext, final Iterable value, final String localPropertyView, final int depth) {
+
+		final boolean compact = compactNestedProperties && depth > 0 && restrictedViews.contains(localPropertyView);
+
+		// compact output doesn't contain relationship properties
+		if (depth > outputNestingDepth || compact) {
+			return value.iterator();
+		}
+
+		return RelationshipPrefetcher.iterator(value.iterator(), obj -> {
 
+			final List<PropertyKey> keys = new ArrayList<>();
+
+			for (final SerializationPlan.Entry entry : SerializationPlan.get(securityContext, obj, localPropertyView, null).getEntries()) {
+				keys.add(entry.getLocalKey());
+			}
+
+			return keys;
+		});
+	}
+
+	/**
+	 * Serializes the remaining objects of the given iterator in chunks on
+	 * the shared SerializationExecutor. The chunk size is derived from the
+	 * measured serialization time per object, each request has at most
+	 * json.parallelization.budget chunks in progress, and completed chunks
+	 * are written to the output in order as soon as they are available.
+	 *
+	 * The workers use a read-only copy of the request's security context.
+	 * A chunk that the executor rejects because its queue is full is
+	 * serialized in the request thread, in the request's transaction,
+	 * after all chunks in progress have been written.
+	 */
+	private void doParallel(final RestWriter parentWriter, final Iterator iterator, final long nanosPerObject, final String localPropertyView, final int depth, final Set<Integer> visitedObjects) throws IOException {
+
+		final SerializationExecutor executor  = SerializationExecutor.getInstance();
 		final SecurityContext securityContext = parentWriter.getSecurityContext();
-		final int numberOfPartitions          = (int)Math.rint(Math.log(list.size())) + 1;
-		final List<List> partitions           = ListUtils.partition(list, numberOfPartitions);
-		final List<Future<String>> futures    = new LinkedList<>();
+		final long targetNanos                = TimeUnit.MILLISECONDS.toNanos(Settings.JsonParallelizationChunkTime.getValue());
+		final int chunkSize                   = (int)Math.max(1L, Math.min(Integer.MAX_VALUE, targetNanos / Math.max(1L, nanosPerObject)));
+		final int budget                      = Math.max(1, Math.min(Settings.JsonParallelizationBudget.getValue(), executor.getParallelism()));
+		final Deque<Future<String>> pending   = new ArrayDeque<>();
+		List chunk                            = nextChunk(iterator, chunkSize);
 
-		for (final List partition : partitions) {
+		// not worth the overhead if everything fits into a single chunk
+		if (!iterator.hasNext()) {
 
-			futures.add(threadPool.submit(() -> {
+			for (final Object o : chunk) {
+				root.serializeRoot(parentWriter, o, localPropertyView, depth, visitedObjects);
+			}
 
-				final StringWriter buffer = new StringWriter();
+			return;
+		}
 
-				// avoid deadlocks by preventing writes in this transaction
-				securityContext.setReadOnlyTransaction();
+		// avoid deadlocks by preventing writes in the worker transactions
+		final SecurityContext workerContext = securityContext.copy();
+		workerContext.setReadOnlyTransaction();
 
-				try (final Tx tx = StructrApp.getInstance(securityContext).tx(false, false, false)) {
+		try {
 
-					final RestWriter bufferingRestWriter = getRestWriter(securityContext, buffer);
-					final Set<Integer> nestedObjects     = new LinkedHashSet<>(visitedObjects);
-					configureWriter(bufferingRestWriter);
+			while (chunk != null) {
 
-					bufferingRestWriter.beginArray();
+				final Future<String> future = executor.submit(new ChunkSerializer(workerContext, chunk, localPropertyView, depth, visitedObjects));
+				if (future != null) {
 
-					for (final Object o : partition) {
+					pending.add(future);
 
-						op.run(bufferingRestWriter, o, nestedObjects);
-					}
+				} else {
 
-					bufferingRestWriter.endArray();
-					bufferingRestWriter.flush();
+					// executor is saturated: write everything in progress, then serialize this chunk here
+					while (!pending.isEmpty()) {
+						parentWriter.raw(pending.poll().get());
+					}
 
-					tx.success();
+					for (final Object o : chunk) {
+						root.serializeRoot(parentWriter, o, localPropertyView, depth, visitedObjects);
+					}
 				}
 
-				final String data = buffer.toString();
-				final String sub  = data.substring(1, data.length() - 1);
+				chunk = iterator.hasNext() ? nextChunk(iterator, chunkSize) : null;
 
-				return sub;
+				// write completed chunks in order, block if the budget is used up
+				while (!pending.isEmpty() && (chunk == null || pending.size() >= budget || pending.peek().isDone())) {
 
-			}));
-		}
-
-		for (final Iterator<Future<String>> it = futures.iterator(); it.hasNext();) {
+					parentWriter.raw(pending.poll().get());
+				}
+			}
 
-			try {
+		} catch (InterruptedException iex) {
 
-				final Future<String> future = it.next();
-				final String raw            = future.get();
+			Thread.currentThread().interrupt();
+			throw new IOException(iex);
 
-				parentWriter.raw(raw);
+		} catch (ExecutionException eex) {
 
-				if (it.hasNext()) {
-					parentWriter.raw(",");
-				}
+			throw new IOException(eex.getCause());
 
-			} catch (Throwable t) {
+		} finally {
 
-				t.printStackTrace();
+			for (final Future<String> future : pending) {
+				future.cancel(false);
 			}
 		}
 	}
 
+	private List nextChunk(final Iterator iterator, final int size) {
+
+		final List chunk = new ArrayList<>(Math.min(size, 1000));
+
+		while (iterator.hasNext() && chunk.size() < size) {
+			chunk.add(iterator.next());
+		}
+
+		return chunk;
+	}
+
 	private String getString(final Object value) {
 		
 		if (value != null) {
@@ -588,8 +663,56 @@ public abstract class StreamingWriter {
 		throw new NullPointerException();
 	}
 
-	private interface Operation {
+	private class ChunkSerializer implements Callable<String> {
 
-		public void run(final RestWriter writer, final Object o, final Set<Integer> visitedObjects) throws IOException;
+		private SecurityContext securityContext = null;
+		private Set<Integer> visitedObjects     = null;
+		private String localPropertyView        = null;
+		private List chunk                      = null;
+		private int depth                       = 0;
+
+		public ChunkSerializer(final SecurityContext securityContext, final List chunk, final String localPropertyView, final int depth, final Set<Integer> visitedObjects) {
+
+			this.securityContext   = securityContext;
+			this.localPropertyView = localPropertyView;
+			this.chunk             = chunk;
+			this.depth             = depth;
+
+			// each chunk needs its own copy
+			this.visitedObjects    = new LinkedHashSet<>(visitedObjects);
+		}
+
+		@Override
+		public String call() throws Exception {
+
+			final StringWriter buffer = new StringWriter();
+
+			try (final Tx tx = StructrApp.getInstance(securityContext).tx(false, false, false)) {
+
+				final RestWriter writer = getRestWriter(securityContext, buffer);
+
+				configureWriter(writer);
+
+				writer.beginArray();
+
+				for (final Object o : chunk) {
+
+					root.serializeRoot(writer, o, localPropertyView, depth, visitedObjects);
+				}
+
+				writer.endArray();
+				writer.flush();
+
+				tx.success();
+			}
+
+			final StringBuffer data = buffer.getBuffer();
+
+			// replace the array brackets with the separator to the previous chunk
+			data.setCharAt(0, ',');
+			data.setLength(data.length() - 1);
+
+			return data.toString();
+		}
 	}
 }
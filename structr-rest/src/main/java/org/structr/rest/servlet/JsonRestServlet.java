@@ -66,6 +66,7 @@ public class JsonRestServlet extends AbstractDataServlet {
 
 	public static final int DEFAULT_VALUE_PAGE_SIZE                     = 20;
 	public static final String DEFAULT_VALUE_SORT_ORDER                 = "asc";
+	public static final String REQUEST_PARAMETER_CURSOR                 = "cursor";
 	public static final String REQUEST_PARAMETER_LOOSE_SEARCH           = "loose";
 	public static final String REQUEST_PARAMETER_PAGE_NUMBER            = "page";
 	public static final String REQUEST_PARAMETER_PAGE_SIZE              = "pageSize";
@@ -77,6 +78,7 @@ public class JsonRestServlet extends AbstractDataServlet {
 
 	static {
 
+		commonRequestParameters.add(REQUEST_PARAMETER_CURSOR);
 		commonRequestParameters.add(REQUEST_PARAMETER_LOOSE_SEARCH);
 		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_NUMBER);
 		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_SIZE);
@@ -20,11 +20,20 @@ package org.structr.test.rest.test;
 
 import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import com.jayway.restassured.path.json.JsonPath;
 import java.text.SimpleDateFormat;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.lessThan;
 import org.testng.annotations.Test;
+import org.structr.api.config.Settings;
+import org.structr.api.util.Iterables;
+import org.structr.api.util.ResultStream;
 import org.structr.common.AccessMode;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -35,11 +44,14 @@ import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.Tx;
 import org.structr.core.graph.attribute.Name;
 import org.structr.core.property.PropertyKey;
+import org.structr.rest.serialization.SerializationExecutor;
 import org.structr.test.rest.common.StructrRestTestBase;
 import org.structr.test.rest.entity.TestOne;
+import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertNotNull;
 import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
 
 /**
  *
@@ -309,4 +321,286 @@ public class PagingAndSortingTest extends StructrRestTestBase {
 
 
 	}
+
+	@Test
+	public void testParallelJsonOutput() {
+
+		final int count = 500;
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<count; i++) {
+				app.create(TestOne.class, new NodeAttribute<>(TestOne.name, "TestOne" + i), new NodeAttribute<>(TestOne.anInt, i));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+		}
+
+		final int chunkTime = Settings.JsonParallelizationChunkTime.getValue();
+
+		try {
+
+			// force one object per chunk so that many chunks are in progress
+			Settings.JsonParallelizationChunkTime.setValue(0);
+
+			RestAssured
+
+				.given()
+					.contentType("application/json; charset=UTF-8")
+				.expect()
+					.statusCode(200)
+					.body("result_count",       equalTo(count))
+					.body("result",             hasSize(count))
+					.body("result[0].anInt",    equalTo(0))
+					.body("result[1].anInt",    equalTo(1))
+					.body("result[2].anInt",    equalTo(2))
+					.body("result[250].anInt",  equalTo(250))
+					.body("result[499].anInt",  equalTo(499))
+					.body("result[499].name",   equalTo("TestOne499"))
+				.when()
+					.get("/test_one?sort=anInt&pageSize=" + count + "&parallelizeJsonOutput=1");
+
+		} finally {
+
+			Settings.JsonParallelizationChunkTime.setValue(chunkTime);
+		}
+	}
+
+	@Test
+	public void testParallelJsonOutputWithSaturatedExecutor() {
+
+		final SerializationExecutor executor = SerializationExecutor.getInstance();
+		final CountDownLatch latch           = new CountDownLatch(1);
+		final int count                      = 200;
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<count; i++) {
+				app.create(TestOne.class, new NodeAttribute<>(TestOne.name, "TestOne" + i), new NodeAttribute<>(TestOne.anInt, i));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+		}
+
+		final int chunkTime = Settings.JsonParallelizationChunkTime.getValue();
+
+		try {
+
+			// occupy all threads and fill the queue so that every chunk is rejected
+			boolean accepted = true;
+			while (accepted) {
+
+				accepted = executor.submit(() -> { latch.await(); return null; }) != null;
+			}
+
+			Settings.JsonParallelizationChunkTime.setValue(0);
+
+			RestAssured
+
+				.given()
+					.contentType("application/json; charset=UTF-8")
+				.expect()
+					.statusCode(200)
+					.body("result_count",       equalTo(count))
+					.body("result",             hasSize(count))
+					.body("result[0].anInt",    equalTo(0))
+					.body("result[2].anInt",    equalTo(2))
+					.body("result[100].anInt",  equalTo(100))
+					.body("result[199].name",   equalTo("TestOne199"))
+				.when()
+					.get("/test_one?sort=anInt&pageSize=" + count + "&parallelizeJsonOutput=1");
+
+		} finally {
+
+			latch.countDown();
+
+			Settings.JsonParallelizationChunkTime.setValue(chunkTime);
+		}
+	}
+
+	@Test
+	public void testCursorPagingWithTiesOnSortKey() {
+
+		createCursorPagingTestData();
+
+		final List<String> expected = getAllIds("/test_one?sort=anInt&pageSize=100");
+
+		assertEquals("Invalid cursor paging result", 11, expected.size());
+
+		final List<String> ids = collectWithCursor("/test_one?sort=anInt&pageSize=3", false);
+
+		assertEquals("Cursor paging must return every object exactly once", 11, ids.size());
+		assertEquals("Cursor paging must return every object exactly once", 11, new HashSet<>(ids).size());
+		assertEquals("Cursor paging must return every object exactly once", new HashSet<>(expected), new HashSet<>(ids));
+	}
+
+	@Test
+	public void testCursorPagingDescending() {
+
+		createCursorPagingTestData();
+
+		final List<String> ids = collectWithCursor("/test_one?sort=anInt&order=desc&pageSize=4", true);
+
+		assertEquals("Cursor paging must return every object exactly once", 11, ids.size());
+		assertEquals("Cursor paging must return every object exactly once", 11, new HashSet<>(ids).size());
+	}
+
+	@Test
+	public void testCursorPagingQuery() {
+
+		createCursorPagingTestData();
+
+		try (final Tx tx = app.tx()) {
+
+			for (final boolean descending : new boolean[] { false, true }) {
+
+				final Set<String> ids = new HashSet<>();
+				Integer previous      = null;
+				String cursor         = "";
+				int pages             = 0;
+
+				while (cursor != null && pages++ < 10) {
+
+					final ResultStream<TestOne> result = app.nodeQuery(TestOne.class).sort(TestOne.anInt).order(descending).pageSize(2).cursor(cursor).getResultStream();
+					final List<TestOne> page           = Iterables.toList(result);
+
+					assertTrue("Invalid cursor paging result", page.size() <= 2);
+
+					for (final TestOne obj : page) {
+
+						final Integer value = obj.getProperty(TestOne.anInt);
+
+						assertTrue("Object returned twice by cursor paging", ids.add(obj.getUuid()));
+						assertSortOrder(previous, value, descending);
+
+						if (value != null) {
+							previous = value;
+						}
+					}
+
+					cursor = result.getNextCursor();
+				}
+
+				assertEquals("Cursor paging must return every object exactly once", 11, ids.size());
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testInvalidCursor() {
+
+		createCursorPagingTestData();
+
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(422)
+			.when()
+				.get("/test_one?sort=anInt&pageSize=3&cursor=invalid");
+	}
+
+	// ----- private methods -----
+	private void createCursorPagingTestData() {
+
+		try (final Tx tx = app.tx()) {
+
+			// three objects per value of anInt, and one without a value
+			for (int i=0; i<10; i++) {
+				app.create(TestOne.class, new NodeAttribute<>(TestOne.name, "TestOne" + i), new NodeAttribute<>(TestOne.anInt, i / 3));
+			}
+
+			app.create(TestOne.class, "TestOneWithoutValue");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	private List<String> getAllIds(final String url) {
+
+		return RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+			.when()
+				.get(url)
+				.jsonPath().getList("result.id");
+	}
+
+	private List<String> collectWithCursor(final String url, final boolean descending) {
+
+		final List<String> ids = new LinkedList<>();
+		Integer previous       = null;
+		String cursor          = "";
+		int pages              = 0;
+
+		while (cursor != null) {
+
+			assertTrue("Cursor paging does not terminate", pages++ < 10);
+
+			final JsonPath json = RestAssured
+
+				.given()
+					.contentType("application/json; charset=UTF-8")
+				.expect()
+					.statusCode(200)
+				.when()
+					.get(url + "&cursor=" + cursor)
+					.jsonPath();
+
+			final List<String> pageIds     = json.getList("result.id");
+			final List<Integer> pageValues = json.getList("result.anInt");
+
+			for (final Integer value : pageValues) {
+
+				assertSortOrder(previous, value, descending);
+
+				if (value != null) {
+					previous = value;
+				}
+			}
+
+			ids.addAll(pageIds);
+
+			cursor = json.getString("next_cursor");
+		}
+
+		return ids;
+	}
+
+	private void assertSortOrder(final Integer previous, final Integer value, final boolean descending) {
+
+		if (previous != null && value != null) {
+
+			if (descending) {
+
+				assertTrue("Invalid sort order in cursor paging: " + value + " after " + previous, value <= previous);
+
+			} else {
+
+				assertTrue("Invalid sort order in cursor paging: " + value + " after " + previous, value >= previous);
+			}
+		}
+	}
 }
@@ -348,4 +348,66 @@ public class PropertyViewRestTest extends StructrRestTestBase {
 				.get(resource.concat("/customView"));
 
 	}
+
+	@Test
+	public void testViewModificationAfterSerialization() {
+
+		SchemaNode schemaNode = null;
+
+		try (final Tx tx = app.tx()) {
+
+			schemaNode = app.create(SchemaNode.class,
+				new NodeAttribute<>(AbstractNode.name, "ViewTest"),
+				new NodeAttribute<>(new StringProperty("_foo"), "String"),
+				new NodeAttribute<>(new StringProperty("_bar"), "String"),
+				new NodeAttribute<>(new StringProperty("__public"), "foo")
+			);
+
+			tx.success();
+
+		} catch (Throwable t) {
+			fail("Unexpected exception.");
+		}
+
+		RestAssured.given().contentType("application/json; charset=UTF-8").body(" { 'foo': 'foo1', 'bar': 'bar1' } ").expect().statusCode(201).when().post("/ViewTest");
+		RestAssured.given().contentType("application/json; charset=UTF-8").body(" { 'foo': 'foo2', 'bar': 'bar2' } ").expect().statusCode(201).when().post("/ViewTest");
+
+		// serialize with the initial view
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",         hasSize(2))
+				.body("result[0].foo",  equalTo("foo1"))
+				.body("result[0].bar",  nullValue())
+			.when()
+				.get("/ViewTest/public?sort=foo");
+
+		// modify the view, which reloads the schema
+		try (final Tx tx = app.tx()) {
+
+			schemaNode.setProperty(new StringProperty("__public"), "foo, bar");
+
+			tx.success();
+
+		} catch (Throwable t) {
+			fail("Unexpected exception.");
+		}
+
+		// serialization must use the modified view
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",         hasSize(2))
+				.body("result[0].foo",  equalTo("foo1"))
+				.body("result[0].bar",  equalTo("bar1"))
+				.body("result[1].bar",  equalTo("bar2"))
+			.when()
+				.get("/ViewTest/public?sort=foo");
+	}
 }
@@ -0,0 +1,504 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.lang3.StringUtils;
+import org.structr.api.config.Settings;
+import org.structr.core.app.StructrApp;
+import org.structr.core.property.PropertyMap;
+import org.structr.web.entity.File;
+
+/**
+ * Calculates the xxHash checksum and all enabled additional checksums
+ * (crc32, md5, sha1, sha512) of a file in a single pass.
+ *
+ * The calculator can either be fed while the file is being written (see
+ * {@link #copy}), or read an existing file once with a shared buffer. For
+ * files larger than the configured size, the checksums of each block are
+ * updated in parallel.
+ *
+ * Checksums that were calculated while a file was written are remembered
+ * together with the size, modification time and file key of the file on
+ * disk, so the metadata update that follows an upload doesn't have to read
+ * the file again.
+ */
+public class ChecksumCalculator {
+
+	private static final int BUFFER_SIZE          = 65536;
+	private static final int PARALLEL_BUFFER_SIZE = 1048576;
+	private static final int MAX_REMEMBERED       = 256;
+
+	private static final Map<String, Remembered> remembered = new LinkedHashMap<String, Remembered>(16, 0.75f, true) {
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, Remembered> eldest) {
+			return size() > MAX_REMEMBERED;
+		}
+	};
+
+	private final List<Digester> digesters = new ArrayList<>();
+	private String enabledChecksums        = null;
+	private XxHash64 xxHash                = null;
+	private CRC32 crc32                    = null;
+	private MessageDigest md5              = null;
+	private MessageDigest sha1             = null;
+	private MessageDigest sha512           = null;
+	private PropertyMap checksums          = null;
+
+	/**
+	 * Creates a new calculator. The xxHash checksum is always calculated,
+	 * the other checksums only when they are contained in the given list.
+	 *
+	 * @param enabledChecksums the list of additional checksums, may be null
+	 */
+	public ChecksumCalculator(final String enabledChecksums) {
+
+		this.enabledChecksums = enabledChecksums != null ? enabledChecksums : "";
+		this.xxHash           = new XxHash64();
+
+		digesters.add(xxHash::update);
+
+		if (StringUtils.contains(enabledChecksums, "crc32")) {
+
+			crc32 = new CRC32();
+			digesters.add(crc32::update);
+		}
+
+		if (StringUtils.contains(enabledChecksums, "md5")) {
+
+			md5 = getMessageDigest("MD5");
+			digesters.add(md5::update);
+		}
+
+		if (StringUtils.contains(enabledChecksums, "sha1")) {
+
+			sha1 = getMessageDigest("SHA-1");
+			digesters.add(sha1::update);
+		}
+
+		if (StringUtils.contains(enabledChecksums, "sha512")) {
+
+			sha512 = getMessageDigest("SHA-512");
+			digesters.add(sha512::update);
+		}
+	}
+
+	public void update(final byte[] data, final int offset, final int length) {
+
+		for (final Digester digester : digesters) {
+			digester.update(data, offset, length);
+		}
+	}
+
+	/**
+	 * Copies the given input stream to the given output stream and updates
+	 * the checksums with the same buffer. Neither stream is closed.
+	 *
+	 * @param input
+	 * @param output
+	 * @return the number of bytes copied
+	 * @throws IOException
+	 */
+	public long copy(final InputStream input, final OutputStream output) throws IOException {
+
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		long count          = 0L;
+		int length          = 0;
+
+		while ((length = input.read(buffer)) != -1) {
+
+			output.write(buffer, 0, length);
+			update(buffer, 0, length);
+
+			count += length;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Reads the given file once and updates all checksums.
+	 *
+	 * @param fileOnDisk
+	 * @throws IOException
+	 */
+	public void read(final java.io.File fileOnDisk) throws IOException {
+
+		final long threshold = Settings.ChecksumParallelSize.getValue() * 1024L * 1024L;
+		final boolean parallel = digesters.size() > 1 && threshold > 0 && fileOnDisk.length() >= threshold;
+
+		try (final InputStream is = Files.newInputStream(fileOnDisk.toPath())) {
+
+			final byte[] buffer = new byte[parallel ? PARALLEL_BUFFER_SIZE : BUFFER_SIZE];
+			int length          = 0;
+
+			while ((length = readFully(is, buffer)) > 0) {
+
+				if (parallel) {
+
+					updateParallel(buffer, length);
+
+				} else {
+
+					update(buffer, 0, length);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the calculated checksums, keyed by the properties of the file
+	 * type. The calculator can't be updated after this method was called.
+	 *
+	 * @return the checksums
+	 */
+	public PropertyMap getChecksums() {
+
+		if (checksums == null) {
+
+			checksums = new PropertyMap();
+
+			checksums.put(StructrApp.key(File.class, "checksum"), xxHash.getValue());
+
+			if (crc32 != null) {
+				checksums.put(StructrApp.key(File.class, "crc32"), crc32.getValue());
+			}
+
+			if (md5 != null) {
+				checksums.put(StructrApp.key(File.class, "md5"), Hex.encodeHexString(md5.digest()));
+			}
+
+			if (sha1 != null) {
+				checksums.put(StructrApp.key(File.class, "sha1"), Hex.encodeHexString(sha1.digest()));
+			}
+
+			if (sha512 != null) {
+				checksums.put(StructrApp.key(File.class, "sha512"), Hex.encodeHexString(sha512.digest()));
+			}
+		}
+
+		return new PropertyMap(checksums);
+	}
+
+	/**
+	 * Remembers the checksums of the given file, which must not be modified
+	 * after the calculator was fed.
+	 *
+	 * @param fileOnDisk
+	 */
+	public void remember(final java.io.File fileOnDisk) {
+
+		final String fingerprint = getFingerprint(fileOnDisk);
+		if (fingerprint != null) {
+
+			synchronized (remembered) {
+				remembered.put(fileOnDisk.getAbsolutePath(), new Remembered(fingerprint, enabledChecksums, getChecksums()));
+			}
+		}
+	}
+
+	/**
+	 * Returns the checksums of the given file, either from the checksums that
+	 * were calculated while the file was written, or by reading the file.
+	 *
+	 * @param fileOnDisk
+	 * @param enabledChecksums
+	 * @return the checksums
+	 * @throws IOException
+	 */
+	public static PropertyMap getChecksums(final java.io.File fileOnDisk, final String enabledChecksums) throws IOException {
+
+		final String path        = fileOnDisk.getAbsolutePath();
+		final String fingerprint = getFingerprint(fileOnDisk);
+		final String enabled     = enabledChecksums != null ? enabledChecksums : "";
+
+		if (fingerprint != null) {
+
+			synchronized (remembered) {
+
+				final Remembered entry = remembered.get(path);
+				if (entry != null) {
+
+					if (fingerprint.equals(entry.fingerprint) && enabled.equals(entry.enabledChecksums)) {
+
+						return new PropertyMap(entry.checksums);
+					}
+
+					remembered.remove(path);
+				}
+			}
+		}
+
+		final ChecksumCalculator calculator = new ChecksumCalculator(enabled);
+
+		calculator.read(fileOnDisk);
+
+		return calculator.getChecksums();
+	}
+
+	// ----- private methods -----
+	private void updateParallel(final byte[] buffer, final int length) {
+
+		final List<ForkJoinTask> tasks = new ArrayList<>();
+		final ForkJoinPool pool        = ForkJoinPool.commonPool();
+
+		// the first digester runs in this thread
+		for (int i=1; i<digesters.size(); i++) {
+
+			final Digester digester = digesters.get(i);
+
+			tasks.add(pool.submit(() -> digester.update(buffer, 0, length)));
+		}
+
+		digesters.get(0).update(buffer, 0, length);
+
+		// the buffer can only be reused after all digests are updated
+		for (final ForkJoinTask task : tasks) {
+			task.join();
+		}
+	}
+
+	// ----- private static methods -----
+	private static int readFully(final InputStream is, final byte[] buffer) throws IOException {
+
+		int offset = 0;
+		int length = 0;
+
+		while (offset < buffer.length && (length = is.read(buffer, offset, buffer.length - offset)) != -1) {
+			offset += length;
+		}
+
+		return offset;
+	}
+
+	private static String getFingerprint(final java.io.File fileOnDisk) {
+
+		try {
+
+			final BasicFileAttributes attrs = Files.readAttributes(fileOnDisk.toPath(), BasicFileAttributes.class);
+
+			return attrs.size() + ":" + attrs.lastModifiedTime().toMillis() + ":" + Objects.toString(attrs.fileKey());
+
+		} catch (IOException ioex) {
+			return null;
+		}
+	}
+
+	private static MessageDigest getMessageDigest(final String algorithm) {
+
+		try {
+
+			return MessageDigest.getInstance(algorithm);
+
+		} catch (NoSuchAlgorithmException nsaex) {
+			throw new IllegalArgumentException(nsaex);
+		}
+	}
+
+	// ----- nested classes -----
+	private interface Digester {
+
+		void update(final byte[] data, final int offset, final int length);
+	}
+
+	private static class Remembered {
+
+		private String enabledChecksums = null;
+		private String fingerprint      = null;
+		private PropertyMap checksums   = null;
+
+		Remembered(final String fingerprint, final String enabledChecksums, final PropertyMap checksums) {
+
+			this.enabledChecksums = enabledChecksums;
+			this.fingerprint      = fingerprint;
+			this.checksums        = checksums;
+		}
+	}
+
+	/**
+	 * Streaming implementation of the 64 bit xxHash with seed 0, which
+	 * produces the same values as {@link FileHelper#getChecksum}.
+	 */
+	static class XxHash64 {
+
+		private static final long P1 = 0x9E3779B185EBCA87L;
+		private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+		private static final long P3 = 0x165667B19E3779F9L;
+		private static final long P4 = 0x85EBCA77C2B2AE63L;
+		private static final long P5 = 0x27D4EB2F165667C5L;
+
+		private final byte[] memory = new byte[32];
+		private long v1             = P1 + P2;
+		private long v2             = P2;
+		private long v3             = 0L;
+		private long v4             = -P1;
+		private long total          = 0L;
+		private int memorySize      = 0;
+
+		void update(final byte[] data, final int offset, final int length) {
+
+			final int end = offset + length;
+			int pos       = offset;
+
+			total += length;
+
+			if (memorySize + length < 32) {
+
+				System.arraycopy(data, pos, memory, memorySize, length);
+				memorySize += length;
+
+				return;
+			}
+
+			if (memorySize > 0) {
+
+				final int fill = 32 - memorySize;
+
+				System.arraycopy(data, pos, memory, memorySize, fill);
+
+				v1 = round(v1, getLong(memory, 0));
+				v2 = round(v2, getLong(memory, 8));
+				v3 = round(v3, getLong(memory, 16));
+				v4 = round(v4, getLong(memory, 24));
+
+				pos       += fill;
+				memorySize = 0;
+			}
+
+			while (pos <= end - 32) {
+
+				v1 = round(v1, getLong(data, pos));
+				v2 = round(v2, getLong(data, pos + 8));
+				v3 = round(v3, getLong(data, pos + 16));
+				v4 = round(v4, getLong(data, pos + 24));
+
+				pos += 32;
+			}
+
+			if (pos < end) {
+
+				memorySize = end - pos;
+				System.arraycopy(data, pos, memory, 0, memorySize);
+			}
+		}
+
+		long getValue() {
+
+			long hash = 0L;
+			int pos   = 0;
+
+			if (total >= 32) {
+
+				hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+				hash = mergeRound(hash, v1);
+				hash = mergeRound(hash, v2);
+				hash = mergeRound(hash, v3);
+				hash = mergeRound(hash, v4);
+
+			} else {
+
+				hash = P5;
+			}
+
+			hash += total;
+
+			while (pos <= memorySize - 8) {
+
+				hash ^= round(0L, getLong(memory, pos));
+				hash  = Long.rotateLeft(hash, 27) * P1 + P4;
+				pos  += 8;
+			}
+
+			if (pos <= memorySize - 4) {
+
+				hash ^= (getInt(memory, pos) & 0xFFFFFFFFL) * P1;
+				hash  = Long.rotateLeft(hash, 23) * P2 + P3;
+				pos  += 4;
+			}
+
+			while (pos < memorySize) {
+
+				hash ^= (memory[pos] & 0xFF) * P5;
+				hash  = Long.rotateLeft(hash, 11) * P1;
+				pos++;
+			}
+
+			hash ^= hash >>> 33;
+			hash *= P2;
+			hash ^= hash >>> 29;
+			hash *= P3;
+			hash ^= hash >>> 32;
+
+			return hash;
+		}
+
+		private static long round(long acc, final long input) {
+
+			acc += input * P2;
+			acc  = Long.rotateLeft(acc, 31);
+			acc *= P1;
+
+			return acc;
+		}
+
+		private static long mergeRound(long acc, final long value) {
+
+			acc ^= round(0L, value);
+			acc  = acc * P1 + P4;
+
+			return acc;
+		}
+
+		private static long getLong(final byte[] data, final int pos) {
+
+			return (data[pos] & 0xFFL)
+				| ((data[pos + 1] & 0xFFL) << 8)
+				| ((data[pos + 2] & 0xFFL) << 16)
+				| ((data[pos + 3] & 0xFFL) << 24)
+				| ((data[pos + 4] & 0xFFL) << 32)
+				| ((data[pos + 5] & 0xFFL) << 40)
+				| ((data[pos + 6] & 0xFFL) << 48)
+				| ((data[pos + 7] & 0xFFL) << 56);
+		}
+
+		private static int getInt(final byte[] data, final int pos) {
+
+			return (data[pos] & 0xFF)
+				| ((data[pos + 1] & 0xFF) << 8)
+				| ((data[pos + 2] & 0xFF) << 16)
+				| ((data[pos + 3] & 0xFF) << 24);
+		}
+	}
+}
@@ -20,20 +20,61 @@ package org.structr.web.common;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import org.structr.web.entity.File;
 
 /**
  */
 public class ClosingFileOutputStream extends FileOutputStream {
 
-	private boolean closed = false;
-	private File thisFile  = null;
+	private ChecksumCalculator calculator = null;
+	private boolean closed                = false;
+	private File thisFile                 = null;
 
 	public ClosingFileOutputStream(final File thisFile, final boolean append, final boolean notifyIndexerAfterClosing) throws IOException {
 
 		super(thisFile.getFileOnDisk(), append);
 
 		this.thisFile = thisFile;
+
+		// checksums of appended data can't be calculated while writing
+		if (!append) {
+			this.calculator = new ChecksumCalculator(FileHelper.getEnabledChecksums(thisFile));
+		}
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+
+		super.write(b);
+
+		if (calculator != null) {
+			calculator.update(new byte[] { (byte)b }, 0, 1);
+		}
+	}
+
+	@Override
+	public void write(final byte[] b) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+
+		super.write(b, off, len);
+
+		if (calculator != null) {
+			calculator.update(b, off, len);
+		}
+	}
+
+	@Override
+	public FileChannel getChannel() {
+
+		// data written to the channel bypasses the calculator
+		calculator = null;
+
+		return super.getChannel();
 	}
 
 	@Override
@@ -45,6 +86,10 @@ public class ClosingFileOutputStream extends FileOutputStream {
 
 		super.close();
 
+		if (calculator != null) {
+			calculator.remember(thisFile.getFileOnDisk(false));
+		}
+
 		thisFile.notifyUploadCompletion();
 
 		closed = true;
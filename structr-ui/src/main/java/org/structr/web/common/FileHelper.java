@@ -23,14 +23,11 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.ByteOrder;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 import javax.activation.MimetypesFileTypeMap;
-import net.openhft.hashing.Access;
-import net.openhft.hashing.LongHashFunction;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -353,7 +350,19 @@ public class FileHelper {
 	 */
 	private static PropertyMap getChecksums(final File file, final java.io.File fileOnDisk) throws IOException {
 
-		final PropertyMap propertiesWithChecksums = new PropertyMap();
+		// New, very fast xxHash default checksum, will always be calculated,
+		// all checksums are calculated in a single pass over the file
+		return ChecksumCalculator.getChecksums(fileOnDisk, getEnabledChecksums(file));
+	}
+
+	/**
+	 * Return the checksums that are configured in settings of the nearest
+	 * parent folder, or the default checksums.
+	 *
+	 * @param file
+	 * @return the list of enabled checksums
+	 */
+	public static String getEnabledChecksums(final File file) {
 
 		Folder parentFolder = file.getParent();
 		String checksums = null;
@@ -368,27 +377,9 @@ public class FileHelper {
 			checksums = Settings.DefaultChecksums.getValue();
 		}
 
-		// New, very fast xxHash default checksum, will always be calculated
-		propertiesWithChecksums.put(StructrApp.key(File.class, "checksum"), FileHelper.getChecksum(fileOnDisk));
-
-		if (StringUtils.contains(checksums, "crc32"))	{
-			propertiesWithChecksums.put(StructrApp.key(File.class, "crc32"), FileHelper.getCRC32Checksum(fileOnDisk));
-		}
-
-		if (StringUtils.contains(checksums, "md5"))	{
-			propertiesWithChecksums.put(StructrApp.key(File.class, "md5"), FileHelper.getMD5Checksum(file));
-		}
-
-		if (StringUtils.contains(checksums, "sha1"))	{
-			propertiesWithChecksums.put(StructrApp.key(File.class, "sha1"), FileHelper.getSHA1Checksum(file));
-		}
-
-		if (StringUtils.contains(checksums, "sha512"))	{
-			propertiesWithChecksums.put(StructrApp.key(File.class, "sha512"), FileHelper.getSHA512Checksum(file));
-		}
-
-		return propertiesWithChecksums;
+		return checksums;
 	}
+
 	/**
 	 * Update checksums, content type, size and additional properties of the given file
 	 *
@@ -550,8 +541,13 @@ public class FileHelper {
 
 		setFileProperties(fileNode);
 
-		FileUtils.writeByteArrayToFile(fileNode.getFileOnDisk(), data);
+		final java.io.File fileOnDisk       = fileNode.getFileOnDisk();
+		final ChecksumCalculator calculator = new ChecksumCalculator(getEnabledChecksums(fileNode));
+
+		FileUtils.writeByteArrayToFile(fileOnDisk, data);
 
+		calculator.update(data, 0, data.length);
+		calculator.remember(fileOnDisk);
 	}
 
 	/**
@@ -566,10 +562,16 @@ public class FileHelper {
 
 		setFileProperties(fileNode);
 
-		try (final FileOutputStream out = new FileOutputStream(fileNode.getFileOnDisk())) {
+		final java.io.File fileOnDisk       = fileNode.getFileOnDisk();
+		final ChecksumCalculator calculator = new ChecksumCalculator(getEnabledChecksums(fileNode));
 
-			IOUtils.copy(data, out);
+		try (final FileOutputStream out = new FileOutputStream(fileOnDisk)) {
+
+			// calculate checksums while the data is written
+			calculator.copy(data, out);
 		}
+
+		calculator.remember(fileOnDisk);
 	}
 
 	/**
@@ -770,26 +772,13 @@ public class FileHelper {
 
 	public static Long getChecksum(final java.io.File fileOnDisk) throws IOException {
 
-		try (final BufferedInputStream is = new BufferedInputStream(new FileInputStream(fileOnDisk), 131072)) {
-
-			final long hash = LongHashFunction.xx().hash(is, new Access<BufferedInputStream>() {
-
-				@Override
-				public int getByte(BufferedInputStream input, long offset) {
-
-					try { return input.read(); } catch (IOException ex) {}
-
-					return -1;
-				}
+		try {
 
-				@Override
-				public ByteOrder byteOrder(BufferedInputStream input) {
-					return ByteOrder.nativeOrder();
-				}
+			final ChecksumCalculator calculator = new ChecksumCalculator(null);
 
-			}, 0, fileOnDisk.length());
+			calculator.read(fileOnDisk);
 
-			return hash;
+			return (Long)calculator.getChecksums().get(StructrApp.key(File.class, "checksum"));
 
 		} catch (final IOException ex) {
 			logger.warn("Unable to calculate checksum for {}: {}", fileOnDisk.getAbsolutePath(), ex.getMessage());
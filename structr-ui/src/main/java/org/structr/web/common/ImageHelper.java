@@ -32,6 +32,7 @@ import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
@@ -260,14 +261,41 @@ public abstract class ImageHelper extends FileHelper {
 
 	public static Thumbnail createThumbnail(final Image originalImage, final int maxWidth, final int maxHeight, final String formatString, final boolean crop, final Integer reqOffsetX, final Integer reqOffsetY) {
 
-		Thumbnail.Format format = Thumbnail.defaultFormat;
-		try {
-			final String imageFormatString = getImageFormatString(originalImage);
-			format = formatString != null ? Thumbnail.Format.valueOf(formatString) : (imageFormatString != null ? Thumbnail.Format.valueOf(imageFormatString) : Thumbnail.defaultFormat);
-		} catch (IllegalArgumentException iae) {
-			logger.debug("Unsupported thumbnail format - using default");
+		final Thumbnail tn = createThumbnail(originalImage.getFileOnDisk(), getOrientation(originalImage), getThumbnailFormat(originalImage, formatString), maxWidth, maxHeight, crop, reqOffsetX, reqOffsetY);
+		if (tn != null) {
+
+			try {
+
+				// Update image dimensions
+				final PropertyMap properties = new PropertyMap();
+				properties.put(StructrApp.key(Image.class, "width"), tn.getSourceWidth());
+				properties.put(StructrApp.key(Image.class, "height"), tn.getSourceHeight());
+				originalImage.setProperties(originalImage.getSecurityContext(), properties);
+
+			} catch (FrameworkException fex) {
+
+				logger.warn("Unable to update dimensions of image with ID {}.", originalImage.getUuid(), fex);
+			}
 		}
 
+		return tn;
+	}
+
+	/**
+	 * Create a thumbnail from the given file on disk. This method doesn't
+	 * access the database, so it can be called from any thread.
+	 *
+	 * @param fileOnDisk
+	 * @param orientation the EXIF orientation of the image
+	 * @param format
+	 * @param maxWidth
+	 * @param maxHeight
+	 * @param crop
+	 * @param reqOffsetX
+	 * @param reqOffsetY
+	 * @return the thumbnail or null
+	 */
+	public static Thumbnail createThumbnail(final java.io.File fileOnDisk, final int orientation, final Thumbnail.Format format, final int maxWidth, final int maxHeight, final boolean crop, final Integer reqOffsetX, final Integer reqOffsetY) {
 
 		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		final Thumbnail tn               = new Thumbnail();
@@ -275,18 +303,19 @@ public abstract class ImageHelper extends FileHelper {
 		try {
 
 			final long start = System.nanoTime();
-			BufferedImage source = getRotatedImage(originalImage);
+			BufferedImage source = null;
+
+			try (final InputStream is = new FileInputStream(fileOnDisk)) {
+				source = getRotatedImage(is, orientation);
+			}
 
 			if (source != null) {
 
 				final int sourceWidth  = source.getWidth();
 				final int sourceHeight = source.getHeight();
 
-				// Update image dimensions
-				final PropertyMap properties = new PropertyMap();
-				properties.put(StructrApp.key(Image.class, "width"), sourceWidth);
-				properties.put(StructrApp.key(Image.class, "height"), sourceHeight);
-				originalImage.setProperties(originalImage.getSecurityContext(), properties);
+				tn.setSourceWidth(sourceWidth);
+				tn.setSourceHeight(sourceHeight);
 
 				// float aspectRatio = sourceWidth/sourceHeight;
 				final float scale = getScaleRatio(sourceWidth, sourceHeight, maxWidth, maxHeight, crop);
@@ -355,13 +384,34 @@ public abstract class ImageHelper extends FileHelper {
 
 		} catch (Throwable t) {
 
-			logger.warn("Unable to create thumbnail for image with ID {}.", originalImage.getUuid(), t);
+			logger.warn("Unable to create thumbnail for image {}.", fileOnDisk, t);
 		}
 
 		return null;
 	}
 
 
+	/**
+	 * Return the format of thumbnails of the given image.
+	 *
+	 * @param originalImage
+	 * @param formatString the requested format, or null
+	 * @return the thumbnail format
+	 */
+	public static Thumbnail.Format getThumbnailFormat(final Image originalImage, final String formatString) {
+
+		try {
+
+			final String imageFormatString = getImageFormatString(originalImage);
+			return formatString != null ? Thumbnail.Format.valueOf(formatString) : (imageFormatString != null ? Thumbnail.Format.valueOf(imageFormatString) : Thumbnail.defaultFormat);
+
+		} catch (IllegalArgumentException iae) {
+			logger.debug("Unsupported thumbnail format - using default");
+		}
+
+		return Thumbnail.defaultFormat;
+	}
+
 	public static Thumbnail createCroppedImage(final Image originalImage, final int maxWidth, final int maxHeight, final Integer reqOffsetX, final Integer reqOffsetY, final String formatString) {
 
 		final String imageFormatString = getImageFormatString(originalImage);
@@ -433,13 +483,16 @@ public abstract class ImageHelper extends FileHelper {
 	}
 
 	public static BufferedImage getRotatedImage(final File originalImage) {
+		return getRotatedImage(originalImage.getInputStream(), getOrientation(originalImage));
+	}
+
+	public static BufferedImage getRotatedImage(final InputStream inputStream, final int orientation) {
 
 		try {
 
 			// no need for try-with-resources for the below InputStream because ImageIO.read() closes its input stream
-			final ImageInputStream in = ImageIO.createImageInputStream(originalImage.getInputStream());
-			final int           orientation = getOrientation(originalImage);
-			final BufferedImage source      = ImageIO.read(in);
+			final ImageInputStream in  = ImageIO.createImageInputStream(inputStream);
+			final BufferedImage source = ImageIO.read(in);
 
 			if (source != null) {
 
@@ -724,10 +777,14 @@ public abstract class ImageHelper extends FileHelper {
 	}
 
 	private static Metadata getMetadata(final File originalImage) {
+		return getMetadata(originalImage.getInputStream());
+	}
+
+	private static Metadata getMetadata(final InputStream inputStream) {
 
 		Metadata metadata = new Metadata();
 
-		try (final InputStream in = originalImage.getInputStream()) {
+		try (final InputStream in = inputStream) {
 
 			if (in != null && in.available() > 0) {
 
@@ -741,6 +798,30 @@ public abstract class ImageHelper extends FileHelper {
 		return metadata;
 	}
 
+	/**
+	 * Read the EXIF orientation from the given stream without storing it.
+	 *
+	 * @param inputStream
+	 * @return the orientation
+	 */
+	public static int getOrientation(final InputStream inputStream) {
+
+		try {
+
+			final ExifIFD0Directory exifIFD0Directory = getMetadata(inputStream).getFirstDirectoryOfType(ExifIFD0Directory.class);
+
+			if (exifIFD0Directory != null && exifIFD0Directory.hasTagName(ExifIFD0Directory.TAG_ORIENTATION)) {
+
+				return exifIFD0Directory.getInt(ExifIFD0Directory.TAG_ORIENTATION);
+			}
+
+		} catch (MetadataException ex) {
+			logger.debug("Unable to read orientation information", ex);
+		}
+
+		return 1;
+	}
+
 	public static int getOrientation(final File originalImage) {
 
 		try {
@@ -903,6 +984,8 @@ public abstract class ImageHelper extends FileHelper {
 		private byte[] bytes;
 		private int height;
 		private int width;
+		private int sourceHeight;
+		private int sourceWidth;
 		private Format format;
 
 		//~--- constructors -------------------------------------------
@@ -945,6 +1028,14 @@ public abstract class ImageHelper extends FileHelper {
 			return height;
 		}
 
+		public int getSourceWidth() {
+			return sourceWidth;
+		}
+
+		public int getSourceHeight() {
+			return sourceHeight;
+		}
+
 		public Format getFormat() {
 			return format;
 		}
@@ -967,6 +1058,14 @@ public abstract class ImageHelper extends FileHelper {
 			this.height = height;
 		}
 
+		public void setSourceWidth(final int sourceWidth) {
+			this.sourceWidth = sourceWidth;
+		}
+
+		public void setSourceHeight(final int sourceHeight) {
+			this.sourceHeight = sourceHeight;
+		}
+
 		public void setFormat(final Format format) {
 			this.format = format;
 		}
@@ -0,0 +1,526 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.http.HttpServletRequest;
+import org.structr.api.Predicate;
+import org.structr.api.config.Settings;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.StructrTransactionListener;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.ModificationEvent;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.NodeReadTracker;
+import org.structr.core.graph.NodeReadTracker.ReadSet;
+import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.TransactionCommand;
+import org.structr.core.graph.search.SearchCommand;
+import org.structr.web.entity.dom.DOMNode;
+
+/**
+ * Server-side cache for the rendered output of pages and page fragments.
+ *
+ * Entries are keyed by node, locale, user (or anonymous), request path
+ * and parameters and the data objects of the render context. Each entry
+ * remembers the nodes that were read and the types that were queried
+ * while it was rendered, and is removed when one of those nodes is
+ * modified, or when a node of one of the types that were read or queried
+ * is created or deleted. Entries expire after the number of seconds
+ * configured in the renderCacheSeconds property of the cached node.
+ *
+ * Output that depends on anything else (the current time, response
+ * headers set by scripts, the session etc.) should not be cached.
+ */
+public class RenderCache implements StructrTransactionListener {
+
+	private static final int MAX_RECENT_INVALIDATIONS = 64;
+	private static RenderCache instance               = null;
+
+	private final Map<String, Entry> entries              = new ConcurrentHashMap<>();
+	private final Deque<Invalidation> recentInvalidations = new ArrayDeque<>();
+	private final LongAdder hits                          = new LongAdder();
+	private final LongAdder misses                        = new LongAdder();
+	private final LongAdder invalidations                 = new LongAdder();
+	private long generation                               = 0L;
+
+	private RenderCache() {
+	}
+
+	public static synchronized RenderCache getInstance() {
+
+		if (instance == null) {
+
+			instance = new RenderCache();
+
+			TransactionCommand.registerTransactionListener(instance);
+		}
+
+		return instance;
+	}
+
+	public static boolean isEnabled() {
+		return Settings.HtmlRenderCacheSize.getValue() > 0;
+	}
+
+	/**
+	 * Returns the number of seconds for which the output of the given
+	 * node can be cached in the given context, or 0 if it can't be cached.
+	 *
+	 * @param node
+	 * @param renderContext
+	 * @return the number of seconds or 0
+	 */
+	public static int getCacheSeconds(final DOMNode node, final RenderContext renderContext) {
+
+		if (RenderContext.EditMode.NONE.equals(renderContext.getEditMode(renderContext.getSecurityContext().getUser(false))) && isEnabled()) {
+
+			final Integer seconds = node.getRenderCacheSeconds();
+			if (seconds != null && seconds > 0) {
+
+				return seconds;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Creates the cache key for the given node in the given render context.
+	 *
+	 * @param node
+	 * @param renderContext
+	 * @param depth
+	 * @return the cache key
+	 */
+	public static String createKey(final DOMNode node, final RenderContext renderContext, final int depth) {
+
+		final HttpServletRequest request = renderContext.getRequest();
+		final StringBuilder buf          = new StringBuilder();
+
+		buf.append(node.getUuid());
+		buf.append("|").append(depth);
+		buf.append("|").append(renderContext.getLocale());
+		buf.append("|").append(getPrincipalKey(renderContext.getSecurityContext()));
+		buf.append("|").append(renderContext.inBody()).append(renderContext.appLibRendered());
+
+		if (request != null) {
+
+			buf.append("|").append(request.getRequestURI());
+
+			// the parameters that are actually used are not known in advance
+			for (final Map.Entry<String, String[]> parameter : new TreeMap<>(request.getParameterMap()).entrySet()) {
+
+				buf.append("|").append(parameter.getKey()).append("=").append(Arrays.toString(parameter.getValue()));
+			}
+		}
+
+		buf.append("|").append(getUuid(renderContext.getDetailsDataObject()));
+		buf.append("|").append(getUuid(renderContext.getDataObject()));
+
+		for (final Map.Entry<String, GraphObject> dataObject : renderContext.getDataObjects().entrySet()) {
+
+			buf.append("|").append(dataObject.getKey()).append("=").append(getUuid(dataObject.getValue()));
+		}
+
+		return buf.toString();
+	}
+
+	/**
+	 * Returns the cached output for the given key, or null. The nodes the
+	 * output was rendered from are added to the enclosing tracking scope.
+	 *
+	 * @param key
+	 * @return the cache entry or null
+	 */
+	public Entry get(final String key) {
+
+		final Entry entry = entries.get(key);
+		if (entry != null) {
+
+			if (entry.isExpired()) {
+
+				entries.remove(key, entry);
+
+			} else {
+
+				NodeReadTracker.recordAll(entry.readSet);
+				hits.increment();
+
+				return entry;
+			}
+		}
+
+		misses.increment();
+
+		return null;
+	}
+
+	/**
+	 * Starts recording the output and the reads of a render operation. The
+	 * buffer of the render context is replaced until the recording is
+	 * stopped.
+	 *
+	 * @param renderContext
+	 * @param node the node that is rendered
+	 * @return the recording
+	 */
+	public Recording startRecording(final RenderContext renderContext, final DOMNode node) {
+
+		final long startGeneration;
+
+		synchronized (this) {
+			startGeneration = generation;
+		}
+
+		final Recording recording = new Recording(renderContext, startGeneration);
+
+		// nodes that were instantiated before rendering started
+		NodeReadTracker.record(node);
+
+		recordDataObject(renderContext.getDetailsDataObject());
+		recordDataObject(renderContext.getDataObject());
+
+		for (final GraphObject dataObject : renderContext.getDataObjects().values()) {
+			recordDataObject(dataObject);
+		}
+
+		return recording;
+	}
+
+	/**
+	 * Stores the output of the given recording, unless one of the nodes
+	 * it was rendered from was modified in the meantime.
+	 *
+	 * @param key
+	 * @param recording
+	 * @param seconds
+	 */
+	public void put(final String key, final Recording recording, final int seconds) {
+
+		final Entry entry = new Entry(recording, System.currentTimeMillis() + seconds * 1000L);
+
+		synchronized (this) {
+
+			if (isModifiedSince(recording.startGeneration, entry.readSet)) {
+				return;
+			}
+
+			if (entries.size() >= Settings.HtmlRenderCacheSize.getValue()) {
+				evict();
+			}
+
+			entries.put(key, entry);
+		}
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+
+		statistics.put("size",          entries.size());
+		statistics.put("hits",          hits.sum());
+		statistics.put("misses",        misses.sum());
+		statistics.put("invalidations", invalidations.sum());
+
+		return statistics;
+	}
+
+	// ----- interface StructrTransactionListener -----
+	@Override
+	public void beforeCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents) throws FrameworkException {
+	}
+
+	@Override
+	public void afterCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents) {
+
+		final Set<String> modifiedUuids = new HashSet<>();
+		final Set<String> modifiedTypes = new HashSet<>();
+
+		for (final ModificationEvent event : modificationEvents) {
+
+			final GraphObject obj = event.getGraphObject();
+
+			if (event.isNode()) {
+
+				modifiedUuids.add(event.getUuid());
+
+				if ((event.isCreated() || event.isDeleted()) && obj != null) {
+
+					// queries for a supertype depend on the creation of nodes of its subtypes
+					modifiedTypes.add(obj.getClass().getSimpleName());
+
+					for (final Class type : SearchCommand.typeAndAllSupertypes(obj.getClass())) {
+						modifiedTypes.add(type.getSimpleName());
+					}
+				}
+
+			} else if (obj instanceof RelationshipInterface) {
+
+				// modified relationship properties change the output of both nodes
+				final RelationshipInterface rel = (RelationshipInterface)obj;
+
+				try {
+
+					modifiedUuids.add(rel.getSourceNodeId());
+					modifiedUuids.add(rel.getTargetNodeId());
+
+				} catch (Throwable ignore) {
+					// deleted relationships are reported as modifications of their nodes
+				}
+			}
+		}
+
+		if (modifiedUuids.isEmpty() && modifiedTypes.isEmpty()) {
+			return;
+		}
+
+		synchronized (this) {
+
+			recentInvalidations.add(new Invalidation(++generation, modifiedUuids, modifiedTypes));
+
+			if (recentInvalidations.size() > MAX_RECENT_INVALIDATIONS) {
+				recentInvalidations.removeFirst();
+			}
+		}
+
+		for (final Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+
+			if (it.next().readSet.intersects(modifiedUuids, modifiedTypes)) {
+
+				it.remove();
+				invalidations.increment();
+			}
+		}
+	}
+
+	@Override
+	public boolean isCacheListener() {
+		return true;
+	}
+
+	@Override
+	public void simpleBroadcast(final String messageName, final Map<String, Object> data, final Predicate<String> sessionIdPredicate) {
+	}
+
+	// ----- private methods -----
+	private boolean isModifiedSince(final long startGeneration, final ReadSet readSet) {
+
+		if (generation == startGeneration) {
+			return false;
+		}
+
+		final Invalidation oldest = recentInvalidations.peekFirst();
+		if (oldest == null || oldest.generation > startGeneration + 1) {
+
+			// too many modifications to tell
+			return true;
+		}
+
+		for (final Invalidation invalidation : recentInvalidations) {
+
+			if (invalidation.generation > startGeneration && readSet.intersects(invalidation.uuids, invalidation.types)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void evict() {
+
+		final long now = System.currentTimeMillis();
+		String oldestKey = null;
+		long oldestTime  = Long.MAX_VALUE;
+
+		for (final Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+
+			final Map.Entry<String, Entry> entry = it.next();
+			final long expires                   = entry.getValue().expires;
+
+			if (expires < now) {
+
+				it.remove();
+
+			} else if (expires < oldestTime) {
+
+				oldestTime = expires;
+				oldestKey  = entry.getKey();
+			}
+		}
+
+		if (entries.size() >= Settings.HtmlRenderCacheSize.getValue() && oldestKey != null) {
+			entries.remove(oldestKey);
+		}
+	}
+
+	private static String getPrincipalKey(final SecurityContext securityContext) {
+
+		if (securityContext.isSuperUser()) {
+			return "superuser";
+		}
+
+		// the output can depend on the user (me, owned or visible objects etc.)
+		final Principal user = securityContext.getUser(false);
+
+		return user != null ? user.getUuid() : "anonymous";
+	}
+
+	private static void recordDataObject(final GraphObject obj) {
+
+		if (obj instanceof NodeInterface) {
+			NodeReadTracker.record((NodeInterface)obj);
+		}
+	}
+
+	private static String getUuid(final GraphObject obj) {
+		return obj != null ? obj.getUuid() : null;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * A render operation whose output and reads are being recorded.
+	 */
+	public static class Recording {
+
+		private final StringRenderBuffer buffer = new StringRenderBuffer();
+		private RenderContext renderContext     = null;
+		private AsyncBuffer originalBuffer      = null;
+		private ReadSet readSet                 = null;
+		private long startGeneration            = 0L;
+
+		private Recording(final RenderContext renderContext, final long startGeneration) {
+
+			this.originalBuffer  = renderContext.getBuffer();
+			this.renderContext   = renderContext;
+			this.startGeneration = startGeneration;
+
+			renderContext.setBuffer(buffer);
+
+			NodeReadTracker.begin();
+		}
+
+		/**
+		 * Restores the original buffer of the render context and appends
+		 * the recorded output to it.
+		 */
+		public void stop() {
+
+			if (readSet == null) {
+
+				readSet = NodeReadTracker.end();
+
+				renderContext.setBuffer(originalBuffer);
+				originalBuffer.append(buffer.getBuffer().toString());
+			}
+		}
+
+		public String getOutput() {
+			return buffer.getBuffer().toString();
+		}
+	}
+
+	public static class Entry {
+
+		private ReadSet readSet        = null;
+		private String output          = null;
+		private byte[] bytes           = null;
+		private boolean inBody         = false;
+		private boolean appLibRendered = false;
+		private long expires           = 0L;
+
+		private Entry(final Recording recording, final long expires) {
+
+			this.output         = recording.getOutput();
+			this.readSet        = recording.readSet;
+			this.inBody         = recording.renderContext.inBody();
+			this.appLibRendered = recording.renderContext.appLibRendered();
+			this.expires        = expires;
+		}
+
+		/**
+		 * Appends the cached output to the buffer of the given render
+		 * context, and applies the changes the original render operation
+		 * made to the render context.
+		 *
+		 * @param renderContext
+		 */
+		public void apply(final RenderContext renderContext) {
+
+			renderContext.getBuffer().append(output);
+
+			if (inBody) {
+				renderContext.setInBody(true);
+			}
+
+			if (appLibRendered) {
+				renderContext.setAppLibRendered(true);
+			}
+		}
+
+		public synchronized byte[] getBytes() {
+
+			if (bytes == null) {
+				bytes = output.getBytes(StandardCharsets.UTF_8);
+			}
+
+			return bytes;
+		}
+
+		private boolean isExpired() {
+			return System.currentTimeMillis() > expires;
+		}
+	}
+
+	private static class Invalidation {
+
+		private Set<String> uuids = null;
+		private Set<String> types = null;
+		private long generation   = 0L;
+
+		Invalidation(final long generation, final Set<String> uuids, final Set<String> types) {
+
+			this.generation = generation;
+			this.uuids      = uuids;
+			this.types      = types;
+		}
+	}
+}
@@ -18,6 +18,7 @@
  */
 package org.structr.web.common;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Stack;
@@ -317,6 +318,10 @@ public class RenderContext extends ActionContext {
 		return appLibRendered;
 	}
 
+	public Map<String, GraphObject> getDataObjects() {
+		return Collections.unmodifiableMap(dataObjects);
+	}
+
 	public GraphObject getDataNode(String key) {
 		return dataObjects.get(key);
 	}
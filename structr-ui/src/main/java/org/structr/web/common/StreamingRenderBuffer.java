@@ -0,0 +1,269 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Render buffer that connects a rendering thread (the producer) with the
+ * asynchronous write side of a response (the consumer).
+ *
+ * Rendered output is encoded to UTF-8 once and collected in fixed-size
+ * byte chunks that are taken from a shared pool. The consumer is notified
+ * whenever a chunk is full or rendering has finished, and takes chunks with
+ * {@link #poll()}. When more than the configured number of bytes is waiting
+ * to be written, the producer is blocked until the consumer catches up, so
+ * a slow client can't make the server buffer a whole page in memory.
+ *
+ * This buffer can only be consumed through {@link #poll()}, so the queue
+ * returned by {@link #getQueue()} is always empty.
+ */
+public class StreamingRenderBuffer extends AsyncBuffer {
+
+	public static final int CHUNK_SIZE = 8192;
+
+	private static final BlockingQueue<byte[]> pool = new ArrayBlockingQueue<>(1024);
+
+	private final ArrayDeque<Chunk> chunks = new ArrayDeque<>();
+	private Runnable listener              = null;
+	private Chunk current                  = null;
+	private long maxBufferedBytes          = 0L;
+	private long bufferedBytes             = 0L;
+	private boolean finished               = false;
+	private boolean aborted                = false;
+
+	/**
+	 * Creates a new buffer.
+	 *
+	 * @param maxBufferedBytes the number of bytes after which the producer is blocked
+	 * @param listener called (outside of any lock) when data is available or rendering has finished
+	 */
+	public StreamingRenderBuffer(final long maxBufferedBytes, final Runnable listener) {
+
+		this.maxBufferedBytes = Math.max(CHUNK_SIZE, maxBufferedBytes);
+		this.listener         = listener;
+	}
+
+	@Override
+	public AsyncBuffer append(final String s) {
+
+		if (s != null && !s.isEmpty()) {
+
+			final byte[] data = s.getBytes(StandardCharsets.UTF_8);
+			int offset        = 0;
+
+			while (offset < data.length) {
+
+				boolean notify = false;
+
+				synchronized (this) {
+
+					while (offset < data.length && !aborted) {
+
+						if (current == null) {
+
+							if (bufferedBytes >= maxBufferedBytes) {
+
+								// the consumer must know about the full chunks before the producer blocks
+								if (notify) {
+									break;
+								}
+
+								// wait for the consumer to catch up
+								try {
+
+									wait(1000);
+
+								} catch (InterruptedException iex) {
+
+									aborted = true;
+									Thread.currentThread().interrupt();
+								}
+
+								continue;
+							}
+
+							current = new Chunk(acquire());
+						}
+
+						final int length = Math.min(data.length - offset, CHUNK_SIZE - current.length);
+
+						System.arraycopy(data, offset, current.data, current.length, length);
+
+						current.length += length;
+						bufferedBytes  += length;
+						offset         += length;
+
+						if (current.length == CHUNK_SIZE) {
+
+							chunks.add(current);
+							current = null;
+							notify  = true;
+						}
+					}
+
+					if (aborted) {
+
+						// discard the rest
+						offset = data.length;
+					}
+				}
+
+				if (notify) {
+					listener.run();
+				}
+			}
+		}
+
+		return this;
+	}
+
+	@Override
+	public Queue<String> getQueue() {
+		return new ArrayDeque<>();
+	}
+
+	/**
+	 * Signals that rendering has finished. Remaining output is handed over
+	 * to the consumer.
+	 */
+	public void finish() {
+
+		synchronized (this) {
+
+			if (current != null && current.length > 0) {
+
+				chunks.add(current);
+				current = null;
+			}
+
+			finished = true;
+		}
+
+		listener.run();
+	}
+
+	/**
+	 * Signals that the output can't be written anymore, e.g. because the
+	 * client has disconnected. Pending output is discarded, a blocked
+	 * producer is released, and subsequent output is ignored.
+	 */
+	public void abort() {
+
+		synchronized (this) {
+
+			aborted = true;
+
+			for (final Chunk chunk : chunks) {
+				release(chunk);
+			}
+
+			chunks.clear();
+
+			if (current != null) {
+
+				release(current);
+				current = null;
+			}
+
+			bufferedBytes = 0L;
+
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the next chunk of output, or null if no output is available
+	 * at the moment. The chunk must be returned with {@link #release}
+	 * after it was written, which for non-blocking output is when the
+	 * output stream is ready again.
+	 *
+	 * @return the next chunk or null
+	 */
+	public synchronized Chunk poll() {
+
+		Chunk chunk = chunks.poll();
+
+		// hand out partial output as well to keep the latency low
+		if (chunk == null && current != null && current.length > 0) {
+
+			chunk   = current;
+			current = null;
+		}
+
+		if (chunk != null) {
+
+			bufferedBytes -= chunk.length;
+			notifyAll();
+		}
+
+		return chunk;
+	}
+
+	/**
+	 * Indicates whether rendering has finished and all output was taken.
+	 *
+	 * @return whether there is no more output to write
+	 */
+	public synchronized boolean isDone() {
+		return aborted || (finished && chunks.isEmpty() && (current == null || current.length == 0));
+	}
+
+	public void release(final Chunk chunk) {
+
+		if (chunk.data.length == CHUNK_SIZE) {
+			pool.offer(chunk.data);
+		}
+	}
+
+	// ----- private methods -----
+	private byte[] acquire() {
+
+		final byte[] data = pool.poll();
+		if (data != null) {
+
+			return data;
+		}
+
+		return new byte[CHUNK_SIZE];
+	}
+
+	// ----- nested classes -----
+	public static class Chunk {
+
+		private byte[] data = null;
+		private int length  = 0;
+
+		private Chunk(final byte[] data) {
+			this.data = data;
+		}
+
+		public byte[] getData() {
+			return data;
+		}
+
+		public int getLength() {
+			return length;
+		}
+	}
+}
@@ -0,0 +1,410 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.SecurityContext;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+import org.structr.web.common.ImageHelper.Thumbnail;
+import org.structr.web.entity.Image;
+
+/**
+ * Process-wide, bounded thread pool that creates thumbnail data in the
+ * background.
+ *
+ * Thumbnails are identified by the checksum of the original image and the
+ * requested width, height and crop mode, so concurrent requests for the same
+ * thumbnail share a single task. The worker only scales the image data, the
+ * thumbnail node is created by the caller of {@link Image#getScaledImage}
+ * that claims the finished task.
+ *
+ * When the queue is full, thumbnails are created in the requesting thread.
+ */
+public class ThumbnailWorker {
+
+	private static final Logger logger                 = LoggerFactory.getLogger(ThumbnailWorker.class.getName());
+	private static final String WAIT_TIME_ATTRIBUTE    = ThumbnailWorker.class.getName() + ".waitTime";
+	private static final ThreadLocal<Boolean> isWorker = ThreadLocal.withInitial(() -> false);
+	private static final long EXPIRY_TIME              = TimeUnit.MINUTES.toMillis(5);
+	private static ThumbnailWorker instance            = null;
+
+	private final Map<Key, Task> tasks  = new ConcurrentHashMap<>();
+	private ThreadPoolExecutor executor = null;
+	private volatile long lastCleanup   = 0L;
+
+	private ThumbnailWorker(final int threads, final int queueSize) {
+
+		final AtomicInteger threadNumber = new AtomicInteger();
+
+		this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), r -> {
+
+			final Thread thread = new Thread(() -> {
+
+				isWorker.set(true);
+				r.run();
+
+			}, "ThumbnailWorker-" + threadNumber.incrementAndGet());
+
+			thread.setDaemon(true);
+
+			return thread;
+
+		}, new ThreadPoolExecutor.CallerRunsPolicy());
+
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	public static synchronized ThumbnailWorker getInstance() {
+
+		if (instance == null) {
+
+			instance = new ThumbnailWorker(
+				Math.max(1, Settings.ThumbnailThreads.getValue()),
+				Math.max(1, Settings.ThumbnailQueueSize.getValue())
+			);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Submits the creation of a thumbnail of the given image, or returns
+	 * the pending or finished task for the same thumbnail.
+	 *
+	 * @param originalImage
+	 * @param checksum the checksum of the original image
+	 * @param maxWidth
+	 * @param maxHeight
+	 * @param crop
+	 * @return a future for the thumbnail data
+	 */
+	public Future<Thumbnail> submit(final Image originalImage, final long checksum, final int maxWidth, final int maxHeight, final boolean crop) {
+
+		removeExpiredTasks();
+
+		final Key key = new Key(checksum, maxWidth, maxHeight, crop);
+		Task task     = tasks.get(key);
+
+		if (task == null) {
+
+			// collect everything that needs database access in this thread
+			final java.io.File fileOnDisk = originalImage.getFileOnDisk();
+			final Thumbnail.Format format = ImageHelper.getThumbnailFormat(originalImage, null);
+			final Task newTask            = new Task(key, () -> {
+
+				try (final InputStream is = new FileInputStream(fileOnDisk)) {
+
+					return ImageHelper.createThumbnail(fileOnDisk, ImageHelper.getOrientation(is), format, maxWidth, maxHeight, crop, null, null);
+				}
+			});
+
+			task = tasks.putIfAbsent(key, newTask);
+			if (task == null) {
+
+				task = newTask;
+
+				if (isWorkerThread()) {
+
+					// don't wait for the pool in one of its own threads
+					task.run();
+
+				} else {
+
+					executor.execute(task);
+				}
+			}
+		}
+
+		return task;
+	}
+
+	/**
+	 * Waits for the given task. HTTP requests wait at most the configured
+	 * time for all thumbnails together, other callers wait until the task
+	 * is finished.
+	 *
+	 * @param securityContext
+	 * @param future
+	 * @return the thumbnail data, or null if the task is not finished
+	 */
+	public Thumbnail await(final SecurityContext securityContext, final Future<Thumbnail> future) {
+
+		final HttpServletRequest request = securityContext != null ? securityContext.getRequest() : null;
+
+		try {
+
+			if (request == null || future.isDone()) {
+
+				return future.get();
+			}
+
+			final Long waitTime  = (Long)request.getAttribute(WAIT_TIME_ATTRIBUTE);
+			final long spent     = waitTime != null ? waitTime : 0L;
+			final long remaining = Settings.ThumbnailWaitTime.getValue() - spent;
+			final long start     = System.currentTimeMillis();
+
+			if (remaining <= 0) {
+				return null;
+			}
+
+			try {
+
+				return future.get(remaining, TimeUnit.MILLISECONDS);
+
+			} catch (TimeoutException tex) {
+
+				logger.debug("Thumbnail not ready after {} ms", remaining);
+
+			} finally {
+
+				request.setAttribute(WAIT_TIME_ATTRIBUTE, spent + (System.currentTimeMillis() - start));
+			}
+
+		} catch (InterruptedException iex) {
+
+			Thread.currentThread().interrupt();
+
+		} catch (ExecutionException eex) {
+
+			logger.warn("Unable to create thumbnail: {}", eex.getMessage());
+		}
+
+		return null;
+	}
+
+	/**
+	 * Claims the given finished task. Only the caller that successfully
+	 * claims a task may create the thumbnail node for it.
+	 *
+	 * @param future
+	 * @return whether the task was claimed
+	 */
+	public boolean claim(final Future<Thumbnail> future) {
+
+		if (future instanceof Task) {
+
+			return tasks.remove(((Task)future).key, future);
+		}
+
+		return false;
+	}
+
+	/**
+	 * Creates the thumbnails that are configured to be created on upload
+	 * for the given image.
+	 *
+	 * @param image
+	 */
+	public void pregenerate(final Image image) {
+
+		final String sizes = Settings.ThumbnailPregenerate.getValue();
+		final Long checksum = image.getChecksum();
+
+		if (StringUtils.isBlank(sizes) || checksum == null || image.isThumbnail()) {
+			return;
+		}
+
+		final String uuid = image.getUuid();
+
+		for (final String size : sizes.split("[,\\s]+")) {
+
+			final String[] parts = size.split("[x:]");
+			if (parts.length >= 2) {
+
+				try {
+
+					final int width    = Integer.parseInt(parts[0]);
+					final int height   = Integer.parseInt(parts[1]);
+					final boolean crop = parts.length > 2 && "crop".equals(parts[2]);
+					final Task task    = (Task)submit(image, checksum, width, height, crop);
+
+					// let the image create the thumbnail node when the data is ready
+					final Runnable createNode = () -> {
+
+						final App app = StructrApp.getInstance();
+
+						try (final Tx tx = app.tx()) {
+
+							final Image original = app.get(Image.class, uuid);
+							if (original != null) {
+
+								original.getScaledImage(width, height, crop);
+							}
+
+							tx.success();
+
+						} catch (Throwable t) {
+							logger.warn("Unable to create thumbnail for {}: {}", uuid, t.getMessage());
+						}
+					};
+
+					if (!task.addListener(createNode)) {
+
+						executor.execute(createNode);
+					}
+
+				} catch (NumberFormatException nfex) {
+					logger.warn("Invalid thumbnail size {} in {}", size, Settings.ThumbnailPregenerate.getKey());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of threads, active threads, queued and pending
+	 * tasks.
+	 *
+	 * @return the statistics
+	 */
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+
+		statistics.put("threads",       executor.getMaximumPoolSize());
+		statistics.put("activeThreads", executor.getActiveCount());
+		statistics.put("queueDepth",    executor.getQueue().size());
+		statistics.put("tasks",         tasks.size());
+
+		return statistics;
+	}
+
+	public static boolean isWorkerThread() {
+		return isWorker.get();
+	}
+
+	// ----- private methods -----
+	private void removeExpiredTasks() {
+
+		final long now = System.currentTimeMillis();
+
+		if (now - lastCleanup > EXPIRY_TIME) {
+
+			lastCleanup = now;
+
+			// thumbnail data that was never claimed
+			tasks.values().removeIf(task -> task.isDone() && now - task.finished > EXPIRY_TIME);
+		}
+	}
+
+	// ----- nested classes -----
+	private static class Task extends FutureTask<Thumbnail> {
+
+		private final List<Runnable> listeners = new ArrayList<>();
+		private volatile long finished         = 0L;
+		private Key key                        = null;
+
+		Task(final Key key, final Callable<Thumbnail> callable) {
+
+			super(callable);
+
+			this.key = key;
+		}
+
+		/**
+		 * Adds a listener that is run in the thread that finishes this task.
+		 *
+		 * @return false if the task is already finished
+		 */
+		synchronized boolean addListener(final Runnable listener) {
+
+			if (finished > 0L) {
+				return false;
+			}
+
+			listeners.add(listener);
+
+			return true;
+		}
+
+		@Override
+		protected void done() {
+
+			final List<Runnable> toRun = new ArrayList<>();
+
+			synchronized (this) {
+
+				finished = System.currentTimeMillis();
+
+				toRun.addAll(listeners);
+				listeners.clear();
+			}
+
+			for (final Runnable listener : toRun) {
+				listener.run();
+			}
+		}
+	}
+
+	private static class Key {
+
+		private long checksum = 0L;
+		private int width     = 0;
+		private int height    = 0;
+		private boolean crop  = false;
+
+		Key(final long checksum, final int width, final int height, final boolean crop) {
+
+			this.checksum = checksum;
+			this.width    = width;
+			this.height   = height;
+			this.crop     = crop;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(checksum, width, height, crop);
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+
+			if (other instanceof Key) {
+
+				final Key key = (Key)other;
+
+				return checksum == key.checksum && width == key.width && height == key.height && crop == key.crop;
+			}
+
+			return false;
+		}
+	}
+}
@@ -77,6 +77,7 @@ import org.structr.schema.json.JsonSchema;
 import org.structr.web.common.ClosingFileOutputStream;
 import org.structr.web.common.FileHelper;
 import org.structr.web.common.RenderContext;
+import org.structr.web.common.ThumbnailWorker;
 import org.structr.web.importer.CSVFileImportJob;
 import org.structr.web.importer.XMLFileImportJob;
 import org.structr.web.property.FileDataProperty;
@@ -357,6 +358,12 @@ public interface File extends AbstractFile, Indexable, Linkable, JavaScriptSourc
 			final FulltextIndexer indexer = StructrApp.getInstance(thisFile.getSecurityContext()).getFulltextIndexer();
 			indexer.addToFulltextIndex(thisFile);
 
+			if (thisFile instanceof Image) {
+
+				// create configured thumbnails in the background
+				ThumbnailWorker.getInstance().pregenerate((Image)thisFile);
+			}
+
 		} catch (FrameworkException fex) {
 
 			logger.warn("Unable to index {}: {}", thisFile, fex.getMessage());
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Future;
 import org.apache.commons.lang3.StringUtils;
 import org.structr.common.ConstantBooleanTrue;
 import org.structr.common.Permission;
@@ -45,6 +46,7 @@ import org.structr.schema.json.JsonSchema.Cascade;
 import org.structr.web.common.FileHelper;
 import org.structr.web.common.ImageHelper;
 import org.structr.web.common.ImageHelper.Thumbnail;
+import org.structr.web.common.ThumbnailWorker;
 import org.structr.web.property.ImageDataProperty;
 import org.structr.web.property.ThumbnailProperty;
 
@@ -380,92 +382,101 @@ public interface Image extends File {
 			return null;
 		}
 
-		if (originalImage.getIsCreatingThumb()) {
+		// thumbnail data is created in the background, concurrent requests for the same thumbnail share the work
+		final ThumbnailWorker worker   = ThumbnailWorker.getInstance();
+		final Future<Thumbnail> future = worker.submit(originalImage, newChecksum, maxWidth, maxHeight, cropToFit);
+		final Thumbnail thumbnailData  = worker.await(securityContext, future);
 
-			logger.debug("Another thumbnail is being created - waiting....");
+		if (!future.isDone()) {
 
-		} else {
+			logger.debug("Thumbnail for {} (w={} h={} crop={}) is not ready yet", new Object[] { originalImage.getName(), maxWidth, maxHeight, cropToFit });
+			return null;
+		}
 
-			try {
+		// only one caller may create the thumbnail node
+		if (!worker.claim(future)) {
 
-				// No thumbnail exists, or thumbnail was too old, so let's create a new one
-				logger.debug("Creating thumbnail for {} (w={} h={} crop={})", new Object[] { getName(), maxWidth, maxHeight, cropToFit });
+			logger.debug("Thumbnail is being created by another request");
+			return null;
+		}
 
-				originalImage.unlockSystemPropertiesOnce();
-				originalImage.setIsCreatingThumb(true);
+		try {
 
-				final App app = StructrApp.getInstance();
+			// No thumbnail exists, or thumbnail was too old, so let's create a new one
+			logger.debug("Creating thumbnail for {} (w={} h={} crop={})", new Object[] { getName(), maxWidth, maxHeight, cropToFit });
 
-				originalImage.unlockSystemPropertiesOnce();
-				originalImage.setProperty(StructrApp.key(File.class, "checksum"), newChecksum);
+			final App app = StructrApp.getInstance();
 
-				final Thumbnail thumbnailData = ImageHelper.createThumbnail(originalImage, maxWidth, maxHeight, cropToFit);
-				if (thumbnailData != null) {
+			originalImage.unlockSystemPropertiesOnce();
+			originalImage.setProperty(StructrApp.key(File.class, "checksum"), newChecksum);
 
-					final Integer tnWidth  = thumbnailData.getWidth();
-					final Integer tnHeight = thumbnailData.getHeight();
-					byte[] data            = null;
+			if (thumbnailData != null) {
 
-					try {
+				final Integer tnWidth  = thumbnailData.getWidth();
+				final Integer tnHeight = thumbnailData.getHeight();
+				byte[] data            = null;
 
-						data = thumbnailData.getBytes();
-						final String thumbnailName = ImageHelper.getThumbnailName(originalImage.getName(), tnWidth, tnHeight);
+				// Update image dimensions
+				final PropertyMap dimensions = new PropertyMap();
+				dimensions.put(StructrApp.key(Image.class, "width"), thumbnailData.getSourceWidth());
+				dimensions.put(StructrApp.key(Image.class, "height"), thumbnailData.getSourceHeight());
+				originalImage.setProperties(originalImage.getSecurityContext(), dimensions);
 
-						// create thumbnail node
-						thumbnail = ImageHelper.createImageNode(securityContext, data, "image/" + Thumbnail.defaultFormat, Image.class, thumbnailName, true);
+				try {
 
-					} catch (IOException ex) {
+					data = thumbnailData.getBytes();
+					final String thumbnailName = ImageHelper.getThumbnailName(originalImage.getName(), tnWidth, tnHeight);
 
-						logger.warn("Could not create thumbnail image for " + getUuid(), ex);
+					// create thumbnail node
+					thumbnail = ImageHelper.createImageNode(securityContext, data, "image/" + Thumbnail.defaultFormat, Image.class, thumbnailName, true);
 
-					}
+				} catch (IOException ex) {
 
-					if (thumbnail != null && data != null) {
-
-						// Create a thumbnail relationship
-						final PropertyMap relProperties = new PropertyMap();
-						relProperties.put(StructrApp.key(Image.class, "width"),                  tnWidth);
-						relProperties.put(StructrApp.key(Image.class, "height"),                 tnHeight);
-						relProperties.put(StructrApp.key(Image.class, "checksum"),               newChecksum);
-
-						app.create(originalImage, thumbnail, thumbnailRel, relProperties);
-
-						final PropertyMap properties = new PropertyMap();
-						properties.put(StructrApp.key(Image.class, "width"),                              tnWidth);
-						properties.put(StructrApp.key(Image.class, "height"),                             tnHeight);
-						properties.put(StructrApp.key(AbstractNode.class, "hidden"),                      originalImage.getProperty(AbstractNode.hidden));
-						properties.put(StructrApp.key(AbstractNode.class, "visibleToAuthenticatedUsers"), originalImage.getProperty(AbstractNode.visibleToAuthenticatedUsers));
-						properties.put(StructrApp.key(AbstractNode.class, "visibleToPublicUsers"),        originalImage.getProperty(AbstractNode.visibleToPublicUsers));
-						properties.put(StructrApp.key(File.class, "size"),                                Long.valueOf(data.length));
-						properties.put(StructrApp.key(AbstractNode.class, "owner"),                       originalImage.getProperty(AbstractNode.owner));
-						properties.put(StructrApp.key(File.class, "parent"),                              originalImage.getThumbnailParentFolder(originalImage.getProperty(StructrApp.key(File.class, "parent")), securityContext));
-						properties.put(StructrApp.key(File.class, "hasParent"),                           originalImage.getProperty(StructrApp.key(Image.class, "hasParent")));
-
-						thumbnail.unlockSystemPropertiesOnce();
-						thumbnail.setProperties(securityContext, properties);
-
-						// Delete outdated thumbnails
-						for (final Image tn : oldThumbnails) {
-							app.delete(tn);
-						}
+					logger.warn("Could not create thumbnail image for " + getUuid(), ex);
 
-					}
-
-				} else {
+				}
 
-					logger.debug("Could not create thumbnail for image {} ({})", getName(), getUuid());
+				if (thumbnail != null && data != null) {
+
+					// Create a thumbnail relationship
+					final PropertyMap relProperties = new PropertyMap();
+					relProperties.put(StructrApp.key(Image.class, "width"),                  tnWidth);
+					relProperties.put(StructrApp.key(Image.class, "height"),                 tnHeight);
+					relProperties.put(StructrApp.key(Image.class, "checksum"),               newChecksum);
+
+					app.create(originalImage, thumbnail, thumbnailRel, relProperties);
+
+					final PropertyMap properties = new PropertyMap();
+					properties.put(StructrApp.key(Image.class, "width"),                              tnWidth);
+					properties.put(StructrApp.key(Image.class, "height"),                             tnHeight);
+					properties.put(StructrApp.key(AbstractNode.class, "hidden"),                      originalImage.getProperty(AbstractNode.hidden));
+					properties.put(StructrApp.key(AbstractNode.class, "visibleToAuthenticatedUsers"), originalImage.getProperty(AbstractNode.visibleToAuthenticatedUsers));
+					properties.put(StructrApp.key(AbstractNode.class, "visibleToPublicUsers"),        originalImage.getProperty(AbstractNode.visibleToPublicUsers));
+					properties.put(StructrApp.key(File.class, "size"),                                Long.valueOf(data.length));
+					properties.put(StructrApp.key(AbstractNode.class, "owner"),                       originalImage.getProperty(AbstractNode.owner));
+					properties.put(StructrApp.key(File.class, "parent"),                              originalImage.getThumbnailParentFolder(originalImage.getProperty(StructrApp.key(File.class, "parent")), securityContext));
+					properties.put(StructrApp.key(File.class, "hasParent"),                           originalImage.getProperty(StructrApp.key(Image.class, "hasParent")));
+
+					thumbnail.unlockSystemPropertiesOnce();
+					thumbnail.setProperties(securityContext, properties);
+
+					// Delete outdated thumbnails
+					for (final Image tn : oldThumbnails) {
+						app.delete(tn);
+					}
 
 				}
 
-				originalImage.unlockSystemPropertiesOnce();
-				originalImage.setIsCreatingThumb(false);
+			} else {
 
-			} catch (FrameworkException fex) {
-
-				logger.warn("Unable to create thumbnail for " + getUuid(), fex);
+				logger.debug("Could not create thumbnail for image {} ({})", getName(), getUuid());
 
 			}
 
+		} catch (FrameworkException fex) {
+
+			logger.warn("Unable to create thumbnail for " + getUuid(), fex);
+
 		}
 
 		return thumbnail;
@@ -28,6 +28,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringUtils;
 import org.structr.api.Predicate;
 import org.structr.api.service.LicenseManager;
@@ -57,6 +59,7 @@ import org.structr.core.entity.Security;
 import org.structr.core.graph.ModificationQueue;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.RelationshipPrefetcher;
 import org.structr.core.property.BooleanProperty;
 import org.structr.core.property.EndNode;
 import org.structr.core.property.GenericProperty;
@@ -70,6 +73,7 @@ import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonReferenceType;
 import org.structr.schema.json.JsonSchema;
 import org.structr.web.common.AsyncBuffer;
+import org.structr.web.common.RenderCache;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
 import org.structr.web.common.StringRenderBuffer;
@@ -122,6 +126,7 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 		type.addBooleanProperty("isDOMNode").setReadOnly(true).addTransformer(ConstantBooleanTrue.class.getName()).setCategory(PAGE_CATEGORY);
 
 		type.addIntegerProperty("domSortPosition").setCategory(PAGE_CATEGORY);
+		type.addIntegerProperty("renderCacheSeconds").setCategory(PAGE_CATEGORY).setHint("Number of seconds for which the rendered output of this element is cached on the server. The output is cached separately for anonymous users and for each user, and for each locale, request path and set of request parameters. It is removed from the cache as soon as one of the objects it was rendered from is modified, or an object of a type it queried is created or deleted.");
 
 		type.addPropertyGetter("restQuery", String.class);
 		type.addPropertyGetter("cypherQuery", String.class);
@@ -130,6 +135,7 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 		type.addPropertyGetter("dataKey", String.class);
 		type.addPropertyGetter("showConditions", String.class);
 		type.addPropertyGetter("hideConditions", String.class);
+		type.addPropertyGetter("renderCacheSeconds", Integer.class);
 
 		type.addPropertyGetter("parent", DOMNode.class);
 		type.addPropertyGetter("children", Iterable.class);
@@ -312,7 +318,7 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 	}));
 
 	public static final String[] rawProps = new String[] {
-		"dataKey", "restQuery", "cypherQuery", "xpathQuery", "functionQuery", "flow", "hideOnIndex", "hideOnDetail", "showForLocales", "hideForLocales", "showConditions", "hideConditions"
+		"dataKey", "restQuery", "cypherQuery", "xpathQuery", "functionQuery", "flow", "hideOnIndex", "hideOnDetail", "showForLocales", "hideForLocales", "showConditions", "hideConditions", "renderCacheSeconds"
 	};
 
 	boolean isSynced();
@@ -338,6 +344,7 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 	String getContent(final RenderContext.EditMode editMode) throws FrameworkException;
 	String getDataHash();
 	String getDataKey();
+	Integer getRenderCacheSeconds();
 	String getPositionPath();
 
 	String getCypherQuery();
@@ -488,7 +495,13 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 		final Iterable<GraphObject> listSource = renderContext.getListSource();
 		if (listSource != null) {
 
-			for (final Object dataObject : listSource) {
+			// load the relationships that are used in the template for each page of data objects at once
+			final Set<String> names              = getReferencedPropertyNames(node, dataKey);
+			final Iterator<GraphObject> iterator = RelationshipPrefetcher.iterator(listSource.iterator(), obj -> getPropertyKeysForNames(obj.getClass(), names));
+
+			while (iterator.hasNext()) {
+
+				final Object dataObject = iterator.next();
 
 				// make current data object available in renderContext
 				if (dataObject instanceof GraphObject) {
@@ -507,6 +520,68 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 		}
 	}
 
+	/**
+	 * Returns the names of the properties of the data object with the given
+	 * data key that are referenced in the given node and its children,
+	 * including the data keys of nested repeaters.
+	 *
+	 * @param node
+	 * @param dataKey
+	 * @return the referenced property names
+	 */
+	public static Set<String> getReferencedPropertyNames(final DOMNode node, final String dataKey) {
+
+		final Pattern pattern    = Pattern.compile("\\b" + Pattern.quote(dataKey) + "\\.(\\w+)");
+		final Set<DOMNode> nodes = getAllChildNodes(node);
+		final Set<String> names  = new LinkedHashSet<>();
+
+		nodes.add(node);
+
+		for (final DOMNode domNode : nodes) {
+
+			final org.structr.api.graph.Node dbNode = domNode.getNode();
+
+			for (final String key : dbNode.getPropertyKeys()) {
+
+				final Object value = dbNode.getProperty(key);
+				if (value instanceof String) {
+
+					final Matcher matcher = pattern.matcher((String)value);
+
+					while (matcher.find()) {
+
+						names.add(matcher.group(1));
+					}
+				}
+			}
+
+			// nested repeaters can read a property of the current data object directly
+			final String subKey = domNode.getDataKey();
+			if (domNode != node && StringUtils.isNotBlank(subKey)) {
+
+				names.add(subKey);
+			}
+		}
+
+		return names;
+	}
+
+	public static List<PropertyKey> getPropertyKeysForNames(final Class type, final Set<String> names) {
+
+		final List<PropertyKey> keys = new ArrayList<>();
+
+		for (final String name : names) {
+
+			final PropertyKey key = StructrApp.key(type, name, false);
+			if (key != null) {
+
+				keys.add(key);
+			}
+		}
+
+		return keys;
+	}
+
 	public static Template getClosestTemplate(final DOMNode thisNode, final Page page) {
 
 		DOMNode node = thisNode;
@@ -1498,6 +1573,50 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 			return;
 		}
 
+		final int cacheSeconds = RenderCache.getCacheSeconds(thisNode, renderContext);
+		if (cacheSeconds > 0) {
+
+			renderCached(thisNode, renderContext, depth, cacheSeconds);
+
+		} else {
+
+			renderWithData(thisNode, renderContext, depth, isAdminOnlyEditMode);
+		}
+	}
+
+	static void renderCached(final DOMNode thisNode, final RenderContext renderContext, final int depth, final int cacheSeconds) throws FrameworkException {
+
+		final RenderCache cache        = RenderCache.getInstance();
+		final String key               = RenderCache.createKey(thisNode, renderContext, depth);
+		final RenderCache.Entry cached = cache.get(key);
+
+		if (cached != null) {
+
+			cached.apply(renderContext);
+
+		} else {
+
+			final RenderCache.Recording recording = cache.startRecording(renderContext, thisNode);
+
+			try {
+
+				renderWithData(thisNode, renderContext, depth, false);
+
+			} finally {
+
+				recording.stop();
+			}
+
+			cache.put(key, recording, cacheSeconds);
+		}
+	}
+
+	static void renderWithData(final DOMNode thisNode, final RenderContext renderContext, final int depth, final boolean isAdminOnlyEditMode) throws FrameworkException {
+
+		final SecurityContext securityContext = renderContext.getSecurityContext();
+		final GraphObject details             = renderContext.getDetailsDataObject();
+		final boolean detailMode              = details != null;
+
 		if (isAdminOnlyEditMode) {
 
 			thisNode.renderContent(renderContext, depth);
@@ -1563,7 +1682,12 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 
 									if (value instanceof Iterable) {
 
-										for (final Object o : ((Iterable)value)) {
+										final Set<String> names = getReferencedPropertyNames(thisNode, subKey);
+										final Iterator iterator = RelationshipPrefetcher.iterator(((Iterable)value).iterator(), obj -> getPropertyKeysForNames(obj.getClass(), names));
+
+										while (iterator.hasNext()) {
+
+											final Object o = iterator.next();
 
 											if (o instanceof GraphObject) {
 
@@ -39,6 +39,8 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Principal;
 import org.structr.core.entity.Relation;
+import org.structr.core.graph.ChunkedNodeCreator;
+import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyMap;
 import org.structr.module.StructrModule;
@@ -156,17 +158,23 @@ public class CSVFileImportJob extends FileImportJob {
 
 					try (final Tx tx = app.tx()) {
 
-						final long chunkStartTime = System.currentTimeMillis();
+						final long chunkStartTime                           = System.currentTimeMillis();
+						final ChunkedNodeCreator<NodeInterface> nodeCreator = new ChunkedNodeCreator<>(threadContext, targetEntityType);
 
 						while (iterator.hasNext() && count++ < commitInterval) {
 
 							final JsonInput input = iterator.next();
 
+							// transformation scripts can look up nodes of preceding rows
+							if (!transforms.isEmpty()) {
+								nodeCreator.flush();
+							}
+
 							mapper.transformInput(threadContext, targetEntityType, input);
 
 							if (currentImportType.equals(IMPORT_TYPE.NODE)) {
 
-								app.create(targetEntityType, PropertyMap.inputTypeToJavaType(threadContext, targetEntityType, input));
+								nodeCreator.add(targetEntityType, input);
 
 							} else {
 
@@ -179,6 +187,8 @@ public class CSVFileImportJob extends FileImportJob {
 							overallCount++;
 						}
 
+						nodeCreator.flush();
+
 						tx.success();
 
 						chunks++;
@@ -36,8 +36,8 @@ import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Principal;
+import org.structr.core.graph.ChunkedNodeCreator;
 import org.structr.core.graph.Tx;
-import org.structr.core.property.PropertyMap;
 import org.structr.module.StructrModule;
 import org.structr.module.xml.XMLModule;
 import org.structr.rest.common.XMLHandler;
@@ -123,12 +123,16 @@ public class XMLFileImportJob extends FileImportJob {
 						// make transaction available in context
 						threadContext.setAttribute("currentTransaction", tx);
 
+						final ChunkedNodeCreator<AbstractNode> nodeCreator = new ChunkedNodeCreator<>(threadContext, AbstractNode.class);
+
 						while (iterator.hasNext() && ++count <= batchSize) {
 
-							app.create(AbstractNode.class, PropertyMap.inputTypeToJavaType(threadContext, iterator.next()));
+							nodeCreator.add(iterator.next());
 							overallCount++;
 						}
 
+						nodeCreator.flush();
+
 						// tx might have changed, reload from context
 						tx = (Tx)threadContext.getAttribute("currentTransaction");
 						tx.success();
@@ -1205,6 +1205,7 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 		if (node.isVisibleToAuthenticatedUsers()) { putIfNotNull(config, "visibleToAuthenticatedUsers", true); }
 
 		putIfNotNull(config, "contentType",             node.getProperty(StructrApp.key(Content.class, "contentType")));
+		putIfNotNull(config, "renderCacheSeconds",      node.getProperty(StructrApp.key(DOMNode.class, "renderCacheSeconds")));
 
 		if (node instanceof Template) {
 
@@ -21,28 +21,36 @@ package org.structr.web.servlet;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Enumeration;
 import java.util.GregorianCalendar;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 import java.util.TimeZone;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.WriteListener;
@@ -53,6 +61,9 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateUtils;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.server.InclusiveByteRange;
+import org.eclipse.jetty.util.MultiPartOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.config.Settings;
@@ -86,8 +97,10 @@ import org.structr.schema.action.ActionContext;
 import org.structr.util.Base64;
 import org.structr.web.auth.UiAuthenticator;
 import org.structr.web.common.FileHelper;
+import org.structr.web.common.RenderCache;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.common.StreamingRenderBuffer;
 import org.structr.web.common.StringRenderBuffer;
 import org.structr.web.entity.AbstractFile;
 import org.structr.web.entity.File;
@@ -118,7 +131,9 @@ public class HtmlServlet extends AbstractServletBase implements HttpServiceServl
 	public static final String OBJECT_RESOLUTION_PROPERTIES = "HtmlServlet.resolveProperties";
 
 	private static final ThreadLocalMatcher threadLocalUUIDMatcher = new ThreadLocalMatcher("[a-fA-F0-9]{32}");
-	private static final ExecutorService threadPool                = Executors.newCachedThreadPool();
+	private static final long MIN_MAPPED_FILE_REGION               = 65536L;
+	private static final long MAX_MAPPED_FILE_REGION               = 67108864L;
+	private static ThreadPoolExecutor renderExecutor               = null;
 
 	private final Pattern FilenameCleanerPattern                      = Pattern.compile("[\n\r]", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
 	private final StructrHttpServiceConfig config                     = new StructrHttpServiceConfig();
@@ -458,9 +473,14 @@ public class HtmlServlet extends AbstractServletBase implements HttpServiceServl
 						setCustomResponseHeaders(response);
 
 						final boolean createsRawData = rootElement.getProperty(StructrApp.key(Page.class, "pageCreatesRawData"));
+						final int cacheSeconds       = (rootElement instanceof Page && !dontCache) ? RenderCache.getCacheSeconds(rootElement, renderContext) : 0;
+
+						if (cacheSeconds > 0) {
+
+							renderCachedOutput(response, renderContext, rootElement, cacheSeconds);
 
 						// async or not?
-						if (isAsync && !createsRawData) {
+						} else if (isAsync && !createsRawData) {
 
 							renderAsyncOutput(request, response, app, renderContext, rootElement);
 
@@ -812,12 +832,19 @@ public class HtmlServlet extends AbstractServletBase implements HttpServiceServl
 	}
 
 	protected void renderAsyncOutput(HttpServletRequest request, HttpServletResponse response, App app, RenderContext renderContext, DOMNode rootElement) throws IOException {
-		final AsyncContext async = request.startAsync();
-		final ServletOutputStream out = async.getResponse().getOutputStream();
-		final AtomicBoolean finished = new AtomicBoolean(false);
-		final DOMNode rootNode = rootElement;
 
-		threadPool.submit(new Runnable() {
+		final AsyncContext async             = request.startAsync();
+		final AsyncOutputWriter outputWriter = new AsyncOutputWriter(async, request, renderContext);
+		final StreamingRenderBuffer buffer   = outputWriter.getBuffer();
+		final DOMNode rootNode               = rootElement;
+
+		renderContext.setBuffer(buffer);
+
+		// start output write listener before rendering starts
+		async.addListener(outputWriter);
+		async.getResponse().getOutputStream().setWriteListener(outputWriter);
+
+		getRenderExecutor().submit(new Runnable() {
 
 			@Override
 			public void run() {
@@ -826,7 +853,6 @@ public class HtmlServlet extends AbstractServletBase implements HttpServiceServl
 
 					// render
 					rootNode.render(renderContext, 0);
-					finished.set(true);
 
 					tx.success();
 
@@ -838,81 +864,59 @@ public class HtmlServlet extends AbstractServletBase implements HttpServiceServl
 					try {
 
 						response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-						finished.set(true);
 
-					} catch (IOException ex) {
+					} catch (IOException | IllegalStateException ex) {
 						logger.warn("", ex);
 					}
+
+				} finally {
+
+					// signals the write side, which completes the response
+					buffer.finish();
 				}
 			}
 
 		});
+	}
 
-		// start output write listener
-		out.setWriteListener(new WriteListener() {
-
-			@Override
-			public void onWritePossible() throws IOException {
-
-				try {
-
-					final Queue<String> queue = renderContext.getBuffer().getQueue();
-					while (out.isReady()) {
-
-						String buffer = null;
+	protected void renderCachedOutput(final HttpServletResponse response, final RenderContext renderContext, final DOMNode rootElement, final int cacheSeconds) throws FrameworkException, IOException {
 
-						synchronized (queue) {
-							buffer = queue.poll();
-						}
+		final RenderCache cache        = RenderCache.getInstance();
+		final String key               = RenderCache.createKey(rootElement, renderContext, 0);
+		final RenderCache.Entry cached = cache.get(key);
 
-						if (buffer != null) {
+		if (cached != null) {
 
-							out.print(buffer);
+			final ServletOutputStream out = response.getOutputStream();
 
-						} else {
+			out.write(cached.getBytes());
+			out.flush();
+			out.close();
 
-							if (finished.get()) {
+		} else {
 
-								async.complete();
+			final StringRenderBuffer buffer = new StringRenderBuffer();
+			renderContext.setBuffer(buffer);
 
-								// prevent this block from being called again
-								break;
-							}
+			final RenderCache.Recording recording = cache.startRecording(renderContext, rootElement);
 
-							Thread.sleep(1);
-						}
-					}
-
-				} catch (EofException ee) {
+			try {
 
-					final SecurityContext sc = renderContext.getSecurityContext();
-					final Principal user     = sc.getUser(false);
-					final String username    = (user != null) ? user.getName() : "anonymous";
+				// render
+				rootElement.render(renderContext, 0);
 
-					logger.warn("Could not flush the response body content to the client, probably because the network connection was terminated.");
-					logger.warn(" -> From: {} | URI: {} | Query: {} | User: {}", request.getRemoteAddr(), request.getRequestURI(), request.getQueryString(), username);
+			} finally {
 
-				} catch (IOException | InterruptedException t) {
-					//logger.warn("Unexpected exception", t);
-				}
+				recording.stop();
 			}
 
-			@Override
-			public void onError(Throwable t) {
-				if (t instanceof EofException) {
-
-					final SecurityContext sc = renderContext.getSecurityContext();
-					final Principal user     = sc.getUser(false);
-					final String username    = (user != null) ? user.getName() : "anonymous";
-
-					logger.warn("Could not flush the response body content to the client, probably because the network connection was terminated.");
-					logger.warn(" -> From: {} | URI: {} | Query: {} | User: {}", request.getRemoteAddr(), request.getRequestURI(), request.getQueryString(), username);
-
-				} else {
-					//logger.warn("Unexpected exception", t);
-				}
+			// don't cache redirects or errors
+			if (response.getStatus() == HttpServletResponse.SC_OK) {
+				cache.put(key, recording, cacheSeconds);
 			}
-		});
+
+			writeOutputSteam(response, buffer);
+		}
 	}
 
 	protected void writeOutputSteam(HttpServletResponse response, StringRenderBuffer buffer) throws IOException {
@@ -1486,9 +1490,31 @@ public class HtmlServlet extends AbstractServletBase implements HttpServiceServl
 			callbackMap.put("requestedFileName", downloadAsFilename);
 		}
 
-		boolean dontCache = file.getProperty(StructrApp.key(File.class, "dontCache"));
+		final java.io.File localFile = getLocalFile(file);
+		final String etag            = localFile != null ? getETag(file) : null;
+		boolean dontCache            = file.getProperty(StructrApp.key(File.class, "dontCache"));
+		boolean notModified          = false;
+
+		if (!EditMode.WIDGET.equals(edit)) {
+
+			notModified = notModifiedSince(request, response, file, dontCache);
+
+			if (etag != null) {
+
+				response.setHeader("ETag", etag);
+
+				// If-None-Match takes precedence over If-Modified-Since
+				final String ifNoneMatch = request.getHeader("If-None-Match");
+				if (ifNoneMatch != null) {
 
-		if (!EditMode.WIDGET.equals(edit) && notModifiedSince(request, response, file, dontCache)) {
+					notModified = matchesETag(ifNoneMatch, etag);
+
+					response.setStatus(notModified ? HttpServletResponse.SC_NOT_MODIFIED : HttpServletResponse.SC_OK);
+				}
+			}
+		}
+
+		if (notModified) {
 
 			out.flush();
 			out.close();
@@ -1509,9 +1535,14 @@ public class HtmlServlet extends AbstractServletBase implements HttpServiceServl
 
 				callbackMap.put("statusCode", HttpServletResponse.SC_OK);
 
+			} else if (localFile != null) {
+
+				// 2b: send file from local filesystem without copying it through the heap
+				callbackMap.put("statusCode", sendLocalFile(file, localFile, etag, request, response, out));
+
 			} else {
 
-				// 2b: stream file to response
+				// 2c: stream file to response
 				final InputStream in = file.getInputStream();
 				final String contentType = file.getContentType();
 
@@ -1606,6 +1637,229 @@ public class HtmlServlet extends AbstractServletBase implements HttpServiceServl
 		}
 	}
 
+	/**
+	 * Sends the contents of the given file from the local filesystem. Files
+	 * are written to the response from memory-mapped regions, so the data
+	 * is not copied through heap buffers. Multiple ranges are sent as
+	 * multipart/byteranges.
+	 *
+	 * @return the status code of the response
+	 */
+	private int sendLocalFile(final File file, final java.io.File localFile, final String etag, final HttpServletRequest request, final HttpServletResponse response, final ServletOutputStream out) throws IOException {
+
+		final String contentType = file.getContentType() != null ? file.getContentType() : "application/octet-stream";
+		int statusCode           = HttpServletResponse.SC_OK;
+
+		try (final FileChannel channel = FileChannel.open(localFile.toPath(), StandardOpenOption.READ)) {
+
+			final long length                     = channel.size();
+			final List<InclusiveByteRange> ranges = getRequestedRanges(request, etag, file, length);
+
+			// Tell the client that we support byte ranges
+			response.setHeader("Accept-Ranges", "bytes");
+
+			if (ranges == null) {
+
+				response.setStatus(HttpServletResponse.SC_OK);
+				response.setContentType(contentType);
+				response.setContentLengthLong(length);
+
+				sendFileRegion(out, channel, 0L, length);
+
+			} else if (ranges.isEmpty()) {
+
+				statusCode = HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+
+				response.setStatus(statusCode);
+				response.setHeader("Content-Range", InclusiveByteRange.to416HeaderRangeString(length));
+				response.setContentLength(0);
+
+			} else if (ranges.size() == 1) {
+
+				final InclusiveByteRange range = ranges.get(0);
+
+				statusCode = HttpServletResponse.SC_PARTIAL_CONTENT;
+
+				response.setStatus(statusCode);
+				response.setContentType(contentType);
+				response.setHeader("Content-Range", range.toHeaderRangeString(length));
+				response.setContentLengthLong(range.getSize());
+
+				sendFileRegion(out, channel, range.getFirst(), range.getSize());
+
+			} else {
+
+				final MultiPartOutputStream multi = new MultiPartOutputStream(out);
+
+				statusCode = HttpServletResponse.SC_PARTIAL_CONTENT;
+
+				response.setStatus(statusCode);
+				response.setContentType("multipart/byteranges; boundary=" + multi.getBoundary());
+
+				for (final InclusiveByteRange range : ranges) {
+
+					multi.startPart(contentType, new String[] { "Content-Range: " + range.toHeaderRangeString(length) });
+
+					// part headers are written unbuffered, so the content can bypass the multipart stream
+					sendFileRegion(out, channel, range.getFirst(), range.getSize());
+				}
+
+				multi.close();
+			}
+
+			out.flush();
+
+		} catch (EofException eofex) {
+
+			// client has closed the connection
+
+		} catch (IOException ioex) {
+
+			logger.debug("Unable to send file {}: {}", localFile, ioex.getMessage());
+
+		} finally {
+
+			try {
+
+				out.close();
+
+			} catch (Throwable t) {
+			}
+		}
+
+		return statusCode;
+	}
+
+	/**
+	 * Returns the satisfiable ranges of the request, an empty list if no
+	 * range is satisfiable, or null if the whole file is to be sent.
+	 */
+	private List<InclusiveByteRange> getRequestedRanges(final HttpServletRequest request, final String etag, final File file, final long length) {
+
+		final Enumeration<String> rangeHeaders = request.getHeaders("Range");
+		if (rangeHeaders == null || !rangeHeaders.hasMoreElements()) {
+
+			return null;
+		}
+
+		// send the whole file if it has changed since the client fetched the first part
+		final String ifRange = request.getHeader("If-Range");
+		if (ifRange != null) {
+
+			if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+
+				if (!ifRange.equals(etag)) {
+					return null;
+				}
+
+			} else {
+
+				final long ifRangeDate  = request.getDateHeader("If-Range");
+				final Date lastModified = file.getLastModifiedDate();
+
+				if (lastModified == null || ifRangeDate < 0 || DateUtils.round(lastModified, Calendar.SECOND).getTime() != ifRangeDate) {
+					return null;
+				}
+			}
+		}
+
+		final List<InclusiveByteRange> ranges = InclusiveByteRange.satisfiableRanges(rangeHeaders, length);
+		if (ranges == null) {
+
+			return Collections.emptyList();
+		}
+
+		return ranges;
+	}
+
+	private void sendFileRegion(final ServletOutputStream out, final FileChannel channel, final long start, final long length) throws IOException {
+
+		long position  = start;
+		long remaining = length;
+
+		if (out instanceof HttpOutput && length >= MIN_MAPPED_FILE_REGION) {
+
+			final HttpOutput httpOutput = (HttpOutput)out;
+
+			while (remaining > 0) {
+
+				final long size = Math.min(remaining, MAX_MAPPED_FILE_REGION);
+
+				// the connector writes the mapped region to the socket directly
+				httpOutput.write(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+
+				position  += size;
+				remaining -= size;
+			}
+
+		} else {
+
+			final WritableByteChannel target = Channels.newChannel(out);
+
+			while (remaining > 0) {
+
+				final long count = channel.transferTo(position, remaining, target);
+				if (count <= 0) {
+
+					throw new EofException("Unexpected end of file");
+				}
+
+				position  += count;
+				remaining -= count;
+			}
+		}
+	}
+
+	/**
+	 * Returns the file on disk if the given file is delivered unmodified
+	 * from the local filesystem, or null.
+	 */
+	private static java.io.File getLocalFile(final File file) {
+
+		// the contents of template files are evaluated
+		if (file.isTemplate()) {
+			return null;
+		}
+
+		final java.io.File fileOnDisk = file.getFileOnDisk(false);
+		if (fileOnDisk != null && fileOnDisk.isFile() && fileOnDisk.canRead()) {
+
+			return fileOnDisk;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns a strong ETag for the given file, derived from the checksum
+	 * of its contents.
+	 */
+	private static String getETag(final File file) {
+
+		final Long checksum = file.getChecksum();
+		if (checksum != null) {
+
+			return "\"" + Long.toHexString(checksum) + "\"";
+		}
+
+		return null;
+	}
+
+	private static boolean matchesETag(final String header, final String etag) {
+
+		for (final String value : header.split(",")) {
+
+			final String candidate = value.trim();
+
+			// weak comparison for If-None-Match
+			if ("*".equals(candidate) || etag.equals(candidate) || etag.equals(StringUtils.removeStart(candidate, "W/"))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	/**
 	 * Check if the given page is visible for the requested site defined by
 	 * a hostname and a port.
@@ -1843,6 +2097,38 @@ public class HtmlServlet extends AbstractServletBase implements HttpServiceServl
 
 		return null;
 	}
+	private static synchronized ThreadPoolExecutor getRenderExecutor() {
+
+		if (renderExecutor == null) {
+
+			final int threads                = Math.max(1, Settings.HtmlRenderThreads.getValue());
+			final AtomicInteger threadNumber = new AtomicInteger();
+
+			renderExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+
+				final Thread thread = new Thread(r, "HtmlServlet-Render-" + threadNumber.incrementAndGet());
+
+				thread.setDaemon(true);
+
+				return thread;
+			});
+
+			renderExecutor.allowCoreThreadTimeOut(true);
+		}
+
+		return renderExecutor;
+	}
+
+	private static void logConnectionTerminated(final HttpServletRequest request, final RenderContext renderContext) {
+
+		final SecurityContext sc = renderContext.getSecurityContext();
+		final Principal user     = sc.getUser(false);
+		final String username    = (user != null) ? user.getName() : "anonymous";
+
+		logger.warn("Could not flush the response body content to the client, probably because the network connection was terminated.");
+		logger.warn(" -> From: {} | URI: {} | Query: {} | User: {}", request.getRemoteAddr(), request.getRequestURI(), request.getQueryString(), username);
+	}
+
 	// ----- nested classes -----
 	private enum AuthState {
 		NoBasicAuth, MustAuthenticate, Authenticated
@@ -1881,4 +2167,140 @@ public class HtmlServlet extends AbstractServletBase implements HttpServiceServl
 			return rootElement;
 		}
 	}
+
+	/**
+	 * The write side of an asynchronous page response. Output is written
+	 * without blocking, either when the container signals that the stream
+	 * is writable, or when the render thread signals that new output is
+	 * available. If the stream is not ready, the container calls
+	 * onWritePossible as soon as it is, so no thread is waiting in between.
+	 */
+	private static class AsyncOutputWriter implements WriteListener, AsyncListener, Runnable {
+
+		private final AtomicBoolean completed       = new AtomicBoolean(false);
+		private final Object writeLock              = new Object();
+		private StreamingRenderBuffer.Chunk pending = null;
+		private StreamingRenderBuffer buffer        = null;
+		private HttpServletRequest request          = null;
+		private RenderContext renderContext         = null;
+		private AsyncContext async                  = null;
+		private ServletOutputStream out             = null;
+
+		public AsyncOutputWriter(final AsyncContext async, final HttpServletRequest request, final RenderContext renderContext) throws IOException {
+
+			this.buffer        = new StreamingRenderBuffer(Settings.HtmlRenderBufferSize.getValue(), this);
+			this.out           = async.getResponse().getOutputStream();
+			this.renderContext = renderContext;
+			this.request       = request;
+			this.async         = async;
+		}
+
+		public StreamingRenderBuffer getBuffer() {
+			return buffer;
+		}
+
+		// ----- interface Runnable -----
+		@Override
+		public void run() {
+			writeAvailableOutput();
+		}
+
+		// ----- interface WriteListener -----
+		@Override
+		public void onWritePossible() throws IOException {
+			writeAvailableOutput();
+		}
+
+		@Override
+		public void onError(final Throwable t) {
+
+			buffer.abort();
+			releasePending();
+
+			if (t instanceof EofException) {
+
+				logConnectionTerminated(request, renderContext);
+
+			} else {
+				//logger.warn("Unexpected exception", t);
+			}
+		}
+
+		// ----- interface AsyncListener -----
+		@Override
+		public void onComplete(final AsyncEvent event) throws IOException {
+			releasePending();
+		}
+
+		@Override
+		public void onTimeout(final AsyncEvent event) throws IOException {
+			buffer.abort();
+		}
+
+		@Override
+		public void onError(final AsyncEvent event) throws IOException {
+
+			buffer.abort();
+			releasePending();
+		}
+
+		@Override
+		public void onStartAsync(final AsyncEvent event) throws IOException {
+		}
+
+		// ----- private methods -----
+		private void writeAvailableOutput() {
+
+			synchronized (writeLock) {
+
+				try {
+
+					while (!completed.get() && out.isReady()) {
+
+						// the container can write asynchronously from the array of the
+						// previous chunk until the stream is ready again
+						releasePending();
+
+						final StreamingRenderBuffer.Chunk chunk = buffer.poll();
+						if (chunk != null) {
+
+							pending = chunk;
+
+							out.write(chunk.getData(), 0, chunk.getLength());
+
+						} else {
+
+							if (buffer.isDone() && completed.compareAndSet(false, true)) {
+								async.complete();
+							}
+
+							// wait for the next signal from the renderer
+							break;
+						}
+					}
+
+				} catch (EofException ee) {
+
+					buffer.abort();
+					logConnectionTerminated(request, renderContext);
+
+				} catch (IOException | IllegalStateException t) {
+
+					buffer.abort();
+				}
+			}
+		}
+
+		private void releasePending() {
+
+			synchronized (writeLock) {
+
+				if (pending != null) {
+
+					buffer.release(pending);
+					pending = null;
+				}
+			}
+		}
+	}
 }
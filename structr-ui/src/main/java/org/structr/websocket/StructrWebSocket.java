@@ -21,12 +21,17 @@ package org.structr.websocket;
 import com.google.gson.Gson;
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
 import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.config.Settings;
@@ -60,6 +65,7 @@ public class StructrWebSocket implements WebSocketListener {
 	private static final Logger logger = LoggerFactory.getLogger(StructrWebSocket.class.getName());
 	private static final Map<String, Class> commandSet = new LinkedHashMap<>();
 
+	private final Deque<String> outboundQueue      = new ArrayDeque<>();
 	private Session session                        = null;
 	private Gson gson                              = null;
 	private HttpServletRequest request             = null;
@@ -70,6 +76,7 @@ public class StructrWebSocket implements WebSocketListener {
 	private String pagePath                        = null;
 	private Console console                        = null;
 	private Boolean timedOut                       = false;
+	private boolean sending                        = false;
 
 	public StructrWebSocket() {}
 
@@ -348,7 +355,12 @@ public class StructrWebSocket implements WebSocketListener {
 				securityContext.clearCustomView();
 			}
 
-			session.getRemote().sendString(msg);
+			if (!sendAsync(msg)) {
+
+				// the client would miss this response, so it has to reconnect and reload
+				logger.warn("Unable to send websocket message to remote client, outbound queue is full. Closing connection.");
+				close(StatusCode.POLICY_VIOLATION, "Client too slow");
+			}
 
 			tx.success();
 
@@ -359,6 +371,83 @@ public class StructrWebSocket implements WebSocketListener {
 
 	}
 
+	// ----- private methods -----
+	private void sendQueuedMessages() {
+
+		while (true) {
+
+			final String message;
+
+			synchronized (outboundQueue) {
+
+				message = outboundQueue.poll();
+				if (message == null) {
+
+					sending = false;
+					return;
+				}
+			}
+
+			final Session currentSession = session;
+			if (currentSession == null) {
+
+				clearOutboundQueue();
+				return;
+			}
+
+			// 0 = sending, 1 = completed while sending, 2 = sendString has returned before completion
+			final AtomicInteger state = new AtomicInteger(0);
+
+			try {
+
+				currentSession.getRemote().sendString(message, new WriteCallback() {
+
+					@Override
+					public void writeFailed(final Throwable t) {
+
+						logger.debug("Unable to send websocket message to remote client: {}", t.getMessage());
+
+						clearOutboundQueue();
+						close(StatusCode.SERVER_ERROR, "Unable to send message");
+					}
+
+					@Override
+					public void writeSuccess() {
+
+						// continue in this thread if the sending thread has already returned
+						if (!state.compareAndSet(0, 1)) {
+							sendQueuedMessages();
+						}
+					}
+				});
+
+			} catch (Throwable t) {
+
+				logger.debug("Unable to send websocket message to remote client: {}", t.getMessage());
+
+				clearOutboundQueue();
+				close(StatusCode.SERVER_ERROR, "Unable to send message");
+
+				return;
+			}
+
+			if (state.compareAndSet(0, 2)) {
+
+				// the write callback sends the next message
+				return;
+			}
+		}
+	}
+
+	private void clearOutboundQueue() {
+
+		synchronized (outboundQueue) {
+
+			outboundQueue.clear();
+			sending = false;
+		}
+	}
+
 	// ----- file handling -----
 	public void createFileUploadHandler(File file) {
 
@@ -473,6 +562,66 @@ public class StructrWebSocket implements WebSocketListener {
 
 	}
 
+	/**
+	 * Queues the given message for sending without blocking the caller.
+	 * Messages are sent one after another, in the order in which they
+	 * were queued.
+	 *
+	 * @param message
+	 * @return false if the outbound queue of this client is full
+	 */
+	public boolean sendAsync(final String message) {
+
+		synchronized (outboundQueue) {
+
+			if (outboundQueue.size() >= Settings.WebsocketOutboundQueueSize.getValue()) {
+				return false;
+			}
+
+			outboundQueue.add(message);
+
+			if (sending) {
+				return true;
+			}
+
+			sending = true;
+		}
+
+		sendQueuedMessages();
+
+		return true;
+	}
+
+	/**
+	 * Closes the connection, e.g. because a message could not be sent.
+	 * The client reconnects and reloads its state instead of silently
+	 * missing messages.
+	 *
+	 * @param statusCode
+	 * @param reason
+	 */
+	public void close(final int statusCode, final String reason) {
+
+		final Session currentSession = session;
+		if (currentSession != null) {
+
+			try {
+
+				currentSession.close(statusCode, reason);
+
+			} catch (Throwable t) {
+				logger.debug("Error closing websocket session.", t);
+			}
+		}
+	}
+
+	public int getOutboundQueueSize() {
+
+		synchronized (outboundQueue) {
+			return outboundQueue.size();
+		}
+	}
+
 	public Session getSession() {
 
 		return session;
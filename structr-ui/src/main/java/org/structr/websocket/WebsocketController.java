@@ -19,22 +19,29 @@
 package org.structr.websocket;
 
 import com.google.gson.Gson;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.websocket.api.Session;
-import org.eclipse.jetty.websocket.api.WebSocketException;
+import org.eclipse.jetty.websocket.api.StatusCode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.Predicate;
+import org.structr.api.config.Settings;
 import org.structr.api.graph.RelationshipType;
 import org.structr.api.util.Iterables;
 import org.structr.common.AccessControllable;
@@ -42,11 +49,13 @@ import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.StructrTransactionListener;
+import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Group;
 import org.structr.core.graph.ModificationEvent;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 import org.structr.web.entity.AbstractFile;
@@ -64,12 +73,40 @@ public class WebsocketController implements StructrTransactionListener {
 	private static final Logger logger                 = LoggerFactory.getLogger(WebsocketController.class.getName());
 	private static final Set<String> BroadcastCommands = new HashSet<>(Arrays.asList(new String[] { "UPDATE", "ADD", "CREATE" } ));
 
-	private final Set<StructrWebSocket> clients = ConcurrentHashMap.newKeySet();
-	private Gson gson                           = null;
+	private final BlockingQueue<Broadcast> broadcastQueue = new LinkedBlockingQueue<>();
+	private final Set<StructrWebSocket> clients           = ConcurrentHashMap.newKeySet();
+	private volatile boolean running                      = true;
+	private Thread dispatcher                             = null;
+	private Gson gson                                     = null;
 
 	public WebsocketController(final Gson gson) {
 
-		this.gson = gson;
+		this.gson       = gson;
+		this.dispatcher = new Thread(this::dispatchBroadcasts, "WebsocketBroadcastDispatcher");
+
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	/**
+	 * Stops the broadcast dispatcher. Broadcasts that were not sent yet
+	 * are discarded.
+	 */
+	public void shutdown() {
+
+		running = false;
+
+		dispatcher.interrupt();
+
+		try {
+
+			dispatcher.join(1000);
+
+		} catch (InterruptedException iex) {
+			Thread.currentThread().interrupt();
+		}
+
+		broadcastQueue.clear();
 	}
 
 	public void registerClient(final StructrWebSocket client) {
@@ -89,6 +126,14 @@ public class WebsocketController implements StructrTransactionListener {
 
 	private void broadcast(final WebSocketMessage webSocketData, final Predicate<String> receiverSessionPredicate) {
 
+		// broadcasting happens asynchronously, so the committing thread is not blocked
+		if (running) {
+			broadcastQueue.add(new Broadcast(webSocketData, receiverSessionPredicate));
+		}
+	}
+
+	private void send(final WebSocketMessage webSocketData, final Predicate<String> receiverSessionPredicate) {
+
 		// session must be valid to be received by the client
 		webSocketData.setSessionValid(true);
 
@@ -97,9 +142,8 @@ public class WebsocketController implements StructrTransactionListener {
 		final List<StructrWebSocket> clientsToRemove = new LinkedList<>();
 		final Iterable<? extends GraphObject> result = webSocketData.getResult();
 		final String command                         = webSocketData.getCommand();
-		final GraphObject obj                        = webSocketData.getGraphObject();
-
-		String message;
+		final Map<List<String>, String> messages     = new HashMap<>();
+		String unfilteredMessage                     = null;
 
 		// create message
 		for (StructrWebSocket socket : clients) {
@@ -119,35 +163,42 @@ public class WebsocketController implements StructrTransactionListener {
 					continue;
 				}
 
+				final String message;
+
 				if (result != null && BroadcastCommands.contains(command)) {
 
-					final WebSocketMessage clientData = webSocketData.copy();
+					final List<? extends GraphObject> visibleResult = Iterables.toList(filter(securityContext, result));
+					final List<String> visibleIds                   = new ArrayList<>(visibleResult.size());
 
-					clientData.setResult(filter(securityContext, result));
+					for (final GraphObject obj : visibleResult) {
+						visibleIds.add(obj.getUuid());
+					}
 
-					message = gson.toJson(clientData, WebSocketMessage.class);
+					// clients that can see the same objects receive the same message
+					message = messages.computeIfAbsent(visibleIds, k -> {
 
-				} else {
+						final WebSocketMessage clientData = webSocketData.copy();
 
-					message = gson.toJson(webSocketData, WebSocketMessage.class);
-				}
+						clientData.setResult(visibleResult);
 
-				try {
+						return gson.toJson(clientData, WebSocketMessage.class);
+					});
 
-					session.getRemote().sendString(message);
+				} else {
 
-				} catch (Throwable t) {
+					if (unfilteredMessage == null) {
+						unfilteredMessage = gson.toJson(webSocketData, WebSocketMessage.class);
+					}
 
-					if (t instanceof WebSocketException) {
+					message = unfilteredMessage;
+				}
 
-						WebSocketException wse = (WebSocketException) t;
+				if (!socket.sendAsync(message)) {
 
-						if ("RemoteEndpoint unavailable, current state [CLOSED], expecting [OPEN or CONNECTED]".equals(wse.getMessage())) {
-							clientsToRemove.add(socket);
-						}
-					}
+					// outbound queue is full, client can't keep up
+					clientsToRemove.add(socket);
 
-					logger.debug("Error sending message to client.", t);
+					socket.close(StatusCode.POLICY_VIOLATION, "Client too slow");
 				}
 			}
 		}
@@ -164,6 +215,109 @@ public class WebsocketController implements StructrTransactionListener {
 		return Iterables.filter(e -> { return securityContext.isVisible((AccessControllable)e); }, all);
 	}
 
+	/**
+	 * Takes broadcasts from the queue and sends them to the clients.
+	 * Updates of the same object that arrive within the broadcast window
+	 * are combined into a single message.
+	 */
+	private void dispatchBroadcasts() {
+
+		while (running) {
+
+			try {
+
+				final List<Broadcast> batch       = new ArrayList<>();
+				final Map<String, Broadcast> open = new HashMap<>();
+				final long window                 = Math.max(0, Settings.WebsocketBroadcastWindow.getValue());
+
+				coalesce(batch, open, broadcastQueue.take());
+
+				final long deadline = System.currentTimeMillis() + window;
+				long remaining      = window;
+
+				while (true) {
+
+					final Broadcast next = remaining > 0 ? broadcastQueue.poll(remaining, TimeUnit.MILLISECONDS) : broadcastQueue.poll();
+					if (next == null) {
+						break;
+					}
+
+					coalesce(batch, open, next);
+
+					remaining = deadline - System.currentTimeMillis();
+				}
+
+				try (final Tx tx = StructrApp.getInstance().tx(false, false, false)) {
+
+					for (final Broadcast broadcast : batch) {
+
+						try {
+
+							send(broadcast.message, broadcast.predicate);
+
+						} catch (Throwable t) {
+							logger.warn("Unable to broadcast websocket message: {}", t.getMessage());
+						}
+					}
+
+					tx.success();
+				}
+
+			} catch (InterruptedException iex) {
+
+				return;
+
+			} catch (Throwable t) {
+				logger.warn("Error in websocket broadcast dispatcher: {}", t.getMessage());
+			}
+		}
+	}
+
+	private void coalesce(final List<Broadcast> batch, final Map<String, Broadcast> open, final Broadcast broadcast) {
+
+		final WebSocketMessage message = broadcast.message;
+		final String id                = message.getId();
+
+		if (id != null && broadcast.predicate == null && "UPDATE".equals(message.getCommand()) && message.getGraphObject() != null) {
+
+			final Broadcast existing = open.get(id);
+			if (existing != null && Objects.equals(existing.message.getCallback(), message.getCallback())) {
+
+				// property values are read when the message is serialized,
+				// so it is sufficient to combine the sets of changed keys
+				existing.message.getModifiedProperties().addAll(message.getModifiedProperties());
+				existing.message.getRemovedProperties().addAll(message.getRemovedProperties());
+
+				if (message.getNodeData() != null) {
+
+					if (existing.message.getNodeData() != null) {
+
+						existing.message.getNodeData().putAll(message.getNodeData());
+
+					} else {
+
+						existing.message.setNodeData(message.getNodeData());
+					}
+				}
+
+				if (message.getRelData() != null) {
+					existing.message.setRelData(message.getRelData());
+				}
+
+				return;
+			}
+
+			open.put(id, broadcast);
+
+		} else if (id != null) {
+
+			// don't combine updates across other messages for the same object
+			open.remove(id);
+		}
+
+		batch.add(broadcast);
+	}
+
 	// ----- interface StructrTransactionListener -----
 	@Override
 	public void beforeCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents) {
@@ -387,4 +541,17 @@ public class WebsocketController implements StructrTransactionListener {
 
 		return newMessage;
 	}
+
+	// ----- nested classes -----
+	private static class Broadcast {
+
+		private Predicate<String> predicate = null;
+		private WebSocketMessage message    = null;
+
+		Broadcast(final WebSocketMessage message, final Predicate<String> predicate) {
+
+			this.predicate = predicate;
+			this.message   = message;
+		}
+	}
 }
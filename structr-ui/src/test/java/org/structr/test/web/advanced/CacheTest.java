@@ -19,6 +19,7 @@
 package org.structr.test.web.advanced;
 
 import java.util.Iterator;
+import org.apache.commons.lang3.StringUtils;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -27,19 +28,34 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.testng.annotations.Test;
 import org.structr.api.util.Iterables;
+import org.structr.common.AccessMode;
+import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
 import org.structr.core.entity.SchemaNode;
 import org.structr.core.entity.SchemaProperty;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyKey;
 import org.structr.schema.export.StructrSchema;
 import org.structr.schema.json.JsonProperty;
 import org.structr.schema.json.JsonSchema;
 import org.structr.schema.json.JsonType;
 import org.structr.test.web.StructrUiTest;
 import org.structr.test.web.entity.TestFive;
+import org.structr.test.web.entity.TestOne;
 import org.structr.test.web.entity.TestTwo;
+import org.structr.web.common.RenderCache;
+import org.structr.web.common.RenderContext;
+import org.structr.web.entity.dom.Content;
+import org.structr.web.entity.dom.DOMNode;
+import org.structr.web.entity.User;
+import org.structr.web.entity.dom.Page;
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+import org.w3c.dom.Element;
 
 /**
  */
@@ -135,6 +151,148 @@ public class CacheTest extends StructrUiTest {
 		service.shutdown();
 	}
 
+	@Test
+	public void testRenderCache() {
+
+		final PropertyKey<Integer> renderCacheSeconds = StructrApp.key(DOMNode.class, "renderCacheSeconds");
+		final PropertyKey<String> contentKey          = StructrApp.key(Content.class, "content");
+		Content content                               = null;
+		Page page                                     = null;
+
+		try (final Tx tx = app.tx()) {
+
+			page = Page.createSimplePage(securityContext, "page1");
+
+			final Element div = (Element)page.getElementsByTagName("div").item(0);
+			content           = (Content)div.getFirstChild();
+
+			((DOMNode)div).setProperty(renderCacheSeconds, 60);
+			content.setProperty(contentKey, "initial content");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		final String first = render(page);
+		final long hits    = (Long)RenderCache.getInstance().getStatistics().get("hits");
+
+		assertTrue("Invalid render output", first.contains("initial content"));
+
+		assertEquals("Cached output differs from rendered output", first, render(page));
+		assertEquals("Render cache was not used", hits + 1, RenderCache.getInstance().getStatistics().get("hits"));
+
+		try (final Tx tx = app.tx()) {
+
+			content.setProperty(contentKey, "modified content");
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		final String third = render(page);
+
+		assertTrue("Render cache was not invalidated", third.contains("modified content"));
+		assertFalse("Render cache was not invalidated", third.contains("initial content"));
+	}
+
+	@Test
+	public void testRenderCacheIsPerUser() {
+
+		final PropertyKey<Integer> renderCacheSeconds = StructrApp.key(DOMNode.class, "renderCacheSeconds");
+		final PropertyKey<String> contentKey          = StructrApp.key(Content.class, "content");
+		Page page                                     = null;
+		User user1                                    = null;
+		User user2                                    = null;
+
+		try (final Tx tx = app.tx()) {
+
+			user1 = app.create(User.class, "user1");
+			user2 = app.create(User.class, "user2");
+			page  = Page.createSimplePage(securityContext, "page2");
+
+			final Element div     = (Element)page.getElementsByTagName("div").item(0);
+			final Content content = (Content)div.getFirstChild();
+
+			((DOMNode)div).setProperty(renderCacheSeconds, 60);
+			content.setProperty(contentKey, "Hello ${me.name}");
+
+			page.setProperty(DOMNode.visibleToAuthenticatedUsers, true);
+
+			for (final DOMNode child : page.getAllChildNodes()) {
+				child.setProperty(DOMNode.visibleToAuthenticatedUsers, true);
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		final SecurityContext context1 = SecurityContext.getInstance(user1, AccessMode.Frontend);
+		final SecurityContext context2 = SecurityContext.getInstance(user2, AccessMode.Frontend);
+
+		assertTrue("Invalid render output", render(page, context1).contains("Hello user1"));
+
+		final String second = render(page, context2);
+
+		assertTrue("Render cache served the output of a different user", second.contains("Hello user2"));
+		assertFalse("Render cache served the output of a different user", second.contains("Hello user1"));
+
+		// both users are served from the cache now
+		final long hits = (Long)RenderCache.getInstance().getStatistics().get("hits");
+
+		assertTrue("Invalid render output", render(page, context1).contains("Hello user1"));
+		assertTrue("Invalid render output", render(page, context2).contains("Hello user2"));
+		assertEquals("Render cache was not used", hits + 2, RenderCache.getInstance().getStatistics().get("hits"));
+	}
+
+	@Test
+	public void testRenderCacheInvalidationByQueriedType() {
+
+		final PropertyKey<Integer> renderCacheSeconds = StructrApp.key(DOMNode.class, "renderCacheSeconds");
+		final PropertyKey<String> contentKey          = StructrApp.key(Content.class, "content");
+		Page page                                     = null;
+
+		try (final Tx tx = app.tx()) {
+
+			page = Page.createSimplePage(securityContext, "page3");
+
+			final Element div     = (Element)page.getElementsByTagName("div").item(0);
+			final Content content = (Content)div.getFirstChild();
+
+			((DOMNode)div).setProperty(renderCacheSeconds, 60);
+			content.setProperty(contentKey, "Count: ${size(find('TestOne'))}");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		// the fragment renders no TestOne node, but depends on their creation
+		assertTrue("Invalid render output", render(page).contains("Count: 0"));
+		assertTrue("Invalid render output", render(page).contains("Count: 0"));
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(TestOne.class, "test");
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		assertTrue("Render cache was not invalidated", render(page).contains("Count: 1"));
+	}
+
 	@Test
 	public void testRollback() {
 
@@ -201,4 +359,29 @@ public class CacheTest extends StructrUiTest {
 			t.printStackTrace();
 		}
 	}
+
+	// ----- private methods -----
+	private String render(final Page page) {
+		return render(page, securityContext);
+	}
+
+	private String render(final Page page, final SecurityContext context) {
+
+		try (final Tx tx = StructrApp.getInstance(context).tx()) {
+
+			final RenderContext renderContext = new RenderContext(context);
+
+			page.render(renderContext, 0);
+
+			tx.success();
+
+			return StringUtils.join(renderContext.getBuffer().getQueue(), "");
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		return null;
+	}
 }
@@ -18,9 +18,17 @@
  */
 package org.structr.test.web.advanced;
 
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.response.Response;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.zip.CRC32;
+import net.openhft.hashing.LongHashFunction;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.hamcrest.Matchers;
 import org.testng.annotations.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,10 +38,13 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.Tx;
 import org.structr.test.web.StructrUiTest;
+import org.structr.web.common.FileHelper;
+import org.structr.web.entity.File;
 import org.structr.web.entity.Folder;
 import org.structr.web.entity.Image;
 import org.structr.web.entity.User;
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
 import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.AssertJUnit.fail;
 
@@ -195,4 +206,179 @@ public class FilesystemTest extends StructrUiTest {
 			fail("Unexpected exception.");
 		}
 	}
+
+	@Test
+	public void test04SinglePassChecksums() {
+
+		final byte[] data1 = new byte[300000];
+		final byte[] data2 = new byte[123457];
+
+		for (int i=0; i<data1.length; i++) {
+			data1[i] = (byte)(i * 31);
+		}
+
+		for (int i=0; i<data2.length; i++) {
+			data2[i] = (byte)(i * 17);
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final Folder folder = FileHelper.createFolderPath(securityContext, "/checksums");
+
+			folder.setProperty(StructrApp.key(Folder.class, "enabledChecksums"), "crc32,md5,sha1,sha512");
+
+			FileHelper.createFile(securityContext, new ByteArrayInputStream(data1), "application/octet-stream", File.class, "test.bin", folder);
+
+			tx.success();
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertChecksums(app.nodeQuery(File.class).andName("test.bin").getFirst(), data1);
+
+			tx.success();
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		// overwrite file contents
+		try (final Tx tx = app.tx()) {
+
+			final File file = app.nodeQuery(File.class).andName("test.bin").getFirst();
+
+			try (final OutputStream os = file.getOutputStream()) {
+				os.write(data2);
+			}
+
+			tx.success();
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertChecksums(app.nodeQuery(File.class).andName("test.bin").getFirst(), data2);
+
+			tx.success();
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void test05FileDeliveryWithRanges() {
+
+		final StringBuilder buf = new StringBuilder();
+
+		// large enough to be sent from a memory-mapped region
+		for (int i=0; i<20000; i++) {
+			buf.append(String.format("%05d", i));
+		}
+
+		final String content = buf.toString();
+
+		try (final Tx tx = app.tx()) {
+
+			createTestNode(User.class,
+				new NodeAttribute<>(StructrApp.key(User.class, "name"),     "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "password"), "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "isAdmin"),  true)
+			);
+
+			FileHelper.createFile(securityContext, content.getBytes("utf-8"), "text/plain", File.class, "test.txt", true);
+
+			tx.success();
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		RestAssured.basePath = "/";
+
+		final Response response = RestAssured
+			.given()
+				.header("X-User",     "admin")
+				.header("X-Password", "admin")
+			.expect()
+				.statusCode(200)
+				.header("Accept-Ranges", "bytes")
+				.header("Content-Length", Integer.toString(content.length()))
+			.when()
+				.get("/test.txt");
+
+		final String etag = response.getHeader("ETag");
+
+		assertEquals("Invalid file content", content, response.asString());
+		assertNotNull("Missing ETag", etag);
+
+		RestAssured
+			.given()
+				.header("X-User",        "admin")
+				.header("X-Password",    "admin")
+				.header("If-None-Match", etag)
+			.expect()
+				.statusCode(304)
+			.when()
+				.get("/test.txt");
+
+		RestAssured
+			.given()
+				.header("X-User",     "admin")
+				.header("X-Password", "admin")
+				.header("Range",      "bytes=50000-50009")
+			.expect()
+				.statusCode(206)
+				.header("Content-Range", "bytes 50000-50009/100000")
+				.body(Matchers.equalTo(content.substring(50000, 50010)))
+			.when()
+				.get("/test.txt");
+
+		RestAssured
+			.given()
+				.header("X-User",     "admin")
+				.header("X-Password", "admin")
+				.header("Range",      "bytes=0-4,99990-")
+			.expect()
+				.statusCode(206)
+				.contentType(Matchers.startsWith("multipart/byteranges"))
+				.body(Matchers.containsString("bytes 0-4/100000"), Matchers.containsString(content.substring(99990)))
+			.when()
+				.get("/test.txt");
+
+		RestAssured
+			.given()
+				.header("X-User",     "admin")
+				.header("X-Password", "admin")
+				.header("Range",      "bytes=200000-")
+			.expect()
+				.statusCode(416)
+				.header("Content-Range", "bytes */100000")
+			.when()
+				.get("/test.txt");
+	}
+
+	// ----- private methods -----
+	private void assertChecksums(final File file, final byte[] data) {
+
+		final CRC32 crc32 = new CRC32();
+
+		crc32.update(data);
+
+		assertEquals("Invalid checksum",         Long.valueOf(LongHashFunction.xx().hashBytes(data)), file.getProperty(StructrApp.key(File.class, "checksum")));
+		assertEquals("Invalid CRC32 checksum",   Long.valueOf(crc32.getValue()),                      file.getProperty(StructrApp.key(File.class, "crc32")));
+		assertEquals("Invalid MD5 checksum",     DigestUtils.md5Hex(data),                            file.getProperty(StructrApp.key(File.class, "md5")));
+		assertEquals("Invalid SHA-1 checksum",   DigestUtils.sha1Hex(data),                           file.getProperty(StructrApp.key(File.class, "sha1")));
+		assertEquals("Invalid SHA-512 checksum", DigestUtils.sha512Hex(data),                         file.getProperty(StructrApp.key(File.class, "sha512")));
+	}
 }
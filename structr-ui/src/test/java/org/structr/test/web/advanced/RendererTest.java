@@ -20,6 +20,10 @@ package org.structr.test.web.advanced;
 
 import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import org.hamcrest.Matchers;
 import org.testng.annotations.Test;
 import org.slf4j.Logger;
@@ -29,9 +33,13 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.Tx;
 import org.structr.test.web.StructrUiTest;
+import org.structr.web.common.StreamingRenderBuffer;
 import org.structr.web.entity.User;
 import org.structr.web.entity.dom.Content;
 import org.structr.web.entity.dom.Page;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.AssertJUnit.fail;
 import org.w3c.dom.Element;
 
@@ -105,6 +113,110 @@ public class RendererTest extends StructrUiTest {
 			.get("/html/page1");
 	}
 
+	@Test
+	public void testLargePageOutput() {
+
+		final StringBuilder buf = new StringBuilder();
+		Content content         = null;
+
+		// multi-byte characters that span chunk boundaries, more than the default output buffer size
+		for (int i=0; i<50000; i++) {
+			buf.append("äöü-").append(i).append(" ");
+		}
+
+		final String text = buf.toString();
+
+		try (final Tx tx = app.tx()) {
+
+			createTestNode(User.class,
+				new NodeAttribute<>(StructrApp.key(User.class, "name"),     "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "password"), "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "isAdmin"), true)
+			);
+
+			final Page page1 = Page.createSimplePage(securityContext, "page1");
+
+			final Element div = (Element)page1.getElementsByTagName("div").item(0);
+			content           = (Content)div.getFirstChild();
+
+			content.setProperty(StructrApp.key(Content.class, "content"), text);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fail("Unexpected exception");
+			logger.warn("", fex);
+		}
+
+		RestAssured.basePath = "/";
+
+		final String body = RestAssured
+			.given()
+			.header("X-User",     "admin")
+			.header("X-Password", "admin")
+			.expect()
+			.statusCode(200)
+			.body("html.head.title", Matchers.equalTo("Page1"))
+			.when()
+			.get("/html/page1")
+			.asString();
+
+		assertTrue("Page output is incomplete", body.contains(text));
+		assertTrue("Page output is incomplete", body.trim().endsWith("</html>"));
+	}
+
+	@Test
+	public void testStreamingRenderBufferWithLargeAppend() {
+
+		final Semaphore signals            = new Semaphore(0);
+		final StreamingRenderBuffer buffer = new StreamingRenderBuffer(StreamingRenderBuffer.CHUNK_SIZE * 2, signals::release);
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final StringBuilder buf            = new StringBuilder();
+
+		for (int i=0; i<50000; i++) {
+			buf.append("äöü-").append(i).append(" ");
+		}
+
+		final String text = buf.toString();
+
+		// a single append that is much larger than the buffer limit, like a large content node
+		final Thread producer = new Thread(() -> {
+
+			buffer.append(text);
+			buffer.finish();
+		});
+
+		producer.start();
+
+		try {
+
+			// the consumer is driven by the listener only, like the asynchronous output writer
+			while (!buffer.isDone()) {
+
+				assertTrue("Producer blocked without notifying the consumer", signals.tryAcquire(10, TimeUnit.SECONDS));
+
+				StreamingRenderBuffer.Chunk chunk = buffer.poll();
+				while (chunk != null) {
+
+					output.write(chunk.getData(), 0, chunk.getLength());
+					buffer.release(chunk);
+
+					chunk = buffer.poll();
+				}
+			}
+
+			producer.join(10000);
+
+		} catch (InterruptedException iex) {
+
+			fail("Unexpected exception");
+		}
+
+		assertFalse("Producer did not finish", producer.isAlive());
+		assertEquals("Buffered output is incomplete", text, new String(output.toByteArray(), StandardCharsets.UTF_8));
+	}
+
 	/*
 	@Test
 	public void testTextileRenderer() {
@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.test.web.advanced;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.Tx;
+import org.structr.test.web.StructrUiTest;
+import org.structr.web.entity.User;
+import org.structr.websocket.StructrWebSocket;
+import org.structr.websocket.WebSocketDataGSONAdapter;
+import org.structr.websocket.WebsocketController;
+import org.structr.websocket.message.WebSocketMessage;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the asynchronous broadcast of websocket messages with simulated
+ * client connections.
+ */
+public class WebsocketBroadcastTest extends StructrUiTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(WebsocketBroadcastTest.class);
+
+	@Test
+	public void testBroadcastOrderAndFanOut() {
+
+		final Gson gson                       = createGson();
+		final WebsocketController controller  = new WebsocketController(gson);
+		final User admin                      = createAdmin();
+		final int numClients                  = 5;
+		final int numMessages                 = 100;
+		final List<List<String>> received     = new CopyOnWriteArrayList<>();
+
+		try {
+
+			for (int i=0; i<numClients; i++) {
+
+				final List<String> messages = new CopyOnWriteArrayList<>();
+
+				connect(controller, gson, admin, messages, new AtomicInteger(), false);
+				received.add(messages);
+			}
+
+			for (int i=0; i<numMessages; i++) {
+				controller.simpleBroadcast("TEST", Collections.singletonMap("value", "message" + i), null);
+			}
+
+			waitFor(received, numMessages);
+
+			for (final List<String> messages : received) {
+
+				assertEquals("Every client should receive every message", numMessages, messages.size());
+
+				for (int i=0; i<numMessages; i++) {
+					assertTrue("Messages should be received in the order they were sent", messages.get(i).contains("\"message" + i + "\""));
+				}
+			}
+
+			controller.shutdown();
+
+			// no messages after shutdown
+			controller.simpleBroadcast("TEST", Collections.singletonMap("value", "afterShutdown"), null);
+
+			try { Thread.sleep(500); } catch (InterruptedException ignore) {}
+
+			for (final List<String> messages : received) {
+				assertEquals("No message should be sent after shutdown", numMessages, messages.size());
+			}
+
+		} finally {
+
+			controller.shutdown();
+		}
+	}
+
+	@Test
+	public void testFailedSendClosesConnection() {
+
+		final Gson gson                      = createGson();
+		final WebsocketController controller = new WebsocketController(gson);
+		final User admin                     = createAdmin();
+		final AtomicInteger closed           = new AtomicInteger();
+
+		try {
+
+			final StructrWebSocket socket = connect(controller, gson, admin, new CopyOnWriteArrayList<>(), closed, true);
+
+			socket.sendAsync("test");
+
+			assertEquals("Connection should be closed when a message can't be sent", 1, closed.get());
+
+		} finally {
+
+			controller.shutdown();
+		}
+	}
+
+	// ----- private methods -----
+	private Gson createGson() {
+		return new GsonBuilder().serializeNulls().registerTypeAdapter(WebSocketMessage.class, new WebSocketDataGSONAdapter(3)).create();
+	}
+
+	private User createAdmin() {
+
+		try (final Tx tx = app.tx()) {
+
+			final User admin = createTestNode(User.class,
+				new NodeAttribute<>(StructrApp.key(User.class, "name"),     "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "isAdmin"), true)
+			);
+
+			tx.success();
+
+			return admin;
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		return null;
+	}
+
+	private StructrWebSocket connect(final WebsocketController controller, final Gson gson, final User user, final List<String> messages, final AtomicInteger closed, final boolean failWrites) {
+
+		final StructrWebSocket socket = new StructrWebSocket(controller, gson, null);
+
+		final RemoteEndpoint remote = (RemoteEndpoint)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { RemoteEndpoint.class }, (proxy, method, args) -> {
+
+			if ("sendString".equals(method.getName()) && args.length == 2) {
+
+				final WriteCallback callback = (WriteCallback)args[1];
+
+				if (failWrites) {
+
+					callback.writeFailed(new IllegalStateException("Connection lost"));
+
+				} else {
+
+					messages.add((String)args[0]);
+					callback.writeSuccess();
+				}
+			}
+
+			return null;
+		});
+
+		final Session session = (Session)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { Session.class }, (proxy, method, args) -> {
+
+			switch (method.getName()) {
+
+				case "getRemote":
+					return remote;
+
+				case "close":
+					closed.incrementAndGet();
+					return null;
+
+				case "hashCode":
+					return System.identityHashCode(proxy);
+
+				case "equals":
+					return proxy == args[0];
+
+				case "isOpen":
+					return true;
+			}
+
+			return null;
+		});
+
+		final HttpServletRequest request = (HttpServletRequest)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { HttpServletRequest.class }, (proxy, method, args) -> null);
+
+		socket.setRequest(request);
+		socket.onWebSocketConnect(session);
+		socket.setAuthenticated("session" + System.identityHashCode(socket), user);
+
+		return socket;
+	}
+
+	private void waitFor(final List<List<String>> received, final int count) {
+
+		final long timeout = System.currentTimeMillis() + 10000;
+
+		while (System.currentTimeMillis() < timeout) {
+
+			boolean done = true;
+
+			for (final List<String> messages : received) {
+				done &= messages.size() >= count;
+			}
+
+			if (done) {
+				return;
+			}
+
+			try { Thread.sleep(50); } catch (InterruptedException ignore) {}
+		}
+	}
+}
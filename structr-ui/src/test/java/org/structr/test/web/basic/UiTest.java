@@ -23,6 +23,7 @@ import java.net.URI;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Future;
 import org.apache.tika.io.IOUtils;
 import org.testng.annotations.Test;
 import org.slf4j.Logger;
@@ -46,6 +47,7 @@ import org.structr.test.web.StructrUiTest;
 import org.structr.web.common.FileHelper;
 import org.structr.web.common.ImageHelper;
 import org.structr.web.common.ImageHelper.Thumbnail;
+import org.structr.web.common.ThumbnailWorker;
 import org.structr.web.entity.AbstractFile;
 import org.structr.web.entity.File;
 import org.structr.web.entity.Folder;
@@ -55,6 +57,8 @@ import org.structr.web.property.ThumbnailProperty;
 import static org.testng.Assert.assertNotEquals;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertSame;
 import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.AssertJUnit.fail;
 
@@ -217,6 +221,51 @@ public class UiTest extends StructrUiTest {
 
 	}
 
+	@Test
+	public void test01ThumbnailDeduplication() {
+
+		String uuid = null;
+
+		try (final Tx tx = app.tx()) {
+
+			uuid = ImageHelper.createFileBase64(securityContext, base64Image, Image.class).getUuid();
+
+			tx.success();
+
+		} catch (Exception ex) {
+			ex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final ThumbnailWorker worker = ThumbnailWorker.getInstance();
+			final Image img              = app.get(Image.class, uuid);
+			final Future<Thumbnail> f1   = worker.submit(img, img.getChecksum(), 40, 40, false);
+			final Future<Thumbnail> f2   = worker.submit(img, img.getChecksum(), 40, 40, false);
+
+			assertSame("Identical thumbnail requests should share a task", f1, f2);
+
+			final Image tn = img.getScaledImage(40, 40, false);
+
+			assertNotNull(tn);
+			assertEquals(new Integer(40), tn.getWidth());
+			assertEquals(new Integer(10), tn.getHeight());
+
+			// the task was claimed by the thumbnail node
+			assertNotSame("Claimed thumbnail task should not be reused", f1, worker.submit(img, img.getChecksum(), 40, 40, false));
+
+			// existing thumbnail is returned
+			assertEquals(tn.getUuid(), img.getScaledImage(40, 40, false).getUuid());
+
+			tx.success();
+
+		} catch (Exception ex) {
+			ex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
 	@Test
 	public void testFolderPath() {
 